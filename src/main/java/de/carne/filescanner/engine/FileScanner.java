@@ -21,11 +21,14 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
@@ -37,6 +40,8 @@ import de.carne.filescanner.engine.input.FileScannerInput;
 import de.carne.filescanner.engine.input.FileScannerInputRange;
 import de.carne.filescanner.engine.input.InputDecodeCache;
 import de.carne.filescanner.engine.input.InputDecoderTable;
+import de.carne.filescanner.engine.input.InputDigestPass;
+import de.carne.filescanner.engine.input.InputDigester;
 import de.carne.filescanner.engine.spi.Format;
 import de.carne.filescanner.engine.util.HexFormat;
 import de.carne.util.Exceptions;
@@ -53,13 +58,28 @@ public final class FileScanner implements Closeable {
 	private static final int THREAD_COUNT = SystemProperties.intValue(FileScanner.class, ".threadCount",
 			Runtime.getRuntime().availableProcessors());
 	private static final long STOP_TIMEOUT = SystemProperties.longValue(FileScanner.class, ".stopTimeout", 5000);
+	private static final long ELEMENT_OFFSETS_BUDGET = Math
+			.max(SystemProperties.longValue(FileScanner.class, ".elementOffsetsBudget", 4l * 1024 * 1024), 0);
 
 	private final ExecutorService threadPool = Executors.newFixedThreadPool(THREAD_COUNT);
+	private final List<Format> formats;
 	private final FormatMatcherBuilder formatMatcherBuilder;
 	private final InputDecodeCache inputDecodeCache;
+	private final FileScannerResultStore resultStore;
+	private final FileScannerResultValueCaptureCache valueCaptures = new FileScannerResultValueCaptureCache();
+	private final AtomicLong elementOffsetsFootprint = new AtomicLong();
+	private final Map<FileScannerResult, FileScannerResultIndex> resultIndexes = new IdentityHashMap<>();
+	private final Path file;
 	private final BufferedFileChannelInput rootInput;
+	@Nullable
+	private final FileScannerSnapshot snapshot;
 	private final FileScannerResultBuilder rootResult;
 	private final FileScannerStatus status;
+	private final FileScannerResultNotifier resultNotifier;
+	@Nullable
+	private final FileScannerResultListener resultListener;
+	@Nullable
+	private final FileScannerResultDigester resultDigester;
 	private int runningScanTasks = 0;
 	private long scanStartedNanos = 0;
 	private long scanTimeNanos = 0;
@@ -68,23 +88,76 @@ public final class FileScanner implements Closeable {
 	private long scannedBytes = 0;
 	private boolean suppressStatus = false;
 
-	private FileScanner(BufferedFileChannelInput input, Collection<Format> formats, FileScannerStatus status)
-			throws IOException {
+	private FileScanner(Path file, @Nullable FileScannerSnapshot snapshot, Collection<Format> formats,
+			FileScannerStatus status, @Nullable FileScannerResultListener resultListener) throws IOException {
+		this.formats = new ArrayList<>(formats);
 		this.formatMatcherBuilder = new FormatMatcherBuilder(formats);
 		this.inputDecodeCache = new InputDecodeCache(this.threadPool::isShutdown);
-		this.rootInput = input;
+		this.resultStore = new FileScannerResultStore(this::releaseResult);
+		this.file = file;
+		this.rootInput = FileScannerInput.open(file);
+		this.snapshot = snapshot;
 		this.rootResult = FileScannerResultBuilder.inputResult(this.rootInput);
 		this.status = status;
+		this.resultNotifier = new FileScannerResultNotifier(this, status);
+		this.resultListener = resultListener;
+
+		List<String> digestAlgorithms = InputDigester.defaultAlgorithms();
+
+		this.resultDigester = (!digestAlgorithms.isEmpty() ? new FileScannerResultDigester(digestAlgorithms) : null);
 		this.rootResult.updateAndCommit(-1, true);
-		queueScanTask(() -> scanRootInput(this.rootResult));
+		recordDigestResult(this.rootResult);
+		if (snapshot != null) {
+			queueScanTask(() -> restoreRootInput(snapshot));
+		} else {
+			queueScanTask(() -> scanRootInput(this.rootResult));
+		}
 	}
 
 	private void scanRootInput(FileScannerResultBuilder inputResult) {
 		LOG.info("Starting scan (using {0} threads)...", THREAD_COUNT);
 		scanStarted();
+		reportResult(null, inputResult, null);
 		scanInput(inputResult);
 	}
 
+	private void restoreRootInput(FileScannerSnapshot rootSnapshot) {
+		LOG.info("Restoring snapshot (using {0} threads)...", THREAD_COUNT);
+		scanStarted();
+
+		long rootSize = this.rootResult.size();
+
+		scanProgress(rootSize, 0);
+		try {
+			rootSnapshot.restore(this.rootResult);
+			indexResult(this.rootResult, true);
+			onScanResultCommit(this.rootResult);
+			for (FileScannerSnapshot.Recipe recipe : rootSnapshot.recipes()) {
+				queueScanTask(() -> decodeRecipe(recipe));
+			}
+		} catch (IOException e) {
+			LOG.warning(e, "An exception occurred while restoring snapshot");
+
+			callStatus(() -> this.status.scanException(this, e));
+		}
+		scanProgress(0, rootSize);
+	}
+
+	private void decodeRecipe(FileScannerSnapshot.Recipe recipe) throws IOException {
+		FileScannerResultDecodeContext context = new FileScannerResultDecodeContext(this, recipe.parent(),
+				recipe.inputRange(), recipe.position());
+
+		try {
+			FileScannerResult decodeResult = context.decodeComposite(recipe.formatSpec());
+
+			if (decodeResult instanceof FileScannerResultBuilder) {
+				finishResult((FileScannerResultBuilder) decodeResult);
+			}
+		} catch (FormatDecodeException e) {
+			LOG.warning(e, "Failed to re-decode result at {0}", HexFormat.formatLong(recipe.position()));
+		}
+	}
+
 	private void scanInput(FileScannerResultBuilder inputResult) {
 		LOG.notice("Scanning input ''{0}''...", inputResult.name());
 
@@ -128,6 +201,9 @@ public final class FileScanner implements Closeable {
 			}
 			if (decodeResult != null && decodeResultSize > 0) {
 				scanProgress(0, decodeResultSize);
+				if (decodeResult instanceof FileScannerResultBuilder) {
+					finishResult((FileScannerResultBuilder) decodeResult);
+				}
 
 				long decodeResultStart = decodeResult.start();
 
@@ -145,6 +221,119 @@ public final class FileScanner implements Closeable {
 		}
 	}
 
+	private void finishResult(FileScannerResultBuilder result) {
+		FileScannerResultListener checkedResultListener = this.resultListener;
+
+		recordDigestResult(result);
+		if (checkedResultListener != null) {
+			reportResults(result.parent(), result, result);
+		}
+		if (checkedResultListener == null || checkedResultListener.isRetainingResults()) {
+			indexResult(result, false);
+			this.resultStore.onResultFinished(result);
+		} else if (result.parent().type() == FileScannerResult.Type.INPUT) {
+			result.parent().forgetChild(result);
+			releaseForgottenResult(result);
+		}
+	}
+
+	private void recordDigestResult(FileScannerResultBuilder result) {
+		FileScannerResultDigester checkedResultDigester = this.resultDigester;
+
+		if (checkedResultDigester != null) {
+			try {
+				checkedResultDigester.record(result);
+			} catch (IOException e) {
+				LOG.warning(e, "Failed to record result ''{0}'' for digesting", result.name());
+			}
+		}
+	}
+
+	private boolean queueDigestTasks() {
+		FileScannerResultDigester checkedResultDigester = this.resultDigester;
+		boolean queued = false;
+
+		if (checkedResultDigester != null) {
+			for (InputDigestPass<FileScannerResultDigester.Target> digestPass : checkedResultDigester.takePasses()) {
+				queueScanTask(() -> checkedResultDigester.run(digestPass, this.threadPool::isShutdown));
+				queued = true;
+			}
+		}
+		return queued;
+	}
+
+	private void reportResults(FileScannerResultBuilder parent, FileScannerResultBuilder result,
+			FileScannerResultBuilder formatResult) {
+		reportResult(parent, result, formatResult);
+		for (FileScannerResultBuilder child : result.committedChildren()) {
+			// Nested input results are reported as a whole, their children are reported by their own scan task
+			if (child.type() != FileScannerResult.Type.INPUT) {
+				reportResults(result, child, formatResult);
+			} else {
+				reportResult(result, child, formatResult);
+			}
+		}
+	}
+
+	private void reportResult(@Nullable FileScannerResult parent, FileScannerResult result,
+			@Nullable FileScannerResult formatResult) {
+		FileScannerResultListener checkedResultListener = this.resultListener;
+
+		if (checkedResultListener != null) {
+			try {
+				checkedResultListener.resultFinished(this, parent, result, formatResult);
+			} catch (IOException e) {
+				LOG.warning(e, "Failed to report result ''{0}''", result.name());
+
+				callStatus(() -> this.status.scanException(this, e));
+			}
+		}
+	}
+
+	private void indexResult(FileScannerResultBuilder result, boolean indexInputs) {
+		if (result.type() != FileScannerResult.Type.INPUT) {
+			FileScannerResultIndex resultIndex;
+
+			synchronized (this.resultIndexes) {
+				resultIndex = this.resultIndexes.computeIfAbsent(result.inputResult(),
+						inputResult -> new FileScannerResultIndex());
+			}
+			resultIndex.add(result);
+		}
+		for (FileScannerResultBuilder child : result.committedChildren()) {
+			// While scanning, nested input results are indexed by their own scan task
+			if (indexInputs || child.type() != FileScannerResult.Type.INPUT) {
+				indexResult(child, indexInputs);
+			}
+		}
+	}
+
+	FileScannerResultValueCaptureCache valueCaptures() {
+		return this.valueCaptures;
+	}
+
+	boolean reserveElementOffsets(long footprint) {
+		boolean reserved = this.elementOffsetsFootprint.addAndGet(footprint) <= ELEMENT_OFFSETS_BUDGET;
+
+		if (!reserved) {
+			this.elementOffsetsFootprint.addAndGet(-footprint);
+		}
+		return reserved;
+	}
+
+	private void releaseResult(FileScannerResultBuilder result) {
+		// Invoked as soon as a result is dropped from memory (spilled or forgotten) to release its transient state
+		this.elementOffsetsFootprint.addAndGet(-result.releaseElementOffsets());
+		this.valueCaptures.detach(result);
+	}
+
+	private void releaseForgottenResult(FileScannerResultBuilder result) {
+		releaseResult(result);
+		for (FileScannerResultBuilder child : result.committedChildren()) {
+			releaseForgottenResult(child);
+		}
+	}
+
 	InputDecodeCache.DecodeResult decodeInputs(DecodedInputMapper decodedInputMapper,
 			InputDecoderTable inputDecoderTable, FileScannerInput input, long start) throws IOException {
 		return this.inputDecodeCache.decodeInputs(decodedInputMapper, inputDecoderTable, input, start);
@@ -157,7 +346,7 @@ public final class FileScanner implements Closeable {
 	}
 
 	void onScanResultCommit(FileScannerResultBuilder scanResult) {
-		callStatus(() -> this.status.scanResult(this, scanResult));
+		this.resultNotifier.notifyResult(scanResult);
 	}
 
 	/**
@@ -170,7 +359,73 @@ public final class FileScanner implements Closeable {
 	 * @throws IOException if an I/O error occurs.
 	 */
 	public static FileScanner scan(Path file, Collection<Format> formats, FileScannerStatus status) throws IOException {
-		return new FileScanner(FileScannerInput.open(file), formats, status);
+		return new FileScanner(file, null, formats, status, null);
+	}
+
+	/**
+	 * Creates a new {@linkplain FileScanner} instance and scans the submitted file reporting each finished result to
+	 * the submitted {@linkplain FileScannerResultListener}.
+	 *
+	 * @param file the file to scan.
+	 * @param formats the {@linkplain Format}s to scan for.
+	 * @param status the callback interface receiving scan status updates.
+	 * @param resultListener the callback interface receiving the finished results.
+	 * @return the created {@linkplain FileScanner} instance.
+	 * @throws IOException if an I/O error occurs.
+	 * @see FileScannerResultListener#isRetainingResults()
+	 */
+	public static FileScanner scan(Path file, Collection<Format> formats, FileScannerStatus status,
+			FileScannerResultListener resultListener) throws IOException {
+		return new FileScanner(file, null, formats, status, resultListener);
+	}
+
+	/**
+	 * Creates a new {@linkplain FileScanner} instance and restores the scan result from a previously saved snapshot.
+	 * <p>
+	 * The snapshot must have been created for the submitted file (see {@linkplain #save(Path)}). Results which cannot
+	 * be restored directly are re-decoded, hence the returned {@linkplain FileScanner} reports status updates like
+	 * a regular scan. The snapshot's spec elements are resolved against the submitted formats. If a required format
+	 * spec definition is not available or has changed since the snapshot has been saved (see
+	 * {@linkplain de.carne.filescanner.engine.format.FormatSpecDefinition#fingerprint()}), the restore fails and a
+	 * scan exception is reported.
+	 * </p>
+	 *
+	 * @param snapshotFile the snapshot file to restore.
+	 * @param file the file the snapshot has been created for.
+	 * @param formats the {@linkplain Format}s to resolve the snapshot's spec elements against and to use for
+	 * re-decoding.
+	 * @param status the callback interface receiving scan status updates.
+	 * @return the created {@linkplain FileScanner} instance.
+	 * @throws IOException if an I/O error occurs or if the snapshot does not match the submitted file.
+	 */
+	public static FileScanner open(Path snapshotFile, Path file, Collection<Format> formats, FileScannerStatus status)
+			throws IOException {
+		FileScannerSnapshot snapshot = FileScannerSnapshot.open(snapshotFile, file, formats);
+
+		try {
+			return new FileScanner(file, snapshot, formats, status, null);
+		} catch (IOException | RuntimeException e) {
+			snapshot.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Saves the scan result to a snapshot file.
+	 * <p>
+	 * The saved snapshot can be restored via {@linkplain #open(Path, Path, Collection, FileScannerStatus)} as long as
+	 * the scanned file remains unchanged.
+	 * </p>
+	 *
+	 * @param snapshotFile the snapshot file to write.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws IllegalStateException if the scan is still running.
+	 */
+	public void save(Path snapshotFile) throws IOException {
+		if (isScanning()) {
+			throw new IllegalStateException("Cannot save snapshot while scanning");
+		}
+		FileScannerSnapshot.save(this.rootResult, this.file, snapshotFile, this.formats);
 	}
 
 	/**
@@ -223,7 +478,8 @@ public final class FileScanner implements Closeable {
 	 */
 	public synchronized FileScannerProgress progress() {
 		return new FileScannerProgress(this.scanStartedNanos, this.scanTimeNanos, this.scannedBytes,
-				this.totalInputBytes);
+				this.totalInputBytes, this.elementOffsetsFootprint.get(), this.resultStore.spilledResults(),
+				this.resultStore.pagedInResults());
 	}
 
 	/**
@@ -243,18 +499,25 @@ public final class FileScanner implements Closeable {
 	 * @return the resolved {@linkplain FileScannerResult} path.
 	 */
 	public @NonNull FileScannerResult[] getResultPath(byte[] resultKey) {
-		StringBuilder resultKeyString = new StringBuilder();
 		List<FileScannerResult> results = new ArrayList<>();
-		FileScannerResult lastResult = this.rootResult;
+
+		resolveResult(resultKey, results);
+		return results.toArray(new @NonNull FileScannerResult[results.size()]);
+	}
+
+	private FileScannerResultBuilder resolveResult(byte[] resultKey, @Nullable List<FileScannerResult> results) {
+		StringBuilder resultKeyString = new StringBuilder();
+		FileScannerResultBuilder lastResult = this.rootResult;
 
 		resultKeyString.append(HexFormat.formatLong(0));
-		results.add(lastResult);
+		if (results != null) {
+			results.add(lastResult);
+		}
 
 		int resultKeyIndex = 0;
 
 		while (resultKeyIndex < resultKey.length) {
-			FileScannerResult currentResult = null;
-			FileScannerResult[] lastResultChildren = lastResult.children();
+			FileScannerResultBuilder currentResult = null;
 
 			if (lastResult.type() != FileScannerResult.Type.ENCODED_INPUT) {
 				long resultStart = ((resultKey[resultKeyIndex] & 0xffl) << 56)
@@ -266,7 +529,7 @@ public final class FileScanner implements Closeable {
 						| ((resultKey[resultKeyIndex + 6] & 0xffl) << 8) | (resultKey[resultKeyIndex + 7] & 0xffl);
 
 				resultKeyString.append(", ").append(HexFormat.formatLong(resultStart));
-				currentResult = getResultByStart(lastResultChildren, resultStart);
+				currentResult = lastResult.childByStart(resultStart);
 				resultKeyIndex += 8;
 			} else {
 				int resultIndex = ((resultKey[resultKeyIndex] & 0xff) << 24)
@@ -274,44 +537,92 @@ public final class FileScanner implements Closeable {
 						| (resultKey[resultKeyIndex + 3] & 0xff);
 
 				resultKeyString.append(", ").append(HexFormat.formatInt(resultIndex));
-				currentResult = lastResultChildren[resultIndex];
+				currentResult = lastResult.childAt(resultIndex);
 				resultKeyIndex += 4;
 			}
 			if (currentResult == null) {
 				throw new IllegalArgumentException("Invalid result key: " + resultKeyString);
 			}
-			results.add(currentResult);
+			if (results != null) {
+				results.add(currentResult);
+			}
 			lastResult = currentResult;
 		}
-		return results.toArray(new @NonNull FileScannerResult[results.size()]);
+		return lastResult;
+	}
+
+	/**
+	 * Gets all {@linkplain FileScannerResult} instances of an input covering a specific input position.
+	 * <p>
+	 * The results are returned in result order (by start position and outer results first).
+	 * </p>
+	 *
+	 * @param inputResult the input {@linkplain FileScannerResult} to query.
+	 * @param position the input position to query.
+	 * @return the {@linkplain FileScannerResult} instances covering the submitted input position.
+	 */
+	public @NonNull FileScannerResult[] getResultsAt(FileScannerResult inputResult, long position) {
+		return getResultsIn(inputResult, position, position + 1);
 	}
 
-	private @Nullable FileScannerResult getResultByStart(FileScannerResult[] results, long resultStart) {
-		int first = 0;
-		int last = results.length - 1;
-		FileScannerResult result = null;
+	/**
+	 * Gets all {@linkplain FileScannerResult} instances of an input overlapping a specific input range.
+	 * <p>
+	 * The results are returned in result order (by start position and outer results first).
+	 * </p>
+	 *
+	 * @param inputResult the input {@linkplain FileScannerResult} to query.
+	 * @param start the start of the input range to query (inclusive).
+	 * @param end the end of the input range to query (exclusive).
+	 * @return the {@linkplain FileScannerResult} instances overlapping the submitted input range.
+	 */
+	public @NonNull FileScannerResult[] getResultsIn(FileScannerResult inputResult, long start, long end) {
+		if (inputResult.type() != FileScannerResult.Type.INPUT) {
+			throw new IllegalArgumentException("Not an input result: " + inputResult);
+		}
 
-		while (result == null && first <= last) {
-			int median = first + (last - first) / 2;
-			FileScannerResult currentResult = results[median];
-			long currentResultStart = currentResult.start();
+		FileScannerResultIndex resultIndex;
 
-			if (resultStart == currentResultStart) {
-				result = currentResult;
-			} else if (resultStart < currentResultStart) {
-				last = median - 1;
-			} else {
-				first = median + 1;
-			}
+		synchronized (this.resultIndexes) {
+			resultIndex = this.resultIndexes.get(inputResult);
+		}
+
+		List<FileScannerResult> results = new ArrayList<>();
+
+		if (resultIndex != null) {
+			resultIndex.query(start, end, resultKey -> resolveResult(resultKey, null), results);
 		}
-		return result;
+		return results.toArray(new @NonNull FileScannerResult[results.size()]);
+	}
+
+	/**
+	 * Gets the innermost {@linkplain FileScannerResult} of an input covering a specific input position.
+	 *
+	 * @param inputResult the input {@linkplain FileScannerResult} to query.
+	 * @param position the input position to query.
+	 * @return the innermost {@linkplain FileScannerResult} covering the submitted input position or {@code null} if
+	 * the position is not covered by any result.
+	 */
+	public @Nullable FileScannerResult getInnermostResultAt(FileScannerResult inputResult, long position) {
+		@NonNull FileScannerResult[] results = getResultsAt(inputResult, position);
+
+		return (results.length > 0 ? results[results.length - 1] : null);
 	}
 
 	@Override
 	public void close() throws IOException {
 		stop(true);
+		this.resultNotifier.close();
 		this.rootInput.close();
 		this.inputDecodeCache.close();
+		this.resultStore.close();
+		this.valueCaptures.clear();
+
+		FileScannerSnapshot checkedSnapshot = this.snapshot;
+
+		if (checkedSnapshot != null) {
+			checkedSnapshot.close();
+		}
 	}
 
 	private void queueScanTask(FileScannerRunnableV task) {
@@ -343,7 +654,8 @@ public final class FileScanner implements Closeable {
 			this.runningScanTasks--;
 			scanFinished = this.runningScanTasks == 0;
 		}
-		if (scanFinished) {
+		// Digest the scanned results once the actual scan is done
+		if (scanFinished && !queueDigestTasks()) {
 			scanFinished();
 			this.threadPool.shutdown();
 		}
@@ -364,7 +676,8 @@ public final class FileScanner implements Closeable {
 					|| (this.scanTimeNanos - this.lastProgressTimeNanos > 700000000l)) {
 				this.lastProgressTimeNanos = this.scanTimeNanos;
 				reportProgress = new FileScannerProgress(this.scanStartedNanos, this.scanTimeNanos, this.scannedBytes,
-						this.totalInputBytes);
+						this.totalInputBytes, this.elementOffsetsFootprint.get(), this.resultStore.spilledResults(),
+						this.resultStore.pagedInResults());
 			}
 			suppressCallStatus = this.suppressStatus;
 		}
@@ -400,8 +713,16 @@ public final class FileScanner implements Closeable {
 		LOG.notice("Finished scanning ''{0}'' (scan took: {1} ms)", this.rootResult.name(), scanTime / 1000000l);
 
 		if (!suppressCallStatus) {
+			try {
+				this.resultNotifier.flush();
+			} catch (InterruptedException e) {
+				LOG.warning(e, "Result notification flush has been interrupted");
+
+				Thread.currentThread().interrupt();
+			}
 			callStatus(() -> this.status.scanFinished(this));
 		}
+		this.resultNotifier.close();
 		synchronized (this) {
 			notifyAll();
 		}
@@ -25,12 +25,19 @@ public final class FileScannerProgress {
 	private final long scanTimeNanos;
 	private final long scannedBytes;
 	private final long totalInputBytes;
+	private final long elementOffsetsFootprint;
+	private final long spilledResults;
+	private final long pagedInResults;
 
-	FileScannerProgress(long scanStartedNanos, long scanTimeNanos, long scannedBytes, long totalInputBytes) {
+	FileScannerProgress(long scanStartedNanos, long scanTimeNanos, long scannedBytes, long totalInputBytes,
+			long elementOffsetsFootprint, long spilledResults, long pagedInResults) {
 		this.scanStartedNanos = scanStartedNanos;
 		this.scanTimeNanos = scanTimeNanos;
 		this.scannedBytes = scannedBytes;
 		this.totalInputBytes = totalInputBytes;
+		this.elementOffsetsFootprint = elementOffsetsFootprint;
+		this.spilledResults = spilledResults;
+		this.pagedInResults = pagedInResults;
 	}
 
 	/**
@@ -69,6 +76,41 @@ public final class FileScannerProgress {
 		return this.totalInputBytes;
 	}
 
+	/**
+	 * Get the memory (in bytes) currently reserved for element offsets.
+	 * <p>
+	 * Element offsets are kept for large sequences and arrays as long as their result is kept in memory. The
+	 * reservations are released as soon as the result is spilled or dropped.
+	 * </p>
+	 *
+	 * @return The memory (in bytes) currently reserved for element offsets.
+	 */
+	public long elementOffsetsFootprint() {
+		return this.elementOffsetsFootprint;
+	}
+
+	/**
+	 * Get the number of results spilled to the result store so far.
+	 * <p>
+	 * Results are only spilled if the scanned results exceed the heap budget (system property
+	 * {@code de.carne.filescanner.engine.FileScanner.heapBudget}).
+	 * </p>
+	 *
+	 * @return The number of results spilled to the result store so far.
+	 */
+	public long spilledResults() {
+		return this.spilledResults;
+	}
+
+	/**
+	 * Get the number of spilled results paged back in so far.
+	 *
+	 * @return The number of spilled results paged back in so far.
+	 */
+	public long pagedInResults() {
+		return this.pagedInResults;
+	}
+
 	/**
 	 * Get the current scan progress (in percent).
 	 *
@@ -17,6 +17,8 @@
 package de.carne.filescanner.engine;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
@@ -119,6 +121,23 @@ public interface FileScannerResult {
 	 */
 	long size();
 
+	/**
+	 * Gets the number of times this {@linkplain FileScannerResult}'s state has been committed.
+	 * <p>
+	 * As long as the commit count does not change, the committed state (and therefore the render output) of this
+	 * {@linkplain FileScannerResult} does not change.
+	 * </p>
+	 * <p>
+	 * The default implementation returns {@code 0} and is suitable for results that do not change once they are
+	 * available.
+	 * </p>
+	 *
+	 * @return the number of times this {@linkplain FileScannerResult}'s state has been committed.
+	 */
+	default long commitCount() {
+		return 0;
+	}
+
 	/**
 	 * Gets this {@linkplain FileScannerResult}'s children result count.
 	 *
@@ -147,6 +166,29 @@ public interface FileScannerResult {
 	long render(RenderOutput out, @Nullable FileScannerResultRenderHandler renderHandler, long offset)
 			throws IOException;
 
+	/**
+	 * Renders a window of this {@linkplain FileScannerResult}'s elements.
+	 * <p>
+	 * The rendered elements are the ones of the first sequence or array encountered while rendering this result. Only
+	 * the elements within the window are written to the given {@linkplain RenderOutput}. Element offsets recorded
+	 * during decoding are used to reach the first window element without re-decoding the preceding elements. The
+	 * returned total element count enables clients to virtualize the element display (e.g. by requesting only the
+	 * currently visible elements).
+	 * </p>
+	 * <p>
+	 * The default implementation renders nothing and returns {@code -1}.
+	 * </p>
+	 *
+	 * @param out the {@linkplain RenderOutput} to render to.
+	 * @param firstElement the index of the first element to render.
+	 * @param elementCount the maximum number of elements to render.
+	 * @return the total number of elements or {@code -1} if this result has no elements to render.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	default long renderElements(RenderOutput out, long firstElement, long elementCount) throws IOException {
+		return -1;
+	}
+
 	/**
 	 * Gets the available {@linkplain FileScannerResultExportHandler} instances for this {@linkplain FileScannerResult}.
 	 *
@@ -164,6 +206,31 @@ public interface FileScannerResult {
 	 */
 	TransferSource export(FileScannerResultExportHandler exportHandler) throws IOException;
 
+	/**
+	 * Gets the values bound to this {@linkplain FileScannerResult} during decoding.
+	 * <p>
+	 * The default implementation returns an empty map.
+	 * </p>
+	 *
+	 * @return the values bound to this {@linkplain FileScannerResult} (mapped by value name).
+	 */
+	default Map<String, Object> values() {
+		return Collections.emptyMap();
+	}
+
+	/**
+	 * Gets the specifications of the values bound to this {@linkplain FileScannerResult} during decoding.
+	 * <p>
+	 * The default implementation returns an empty map.
+	 * </p>
+	 *
+	 * @return the specifications of the values bound to this {@linkplain FileScannerResult} (mapped by value name).
+	 * @see #values()
+	 */
+	default Map<String, FileScannerResultContextValueSpec<?>> valueSpecs() {
+		return Collections.emptyMap();
+	}
+
 	/**
 	 * Sets a custom data object associated with this {@linkplain FileScannerResult}.
 	 *
@@ -31,13 +31,20 @@ import java.util.function.Supplier;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 
+import de.carne.filescanner.engine.FileScannerResultStore.BlockInput;
+import de.carne.filescanner.engine.FileScannerResultStore.BlockOutput;
+import de.carne.filescanner.engine.FileScannerResultStore.SpilledChildren;
 import de.carne.filescanner.engine.format.CompositeSpec;
 import de.carne.filescanner.engine.format.EncodedInputSpec;
+import de.carne.filescanner.engine.format.TextExpression;
 import de.carne.filescanner.engine.input.FileScannerInput;
 import de.carne.filescanner.engine.input.FileScannerInputRange;
 import de.carne.filescanner.engine.transfer.FileScannerResultExportHandler;
 import de.carne.filescanner.engine.transfer.FileScannerResultRenderHandler;
 import de.carne.filescanner.engine.transfer.RenderOutput;
+import de.carne.filescanner.engine.transfer.RenderStyle;
+import de.carne.filescanner.engine.transfer.RenderTextBatch;
+import de.carne.filescanner.engine.transfer.Renderer;
 import de.carne.filescanner.engine.transfer.TransferSource;
 import de.carne.filescanner.engine.transfer.handler.RawTransferHandler;
 import de.carne.filescanner.engine.util.FinalSupplier;
@@ -54,6 +61,8 @@ abstract class FileScannerResultBuilder implements FileScannerResult {
 
 	private static final CommitState UNCOMMITTED = new CommitState("<uncomitted>", -1);
 
+	private static final long NODE_HEAP_USAGE = 512;
+
 	private final @Nullable FileScannerResultBuilder parent;
 	private final Type type;
 	private final FileScannerInput input;
@@ -61,7 +70,18 @@ abstract class FileScannerResultBuilder implements FileScannerResult {
 	private final Set<FileScannerResultExportHandler> exportHandlers = new HashSet<>();
 	private CommitState committedState = UNCOMMITTED;
 	private CommitState currentState;
+	private long commitCount = 0;
 	private Map<Object, Object> dataMap = new HashMap<>();
+	@Nullable
+	private volatile FileScannerResultValueCapture valueCapture = null;
+	private Object[] elementOffsetsComposites = new Object[0];
+	private FileScannerResultElementOffsets[] elementOffsets = new FileScannerResultElementOffsets[0];
+	private volatile long heapUsage = NODE_HEAP_USAGE;
+	private boolean heapUsageAttached = false;
+	// Keeps a paged in block (and hence the identity of all siblings) alive as long as this result is in use
+	@SuppressWarnings("unused")
+	@Nullable
+	private List<FileScannerResultBuilder> spilledSiblings = null;
 
 	protected FileScannerResultBuilder(@Nullable FileScannerResultBuilder parent, FileScannerResult.Type type,
 			FileScannerInputRange inputRange, Supplier<String> name) {
@@ -137,9 +157,14 @@ abstract class FileScannerResultBuilder implements FileScannerResult {
 		return (!UNCOMMITTED.equals(this.committedState) ? this.committedState.end() - this.start : 0);
 	}
 
+	@Override
+	public synchronized long commitCount() {
+		return this.commitCount;
+	}
+
 	@Override
 	public synchronized int childrenCount() {
-		return this.committedState.getChildren().size();
+		return this.committedState.getChildrenCount();
 	}
 
 	@Override
@@ -149,6 +174,53 @@ abstract class FileScannerResultBuilder implements FileScannerResult {
 		return children.toArray(new FileScannerResult[children.size()]);
 	}
 
+	synchronized @Nullable FileScannerResultBuilder childByStart(long childStart) {
+		List<FileScannerResultBuilder> children = this.committedState.getChildren();
+		int first = 0;
+		int last = children.size() - 1;
+		FileScannerResultBuilder child = null;
+
+		while (child == null && first <= last) {
+			int median = first + (last - first) / 2;
+			FileScannerResultBuilder currentChild = children.get(median);
+			long currentChildStart = currentChild.start();
+
+			if (childStart == currentChildStart) {
+				child = currentChild;
+			} else if (childStart < currentChildStart) {
+				last = median - 1;
+			} else {
+				first = median + 1;
+			}
+		}
+		return child;
+	}
+
+	synchronized @Nullable FileScannerResultBuilder childAt(int childIndex) {
+		List<FileScannerResultBuilder> children = this.committedState.getChildren();
+
+		return (0 <= childIndex && childIndex < children.size() ? children.get(childIndex) : null);
+	}
+
+	boolean isAttached() {
+		FileScannerResultBuilder child = this;
+		FileScannerResultBuilder checkedParent = this.parent;
+		boolean attached = true;
+
+		while (attached && checkedParent != null) {
+			attached = checkedParent.isChild(child);
+			child = checkedParent;
+			checkedParent = checkedParent.parent;
+		}
+		return attached;
+	}
+
+	private synchronized boolean isChild(FileScannerResultBuilder child) {
+		// Children of encoded inputs are keyed by index and may share their start position
+		return (this.type != Type.ENCODED_INPUT ? childByStart(child.start()) == child
+				: this.committedState.getChildren().contains(child));
+	}
+
 	private synchronized int childIndex(FileScannerResult child) {
 		return this.committedState.getChildren().indexOf(child);
 	}
@@ -162,6 +234,34 @@ abstract class FileScannerResultBuilder implements FileScannerResult {
 		}
 	}
 
+	@Override
+	public synchronized Map<String, Object> values() {
+		Map<String, Object> values = new HashMap<>();
+
+		for (Map.Entry<Object, Object> valueEntry : this.committedState.getValues().entrySet()) {
+			Object valueKey = valueEntry.getKey();
+
+			if (valueKey instanceof FileScannerResultContextValueSpec) {
+				values.putIfAbsent(((FileScannerResultContextValueSpec<?>) valueKey).name(), valueEntry.getValue());
+			}
+		}
+		return values;
+	}
+
+	@Override
+	public synchronized Map<String, FileScannerResultContextValueSpec<?>> valueSpecs() {
+		Map<String, FileScannerResultContextValueSpec<?>> valueSpecs = new HashMap<>();
+
+		for (Object valueKey : this.committedState.getValues().keySet()) {
+			if (valueKey instanceof FileScannerResultContextValueSpec) {
+				FileScannerResultContextValueSpec<?> valueSpec = (FileScannerResultContextValueSpec<?>) valueKey;
+
+				valueSpecs.putIfAbsent(valueSpec.name(), valueSpec);
+			}
+		}
+		return valueSpecs;
+	}
+
 	@Override
 	@Nullable
 	public synchronized <T> T getData(Object key, Class<T> dataType) {
@@ -254,6 +354,7 @@ abstract class FileScannerResultBuilder implements FileScannerResult {
 			boolean initialCommit = UNCOMMITTED.equals(this.committedState);
 
 			this.committedState = this.currentState.commit();
+			this.commitCount++;
 			if (checkedParent != null) {
 				if (this.type != Type.INPUT) {
 					commitResult = checkedParent.updateAndCommitParent(commitPosition, this, initialCommit, fullCommit);
@@ -270,6 +371,10 @@ abstract class FileScannerResultBuilder implements FileScannerResult {
 		FileScannerResultBuilder commitResult = commitChild;
 
 		if (addChild) {
+			if (commitChild.type != Type.INPUT) {
+				commitChild.heapUsageAttached = true;
+				addHeapUsage(commitChild.heapUsage);
+			}
 			if (this.type == Type.FORMAT) {
 				modifyState().updateEnd(commitPosition).addChild(commitChild);
 			} else {
@@ -282,6 +387,7 @@ abstract class FileScannerResultBuilder implements FileScannerResult {
 			boolean initialCommit = UNCOMMITTED.equals(this.committedState);
 
 			this.committedState = this.currentState.commit();
+			this.commitCount++;
 			if (this.type != Type.INPUT) {
 				commitResult = parent().updateAndCommitParent(commitPosition, this, initialCommit, fullCommit);
 			} else {
@@ -291,6 +397,32 @@ abstract class FileScannerResultBuilder implements FileScannerResult {
 		return commitResult;
 	}
 
+	private void addHeapUsage(long delta) {
+		// A result tree is committed by a single decode thread; nested inputs are accounted separately
+		FileScannerResultBuilder result = this;
+
+		while (result != null) {
+			result.heapUsage += delta;
+			result = (result.heapUsageAttached ? result.parent : null);
+		}
+	}
+
+	/**
+	 * Gets the estimated heap usage of this result and its (non-input) children.
+	 * <p>
+	 * The estimate is updated incrementally whenever a child is committed.
+	 * </p>
+	 *
+	 * @return the estimated heap usage of this result and its (non-input) children.
+	 */
+	long heapUsage() {
+		return this.heapUsage;
+	}
+
+	void setSpilledSiblings(List<FileScannerResultBuilder> siblings) {
+		this.spilledSiblings = siblings;
+	}
+
 	private CommitState modifyState() {
 		if (this.currentState.equals(this.committedState)) {
 			this.currentState = new CommitState(this.currentState);
@@ -298,6 +430,183 @@ abstract class FileScannerResultBuilder implements FileScannerResult {
 		return this.currentState;
 	}
 
+	@Nullable
+	synchronized List<FileScannerResultBuilder> spillableChildren() {
+		return (this.type != Type.INPUT && this.currentState.equals(this.committedState)
+				&& !this.committedState.isSpilled() ? new ArrayList<>(this.committedState.getChildren()) : null);
+	}
+
+	synchronized boolean spillChildren(List<FileScannerResultBuilder> children, SpilledChildren spilledChildren) {
+		boolean spilled = this.currentState.equals(this.committedState)
+				&& this.committedState.getChildren().equals(children);
+
+		if (spilled) {
+			this.committedState.spillChildren(spilledChildren);
+		}
+		return spilled;
+	}
+
+	synchronized boolean writeSpillRecord(BlockOutput out) throws IOException {
+		boolean spillable = this.type != Type.INPUT && this.currentState.equals(this.committedState)
+				&& (this.committedState.isSpilled() || this.committedState.getChildrenCount() == 0);
+
+		if (spillable) {
+			out.writeByte(this.type.ordinal());
+			out.writeInputRange(this.input);
+			out.writeLong(this.start);
+			out.writeLong(this.committedState.end());
+			out.writeString(this.committedState.name().get());
+			writeSpillSpec(out);
+			out.writeInt(this.exportHandlers.size());
+			for (FileScannerResultExportHandler exportHandler : this.exportHandlers) {
+				out.writeSymbol(exportHandler);
+			}
+
+			Map<Object, Object> values = this.committedState.getValues();
+
+			out.writeInt(values.size());
+			for (Map.Entry<Object, Object> value : values.entrySet()) {
+				out.writeSymbol(value.getKey());
+				out.writeValue(value.getValue());
+			}
+
+			// Custom data is transient and therefore not spilled (see FileScannerResultStore)
+			SpilledChildren spilledChildren = this.committedState.spilledChildren();
+
+			out.writeInt(spilledChildren != null ? spilledChildren.count() : 0);
+			if (spilledChildren != null) {
+				out.writeLong(spilledChildren.blockRef());
+				out.writeReference(spilledChildren.references());
+			}
+		}
+		return spillable;
+	}
+
+	protected abstract void writeSpillSpec(BlockOutput out) throws IOException;
+
+	@Nullable
+	abstract CompositeSpec resultSpec();
+
+	void setValueCapture(@Nullable FileScannerResultValueCapture capture) {
+		this.valueCapture = capture;
+	}
+
+	@Nullable
+	FileScannerResultValueCapture valueCapture() {
+		return this.valueCapture;
+	}
+
+	synchronized void addElementOffsets(Object composite, FileScannerResultElementOffsets offsets) {
+		int index = this.elementOffsets.length;
+
+		this.elementOffsetsComposites = Arrays.copyOf(this.elementOffsetsComposites, index + 1);
+		this.elementOffsets = Arrays.copyOf(this.elementOffsets, index + 1);
+		this.elementOffsetsComposites[index] = composite;
+		this.elementOffsets[index] = offsets;
+	}
+
+	synchronized long releaseElementOffsets() {
+		long footprint = 0;
+
+		for (FileScannerResultElementOffsets offsets : this.elementOffsets) {
+			footprint += offsets.footprint();
+		}
+		this.elementOffsetsComposites = new Object[0];
+		this.elementOffsets = new FileScannerResultElementOffsets[0];
+		return footprint;
+	}
+
+	@Nullable
+	synchronized FileScannerResultElementOffsets elementOffsets(Object composite, long start) {
+		FileScannerResultElementOffsets offsets = null;
+
+		for (int index = 0; offsets == null && index < this.elementOffsets.length; index++) {
+			if (this.elementOffsetsComposites[index] == composite && this.elementOffsets[index].start() == start) {
+				offsets = this.elementOffsets[index];
+			}
+		}
+		return offsets;
+	}
+
+	abstract boolean isRelocated();
+
+	synchronized Map<Object, Object> committedValues() {
+		return new HashMap<>(this.committedState.getValues());
+	}
+
+	synchronized List<FileScannerResultBuilder> committedChildren() {
+		return new ArrayList<>(this.committedState.getChildren());
+	}
+
+	synchronized void forgetChild(FileScannerResultBuilder child) {
+		this.currentState.getChildren().remove(child);
+		if (!this.currentState.equals(this.committedState)) {
+			this.committedState.getChildren().remove(child);
+		}
+	}
+
+	synchronized void restoreState(String name, long end, Map<Object, Object> values,
+			List<FileScannerResultBuilder> children) {
+		CommitState restoredState = new CommitState(name, end);
+
+		restoredState.getValues().putAll(this.currentState.getValues());
+		restoredState.getValues().putAll(values);
+		restoredState.children.addAll(children);
+		this.committedState = this.currentState = restoredState;
+		this.commitCount++;
+	}
+
+	static FileScannerResultBuilder readSpillRecord(BlockInput in, FileScannerResultBuilder parent) {
+		byte recordType = in.readByte();
+		FileScannerInputRange inputRange = in.readInputRange();
+		long start = in.readLong();
+		long end = in.readLong();
+		String name = in.readString();
+		FileScannerResultBuilder result;
+
+		if (recordType == Type.FORMAT.ordinal()) {
+			CompositeSpec formatSpec = in.readSymbol(CompositeSpec.class);
+			boolean relocated = in.readBoolean();
+
+			result = new FormatResultBuilder(parent, formatSpec, relocated, inputRange, start);
+		} else if (recordType == Type.ENCODED_INPUT.ordinal()) {
+			EncodedInputSpec encodedInputSpec = in.readSymbol(EncodedInputSpec.class);
+
+			result = new EncodedInputResultBuilder(parent, encodedInputSpec, inputRange, start, end);
+		} else {
+			throw new IllegalStateException("Unexpected spill record type: " + recordType);
+		}
+		result.readSpillState(in, name, end);
+		return result;
+	}
+
+	private void readSpillState(BlockInput in, String name, long end) {
+		CommitState spilledState = new CommitState(name, end);
+		int exportHandlerCount = in.readInt();
+
+		for (int exportHandlerIndex = 0; exportHandlerIndex < exportHandlerCount; exportHandlerIndex++) {
+			this.exportHandlers.add(in.readSymbol(FileScannerResultExportHandler.class));
+		}
+
+		int valueCount = in.readInt();
+
+		for (int valueIndex = 0; valueIndex < valueCount; valueIndex++) {
+			Object valueKey = in.readSymbol(Object.class);
+
+			spilledState.getValues().put(valueKey, in.readValue());
+		}
+
+		int childrenCount = in.readInt();
+
+		if (childrenCount > 0) {
+			long blockRef = in.readLong();
+
+			spilledState.spillChildren(
+					new SpilledChildren(in.store(), this, blockRef, childrenCount, in.readReference(Object[].class)));
+		}
+		this.committedState = this.currentState = spilledState;
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder buffer = new StringBuilder();
@@ -338,17 +647,54 @@ abstract class FileScannerResultBuilder implements FileScannerResult {
 		return context.export(exportHandler);
 	}
 
+	private static final class DiscardRenderer implements Renderer {
+
+		DiscardRenderer() {
+			// Make class package accessible
+		}
+
+		@Override
+		public boolean isStyled() {
+			return false;
+		}
+
+		@Override
+		public void emitText(int indent, RenderStyle style, String text, boolean lineBreak) throws IOException {
+			// Discard output
+		}
+
+		@Override
+		public void emitTextBatch(RenderTextBatch batch) throws IOException {
+			// Discard output
+		}
+
+		@Override
+		public void emitMediaData(int indent, RenderStyle style, TransferSource source, boolean lineBreak)
+				throws IOException {
+			// Discard output
+		}
+
+		@Override
+		public void close() throws IOException {
+			// Nothing to close
+		}
+
+	}
+
 	private static final class CommitState {
 
 		private static final Log LOG = new Log();
 
 		private Supplier<String> name;
+		private boolean nameResolved;
 		private long end;
 		private final List<FileScannerResultBuilder> children = new ArrayList<>();
+		private @Nullable SpilledChildren spilledChildren = null;
 		private final Map<Object, Object> values = new HashMap<>();
 
 		public CommitState(Supplier<String> name, long end) {
 			this.name = name;
+			this.nameResolved = name instanceof FinalSupplier;
 			this.end = end;
 		}
 
@@ -358,13 +704,22 @@ abstract class FileScannerResultBuilder implements FileScannerResult {
 
 		public CommitState(CommitState state) {
 			this.name = state.name;
+			this.nameResolved = state.nameResolved;
 			this.end = state.end;
 			this.children.addAll(state.children);
+			this.spilledChildren = state.spilledChildren;
 			this.values.putAll(state.values);
 		}
 
 		public CommitState commit() {
-			this.name = FinalSupplier.of(this.name.get());
+			if (!this.nameResolved) {
+				// Text expressions only resolve their arguments here and defer formatting until first access
+				Supplier<String> checkedName = this.name;
+
+				this.name = (checkedName instanceof TextExpression ? ((TextExpression) checkedName).resolve()
+						: FinalSupplier.of(checkedName.get()));
+				this.nameResolved = true;
+			}
 			return this;
 		}
 
@@ -382,6 +737,13 @@ abstract class FileScannerResultBuilder implements FileScannerResult {
 		}
 
 		public CommitState addChild(FileScannerResultBuilder commitChild) {
+			SpilledChildren checkedSpilledChildren = this.spilledChildren;
+
+			if (checkedSpilledChildren != null) {
+				this.children.addAll(checkedSpilledChildren.get());
+				this.spilledChildren = null;
+			}
+
 			FileScannerResult.Type commitChildType = commitChild.type();
 			long commitChildStart = commitChild.start();
 			int addIndex = 0;
@@ -402,7 +764,29 @@ abstract class FileScannerResultBuilder implements FileScannerResult {
 		}
 
 		public List<FileScannerResultBuilder> getChildren() {
-			return this.children;
+			SpilledChildren checkedSpilledChildren = this.spilledChildren;
+
+			return (checkedSpilledChildren != null ? checkedSpilledChildren.get() : this.children);
+		}
+
+		public int getChildrenCount() {
+			SpilledChildren checkedSpilledChildren = this.spilledChildren;
+
+			return (checkedSpilledChildren != null ? checkedSpilledChildren.count() : this.children.size());
+		}
+
+		public boolean isSpilled() {
+			return this.spilledChildren != null;
+		}
+
+		@Nullable
+		public SpilledChildren spilledChildren() {
+			return this.spilledChildren;
+		}
+
+		public void spillChildren(SpilledChildren spilled) {
+			this.children.clear();
+			this.spilledChildren = spilled;
 		}
 
 		public Map<Object, Object> getValues() {
@@ -433,6 +817,22 @@ abstract class FileScannerResultBuilder implements FileScannerResult {
 			return context.decoded();
 		}
 
+		@Override
+		protected void writeSpillSpec(BlockOutput out) throws IOException {
+			throw new IllegalStateException("Cannot spill input result '" + this + "'");
+		}
+
+		@Override
+		@Nullable
+		CompositeSpec resultSpec() {
+			return null;
+		}
+
+		@Override
+		boolean isRelocated() {
+			return false;
+		}
+
 		@Override
 		public <T> void bindResultValue(CompositeSpec scope, FileScannerResultContextValueSpec<T> valueSpec, T value) {
 			throw new IllegalStateException("Cannot bind result value to input result '" + this + "'");
@@ -489,6 +889,33 @@ abstract class FileScannerResultBuilder implements FileScannerResult {
 			return context.decoded();
 		}
 
+		@Override
+		public long renderElements(RenderOutput out, long firstElement, long elementCount) throws IOException {
+			FileScannerResultRenderContext context = new FileScannerResultRenderContext(this, out, firstElement,
+					elementCount);
+
+			try (RenderOutput discardOut = new RenderOutput(new DiscardRenderer())) {
+				this.formatSpec.render(discardOut, context);
+			}
+			return context.elementWindowTotal();
+		}
+
+		@Override
+		protected void writeSpillSpec(BlockOutput out) throws IOException {
+			out.writeSymbol(this.formatSpec);
+			out.writeBoolean(this.relocated);
+		}
+
+		@Override
+		CompositeSpec resultSpec() {
+			return this.formatSpec;
+		}
+
+		@Override
+		boolean isRelocated() {
+			return this.relocated;
+		}
+
 		@Override
 		public <T> void bindResultValue(CompositeSpec scope, FileScannerResultContextValueSpec<T> valueSpec,
 				@NonNull T value) {
@@ -515,9 +942,10 @@ abstract class FileScannerResultBuilder implements FileScannerResult {
 			if (value == null) {
 				value = Objects.requireNonNull(parent().getValue(valueSpec, committed));
 				if (this.relocated) {
-					LOG.debug("Re-binding relocated context value '':{0}'' = ''{1}''", valueSpec,
-							Strings.encode(Objects.toString(value)));
-
+					if (LOG.isDebugLoggable()) {
+						LOG.debug("Re-binding relocated context value '':{0}'' = ''{1}''", valueSpec,
+								Strings.encode(Objects.toString(value)));
+					}
 					bindValue(valueSpec, value);
 				}
 			}
@@ -553,6 +981,21 @@ abstract class FileScannerResultBuilder implements FileScannerResult {
 			return context.decoded();
 		}
 
+		@Override
+		protected void writeSpillSpec(BlockOutput out) throws IOException {
+			out.writeSymbol(this.encodedInputSpec);
+		}
+
+		@Override
+		CompositeSpec resultSpec() {
+			return this.encodedInputSpec;
+		}
+
+		@Override
+		boolean isRelocated() {
+			return false;
+		}
+
 		@Override
 		public <T> void bindResultValue(CompositeSpec scope, FileScannerResultContextValueSpec<T> valueSpec, T value) {
 			throw new IllegalStateException("Cannot bind result value to encoded input result '" + this + "'");
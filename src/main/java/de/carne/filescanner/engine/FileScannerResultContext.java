@@ -118,4 +118,18 @@ public abstract class FileScannerResultContext {
 	 */
 	public abstract <T> T getValue(FileScannerResultContextValueSpec<T> valueSpec);
 
+	/**
+	 * Gets a number context value.
+	 * <p>
+	 * In difference to {@linkplain #getValue(FileScannerResultContextValueSpec)} the value is returned as a
+	 * (sign-extended) primitive and is not boxed if it has been bound as a primitive.
+	 * </p>
+	 *
+	 * @param valueSpec the context value to get.
+	 * @return the context value.
+	 */
+	public long getNumberValue(FileScannerResultContextValueSpec<? extends Number> valueSpec) {
+		return getValue(valueSpec).longValue();
+	}
+
 }
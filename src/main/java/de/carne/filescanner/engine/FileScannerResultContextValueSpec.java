@@ -16,6 +16,7 @@
  */
 package de.carne.filescanner.engine;
 
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
 import de.carne.filescanner.engine.util.FinalSupplier;
@@ -27,8 +28,11 @@ import de.carne.filescanner.engine.util.FinalSupplier;
  */
 public class FileScannerResultContextValueSpec<T> implements Supplier<T> {
 
+	private static final AtomicInteger SLOTS = new AtomicInteger();
+
 	private final Class<T> type;
 	private final Supplier<String> name;
+	private final int slot = SLOTS.getAndIncrement();
 
 	/**
 	 * Constructs a new {@linkplain FileScannerResultContextValueSpec} instance.
@@ -69,6 +73,19 @@ public class FileScannerResultContextValueSpec<T> implements Supplier<T> {
 		return this.name.get();
 	}
 
+	/**
+	 * Gets the value's slot.
+	 * <p>
+	 * Slots are dense integers assigned in creation order (hence while loading the defining format spec) and are used
+	 * to address the value's storage in the decode and render contexts.
+	 * </p>
+	 *
+	 * @return the value's slot.
+	 */
+	public final int slot() {
+		return this.slot;
+	}
+
 	@Override
 	public T get() {
 		return FileScannerResultContext.get().getValue(this);
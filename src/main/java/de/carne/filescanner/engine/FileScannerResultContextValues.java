@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Table of context values bound during decoding or rendering.
+ * <p>
+ * The table is addressed via the slot assigned to each {@linkplain FileScannerResultContextValueSpec} (see
+ * {@linkplain FileScannerResultContextValueSpec#slot()}) using open addressing. Number values are stored in a
+ * primitive side array, hence binding and looking up a value is constant-time and does not allocate.
+ * </p>
+ */
+final class FileScannerResultContextValues {
+
+	private static final int INITIAL_CAPACITY = 8;
+
+	private static final Object NUMBER = new Object();
+
+	private FileScannerResultContextValueSpec<?>[] keys = new FileScannerResultContextValueSpec<?>[INITIAL_CAPACITY];
+	private Object[] values = new Object[INITIAL_CAPACITY];
+	private long[] numbers = new long[INITIAL_CAPACITY];
+	private int size = 0;
+
+	/**
+	 * Binds a value.
+	 *
+	 * @param valueSpec the value to bind.
+	 * @param value the value to bind.
+	 */
+	public void put(FileScannerResultContextValueSpec<?> valueSpec, Object value) {
+		int index = slotIndex(valueSpec);
+
+		this.values[index] = value;
+	}
+
+	/**
+	 * Binds a number value.
+	 *
+	 * @param valueSpec the value to bind.
+	 * @param number the value to bind.
+	 */
+	public void putNumber(FileScannerResultContextValueSpec<? extends Number> valueSpec, long number) {
+		int index = slotIndex(valueSpec);
+
+		this.values[index] = NUMBER;
+		this.numbers[index] = number;
+	}
+
+	/**
+	 * Gets a bound value.
+	 * <p>
+	 * Number values bound via {@linkplain #putNumber(FileScannerResultContextValueSpec, long)} are boxed according to
+	 * the value's type.
+	 * </p>
+	 *
+	 * @param valueSpec the value to get.
+	 * @return the bound value or {@code null} if the value is not bound.
+	 */
+	@Nullable
+	public Object get(FileScannerResultContextValueSpec<?> valueSpec) {
+		int index = indexOf(valueSpec);
+		Object value = null;
+
+		if (index >= 0) {
+			value = this.values[index];
+			if (value == NUMBER) {
+				value = boxNumber(valueSpec.type(), this.numbers[index]);
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Gets a bound number value without boxing it.
+	 *
+	 * @param valueSpec the value to get.
+	 * @param defaultNumber the value to return if the value is not bound.
+	 * @return the bound value or the submitted default if the value is not bound.
+	 */
+	public long getNumber(FileScannerResultContextValueSpec<? extends Number> valueSpec, long defaultNumber) {
+		int index = indexOf(valueSpec);
+		long number = defaultNumber;
+
+		if (index >= 0) {
+			Object value = this.values[index];
+
+			number = (value == NUMBER ? this.numbers[index] : ((Number) value).longValue());
+		}
+		return number;
+	}
+
+	/**
+	 * Checks whether a value is bound.
+	 *
+	 * @param valueSpec the value to check.
+	 * @return {@code true} if the value is bound.
+	 */
+	public boolean contains(FileScannerResultContextValueSpec<?> valueSpec) {
+		return indexOf(valueSpec) >= 0;
+	}
+
+	private int indexOf(FileScannerResultContextValueSpec<?> valueSpec) {
+		int mask = this.keys.length - 1;
+		int index = valueSpec.slot() & mask;
+		FileScannerResultContextValueSpec<?> key;
+
+		while ((key = this.keys[index]) != null && key != valueSpec) {
+			index = (index + 1) & mask;
+		}
+		return (key != null ? index : -1);
+	}
+
+	private int slotIndex(FileScannerResultContextValueSpec<?> valueSpec) {
+		int index = indexOf(valueSpec);
+
+		if (index < 0) {
+			if ((this.size + 1) << 1 > this.keys.length) {
+				resize(this.keys.length << 1);
+			}
+
+			int mask = this.keys.length - 1;
+
+			index = valueSpec.slot() & mask;
+			while (this.keys[index] != null) {
+				index = (index + 1) & mask;
+			}
+			this.keys[index] = valueSpec;
+			this.size++;
+		}
+		return index;
+	}
+
+	private void resize(int capacity) {
+		FileScannerResultContextValueSpec<?>[] oldKeys = this.keys;
+		Object[] oldValues = this.values;
+		long[] oldNumbers = this.numbers;
+		int mask = capacity - 1;
+
+		this.keys = new FileScannerResultContextValueSpec<?>[capacity];
+		this.values = new Object[capacity];
+		this.numbers = new long[capacity];
+		for (int oldIndex = 0; oldIndex < oldKeys.length; oldIndex++) {
+			FileScannerResultContextValueSpec<?> key = oldKeys[oldIndex];
+
+			if (key != null) {
+				int index = key.slot() & mask;
+
+				while (this.keys[index] != null) {
+					index = (index + 1) & mask;
+				}
+				this.keys[index] = key;
+				this.values[index] = oldValues[oldIndex];
+				this.numbers[index] = oldNumbers[oldIndex];
+			}
+		}
+	}
+
+	private static Object boxNumber(Class<?> type, long number) {
+		Object value;
+
+		if (Byte.class.equals(type)) {
+			value = Byte.valueOf((byte) number);
+		} else if (Short.class.equals(type)) {
+			value = Short.valueOf((short) number);
+		} else if (Integer.class.equals(type)) {
+			value = Integer.valueOf((int) number);
+		} else {
+			value = Long.valueOf(number);
+		}
+		return value;
+	}
+
+}
@@ -17,13 +17,13 @@
 package de.carne.filescanner.engine;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 
 import de.carne.filescanner.engine.format.AttributeBindMode;
 import de.carne.filescanner.engine.format.AttributeSpec;
@@ -32,6 +32,7 @@ import de.carne.filescanner.engine.format.EncodedInputSpec;
 import de.carne.filescanner.engine.input.FileScannerInput;
 import de.carne.filescanner.engine.input.FileScannerInputRange;
 import de.carne.filescanner.engine.input.InputDecodeCache;
+import de.carne.filescanner.engine.input.InputDigests;
 import de.carne.filescanner.engine.util.HexFormat;
 import de.carne.util.Check;
 import de.carne.util.Strings;
@@ -52,7 +53,7 @@ public class FileScannerResultDecodeContext extends FileScannerResultInputContex
 			FileScannerInputRange inputRange, long position) {
 		super(inputRange, position);
 		this.fileScanner = fileScanner;
-		this.decodeStack.push(new Scope(parent));
+		this.decodeStack.push(new Scope(parent, null));
 	}
 
 	/**
@@ -80,7 +81,9 @@ public class FileScannerResultDecodeContext extends FileScannerResultInputContex
 		long currentPosition = position();
 		FileScannerResult decodeResult;
 
-		LOG.debug("Decode relocated at {0}:{1}...", HexFormat.formatLong(decodePosition), decodeLevel);
+		if (LOG.isDebugLoggable()) {
+			LOG.debug("Decode relocated at {0}:{1}...", HexFormat.formatLong(decodePosition), decodeLevel);
+		}
 
 		setPosition(decodePosition);
 		try {
@@ -94,7 +97,9 @@ public class FileScannerResultDecodeContext extends FileScannerResultInputContex
 
 	private FileScannerResult decodeComposite(CompositeSpec formatSpec, int decodeLevel, boolean relocated)
 			throws IOException {
-		LOG.debug("Decoding composite spec {0}...", formatSpec);
+		if (LOG.isDebugLoggable()) {
+			LOG.debug("Decoding composite spec {0}...", formatSpec);
+		}
 
 		boolean isRootSpec = this.decodeStack.size() == 1;
 		boolean isResultSpec = formatSpec.isResult();
@@ -112,7 +117,12 @@ public class FileScannerResultDecodeContext extends FileScannerResultInputContex
 			FileScannerResultBuilder formatSpecResult = FileScannerResultBuilder.formatResult(
 					getDecodeParent(decodeResult, decodeLevel), formatSpec, relocated, inputRange(), position);
 
-			this.decodeStack.push(new Scope(formatSpecResult));
+			FileScannerResultValueCaptureCache valueCaptures = this.fileScanner.valueCaptures();
+			FileScannerResultValueCapture valueCapture = valueCaptures.newCapture();
+
+			Scope scope = new Scope(formatSpecResult, valueCapture);
+
+			this.decodeStack.push(scope);
 			if (isRootSpec) {
 				bindResultValue(formatSpec, FileScannerResultContextValueSpecs.FORMAT_POSITION, position);
 			}
@@ -120,6 +130,10 @@ public class FileScannerResultDecodeContext extends FileScannerResultInputContex
 			try {
 				runV(() -> {
 					formatSpec.decodeComposite(this);
+					if (valueCapture != null) {
+						valueCaptures.attach(formatSpecResult, valueCapture);
+					}
+					scope.attachElementOffsets(this.fileScanner);
 					formatSpecResult.resolveExportHandlers(formatSpec.exportHandlers());
 					if (!isRootSpec) {
 						formatSpecResult.updateAndCommit(position(), false);
@@ -156,7 +170,9 @@ public class FileScannerResultDecodeContext extends FileScannerResultInputContex
 	 * @throws IOException if an I/O error occurs.
 	 */
 	public FileScannerResult decodeEncodedInputs(EncodedInputSpec encodedInputSpec) throws IOException {
-		LOG.debug("Decoding encoded input spec {0}...", encodedInputSpec);
+		if (LOG.isDebugLoggable()) {
+			LOG.debug("Decoding encoded input spec {0}...", encodedInputSpec);
+		}
 
 		long decodeStart = position();
 		FileScannerResultBuilder decodeResult = FileScannerResultBuilder.encodedInputResult(
@@ -169,11 +185,16 @@ public class FileScannerResultDecodeContext extends FileScannerResultInputContex
 
 		setPosition(commitPosition);
 
+		InputDigests decodedDigests = decoded.decodedDigests();
+
 		for (FileScannerInput decodedInput : decoded.decodedInputs()) {
 			if (decodedInput.size() > 0) {
 				FileScannerResultBuilder decodedInputResult = Objects.requireNonNull(
 						FileScannerResultBuilder.inputResult(decodeResult, decodedInput).updateAndCommit(-1, false));
 
+				if (decodedDigests != null) {
+					FileScannerResults.setDigests(decodedInputResult, decodedDigests);
+				}
 				this.pendingInputResults.add(decodedInputResult);
 			}
 		}
@@ -190,12 +211,26 @@ public class FileScannerResultDecodeContext extends FileScannerResultInputContex
 	 * @return the bound attribute value.
 	 */
 	public <T> T bindContextValue(AttributeSpec<T> valueSpec, @NonNull T value) {
-		LOG.debug("Binding context attribute {0} = ''{1}''", valueSpec, Strings.encode(Objects.toString(value)));
-
+		if (LOG.isDebugLoggable()) {
+			LOG.debug("Binding context attribute {0} = ''{1}''", valueSpec, Strings.encode(Objects.toString(value)));
+		}
 		Objects.requireNonNull(this.decodeStack.peek()).contextValues().put(valueSpec, value);
 		return value;
 	}
 
+	/**
+	 * Binds a number attribute value in {@linkplain AttributeBindMode#CONTEXT} mode without boxing it.
+	 *
+	 * @param valueSpec the attribute to bind to.
+	 * @param number the attribute value to bind.
+	 */
+	public void bindContextNumber(AttributeSpec<? extends Number> valueSpec, long number) {
+		if (LOG.isDebugLoggable()) {
+			LOG.debug("Binding context attribute {0} = ''{1}''", valueSpec, number);
+		}
+		Objects.requireNonNull(this.decodeStack.peek()).contextValues().putNumber(valueSpec, number);
+	}
+
 	/**
 	 * Binds an attribute value in {@linkplain AttributeBindMode#RESULT} mode.
 	 *
@@ -206,9 +241,10 @@ public class FileScannerResultDecodeContext extends FileScannerResultInputContex
 	 * @return the bound attribute value.
 	 */
 	public <T> T bindResultValue(CompositeSpec scope, AttributeSpec<T> valueSpec, @NonNull T value) {
-		LOG.debug("Binding result attribute {0}:{1} = ''{2}''", scope, valueSpec,
-				Strings.encode(Objects.toString(value)));
-
+		if (LOG.isDebugLoggable()) {
+			LOG.debug("Binding result attribute {0}:{1} = ''{2}''", scope, valueSpec,
+					Strings.encode(Objects.toString(value)));
+		}
 		Objects.requireNonNull(this.decodeStack.peek()).builder().bindResultValue(scope, valueSpec, value);
 		return value;
 	}
@@ -222,26 +258,89 @@ public class FileScannerResultDecodeContext extends FileScannerResultInputContex
 	 * @return the bound attribute value.
 	 */
 	public <T> T bindDecodedValue(FileScannerResultContextValueSpec<T> valueSpec, @NonNull T value) {
-		LOG.debug("Binding decoded value {0} = ''{1}''", valueSpec, Strings.encode(Objects.toString(value)));
-
+		if (LOG.isDebugLoggable()) {
+			LOG.debug("Binding decoded value {0} = ''{1}''", valueSpec, Strings.encode(Objects.toString(value)));
+		}
 		Objects.requireNonNull(this.decodeStack.peek()).builder().bindDecodedValue(valueSpec, value);
 		return value;
 	}
 
+	/**
+	 * Captures a decoded attribute value for later rendering.
+	 * <p>
+	 * Captured values are used during rendering instead of re-decoding the attribute (see
+	 * {@linkplain FileScannerResultRenderContext#capturedValue(AttributeSpec)}).
+	 * </p>
+	 *
+	 * @param attribute the decoded attribute.
+	 * @param start the start position of the decoded value.
+	 * @param end the end position of the decoded value.
+	 * @param value the decoded value.
+	 */
+	public void captureValue(AttributeSpec<?> attribute, long start, long end, Object value) {
+		FileScannerResultValueCapture valueCapture = Objects.requireNonNull(this.decodeStack.peek()).valueCapture();
+
+		if (valueCapture != null) {
+			valueCapture.captureValue(attribute, start, end, value);
+		}
+	}
+
+	/**
+	 * Captures a decoded number attribute value for later rendering.
+	 *
+	 * @param attribute the decoded attribute.
+	 * @param start the start position of the decoded value.
+	 * @param end the end position of the decoded value.
+	 * @param number the decoded value.
+	 * @see #captureValue(AttributeSpec, long, long, Object)
+	 */
+	public void captureNumber(AttributeSpec<?> attribute, long start, long end, long number) {
+		FileScannerResultValueCapture valueCapture = Objects.requireNonNull(this.decodeStack.peek()).valueCapture();
+
+		if (valueCapture != null) {
+			valueCapture.captureNumber(attribute, start, end, number);
+		}
+	}
+
+	/**
+	 * Captures the element offsets of a decoded sequence for later (paged) rendering.
+	 * <p>
+	 * Captured element offsets are used during rendering to reach an arbitrary sequence element without re-decoding
+	 * the preceding elements (see
+	 * {@linkplain FileScannerResultRenderContext#capturedElementOffsets(CompositeSpec)}). The offsets are kept
+	 * separately from the captured values and are limited by their own budget (set via the system property
+	 * {@code de.carne.filescanner.engine.FileScanner.elementOffsetsBudget} in bytes).
+	 * </p>
+	 *
+	 * @param composite the decoded sequence.
+	 * @param offsets the finished element offsets.
+	 */
+	public void captureElementOffsets(CompositeSpec composite, FileScannerResultElementOffsets offsets) {
+		Objects.requireNonNull(this.decodeStack.peek()).captureElementOffsets(composite, offsets);
+	}
+
 	@Override
 	public <T> T getValue(FileScannerResultContextValueSpec<T> valueSpec) {
-		LOG.debug("Resolving context value {0}", valueSpec);
-
 		Scope result = Objects.requireNonNull(this.decodeStack.peek());
 		Object contextValue = result.contextValues().get(valueSpec);
 		T value = (contextValue != null ? Check.isInstanceOf(contextValue, valueSpec.type())
 				: result.builder().getValue(valueSpec, false));
 
-		LOG.debug("Resolved context value {0} = ''{1}''", valueSpec, Strings.encode(Objects.toString(value)));
-
+		if (LOG.isDebugLoggable()) {
+			LOG.debug("Resolved context value {0} = ''{1}''", valueSpec, Strings.encode(Objects.toString(value)));
+		}
 		return value;
 	}
 
+	@Override
+	public long getNumberValue(FileScannerResultContextValueSpec<? extends Number> valueSpec) {
+		Scope result = Objects.requireNonNull(this.decodeStack.peek());
+		FileScannerResultContextValues contextValues = result.contextValues();
+
+		return (contextValues.contains(valueSpec) ? contextValues.getNumber(valueSpec, 0)
+				: result.builder().getValue(valueSpec, false).longValue());
+	}
+
 	/**
 	 * Commits the already decoded {@linkplain FileScannerResult} instances and makes them visible to the
 	 * {@linkplain FileScanner} user.
@@ -263,20 +362,46 @@ public class FileScannerResultDecodeContext extends FileScannerResultInputContex
 	private static final class Scope {
 
 		private final FileScannerResultBuilder builder;
-		private final Map<Object, Object> contextValues = new HashMap<>();
+		private final FileScannerResultContextValues contextValues = new FileScannerResultContextValues();
+		@Nullable
+		private final FileScannerResultValueCapture valueCapture;
+		private final List<CompositeSpec> elementOffsetsComposites = new ArrayList<>(0);
+		private final List<FileScannerResultElementOffsets> elementOffsets = new ArrayList<>(0);
 
-		Scope(FileScannerResultBuilder builder) {
+		Scope(FileScannerResultBuilder builder, @Nullable FileScannerResultValueCapture valueCapture) {
 			this.builder = builder;
+			this.valueCapture = valueCapture;
 		}
 
 		public FileScannerResultBuilder builder() {
 			return this.builder;
 		}
 
-		public Map<Object, Object> contextValues() {
+		@Nullable
+		public FileScannerResultValueCapture valueCapture() {
+			return this.valueCapture;
+		}
+
+		public FileScannerResultContextValues contextValues() {
 			return this.contextValues;
 		}
 
+		public void captureElementOffsets(CompositeSpec composite, FileScannerResultElementOffsets offsets) {
+			this.elementOffsetsComposites.add(composite);
+			this.elementOffsets.add(offsets);
+		}
+
+		public void attachElementOffsets(FileScanner fileScanner) {
+			// Only attach the offsets of a successfully decoded result (and only as long as the budget permits)
+			for (int index = 0; index < this.elementOffsets.size(); index++) {
+				FileScannerResultElementOffsets offsets = this.elementOffsets.get(index);
+
+				if (fileScanner.reserveElementOffsets(offsets.footprint())) {
+					this.builder.addElementOffsets(this.elementOffsetsComposites.get(index), offsets);
+				}
+			}
+		}
+
 		@Override
 		public String toString() {
 			return this.builder.toString();
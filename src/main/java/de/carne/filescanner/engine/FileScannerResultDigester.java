@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import de.carne.filescanner.engine.input.FileScannerInput;
+import de.carne.filescanner.engine.input.InputDigestPass;
+import de.carne.filescanner.engine.input.InputDigests;
+
+/**
+ * Computes the digests of the scanned results.
+ * <p>
+ * While scanning, finished results are only recorded. Once the actual scan has finished, each physical input is read
+ * exactly once and each chunk read is fed into the digests of all recorded results covering it (see
+ * {@linkplain InputDigestPass}). Hence nested results do not cause any additional reads. Decoded inputs are digested
+ * while they are decoded and are not recorded here.
+ * </p>
+ * <p>
+ * Only the input results (which are never spilled) are referenced. The digests of the remaining results are stored
+ * by result key along with their input result (see {@linkplain FileScannerResults#digests(FileScannerResult)}).
+ * </p>
+ */
+final class FileScannerResultDigester {
+
+	private final List<String> algorithms;
+	private final List<InputDigestPass<Target>> passes = new ArrayList<>();
+
+	FileScannerResultDigester(List<String> algorithms) {
+		this.algorithms = algorithms;
+	}
+
+	/**
+	 * Records a result (and any not yet digested input nested into it) for digesting.
+	 *
+	 * @param result the result to record.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public synchronized void record(FileScannerResultBuilder result) throws IOException {
+		if (result.type() == FileScannerResult.Type.INPUT) {
+			recordTarget(new Target(result, null), result.input(), 0, result.input().size());
+		} else {
+			recordTarget(new Target(result.inputResult(), result.key()), result.input(), result.start(),
+					result.end());
+			recordNestedInputs(result);
+		}
+	}
+
+	private void recordNestedInputs(FileScannerResultBuilder result) throws IOException {
+		for (FileScannerResultBuilder child : result.committedChildren()) {
+			if (child.type() != FileScannerResult.Type.INPUT) {
+				recordNestedInputs(child);
+			} else if (FileScannerResults.digests(child) == null) {
+				// Inputs not digested during decoding are digested along with the surrounding physical input
+				recordTarget(new Target(child, null), child.input(), child.start(), child.end());
+			}
+		}
+	}
+
+	private void recordTarget(Target target, FileScannerInput input, long start, long end) throws IOException {
+		boolean recorded = false;
+
+		for (InputDigestPass<Target> pass : this.passes) {
+			recorded = pass.addNested(target, input, start, end);
+			if (recorded) {
+				break;
+			}
+		}
+		if (!recorded) {
+			InputDigestPass<Target> pass = InputDigestPass.physical(this.algorithms, input);
+
+			pass.addNested(target, input, start, end);
+			this.passes.add(pass);
+		}
+	}
+
+	/**
+	 * Takes the digest passes (one per physical input) for all results recorded so far.
+	 *
+	 * @return the digest passes to run (see {@linkplain #run(InputDigestPass, Supplier)}).
+	 */
+	public synchronized List<InputDigestPass<Target>> takePasses() {
+		List<InputDigestPass<Target>> takenPasses = new ArrayList<>(this.passes);
+
+		this.passes.clear();
+		return takenPasses;
+	}
+
+	/**
+	 * Runs a digest pass and attaches the computed digests to the corresponding results.
+	 *
+	 * @param pass the digest pass to run.
+	 * @param shutdownCommenced the function to check for a commenced shutdown.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void run(InputDigestPass<Target> pass, Supplier<Boolean> shutdownCommenced) throws IOException {
+		pass.run(shutdownCommenced).forEach(Target::attach);
+	}
+
+	/**
+	 * Gets the digests computed for a result.
+	 *
+	 * @param result the result to get the digests for.
+	 * @return the result's digests or {@code null} if no digests have been computed (yet).
+	 */
+	@Nullable
+	static InputDigests digests(FileScannerResult result) {
+		InputDigests digests;
+
+		if (result.type() == FileScannerResult.Type.INPUT) {
+			digests = result.getData(InputDigests.class, InputDigests.class);
+		} else {
+			NestedDigests nestedDigests = result.inputResult().getData(NestedDigests.class, NestedDigests.class);
+
+			digests = (nestedDigests != null ? nestedDigests.get(result.key()) : null);
+		}
+		return digests;
+	}
+
+	static final class Target {
+
+		private final FileScannerResult inputResult;
+		private final byte @Nullable [] resultKey;
+
+		Target(FileScannerResult inputResult, byte @Nullable [] resultKey) {
+			this.inputResult = inputResult;
+			this.resultKey = resultKey;
+		}
+
+		void attach(InputDigests digests) {
+			byte[] checkedResultKey = this.resultKey;
+
+			if (checkedResultKey == null) {
+				this.inputResult.setData(InputDigests.class, digests);
+			} else {
+				NestedDigests nestedDigests;
+
+				synchronized (this.inputResult) {
+					nestedDigests = this.inputResult.getData(NestedDigests.class, NestedDigests.class);
+					if (nestedDigests == null) {
+						nestedDigests = new NestedDigests();
+						this.inputResult.setData(NestedDigests.class, nestedDigests);
+					}
+				}
+				nestedDigests.put(checkedResultKey, digests);
+			}
+		}
+
+	}
+
+	static final class NestedDigests {
+
+		private final Map<ByteBuffer, InputDigests> digests = new HashMap<>();
+
+		synchronized void put(byte[] resultKey, InputDigests resultDigests) {
+			this.digests.put(ByteBuffer.wrap(resultKey), resultDigests);
+		}
+
+		@Nullable
+		synchronized InputDigests get(byte[] resultKey) {
+			return this.digests.get(ByteBuffer.wrap(resultKey));
+		}
+
+	}
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine;
+
+import java.util.Arrays;
+
+import de.carne.util.SystemProperties;
+
+/**
+ * Sparse record of the element positions of a decoded sequence.
+ * <p>
+ * The position of every {@linkplain #STRIDE}-th element is recorded while the sequence is decoded. During rendering
+ * the recorded positions are used to reach an arbitrary element without re-decoding all preceding elements (see
+ * {@linkplain FileScannerResultRenderContext#capturedElementOffsets(de.carne.filescanner.engine.format.CompositeSpec)}).
+ * </p>
+ */
+public final class FileScannerResultElementOffsets {
+
+	/**
+	 * The number of elements between two recorded element positions.
+	 */
+	public static final int STRIDE = Math
+			.max(SystemProperties.intValue(FileScannerResultElementOffsets.class, ".stride", 64), 1);
+
+	private static final long OBJECT_FOOTPRINT = 48;
+
+	private final long start;
+	private long[] positions = new long[16];
+	private int size = 1;
+	private long elementCount = 0;
+	private long end;
+
+	/**
+	 * Constructs a new {@linkplain FileScannerResultElementOffsets} instance.
+	 *
+	 * @param start the start position of the sequence (and its first element).
+	 */
+	public FileScannerResultElementOffsets(long start) {
+		this.start = start;
+		this.positions[0] = start;
+		this.end = start;
+	}
+
+	/**
+	 * Records the start position of an element.
+	 * <p>
+	 * Elements must be recorded in ascending order. Only the position of every {@linkplain #STRIDE}-th element is
+	 * actually kept.
+	 * </p>
+	 *
+	 * @param elementIndex the index of the element.
+	 * @param position the start position of the element.
+	 */
+	public void record(long elementIndex, long position) {
+		if (elementIndex > 0 && (elementIndex % STRIDE) == 0 && (elementIndex / STRIDE) == this.size) {
+			if (this.size == this.positions.length) {
+				this.positions = Arrays.copyOf(this.positions, this.size << 1);
+			}
+			this.positions[this.size] = position;
+			this.size++;
+		}
+	}
+
+	/**
+	 * Finishes recording.
+	 *
+	 * @param finalElementCount the total number of decoded elements.
+	 * @param finalEnd the end position of the sequence.
+	 * @return the finished record.
+	 */
+	public FileScannerResultElementOffsets finish(long finalElementCount, long finalEnd) {
+		if (this.size < this.positions.length) {
+			this.positions = Arrays.copyOf(this.positions, this.size);
+		}
+		this.elementCount = finalElementCount;
+		this.end = finalEnd;
+		return this;
+	}
+
+	/**
+	 * Gets the start position of the sequence.
+	 *
+	 * @return the start position of the sequence.
+	 */
+	public long start() {
+		return this.start;
+	}
+
+	/**
+	 * Gets the end position of the sequence.
+	 *
+	 * @return the end position of the sequence.
+	 */
+	public long end() {
+		return this.end;
+	}
+
+	/**
+	 * Gets the total number of elements.
+	 *
+	 * @return the total number of elements.
+	 */
+	public long elementCount() {
+		return this.elementCount;
+	}
+
+	/**
+	 * Gets the index of the nearest element preceding (or equal to) the given element whose position has been
+	 * recorded.
+	 *
+	 * @param elementIndex the index of the element to look up.
+	 * @return the index of the nearest recorded element.
+	 */
+	public long checkpoint(long elementIndex) {
+		return Math.min(Math.max(elementIndex, 0) / STRIDE, this.size - 1l) * STRIDE;
+	}
+
+	/**
+	 * Gets the recorded position of an element.
+	 *
+	 * @param checkpoint the element index as returned by {@linkplain #checkpoint(long)}.
+	 * @return the start position of the element.
+	 */
+	public long position(long checkpoint) {
+		return this.positions[(int) (checkpoint / STRIDE)];
+	}
+
+	/**
+	 * Gets the (estimated) memory footprint of this record.
+	 *
+	 * @return the (estimated) memory footprint of this record.
+	 */
+	public long footprint() {
+		return OBJECT_FOOTPRINT + this.positions.length * 8l;
+	}
+
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Interval index over the results of a single input.
+ * <p>
+ * The index is an AVL tree ordered by result start (outer results first) and augmented with the maximum result end of
+ * each subtree. This allows point and range queries in O(log n + k). Results are only weakly referenced, as they may
+ * be spilled and paged back in during the scan (see {@linkplain FileScannerResultStore}). A spilled result which has
+ * been collected in the meantime is re-resolved via its key and the reference is updated accordingly.
+ * </p>
+ */
+final class FileScannerResultIndex {
+
+	@Nullable
+	private Node root = null;
+	private int size = 0;
+
+	/**
+	 * Adds a result to the index.
+	 * <p>
+	 * Results of size 0 are ignored.
+	 * </p>
+	 *
+	 * @param result the result to add.
+	 */
+	public void add(FileScannerResultBuilder result) {
+		long start = result.start();
+		long end = result.end();
+
+		if (start < end) {
+			Node node = new Node(start, end, result.key(), result);
+
+			synchronized (this) {
+				this.root = insert(this.root, node);
+				this.size++;
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of indexed results.
+	 *
+	 * @return the number of indexed results.
+	 */
+	public synchronized int size() {
+		return this.size;
+	}
+
+	/**
+	 * Collects all results overlapping the given range.
+	 * <p>
+	 * The results are collected in result order (by start position and outer results first). Results which are no
+	 * longer referenced are resolved via the submitted resolver function (outside of the index lock).
+	 * </p>
+	 *
+	 * @param start the range start (inclusive).
+	 * @param end the range end (exclusive).
+	 * @param resolver the function to use for resolving a result key.
+	 * @param results the list to collect the matching results into.
+	 */
+	public void query(long start, long end, Function<byte[], FileScannerResultBuilder> resolver,
+			List<FileScannerResult> results) {
+		List<Node> nodes = new ArrayList<>();
+
+		synchronized (this) {
+			if (start < end) {
+				query(this.root, start, end, nodes);
+			}
+		}
+		for (Node node : nodes) {
+			results.add(node.result(resolver));
+		}
+	}
+
+	private static void query(@Nullable Node node, long start, long end, List<Node> nodes) {
+		if (node != null && start < node.maxEnd) {
+			query(node.left, start, end, nodes);
+			if (node.start < end) {
+				if (start < node.end) {
+					nodes.add(node);
+				}
+				query(node.right, start, end, nodes);
+			}
+		}
+	}
+
+	private static Node insert(@Nullable Node node, Node insertNode) {
+		Node balanced;
+
+		if (node != null) {
+			if (compare(insertNode, node) < 0) {
+				node.left = insert(node.left, insertNode);
+			} else {
+				node.right = insert(node.right, insertNode);
+			}
+			balanced = balance(node);
+		} else {
+			balanced = insertNode;
+		}
+		return balanced;
+	}
+
+	private static int compare(Node node1, Node node2) {
+		int comparison = Long.compare(node1.start, node2.start);
+
+		if (comparison == 0) {
+			comparison = Long.compare(node2.end, node1.end);
+		}
+		if (comparison == 0) {
+			comparison = Arrays.compareUnsigned(node1.key, node2.key);
+		}
+		return comparison;
+	}
+
+	private static Node balance(Node node) {
+		Node balanced = node;
+		int balance = height(node.left) - height(node.right);
+
+		if (balance > 1) {
+			Node left = node.left;
+
+			if (left != null && height(left.left) < height(left.right)) {
+				node.left = rotateLeft(left);
+			}
+			balanced = rotateRight(node);
+		} else if (balance < -1) {
+			Node right = node.right;
+
+			if (right != null && height(right.right) < height(right.left)) {
+				node.right = rotateRight(right);
+			}
+			balanced = rotateLeft(node);
+		} else {
+			node.update();
+		}
+		return balanced;
+	}
+
+	private static Node rotateLeft(Node node) {
+		Node pivot = node.right;
+
+		if (pivot == null) {
+			throw new IllegalStateException();
+		}
+		node.right = pivot.left;
+		node.update();
+		pivot.left = node;
+		pivot.update();
+		return pivot;
+	}
+
+	private static Node rotateRight(Node node) {
+		Node pivot = node.left;
+
+		if (pivot == null) {
+			throw new IllegalStateException();
+		}
+		node.left = pivot.right;
+		node.update();
+		pivot.right = node;
+		pivot.update();
+		return pivot;
+	}
+
+	private static int height(@Nullable Node node) {
+		return (node != null ? node.height : 0);
+	}
+
+	private static final class Node {
+
+		final long start;
+		final long end;
+		final byte[] key;
+		private volatile WeakReference<FileScannerResultBuilder> resultReference;
+		long maxEnd;
+		int height = 1;
+		@Nullable
+		Node left = null;
+		@Nullable
+		Node right = null;
+
+		Node(long start, long end, byte[] key, FileScannerResultBuilder result) {
+			this.start = start;
+			this.end = end;
+			this.key = key;
+			this.resultReference = new WeakReference<>(result);
+			this.maxEnd = end;
+		}
+
+		FileScannerResultBuilder result(Function<byte[], FileScannerResultBuilder> resolver) {
+			FileScannerResultBuilder result = this.resultReference.get();
+
+			if (result == null || !result.isAttached()) {
+				result = resolver.apply(this.key);
+				this.resultReference = new WeakReference<>(result);
+			}
+			return result;
+		}
+
+		void update() {
+			Node checkedLeft = this.left;
+			Node checkedRight = this.right;
+			long updatedMaxEnd = this.end;
+
+			if (checkedLeft != null) {
+				updatedMaxEnd = Math.max(updatedMaxEnd, checkedLeft.maxEnd);
+			}
+			if (checkedRight != null) {
+				updatedMaxEnd = Math.max(updatedMaxEnd, checkedRight.maxEnd);
+			}
+			this.maxEnd = updatedMaxEnd;
+			this.height = Math.max(height(checkedLeft), height(checkedRight)) + 1;
+		}
+
+	}
+
+}
@@ -20,21 +20,32 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
+import org.eclipse.jdt.annotation.Nullable;
+
 import de.carne.filescanner.engine.format.CompositeSpec;
 import de.carne.filescanner.engine.format.FormatSpec;
 import de.carne.filescanner.engine.input.FileScannerInputRange;
 import de.carne.filescanner.engine.util.HexFormat;
 import de.carne.util.Check;
+import de.carne.util.SystemProperties;
 
 /**
  * Input data processor base class responsible for input data access.
  */
 public abstract class FileScannerResultInputContext extends FileScannerResultContext {
 
+	private static final int SCRATCH_BUFFER_SIZE = 64;
+	private static final int SCRATCH_BUFFER_SIZE_LIMIT = 4096;
+	private static final int BULK_WINDOW_SIZE = Math
+			.max(SystemProperties.intValue(FileScannerResultInputContext.class, ".bulkWindowSize", 0x8000), 64);
+
 	private final FileScannerInputRange inputRange;
 	private long initialPosition;
 	private long position;
 	private ByteOrder byteOrder = ByteOrder.LITTLE_ENDIAN;
+	private ByteBuffer scratchBuffer = ByteBuffer.allocate(SCRATCH_BUFFER_SIZE);
+	@Nullable
+	private ByteBuffer bulkWindow = null;
 
 	/**
 	 * Constructs a new {@linkplain FileScannerResultContext} instance.
@@ -123,7 +134,8 @@ public abstract class FileScannerResultInputContext extends FileScannerResultCon
 		boolean match = true;
 
 		if (matchSize > 0) {
-			ByteBuffer buffer = this.inputRange.read(this.position, matchSize);
+			ByteBuffer buffer = (matchSize <= SCRATCH_BUFFER_SIZE_LIMIT ? readScratch(matchSize)
+					: this.inputRange.read(this.position, matchSize));
 
 			buffer.order(this.byteOrder);
 			match = spec.matches(buffer);
@@ -178,8 +190,57 @@ public abstract class FileScannerResultInputContext extends FileScannerResultCon
 		return value;
 	}
 
+	/**
+	 * Reads and decodes an integral value without boxing it.
+	 *
+	 * @param size the size of the value to read.
+	 * @param decoder the decoder to use.
+	 * @return the decoded value.
+	 * @throws IOException if an I/O or decode error occurs.
+	 */
+	public long readNumberValue(int size, NumberValueDecoder decoder) throws IOException {
+		ByteBuffer buffer = readScratch(size);
+
+		if (buffer.remaining() < size) {
+			throw new InsufficientDataException(this.inputRange, this.position, size, buffer.remaining());
+		}
+
+		buffer.order(this.byteOrder);
+
+		long value = decoder.decode(buffer);
+
+		this.position += size;
+		return value;
+	}
+
+	/**
+	 * Reads a fixed size value range without changing the current position.
+	 * <p>
+	 * In contrast to {@linkplain #readValue(int, ValueDecoder)} the value range is read into a reusable buffer (as long
+	 * as the size permits) and no decode function is required. The returned buffer is only valid until the next read
+	 * operation. After decoding the value range the caller has to {@linkplain #skip(long)} it.
+	 * </p>
+	 *
+	 * @param size the size of the value range to read.
+	 * @return the {@linkplain ByteBuffer} containing the value range.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public ByteBuffer peekValue(int size) throws IOException {
+		ByteBuffer buffer = (size <= SCRATCH_BUFFER_SIZE_LIMIT ? readScratch(size)
+				: this.inputRange.read(this.position, size));
+
+		if (buffer.remaining() < size) {
+			throw new InsufficientDataException(this.inputRange, this.position, size, buffer.remaining());
+		}
+		return buffer.order(this.byteOrder);
+	}
+
 	/**
 	 * Reads and decodes a streamed value.
+	 * <p>
+	 * If the submitted decoder declares a terminator prefix (see {@linkplain ValueStreamer#terminatorPrefix()}) the
+	 * value is streamed through a large reusable window to support bulk scanning.
+	 * </p>
 	 *
 	 * @param <T> the actual attribute type.
 	 * @param chunkSize the minimum chunk size to read and to decode.
@@ -190,7 +251,8 @@ public abstract class FileScannerResultInputContext extends FileScannerResultCon
 	public <T> T readValue(int chunkSize, StreamValueDecoder<T> decoder) throws IOException {
 		Check.assertTrue(chunkSize > 0);
 
-		ByteBuffer buffer = ByteBuffer.allocate(Math.max(2 * chunkSize, 64)).order(this.byteOrder).limit(0);
+		ByteBuffer buffer = streamWindow(chunkSize, decoder.terminatorPrefix() != null).order(this.byteOrder)
+				.limit(0);
 		ValueStreamerStatus status;
 
 		do {
@@ -232,6 +294,38 @@ public abstract class FileScannerResultInputContext extends FileScannerResultCon
 		return new StreamValue(this.inputRange, this.position - size, this.position);
 	}
 
+	private ByteBuffer streamWindow(int chunkSize, boolean bulk) {
+		int windowSize = Math.max(2 * chunkSize, 64);
+		ByteBuffer window;
+
+		if (bulk) {
+			window = this.bulkWindow;
+			if (window == null || window.capacity() < windowSize) {
+				window = ByteBuffer.allocate(Math.max(windowSize, BULK_WINDOW_SIZE));
+				this.bulkWindow = window;
+			}
+			window.clear();
+		} else {
+			window = ByteBuffer.allocate(windowSize);
+		}
+		return window;
+	}
+
+	private ByteBuffer readScratch(int size) throws IOException {
+		ByteBuffer buffer = this.scratchBuffer;
+
+		if (buffer.capacity() < size) {
+			buffer = ByteBuffer.allocate(Math.max(size, buffer.capacity() << 1));
+			this.scratchBuffer = buffer;
+		}
+		buffer.clear().limit(size);
+		while (buffer.hasRemaining() && this.inputRange.read(buffer, this.position + buffer.position()) > 0) {
+			// Read until the requested size or EOF is reached
+		}
+		buffer.flip();
+		return buffer;
+	}
+
 	private ByteBuffer readComplete(int size) throws IOException {
 		ByteBuffer buffer = this.inputRange.read(this.position, size);
 
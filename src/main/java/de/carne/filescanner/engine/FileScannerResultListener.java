@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine;
+
+import java.io.IOException;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Callback interface receiving each {@linkplain FileScannerResult} as soon as it has been finally decoded.
+ * <p>
+ * In difference to {@linkplain FileScannerStatus#scanResult(FileScanner, FileScannerResult)} this callback is invoked
+ * exactly once per result, from within the scan thread which decoded the result. Results are reported parents first.
+ * As scan threads run concurrently, implementations must be thread-safe.
+ * </p>
+ */
+public interface FileScannerResultListener {
+
+	/**
+	 * Called for each finished {@linkplain FileScannerResult}.
+	 *
+	 * @param scanner the {@linkplain FileScanner} reporting the result.
+	 * @param parent the result's parent (may be {@code null} for the root result).
+	 * @param result the finished result.
+	 * @param formatResult the top-level format result containing the result (may be {@code null} for the root
+	 * result).
+	 * @throws IOException if an I/O error occurs.
+	 */
+	void resultFinished(FileScanner scanner, @Nullable FileScannerResult parent, FileScannerResult result,
+			@Nullable FileScannerResult formatResult) throws IOException;
+
+	/**
+	 * Gets whether finished results are retained in the result tree.
+	 * <p>
+	 * If this function returns {@code false}, top-level format results are dropped from the result tree right after
+	 * they have been reported to this listener. This keeps the memory footprint of the scan constant, but the result
+	 * tree (as well as all key or position based result queries) will only contain the input results.
+	 * </p>
+	 *
+	 * @return {@code true} if finished results are retained (the default) or {@code false} if they are dropped.
+	 */
+	default boolean isRetainingResults() {
+		return true;
+	}
+
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import de.carne.util.SystemProperties;
+import de.carne.util.logging.Log;
+
+/**
+ * Dispatcher for {@linkplain FileScannerStatus#scanResults(FileScanner, List)} notifications.
+ * <p>
+ * Committed results are queued (repeated commits of the same result are coalesced) and handed to the status listener
+ * in batches on a dedicated dispatcher thread. A batch is dispatched as soon as the configured batch size is reached or
+ * the oldest queued result has waited for the configured latency. Listeners requesting synchronous notification (see
+ * {@linkplain FileScannerStatus#isSynchronousScanResults()}) are called directly instead.
+ * </p>
+ */
+final class FileScannerResultNotifier implements Closeable {
+
+	private static final Log LOG = new Log();
+
+	private final FileScanner scanner;
+	private final FileScannerStatus status;
+	private final int batchSize;
+	private final long latencyNanos;
+	// Queued results mapped to their first queue time (coalesced commits keep their position and time)
+	private final Map<FileScannerResult, Long> pendingResults = new LinkedHashMap<>();
+	private boolean dispatching = false;
+	private int flushRequests = 0;
+	private boolean closed = false;
+
+	FileScannerResultNotifier(FileScanner scanner, FileScannerStatus status) {
+		this.scanner = scanner;
+		this.status = status;
+		this.batchSize = Math.max(SystemProperties.intValue(FileScanner.class, ".notifyBatchSize", 256), 1);
+		this.latencyNanos = TimeUnit.MILLISECONDS
+				.toNanos(Math.max(SystemProperties.longValue(FileScanner.class, ".notifyLatency", 100), 0));
+		if (!status.isSynchronousScanResults()) {
+			Thread dispatcherThread = new Thread(this::dispatch, getClass().getSimpleName());
+
+			dispatcherThread.setDaemon(true);
+			dispatcherThread.start();
+		}
+	}
+
+	/**
+	 * Queues a committed result for notification.
+	 *
+	 * @param result the committed result.
+	 */
+	public void notifyResult(FileScannerResult result) {
+		if (this.status.isSynchronousScanResults()) {
+			callStatus(() -> this.status.scanResult(this.scanner, result));
+		} else {
+			synchronized (this) {
+				if (!this.closed) {
+					this.pendingResults.putIfAbsent(result, System.nanoTime());
+					if (this.pendingResults.size() >= this.batchSize) {
+						notifyAll();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Waits until all queued results have been dispatched.
+	 *
+	 * @throws InterruptedException if the calling thread is interrupted while waiting.
+	 */
+	public synchronized void flush() throws InterruptedException {
+		this.flushRequests++;
+		try {
+			notifyAll();
+			while (!this.closed && (this.dispatching || !this.pendingResults.isEmpty())) {
+				wait();
+			}
+		} finally {
+			this.flushRequests--;
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		this.closed = true;
+		this.pendingResults.clear();
+		notifyAll();
+	}
+
+	private void dispatch() {
+		try {
+			List<FileScannerResult> batch;
+
+			while ((batch = nextBatch()) != null) {
+				List<FileScannerResult> results = batch;
+
+				try {
+					callStatus(() -> this.status.scanResults(this.scanner, results));
+				} finally {
+					synchronized (this) {
+						this.dispatching = false;
+						notifyAll();
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			LOG.warning(e, "Result notification has been interrupted");
+
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Nullable
+	private synchronized List<FileScannerResult> nextBatch() throws InterruptedException {
+		List<FileScannerResult> batch = null;
+
+		while (batch == null && !this.closed) {
+			if (this.pendingResults.isEmpty()) {
+				wait();
+			} else {
+				long oldestPendingNanos = this.pendingResults.values().iterator().next().longValue();
+				long remainingNanos = oldestPendingNanos + this.latencyNanos - System.nanoTime();
+
+				if (this.flushRequests > 0 || remainingNanos <= 0 || this.pendingResults.size() >= this.batchSize) {
+					batch = new ArrayList<>(Math.min(this.pendingResults.size(), this.batchSize));
+
+					Iterator<FileScannerResult> pendingResultsIterator = this.pendingResults.keySet().iterator();
+
+					while (batch.size() < this.batchSize && pendingResultsIterator.hasNext()) {
+						batch.add(pendingResultsIterator.next());
+						pendingResultsIterator.remove();
+					}
+					this.dispatching = true;
+				} else {
+					TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+				}
+			}
+		}
+		return batch;
+	}
+
+	private void callStatus(Runnable runnable) {
+		try {
+			runnable.run();
+		} catch (RuntimeException e) {
+			LOG.warning(e, "Status callback failed with exception");
+		}
+	}
+
+}
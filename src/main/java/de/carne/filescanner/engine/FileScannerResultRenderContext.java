@@ -18,10 +18,9 @@ package de.carne.filescanner.engine;
 
 import java.io.IOException;
 import java.nio.ByteOrder;
-import java.util.HashMap;
-import java.util.Map;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 
 import de.carne.filescanner.engine.format.AttributeBindMode;
 import de.carne.filescanner.engine.format.AttributeSpec;
@@ -40,12 +39,32 @@ public class FileScannerResultRenderContext extends FileScannerResultInputContex
 
 	private static final Log LOG = new Log();
 
-	private final Map<FileScannerResultContextValueSpec<?>, Object> contextValues = new HashMap<>();
+	private final FileScannerResultContextValues contextValues = new FileScannerResultContextValues();
 	private final FileScannerResultBuilder result;
+	@Nullable
+	private final FileScannerResultValueCapture valueCapture;
+	private int valueCaptureHint = 0;
+	@Nullable
+	private RenderOutput elementWindowOut = null;
+	private long elementWindowStart = 0;
+	private long elementWindowEnd = 0;
+	private long elementWindowTotal = -1;
 
 	FileScannerResultRenderContext(FileScannerResultBuilder result, long offset) throws IOException {
 		super(result.input().range(result.start(), result.end()), result.start() + offset);
 		this.result = result;
+		this.valueCapture = result.valueCapture();
+		if (this.valueCapture != null) {
+			this.valueCapture.touch();
+		}
+	}
+
+	FileScannerResultRenderContext(FileScannerResultBuilder result, RenderOutput elementWindowOut,
+			long firstElement, long elementCount) throws IOException {
+		this(result, 0);
+		this.elementWindowOut = elementWindowOut;
+		this.elementWindowStart = Math.max(firstElement, 0);
+		this.elementWindowEnd = this.elementWindowStart + Math.max(elementCount, 0);
 	}
 
 	/**
@@ -105,6 +124,105 @@ public class FileScannerResultRenderContext extends FileScannerResultInputContex
 		this.contextValues.put(attribute, value);
 	}
 
+	/**
+	 * Binds a number attribute value in {@linkplain AttributeBindMode#CONTEXT} mode without boxing it.
+	 *
+	 * @param attribute the attribute to bind.
+	 * @param number the attribute value to bind.
+	 */
+	public void bindContextNumber(AttributeSpec<? extends Number> attribute, long number) {
+		this.contextValues.putNumber(attribute, number);
+	}
+
+	/**
+	 * Gets the value captured while decoding the given attribute at the current position.
+	 * <p>
+	 * If a captured value is available, the current position is advanced accordingly and the attribute does not need
+	 * to be re-decoded. Number values are returned as {@linkplain Long}.
+	 * </p>
+	 *
+	 * @param attribute the attribute to get the captured value for.
+	 * @return the captured value or {@code null} if no value has been captured (or it has been evicted).
+	 * @throws IOException if an I/O error occurs.
+	 */
+	@Nullable
+	public Object capturedValue(AttributeSpec<?> attribute) throws IOException {
+		FileScannerResultValueCapture checkedValueCapture = this.valueCapture;
+		Object value = null;
+
+		if (checkedValueCapture != null) {
+			int index = checkedValueCapture.find(attribute, position(), this.valueCaptureHint);
+
+			if (index >= 0 && checkedValueCapture.end(index) <= inputRange().end()) {
+				setPosition(checkedValueCapture.end(index));
+				value = checkedValueCapture.value(index);
+				this.valueCaptureHint = index + 1;
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Gets the element offsets captured while decoding the given sequence at the current position.
+	 * <p>
+	 * In contrast to {@linkplain #capturedValue(AttributeSpec)} the current position is not changed.
+	 * </p>
+	 *
+	 * @param composite the sequence to get the captured element offsets for.
+	 * @return the captured element offsets or {@code null} if none have been captured (or the budget was exhausted).
+	 * @see FileScannerResultDecodeContext#captureElementOffsets(CompositeSpec, FileScannerResultElementOffsets)
+	 */
+	@Nullable
+	public FileScannerResultElementOffsets capturedElementOffsets(CompositeSpec composite) {
+		return this.result.elementOffsets(composite, position());
+	}
+
+	/**
+	 * Claims the element window requested via {@linkplain FileScannerResult#renderElements(RenderOutput, long, long)}.
+	 * <p>
+	 * The element window is claimed by the first sequence or array encountered during rendering. Only the elements
+	 * within the window (see {@linkplain #elementWindowStart()} and {@linkplain #elementWindowEnd()}) have to be
+	 * rendered to the returned {@linkplain RenderOutput}. All other output is discarded.
+	 * </p>
+	 *
+	 * @param elementCount the total number of elements of the claiming sequence or array.
+	 * @return the {@linkplain RenderOutput} to render the window elements to or {@code null} if there is no element
+	 * window to claim.
+	 */
+	@Nullable
+	public RenderOutput claimElementWindow(long elementCount) {
+		RenderOutput checkedElementWindowOut = this.elementWindowOut;
+
+		if (checkedElementWindowOut != null) {
+			this.elementWindowOut = null;
+			this.elementWindowEnd = Math.min(this.elementWindowEnd, elementCount);
+			this.elementWindowTotal = elementCount;
+		}
+		return checkedElementWindowOut;
+	}
+
+	/**
+	 * Gets the index of the first element within the claimed element window.
+	 *
+	 * @return the index of the first element within the claimed element window.
+	 */
+	public long elementWindowStart() {
+		return this.elementWindowStart;
+	}
+
+	/**
+	 * Gets the index of the first element following the claimed element window.
+	 *
+	 * @return the index of the first element following the claimed element window.
+	 */
+	public long elementWindowEnd() {
+		return this.elementWindowEnd;
+	}
+
+	long elementWindowTotal() {
+		return this.elementWindowTotal;
+	}
+
 	@Override
 	public <T> T getValue(FileScannerResultContextValueSpec<T> valueSpec) {
 		Object value = this.contextValues.get(valueSpec);
@@ -115,6 +233,12 @@ public class FileScannerResultRenderContext extends FileScannerResultInputContex
 		return Check.isInstanceOf(value, valueSpec.type());
 	}
 
+	@Override
+	public long getNumberValue(FileScannerResultContextValueSpec<? extends Number> valueSpec) {
+		return (this.contextValues.contains(valueSpec) ? this.contextValues.getNumber(valueSpec, 0)
+				: this.result.getValue(valueSpec, true).longValue());
+	}
+
 	/**
 	 * Executes the given {@linkplain FileScannerResultExportHandler} instance.
 	 *
@@ -0,0 +1,625 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import de.carne.filescanner.engine.input.FileScannerInput;
+import de.carne.filescanner.engine.input.FileScannerInputRange;
+import de.carne.filescanner.engine.util.HexFormat;
+import de.carne.nio.file.FileUtil;
+import de.carne.nio.file.attribute.FileAttributes;
+import de.carne.text.MemoryUnitFormat;
+import de.carne.util.Check;
+import de.carne.util.Exceptions;
+import de.carne.util.SystemProperties;
+import de.carne.util.logging.Log;
+
+/**
+ * Result store used to keep the heap usage of a scan within a configurable budget.
+ * <p>
+ * Whenever the estimated heap usage of the finished results exceeds the budget, the children of the oldest finished
+ * results are spilled to memory-mapped pages of a temporary store file. Spilled children are paged back in on demand
+ * (and kept via a soft reference as long as memory permits). Input results are never spilled, as they may still
+ * receive results while the scan is running.
+ * </p>
+ * <p>
+ * A spill record contains the committed state of a result (name, end, spec, export handlers and bound values). Objects
+ * which cannot be serialized (pinned children and non-primitive values) are kept in a reference table owned by the
+ * spilled block (and hence by the parent result). Only objects whose number is bounded by the scan's formats and inputs
+ * (specs, export handlers, value keys and inputs) are interned in a store wide symbol table.
+ * </p>
+ * <p>
+ * A paged in result references its siblings. Therefore a spilled block is only paged in anew after all of its results
+ * have been released and result identity is stable for all result users (e.g. identity based maps). The transient
+ * state of a result is not spilled: element offsets and value captures are released as soon as the result is spilled
+ * (see {@linkplain FileScanner}) and custom data (see {@linkplain FileScannerResult#setData(Object, Object)}) is
+ * dropped together with the released result instance. All of them are re-created on demand.
+ * </p>
+ */
+final class FileScannerResultStore implements Closeable {
+
+	private static final Log LOG = new Log();
+
+	private static final long DEFAULT_HEAP_BUDGET = Runtime.getRuntime().maxMemory() / 2;
+	private static final int PAGE_SIZE = SystemProperties.intValue(FileScanner.class, ".storePageSize", 0x100000);
+
+	private static final byte RECORD_PINNED = -1;
+
+	private static final byte INPUT_RANGE_REFERENCE = 0;
+	private static final byte INPUT_RANGE_SECTION = 1;
+
+	private final long heapBudget;
+	private final Consumer<FileScannerResultBuilder> spillHandler;
+	private final LinkedList<FinishedResult> finishedResults = new LinkedList<>();
+	private long heapUsage = 0;
+	private final AtomicLong spilledResults = new AtomicLong();
+	private final AtomicLong pagedInResults = new AtomicLong();
+	private final List<Object> symbols = new ArrayList<>();
+	private final Map<Object, Integer> symbolIndices = new IdentityHashMap<>();
+	private final List<ByteBuffer> pages = new ArrayList<>();
+	private @Nullable Path storeFilePath = null;
+	private @Nullable FileChannel storeFileChannel = null;
+	private long storeFileSize = 0;
+	private int pagePosition = 0;
+	private boolean closed = false;
+
+	FileScannerResultStore(Consumer<FileScannerResultBuilder> spillHandler) {
+		this.spillHandler = spillHandler;
+		this.heapBudget = SystemProperties.longValue(FileScanner.class, ".heapBudget", DEFAULT_HEAP_BUDGET);
+		if (this.heapBudget > 0) {
+			LOG.info("Using result heap budget {0}", MemoryUnitFormat.getMemoryUnitInstance().format(this.heapBudget));
+		} else {
+			LOG.info("Result spilling disabled");
+		}
+	}
+
+	/**
+	 * Records a finished (and therefore no longer modified) result and spills the oldest finished results as soon as
+	 * the heap budget is exceeded.
+	 *
+	 * @param result the finished result.
+	 */
+	void onResultFinished(FileScannerResultBuilder result) {
+		if (this.heapBudget > 0) {
+			long resultHeapUsage = result.heapUsage();
+			List<FileScannerResultBuilder> spillResults = new ArrayList<>();
+
+			synchronized (this) {
+				if (!this.closed) {
+					this.finishedResults.add(new FinishedResult(result, resultHeapUsage));
+					this.heapUsage += resultHeapUsage;
+					if (this.heapUsage > this.heapBudget) {
+						long spillLimit = this.heapBudget - this.heapBudget / 4;
+
+						while (this.heapUsage > spillLimit && !this.finishedResults.isEmpty()) {
+							FinishedResult spillResult = this.finishedResults.removeFirst();
+
+							this.heapUsage -= spillResult.heapUsage();
+							spillResults.add(spillResult.result());
+						}
+					}
+				}
+			}
+			for (FileScannerResultBuilder spillResult : spillResults) {
+				try {
+					spillChildren(spillResult);
+				} catch (IOException e) {
+					LOG.warning(e, "Failed to spill result ''{0}''", spillResult);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of results spilled so far.
+	 *
+	 * @return the number of results spilled so far.
+	 */
+	long spilledResults() {
+		return this.spilledResults.get();
+	}
+
+	/**
+	 * Gets the number of results paged in so far.
+	 *
+	 * @return the number of results paged in so far.
+	 */
+	long pagedInResults() {
+		return this.pagedInResults.get();
+	}
+
+	private boolean spillChildren(FileScannerResultBuilder result) throws IOException {
+		List<FileScannerResultBuilder> children = result.spillableChildren();
+		boolean spilled = false;
+
+		if (children != null) {
+			if (!children.isEmpty()) {
+				List<FileScannerResultBuilder> spilledChildren = new ArrayList<>(children.size());
+				byte[] blockBytes;
+				Object[] references;
+
+				try (BlockOutput block = new BlockOutput(this)) {
+					for (FileScannerResultBuilder child : children) {
+						if (spillChildren(child) && child.writeSpillRecord(block)) {
+							spilledChildren.add(child);
+						} else {
+							block.writeByte(RECORD_PINNED);
+							block.writeReference(child);
+						}
+					}
+					blockBytes = block.toByteArray();
+					references = block.references();
+				}
+
+				long blockRef = writeBlock(blockBytes);
+				List<FileScannerResultBuilder> siblings = Collections.unmodifiableList(children);
+
+				spilled = result.spillChildren(children, new SpilledChildren(this, result, blockRef, children.size(),
+						references, new WeakReference<>(siblings)));
+				if (spilled) {
+					for (FileScannerResultBuilder spilledChild : spilledChildren) {
+						spilledChild.setSpilledSiblings(siblings);
+						this.spillHandler.accept(spilledChild);
+					}
+					this.spilledResults.addAndGet(spilledChildren.size());
+				}
+			} else {
+				spilled = true;
+			}
+		}
+		return spilled;
+	}
+
+	private synchronized long writeBlock(byte[] block) throws IOException {
+		if (this.closed) {
+			throw new IOException("Result store has been closed");
+		}
+
+		int pageIndex = this.pages.size() - 1;
+
+		if (pageIndex < 0 || this.pages.get(pageIndex).capacity() - this.pagePosition < block.length) {
+			pageIndex = mapPage(Math.max(PAGE_SIZE, block.length));
+			this.pagePosition = 0;
+		}
+
+		ByteBuffer page = this.pages.get(pageIndex).duplicate();
+		long blockRef = (((long) pageIndex) << 32) | this.pagePosition;
+
+		page.position(this.pagePosition);
+		page.put(block);
+		this.pagePosition += block.length;
+		return blockRef;
+	}
+
+	private int mapPage(int pageSize) throws IOException {
+		FileChannel channel = this.storeFileChannel;
+
+		if (channel == null) {
+			Path tmpDir = FileUtil.tmpDir();
+			Path path = Files.createTempFile(tmpDir, getClass().getSimpleName(), null,
+					FileAttributes.userFileDefault(tmpDir));
+
+			channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			this.storeFilePath = path;
+			this.storeFileChannel = channel;
+
+			LOG.info("Result store file ''{0}'' created", path);
+		}
+
+		MappedByteBuffer page = channel.map(FileChannel.MapMode.READ_WRITE, this.storeFileSize, pageSize);
+
+		LOG.debug("Mapped result store page {0} ({1} bytes)", HexFormat.formatLong(this.storeFileSize), pageSize);
+
+		this.storeFileSize += pageSize;
+		this.pages.add(page);
+		return this.pages.size() - 1;
+	}
+
+	private synchronized ByteBuffer readBlock(long blockRef) {
+		if (this.closed) {
+			throw new IllegalStateException("Result store has been closed");
+		}
+
+		ByteBuffer block = this.pages.get((int) (blockRef >>> 32)).duplicate();
+
+		block.position((int) (blockRef & 0xffffffffl));
+		return block;
+	}
+
+	List<FileScannerResultBuilder> readChildren(FileScannerResultBuilder parent, long blockRef, int count,
+			Object[] references) {
+		BlockInput block = new BlockInput(this, readBlock(blockRef), references);
+		List<FileScannerResultBuilder> children = new ArrayList<>(count);
+		List<FileScannerResultBuilder> siblings = Collections.unmodifiableList(children);
+		int pagedIn = 0;
+
+		for (int childIndex = 0; childIndex < count; childIndex++) {
+			FileScannerResultBuilder child;
+
+			if (block.peekByte() == RECORD_PINNED) {
+				block.readByte();
+				child = block.readReference(FileScannerResultBuilder.class);
+			} else {
+				child = FileScannerResultBuilder.readSpillRecord(block, parent);
+				child.setSpilledSiblings(siblings);
+				pagedIn++;
+			}
+			children.add(child);
+		}
+		this.pagedInResults.addAndGet(pagedIn);
+		return siblings;
+	}
+
+	synchronized int toSymbol(Object object) {
+		Integer symbol = this.symbolIndices.get(object);
+
+		if (symbol == null) {
+			symbol = this.symbols.size();
+			this.symbols.add(object);
+			this.symbolIndices.put(object, symbol);
+		}
+		return symbol.intValue();
+	}
+
+	synchronized <T> T fromSymbol(int symbol, Class<T> type) {
+		return Check.isInstanceOf(this.symbols.get(symbol), type);
+	}
+
+	@Override
+	public void close() throws IOException {
+		FileChannel channel;
+		Path path;
+
+		synchronized (this) {
+			this.closed = true;
+			this.finishedResults.clear();
+			this.pages.clear();
+			channel = this.storeFileChannel;
+			path = this.storeFilePath;
+			this.storeFileChannel = null;
+			this.storeFilePath = null;
+		}
+		if (channel != null && path != null) {
+			try {
+				channel.close();
+			} finally {
+				Files.delete(path);
+			}
+		}
+	}
+
+	private static final class FinishedResult {
+
+		private final FileScannerResultBuilder result;
+		private final long heapUsage;
+
+		FinishedResult(FileScannerResultBuilder result, long heapUsage) {
+			this.result = result;
+			this.heapUsage = heapUsage;
+		}
+
+		public FileScannerResultBuilder result() {
+			return this.result;
+		}
+
+		public long heapUsage() {
+			return this.heapUsage;
+		}
+
+	}
+
+	/**
+	 * Output stream used to write a block of spill records.
+	 */
+	static final class BlockOutput extends DataOutputStream implements FileScannerResultValueCodec.ValueOutput {
+
+		private final FileScannerResultStore store;
+		private final List<Object> references = new ArrayList<>();
+		private final Map<Object, Integer> referenceIndices = new IdentityHashMap<>();
+
+		BlockOutput(FileScannerResultStore store) {
+			super(new ByteArrayOutputStream());
+			this.store = store;
+		}
+
+		byte[] toByteArray() {
+			return ((ByteArrayOutputStream) this.out).toByteArray();
+		}
+
+		Object[] references() {
+			return this.references.toArray();
+		}
+
+		void writeSymbol(Object object) throws IOException {
+			writeInt(this.store.toSymbol(object));
+		}
+
+		void writeReference(Object object) throws IOException {
+			Integer reference = this.referenceIndices.get(object);
+
+			if (reference == null) {
+				reference = this.references.size();
+				this.references.add(object);
+				this.referenceIndices.put(object, reference);
+			}
+			writeInt(reference.intValue());
+		}
+
+		void writeString(String string) throws IOException {
+			FileScannerResultValueCodec.writeString(this, string);
+		}
+
+		@Override
+		public void writeInputRange(FileScannerInput input) throws IOException {
+			FileScannerInputRange inputRange = (input instanceof FileScannerInputRange ? (FileScannerInputRange) input
+					: null);
+
+			// Plain sections (see FileScannerInput#range(long, long)) are re-created on demand
+			if (inputRange != null && inputRange.end() == inputRange.size()
+					&& inputRange.name().equals(inputRange.input().name())) {
+				writeByte(INPUT_RANGE_SECTION);
+				writeSymbol(inputRange.input());
+				writeLong(inputRange.start());
+				writeLong(inputRange.end());
+			} else {
+				writeByte(INPUT_RANGE_REFERENCE);
+				writeReference(input);
+			}
+		}
+
+		@Override
+		public void writeObject(Object object) throws IOException {
+			writeReference(object);
+		}
+
+		void writeValue(Object value) throws IOException {
+			FileScannerResultValueCodec.writeValue(this, value);
+		}
+
+	}
+
+	/**
+	 * Input used to read a block of spill records.
+	 */
+	static final class BlockInput implements FileScannerResultValueCodec.ValueInput {
+
+		private final FileScannerResultStore store;
+		private final ByteBuffer in;
+		private final Object[] references;
+
+		BlockInput(FileScannerResultStore store, ByteBuffer in, Object[] references) {
+			this.store = store;
+			this.in = in;
+			this.references = references;
+		}
+
+		FileScannerResultStore store() {
+			return this.store;
+		}
+
+		byte peekByte() {
+			return this.in.get(this.in.position());
+		}
+
+		@Override
+		public void readFully(byte[] b) {
+			this.in.get(b);
+		}
+
+		@Override
+		public void readFully(byte[] b, int off, int len) {
+			this.in.get(b, off, len);
+		}
+
+		@Override
+		public int skipBytes(int n) {
+			int skipped = Math.min(n, this.in.remaining());
+
+			this.in.position(this.in.position() + skipped);
+			return skipped;
+		}
+
+		@Override
+		public boolean readBoolean() {
+			return this.in.get() != 0;
+		}
+
+		@Override
+		public byte readByte() {
+			return this.in.get();
+		}
+
+		@Override
+		public int readUnsignedByte() {
+			return Byte.toUnsignedInt(this.in.get());
+		}
+
+		@Override
+		public short readShort() {
+			return this.in.getShort();
+		}
+
+		@Override
+		public int readUnsignedShort() {
+			return Short.toUnsignedInt(this.in.getShort());
+		}
+
+		@Override
+		public char readChar() {
+			return this.in.getChar();
+		}
+
+		@Override
+		public int readInt() {
+			return this.in.getInt();
+		}
+
+		@Override
+		public long readLong() {
+			return this.in.getLong();
+		}
+
+		@Override
+		public float readFloat() {
+			return this.in.getFloat();
+		}
+
+		@Override
+		public double readDouble() {
+			return this.in.getDouble();
+		}
+
+		@Override
+		public String readLine() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public String readUTF() throws IOException {
+			return DataInputStream.readUTF(this);
+		}
+
+		<T> T readSymbol(Class<T> type) {
+			return this.store.fromSymbol(this.in.getInt(), type);
+		}
+
+		<T> T readReference(Class<T> type) {
+			return Check.isInstanceOf(this.references[this.in.getInt()], type);
+		}
+
+		String readString() {
+			byte[] stringBytes = new byte[this.in.getInt()];
+
+			this.in.get(stringBytes);
+			return new String(stringBytes, StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public FileScannerInputRange readInputRange() {
+			byte inputRangeType = this.in.get();
+			FileScannerInputRange inputRange;
+
+			if (inputRangeType == INPUT_RANGE_SECTION) {
+				FileScannerInput input = readSymbol(FileScannerInput.class);
+				long start = this.in.getLong();
+				long end = this.in.getLong();
+
+				try {
+					inputRange = input.range(start, end);
+				} catch (IOException e) {
+					throw Exceptions.toRuntime(e);
+				}
+			} else {
+				inputRange = readReference(FileScannerInputRange.class);
+			}
+			return inputRange;
+		}
+
+		@Override
+		public Object readObject() {
+			return readReference(Object.class);
+		}
+
+		Object readValue() {
+			try {
+				return FileScannerResultValueCodec.readValue(this);
+			} catch (IOException e) {
+				throw Exceptions.toRuntime(e);
+			}
+		}
+
+	}
+
+	/**
+	 * Reference to a block of spilled children.
+	 */
+	static final class SpilledChildren {
+
+		private static final Object[] NO_REFERENCES = new Object[0];
+
+		private final FileScannerResultStore store;
+		private final FileScannerResultBuilder parent;
+		private final long blockRef;
+		private final int count;
+		private final Object[] references;
+		private Reference<@Nullable List<FileScannerResultBuilder>> childrenReference;
+
+		SpilledChildren(FileScannerResultStore store, FileScannerResultBuilder parent, long blockRef, int count,
+				Object[] references) {
+			this(store, parent, blockRef, count, references, new SoftReference<>(null));
+		}
+
+		SpilledChildren(FileScannerResultStore store, FileScannerResultBuilder parent, long blockRef, int count,
+				Object[] references, Reference<@Nullable List<FileScannerResultBuilder>> childrenReference) {
+			this.store = store;
+			this.parent = parent;
+			this.blockRef = blockRef;
+			this.count = count;
+			this.references = (references.length > 0 ? references : NO_REFERENCES);
+			this.childrenReference = childrenReference;
+		}
+
+		public synchronized List<FileScannerResultBuilder> get() {
+			List<FileScannerResultBuilder> children = this.childrenReference.get();
+
+			if (children == null) {
+				children = this.store.readChildren(this.parent, this.blockRef, this.count, this.references);
+				this.childrenReference = new SoftReference<>(children);
+			}
+			return children;
+		}
+
+		public long blockRef() {
+			return this.blockRef;
+		}
+
+		public int count() {
+			return this.count;
+		}
+
+		public Object[] references() {
+			return this.references;
+		}
+
+	}
+
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Compact record of the attribute values decoded for a single result.
+ * <p>
+ * The record is filled while the result is decoded and is read during rendering to avoid re-decoding the attribute
+ * values (see {@linkplain FileScannerResultRenderContext}). Number values are stored as primitives. If the record's
+ * footprint exceeds its limit, capturing stops and the record is dropped. Once the result has been decoded, the
+ * record is immutable and managed by a {@linkplain FileScannerResultValueCaptureCache} instance which may evict it at
+ * any time.
+ * </p>
+ */
+final class FileScannerResultValueCapture {
+
+	private static final int INITIAL_CAPACITY = 16;
+	private static final long ENTRY_FOOTPRINT = 48;
+	private static final long OBJECT_FOOTPRINT = 32;
+
+	private final long limit;
+	private Object[] attributes = new Object[INITIAL_CAPACITY];
+	private long[] starts = new long[INITIAL_CAPACITY];
+	private long[] ends = new long[INITIAL_CAPACITY];
+	private long[] numbers = new long[INITIAL_CAPACITY];
+	private Object[] values = new Object[INITIAL_CAPACITY];
+	private int size = 0;
+	private boolean ordered = true;
+	private boolean dropped = false;
+	private long footprint = 0;
+	@Nullable
+	private FileScannerResultValueCaptureCache cache = null;
+
+	/**
+	 * Constructs a new {@linkplain FileScannerResultValueCapture} instance.
+	 *
+	 * @param limit the maximum footprint of this record.
+	 */
+	public FileScannerResultValueCapture(long limit) {
+		this.limit = limit;
+	}
+
+	/**
+	 * Captures a decoded attribute value.
+	 *
+	 * @param attribute the decoded attribute.
+	 * @param start the start position of the decoded value.
+	 * @param end the end position of the decoded value.
+	 * @param value the decoded value.
+	 */
+	public void captureValue(Object attribute, long start, long end, Object value) {
+		int index = add(attribute, start, end, valueFootprint(value));
+
+		if (index >= 0) {
+			this.values[index] = value;
+		}
+	}
+
+	/**
+	 * Captures a decoded number attribute value.
+	 *
+	 * @param attribute the decoded attribute.
+	 * @param start the start position of the decoded value.
+	 * @param end the end position of the decoded value.
+	 * @param number the decoded value.
+	 */
+	public void captureNumber(Object attribute, long start, long end, long number) {
+		int index = add(attribute, start, end, 0);
+
+		if (index >= 0) {
+			this.numbers[index] = number;
+		}
+	}
+
+	private int add(Object attribute, long start, long end, long valueFootprint) {
+		int index = -1;
+
+		if (this.dropped) {
+			// Nothing to do
+		} else if (this.footprint + ENTRY_FOOTPRINT + valueFootprint > this.limit) {
+			drop();
+		} else {
+			if (this.size == this.attributes.length) {
+				resize(this.size << 1);
+			}
+			index = this.size;
+			this.ordered = this.ordered && (index == 0 || this.starts[index - 1] <= start);
+			this.attributes[index] = attribute;
+			this.starts[index] = start;
+			this.ends[index] = end;
+			this.size++;
+			this.footprint += ENTRY_FOOTPRINT + valueFootprint;
+		}
+		return index;
+	}
+
+	private void drop() {
+		this.dropped = true;
+		this.size = 0;
+		this.footprint = 0;
+		resize(0);
+	}
+
+	private void resize(int capacity) {
+		this.attributes = Arrays.copyOf(this.attributes, capacity);
+		this.starts = Arrays.copyOf(this.starts, capacity);
+		this.ends = Arrays.copyOf(this.ends, capacity);
+		this.numbers = Arrays.copyOf(this.numbers, capacity);
+		this.values = Arrays.copyOf(this.values, capacity);
+	}
+
+	private static long valueFootprint(Object value) {
+		long valueFootprint = OBJECT_FOOTPRINT;
+
+		if (value instanceof String) {
+			valueFootprint += ((String) value).length() * 2l;
+		} else if (value instanceof byte[]) {
+			valueFootprint += ((byte[]) value).length;
+		} else if (value instanceof short[]) {
+			valueFootprint += ((short[]) value).length * 2l;
+		} else if (value instanceof int[]) {
+			valueFootprint += ((int[]) value).length * 4l;
+		} else if (value instanceof long[]) {
+			valueFootprint += ((long[]) value).length * 8l;
+		}
+		return valueFootprint;
+	}
+
+	/**
+	 * Finishes capturing and releases any unused capacity.
+	 *
+	 * @param owner the {@linkplain FileScannerResultValueCaptureCache} managing the finished record.
+	 * @return the finished record.
+	 */
+	public FileScannerResultValueCapture finish(FileScannerResultValueCaptureCache owner) {
+		if (!this.ordered) {
+			sort();
+		} else if (this.size < this.attributes.length) {
+			resize(this.size);
+		}
+		this.cache = owner;
+		return this;
+	}
+
+	private void sort() {
+		Integer[] order = new Integer[this.size];
+
+		for (int index = 0; index < this.size; index++) {
+			order[index] = index;
+		}
+		// Object sort is stable; hence values captured at the same position keep their capture order
+		Arrays.sort(order, Comparator.comparingLong(index -> this.starts[index.intValue()]));
+
+		Object[] sortedAttributes = new Object[this.size];
+		long[] sortedStarts = new long[this.size];
+		long[] sortedEnds = new long[this.size];
+		long[] sortedNumbers = new long[this.size];
+		Object[] sortedValues = new Object[this.size];
+
+		for (int index = 0; index < this.size; index++) {
+			int sortedIndex = order[index].intValue();
+
+			sortedAttributes[index] = this.attributes[sortedIndex];
+			sortedStarts[index] = this.starts[sortedIndex];
+			sortedEnds[index] = this.ends[sortedIndex];
+			sortedNumbers[index] = this.numbers[sortedIndex];
+			sortedValues[index] = this.values[sortedIndex];
+		}
+		this.attributes = sortedAttributes;
+		this.starts = sortedStarts;
+		this.ends = sortedEnds;
+		this.numbers = sortedNumbers;
+		this.values = sortedValues;
+		this.ordered = true;
+	}
+
+	/**
+	 * Marks this record as recently used.
+	 */
+	public void touch() {
+		FileScannerResultValueCaptureCache checkedCache = this.cache;
+
+		if (checkedCache != null) {
+			checkedCache.touch(this);
+		}
+	}
+
+	/**
+	 * Checks whether this record has been dropped due to exceeding its footprint limit.
+	 *
+	 * @return {@code true} if this record has been dropped.
+	 */
+	public boolean isDropped() {
+		return this.dropped;
+	}
+
+	/**
+	 * Gets the number of captured values.
+	 *
+	 * @return the number of captured values.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Gets the (estimated) memory footprint of this record.
+	 *
+	 * @return the (estimated) memory footprint of this record.
+	 */
+	public long footprint() {
+		return this.footprint;
+	}
+
+	/**
+	 * Looks up a captured value.
+	 * <p>
+	 * The record must have been finished (see {@linkplain #finish(FileScannerResultValueCaptureCache)}) as finishing
+	 * orders the captured values by position.
+	 * </p>
+	 *
+	 * @param attribute the attribute to look up.
+	 * @param position the position to look up.
+	 * @param hint the index to check first (usually the index following the last look up).
+	 * @return the index of the matching captured value or {@code -1} if there is none.
+	 */
+	public int find(Object attribute, long position, int hint) {
+		int index = -1;
+
+		if (0 <= hint && hint < this.size && this.starts[hint] == position && this.attributes[hint] == attribute) {
+			index = hint;
+		} else {
+			int candidate = lowerBound(position);
+
+			while (index < 0 && candidate < this.size && this.starts[candidate] == position) {
+				if (this.attributes[candidate] == attribute) {
+					index = candidate;
+				}
+				candidate++;
+			}
+		}
+		return index;
+	}
+
+	private int lowerBound(long position) {
+		int low = 0;
+		int high = this.size;
+
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+
+			if (this.starts[mid] < position) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Gets the end position of a captured value.
+	 *
+	 * @param index the index of the captured value.
+	 * @return the end position of the captured value.
+	 */
+	public long end(int index) {
+		return this.ends[index];
+	}
+
+	/**
+	 * Gets a captured value.
+	 * <p>
+	 * Number values are returned as {@linkplain Long}.
+	 * </p>
+	 *
+	 * @param index the index of the captured value.
+	 * @return the captured value.
+	 */
+	public Object value(int index) {
+		@Nullable Object value = this.values[index];
+
+		return (value != null ? value : Long.valueOf(this.numbers[index]));
+	}
+
+}
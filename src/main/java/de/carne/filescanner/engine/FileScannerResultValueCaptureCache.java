@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import de.carne.util.SystemProperties;
+
+/**
+ * Memory budget for the {@linkplain FileScannerResultValueCapture} records of a single {@linkplain FileScanner}.
+ * <p>
+ * Records are attached to their results as long as the total footprint stays within the budget. If the budget is
+ * exceeded, the least recently used records are evicted and the affected results fall back to re-decoding during
+ * rendering. The budget is set via the system property {@code de.carne.filescanner.engine.FileScanner.captureBudget}
+ * (in bytes); a budget of {@code 0} disables value capturing. A single record is limited to the footprint set via the
+ * system property {@code de.carne.filescanner.engine.FileScanner.captureRecordLimit} (in bytes, at most the budget).
+ * Records exceeding this limit stop capturing during decoding and are never attached.
+ * </p>
+ */
+final class FileScannerResultValueCaptureCache {
+
+	private final long budget = Math
+			.max(SystemProperties.longValue(FileScanner.class, ".captureBudget", 16l * 1024 * 1024), 0);
+	private final long recordLimit = Math
+			.min(SystemProperties.longValue(FileScanner.class, ".captureRecordLimit", 1024l * 1024), this.budget);
+	private final Map<FileScannerResultValueCapture, WeakReference<FileScannerResultBuilder>> captures = new LinkedHashMap<>(
+			16, 0.75f, true);
+	private long footprint = 0;
+
+	/**
+	 * Creates a new {@linkplain FileScannerResultValueCapture} instance for decoding a result.
+	 *
+	 * @return the created {@linkplain FileScannerResultValueCapture} instance or {@code null} if value capturing is
+	 * disabled.
+	 */
+	@Nullable
+	public FileScannerResultValueCapture newCapture() {
+		return (this.budget > 0 ? new FileScannerResultValueCapture(this.recordLimit) : null);
+	}
+
+	/**
+	 * Attaches a finished {@linkplain FileScannerResultValueCapture} record to its result.
+	 *
+	 * @param result the result the record belongs to.
+	 * @param capture the record to attach.
+	 */
+	public void attach(FileScannerResultBuilder result, FileScannerResultValueCapture capture) {
+		if (!capture.isDropped() && capture.size() > 0) {
+			synchronized (this) {
+				this.captures.put(capture.finish(this), new WeakReference<>(result));
+				this.footprint += capture.footprint();
+				result.setValueCapture(capture);
+				evict();
+			}
+		}
+	}
+
+	/**
+	 * Evicts the record attached to a result (if any).
+	 *
+	 * @param result the result to evict the record for.
+	 */
+	public synchronized void detach(FileScannerResultBuilder result) {
+		FileScannerResultValueCapture capture = result.valueCapture();
+
+		if (capture != null && this.captures.remove(capture) != null) {
+			this.footprint -= capture.footprint();
+		}
+		result.setValueCapture(null);
+	}
+
+	/**
+	 * Marks a record as recently used.
+	 *
+	 * @param capture the record to mark.
+	 */
+	public synchronized void touch(FileScannerResultValueCapture capture) {
+		this.captures.get(capture);
+	}
+
+	/**
+	 * Evicts all records.
+	 */
+	public synchronized void clear() {
+		for (WeakReference<FileScannerResultBuilder> resultReference : this.captures.values()) {
+			FileScannerResultBuilder result = resultReference.get();
+
+			if (result != null) {
+				result.setValueCapture(null);
+			}
+		}
+		this.captures.clear();
+		this.footprint = 0;
+	}
+
+	private void evict() {
+		Iterator<Map.Entry<FileScannerResultValueCapture, WeakReference<FileScannerResultBuilder>>> capturesIterator = this.captures
+				.entrySet().iterator();
+
+		while (this.footprint > this.budget && capturesIterator.hasNext()) {
+			Map.Entry<FileScannerResultValueCapture, WeakReference<FileScannerResultBuilder>> captureEntry = capturesIterator
+					.next();
+			FileScannerResultValueCapture capture = captureEntry.getKey();
+			FileScannerResultBuilder result = captureEntry.getValue().get();
+
+			if (result != null) {
+				result.setValueCapture(null);
+			}
+			this.footprint -= capture.footprint();
+			capturesIterator.remove();
+		}
+	}
+
+}
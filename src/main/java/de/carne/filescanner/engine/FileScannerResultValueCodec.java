@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import de.carne.filescanner.engine.input.FileScannerInput;
+import de.carne.filescanner.engine.input.FileScannerInputRange;
+
+/**
+ * Binary encoding of bound result values shared by the result store (see {@linkplain FileScannerResultStore}) and
+ * snapshot files (see {@linkplain FileScannerSnapshot}).
+ * <p>
+ * Numbers, strings and number arrays are encoded directly. Input ranges (of stream values) as well as any other
+ * objects are encoded by the actual {@linkplain ValueOutput} and decoded by the actual {@linkplain ValueInput}.
+ * </p>
+ */
+final class FileScannerResultValueCodec {
+
+	private static final byte VALUE_OBJECT = 0;
+	private static final byte VALUE_BYTE = 1;
+	private static final byte VALUE_SHORT = 2;
+	private static final byte VALUE_INT = 3;
+	private static final byte VALUE_LONG = 4;
+	private static final byte VALUE_STRING = 5;
+	private static final byte VALUE_BYTE_ARRAY = 6;
+	private static final byte VALUE_SHORT_ARRAY = 7;
+	private static final byte VALUE_INT_ARRAY = 8;
+	private static final byte VALUE_LONG_ARRAY = 9;
+	private static final byte VALUE_STREAM = 10;
+
+	private FileScannerResultValueCodec() {
+		// Prevent instantiation
+	}
+
+	/**
+	 * Output receiving encoded values.
+	 */
+	interface ValueOutput extends DataOutput {
+
+		/**
+		 * Writes an input range.
+		 *
+		 * @param inputRange the input range to write.
+		 * @throws IOException if an I/O error occurs or if the input range cannot be encoded.
+		 */
+		void writeInputRange(FileScannerInput inputRange) throws IOException;
+
+		/**
+		 * Writes an object not encoded by the codec itself.
+		 *
+		 * @param object the object to write.
+		 * @throws IOException if an I/O error occurs or if the object cannot be encoded.
+		 */
+		void writeObject(Object object) throws IOException;
+
+	}
+
+	/**
+	 * Input providing encoded values.
+	 */
+	interface ValueInput extends DataInput {
+
+		/**
+		 * Reads an input range written via {@linkplain ValueOutput#writeInputRange(FileScannerInput)}.
+		 *
+		 * @return the read input range.
+		 * @throws IOException if an I/O error occurs.
+		 */
+		FileScannerInputRange readInputRange() throws IOException;
+
+		/**
+		 * Reads an object written via {@linkplain ValueOutput#writeObject(Object)}.
+		 *
+		 * @return the read object.
+		 * @throws IOException if an I/O error occurs.
+		 */
+		Object readObject() throws IOException;
+
+	}
+
+	/**
+	 * Writes a string.
+	 *
+	 * @param out the output to write to.
+	 * @param string the string to write.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static void writeString(DataOutput out, String string) throws IOException {
+		byte[] stringBytes = string.getBytes(StandardCharsets.UTF_8);
+
+		out.writeInt(stringBytes.length);
+		out.write(stringBytes);
+	}
+
+	/**
+	 * Reads a string written via {@linkplain #writeString(DataOutput, String)}.
+	 *
+	 * @param in the input to read from.
+	 * @return the read string.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static String readString(DataInput in) throws IOException {
+		byte[] stringBytes = new byte[in.readInt()];
+
+		in.readFully(stringBytes);
+		return new String(stringBytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes a value.
+	 *
+	 * @param out the output to write to.
+	 * @param value the value to write.
+	 * @throws IOException if an I/O error occurs or if the value cannot be encoded.
+	 */
+	@SuppressWarnings("squid:S3776")
+	public static void writeValue(ValueOutput out, Object value) throws IOException {
+		if (value instanceof Byte) {
+			out.writeByte(VALUE_BYTE);
+			out.writeByte(((Byte) value).byteValue());
+		} else if (value instanceof Short) {
+			out.writeByte(VALUE_SHORT);
+			out.writeShort(((Short) value).shortValue());
+		} else if (value instanceof Integer) {
+			out.writeByte(VALUE_INT);
+			out.writeInt(((Integer) value).intValue());
+		} else if (value instanceof Long) {
+			out.writeByte(VALUE_LONG);
+			out.writeLong(((Long) value).longValue());
+		} else if (value instanceof String) {
+			out.writeByte(VALUE_STRING);
+			writeString(out, (String) value);
+		} else if (value instanceof byte[]) {
+			byte[] bytes = (byte[]) value;
+
+			out.writeByte(VALUE_BYTE_ARRAY);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		} else if (value instanceof short[]) {
+			short[] shorts = (short[]) value;
+
+			out.writeByte(VALUE_SHORT_ARRAY);
+			out.writeInt(shorts.length);
+			for (short element : shorts) {
+				out.writeShort(element);
+			}
+		} else if (value instanceof int[]) {
+			int[] ints = (int[]) value;
+
+			out.writeByte(VALUE_INT_ARRAY);
+			out.writeInt(ints.length);
+			for (int element : ints) {
+				out.writeInt(element);
+			}
+		} else if (value instanceof long[]) {
+			long[] longs = (long[]) value;
+
+			out.writeByte(VALUE_LONG_ARRAY);
+			out.writeInt(longs.length);
+			for (long element : longs) {
+				out.writeLong(element);
+			}
+		} else if (value instanceof StreamValue) {
+			StreamValue streamValue = (StreamValue) value;
+
+			out.writeByte(VALUE_STREAM);
+			out.writeInputRange(streamValue.inputRange());
+			out.writeLong(streamValue.start());
+			out.writeLong(streamValue.end());
+		} else {
+			out.writeByte(VALUE_OBJECT);
+			out.writeObject(value);
+		}
+	}
+
+	/**
+	 * Reads a value written via {@linkplain #writeValue(ValueOutput, Object)}.
+	 *
+	 * @param in the input to read from.
+	 * @return the read value.
+	 * @throws IOException if an I/O error occurs or if the input does not contain a valid value.
+	 */
+	@SuppressWarnings("squid:S3776")
+	public static Object readValue(ValueInput in) throws IOException {
+		byte valueType = in.readByte();
+		Object value;
+
+		switch (valueType) {
+		case VALUE_OBJECT:
+			value = in.readObject();
+			break;
+		case VALUE_BYTE:
+			value = Byte.valueOf(in.readByte());
+			break;
+		case VALUE_SHORT:
+			value = Short.valueOf(in.readShort());
+			break;
+		case VALUE_INT:
+			value = Integer.valueOf(in.readInt());
+			break;
+		case VALUE_LONG:
+			value = Long.valueOf(in.readLong());
+			break;
+		case VALUE_STRING:
+			value = readString(in);
+			break;
+		case VALUE_BYTE_ARRAY:
+			byte[] bytes = new byte[in.readInt()];
+
+			in.readFully(bytes);
+			value = bytes;
+			break;
+		case VALUE_SHORT_ARRAY:
+			short[] shorts = new short[in.readInt()];
+
+			for (int shortIndex = 0; shortIndex < shorts.length; shortIndex++) {
+				shorts[shortIndex] = in.readShort();
+			}
+			value = shorts;
+			break;
+		case VALUE_INT_ARRAY:
+			int[] ints = new int[in.readInt()];
+
+			for (int intIndex = 0; intIndex < ints.length; intIndex++) {
+				ints[intIndex] = in.readInt();
+			}
+			value = ints;
+			break;
+		case VALUE_LONG_ARRAY:
+			long[] longs = new long[in.readInt()];
+
+			for (int longIndex = 0; longIndex < longs.length; longIndex++) {
+				longs[longIndex] = in.readLong();
+			}
+			value = longs;
+			break;
+		case VALUE_STREAM:
+			FileScannerInputRange inputRange = in.readInputRange();
+			long start = in.readLong();
+			long end = in.readLong();
+
+			value = new StreamValue(inputRange, start, end);
+			break;
+		default:
+			throw new IOException("Unexpected value type: " + valueType);
+		}
+		return value;
+	}
+
+}
@@ -22,6 +22,8 @@ import org.eclipse.jdt.annotation.Nullable;
 
 import de.carne.filescanner.engine.FileScannerResult.Type;
 import de.carne.filescanner.engine.input.FileScannerInput;
+import de.carne.filescanner.engine.input.InputDigester;
+import de.carne.filescanner.engine.input.InputDigests;
 import de.carne.filescanner.engine.transfer.RenderOutput;
 import de.carne.filescanner.engine.transfer.RenderStyle;
 import de.carne.filescanner.engine.util.FileNames;
@@ -86,6 +88,27 @@ public final class FileScannerResults {
 		return FileNames.mangleFileName((input != null ? input.name() : result.name()), extension);
 	}
 
+	/**
+	 * Gets the digests computed for the given result during the scan.
+	 * <p>
+	 * Digests are only computed if digest computation is enabled (see {@linkplain InputDigester}). They are computed
+	 * for the scanned input, for format results, for decoded inputs and for inputs nested into a format result (e.g.
+	 * stored archive members). Decoded inputs are digested while they are decoded. All other digests are computed by
+	 * reading each physical input once after the actual scan and are available as soon as the scan has finished.
+	 * </p>
+	 *
+	 * @param result the {@linkplain FileScannerResult} instance to get the digests for.
+	 * @return the result's digests or {@code null} if no digests have been computed for the result.
+	 */
+	@Nullable
+	public static InputDigests digests(FileScannerResult result) {
+		return FileScannerResultDigester.digests(result);
+	}
+
+	static void setDigests(FileScannerResult result, InputDigests digests) {
+		result.setData(InputDigests.class, digests);
+	}
+
 	private static @Nullable FileScannerInput isInput(FileScannerResult result) throws IOException {
 		FileScannerInput input = result.input();
 
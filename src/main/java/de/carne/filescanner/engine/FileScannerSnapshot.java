@@ -0,0 +1,722 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.carne.filescanner.engine.format.CompositeSpec;
+import de.carne.filescanner.engine.format.EncodedInputSpec;
+import de.carne.filescanner.engine.format.FormatSpecDefinition;
+import de.carne.filescanner.engine.format.FormatSpecs;
+import de.carne.filescanner.engine.input.BufferedFileChannelInput;
+import de.carne.filescanner.engine.input.FileScannerInput;
+import de.carne.filescanner.engine.input.FileScannerInputRange;
+import de.carne.filescanner.engine.spi.Format;
+import de.carne.util.logging.Log;
+
+/**
+ * Binary snapshot of a scan result tree.
+ * <p>
+ * A snapshot contains the committed result tree of a scan (type, offsets, names, format spec identities and bound
+ * values) as well as the content of all decoded inputs. Format results referring to spec elements without identity
+ * (e.g. spec elements created during decoding) are recorded as a re-decode recipe (root format spec and decode
+ * position) and are re-decoded during restore. The snapshot is bound to the scanned file via the file's size and last
+ * modified time.
+ * </p>
+ * <p>
+ * A spec element's identity consists of its {@linkplain FormatSpecDefinition} (recorded once per snapshot via the
+ * format name, the definition class and the definition's fingerprint) and its index within this definition (see
+ * {@linkplain FormatSpecDefinition#definedSpecIndex(Object)}). During restore identities are resolved against the
+ * submitted formats. A snapshot referring to a definition which is not available or whose fingerprint has changed is
+ * rejected.
+ * </p>
+ */
+final class FileScannerSnapshot implements Closeable {
+
+	private static final Log LOG = new Log();
+
+	private static final long MAGIC = 0x46534e415053484fl;
+	private static final int VERSION = 2;
+
+	private static final byte RECORD_INPUT = 0;
+	private static final byte RECORD_FORMAT = 1;
+	private static final byte RECORD_ENCODED_INPUT = 2;
+	private static final byte RECORD_RECIPE = 3;
+
+	private static final int SPEC_WELL_KNOWN = -1;
+
+	private static final List<Object> WELL_KNOWN_SPECS = Arrays.asList(FileScannerResultContextValueSpecs.INPUT_NAME,
+			FileScannerResultContextValueSpecs.INPUT_SIZE, FileScannerResultContextValueSpecs.FORMAT_POSITION,
+			FileScannerResultContextValueSpecs.RESULT_POSITION, FileScannerResultContextValueSpecs.SEQUENCE_ELEMENT_INDEX,
+			FormatSpecs.EMPTY);
+
+	private static final int COPY_BUFFER_SIZE = 0x10000;
+
+	private final Path snapshotFile;
+	private final BufferedFileChannelInput snapshotInput;
+	private final PositionInputStream snapshotStream;
+	private final DataInputStream in;
+	private final Map<String, Format> formats = new HashMap<>();
+	private final List<FormatSpecDefinition> definitions = new ArrayList<>();
+	private final List<Recipe> recipes = new ArrayList<>();
+
+	private FileScannerSnapshot(Path snapshotFile, BufferedFileChannelInput snapshotInput,
+			PositionInputStream snapshotStream, Collection<Format> formats) {
+		this.snapshotFile = snapshotFile;
+		this.snapshotInput = snapshotInput;
+		this.snapshotStream = snapshotStream;
+		this.in = new DataInputStream(snapshotStream);
+		for (Format format : formats) {
+			this.formats.put(format.name(), format);
+		}
+	}
+
+	/**
+	 * Saves the committed result tree of a scan to a snapshot file.
+	 *
+	 * @param rootResult the root result of the scan to save.
+	 * @param file the scanned file.
+	 * @param snapshotFile the snapshot file to write.
+	 * @param formats the {@linkplain Format}s used for scanning.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	static void save(FileScannerResultBuilder rootResult, Path file, Path snapshotFile, Collection<Format> formats)
+			throws IOException {
+		LOG.info("Saving snapshot ''{0}''...", snapshotFile);
+
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(snapshotFile), COPY_BUFFER_SIZE))) {
+			out.writeLong(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(Files.size(file));
+			out.writeLong(Files.getLastModifiedTime(file).toMillis());
+
+			Writer writer = new Writer(out, formats);
+
+			writer.writeChildren(rootResult, rootResult.input());
+		}
+	}
+
+	/**
+	 * Opens and validates a snapshot file.
+	 *
+	 * @param snapshotFile the snapshot file to open.
+	 * @param file the scanned file the snapshot has been created for.
+	 * @param formats the {@linkplain Format}s to resolve the snapshot's spec identities against.
+	 * @return the opened snapshot.
+	 * @throws IOException if an I/O error occurs or if the snapshot does not match the submitted file.
+	 */
+	static FileScannerSnapshot open(Path snapshotFile, Path file, Collection<Format> formats) throws IOException {
+		LOG.info("Opening snapshot ''{0}''...", snapshotFile);
+
+		BufferedFileChannelInput snapshotInput = FileScannerInput.open(snapshotFile);
+		FileScannerSnapshot snapshot = null;
+
+		try {
+			snapshot = new FileScannerSnapshot(snapshotFile, snapshotInput,
+					new PositionInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile),
+							COPY_BUFFER_SIZE)),
+					formats);
+			snapshot.readHeader(file);
+		} catch (IOException | RuntimeException e) {
+			if (snapshot != null) {
+				snapshot.close();
+			} else {
+				snapshotInput.close();
+			}
+			throw e;
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Restores the snapshot's result tree.
+	 * <p>
+	 * The restored results are added to the submitted root result. Results which have to be re-decoded are not
+	 * restored, but are made available via {@linkplain #recipes()}.
+	 * </p>
+	 *
+	 * @param rootResult the root result to restore the snapshot into.
+	 * @throws IOException if an I/O error occurs or if the snapshot does not match the submitted formats.
+	 */
+	void restore(FileScannerResultBuilder rootResult) throws IOException {
+		try {
+			rootResult.restoreState(rootResult.name(), rootResult.end(), new HashMap<>(),
+					readChildren(rootResult, rootResult.input()));
+		} finally {
+			this.in.close();
+		}
+	}
+
+	/**
+	 * Gets the re-decode recipes collected during {@linkplain #restore(FileScannerResultBuilder)}.
+	 *
+	 * @return the re-decode recipes collected during {@linkplain #restore(FileScannerResultBuilder)}.
+	 */
+	List<Recipe> recipes() {
+		return this.recipes;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			this.in.close();
+		} finally {
+			this.snapshotInput.close();
+		}
+	}
+
+	private void readHeader(Path file) throws IOException {
+		long magic = this.in.readLong();
+		int version = this.in.readInt();
+
+		if (magic != MAGIC || version != VERSION) {
+			throw new IOException("Unsupported snapshot file: " + this.snapshotFile);
+		}
+
+		long fileSize = this.in.readLong();
+		long fileModified = this.in.readLong();
+
+		if (fileSize != Files.size(file) || fileModified != Files.getLastModifiedTime(file).toMillis()) {
+			throw new IOException("Snapshot file '" + this.snapshotFile + "' does not match file: " + file);
+		}
+	}
+
+	private List<FileScannerResultBuilder> readChildren(FileScannerResultBuilder parent, FileScannerInput input)
+			throws IOException {
+		int childrenCount = this.in.readInt();
+		List<FileScannerResultBuilder> children = new ArrayList<>(childrenCount);
+
+		for (int childIndex = 0; childIndex < childrenCount; childIndex++) {
+			byte recordType = this.in.readByte();
+
+			switch (recordType) {
+			case RECORD_INPUT:
+				children.add(readInputRecord(parent));
+				break;
+			case RECORD_FORMAT:
+			case RECORD_ENCODED_INPUT:
+				children.add(readResultRecord(recordType, parent, input));
+				break;
+			case RECORD_RECIPE:
+				this.recipes.add(new Recipe(parent, readInputRange(input), this.in.readLong(),
+						readSpec(CompositeSpec.class)));
+				break;
+			default:
+				throw new IOException("Unexpected snapshot record type: " + recordType);
+			}
+		}
+		return children;
+	}
+
+	private FileScannerResultBuilder readInputRecord(FileScannerResultBuilder parent) throws IOException {
+		String name = FileScannerResultValueCodec.readString(this.in);
+		long size = this.in.readLong();
+		long contentStart = this.snapshotStream.position();
+
+		this.snapshotStream.skipFully(size);
+
+		FileScannerResultBuilder result = FileScannerResultBuilder.inputResult(parent,
+				this.snapshotInput.section(name, contentStart, contentStart + size));
+
+		result.restoreState(name, size, new HashMap<>(), readChildren(result, result.input()));
+		return result;
+	}
+
+	private FileScannerResultBuilder readResultRecord(byte recordType, FileScannerResultBuilder parent,
+			FileScannerInput input) throws IOException {
+		FileScannerInputRange inputRange = readInputRange(input);
+		long start = this.in.readLong();
+		long end = this.in.readLong();
+		String name = FileScannerResultValueCodec.readString(this.in);
+		FileScannerResultBuilder result;
+
+		if (recordType == RECORD_FORMAT) {
+			CompositeSpec formatSpec = readSpec(CompositeSpec.class);
+			boolean relocated = this.in.readBoolean();
+
+			result = FileScannerResultBuilder.formatResult(parent, formatSpec, relocated, inputRange, start);
+			result.resolveExportHandlers(formatSpec.exportHandlers());
+		} else {
+			result = FileScannerResultBuilder.encodedInputResult(parent, readSpec(EncodedInputSpec.class), inputRange,
+					start, end);
+		}
+
+		int valueCount = this.in.readInt();
+		Map<Object, Object> values = new HashMap<>(valueCount);
+		ValueReader valueReader = new ValueReader(input);
+
+		for (int valueIndex = 0; valueIndex < valueCount; valueIndex++) {
+			Object valueKey = readSpec(Object.class);
+
+			values.put(valueKey, FileScannerResultValueCodec.readValue(valueReader));
+		}
+		result.restoreState(name, end, values, readChildren(result, input));
+		return result;
+	}
+
+	private FileScannerInputRange readInputRange(FileScannerInput input) throws IOException {
+		long start = this.in.readLong();
+		long end = this.in.readLong();
+
+		return input.range(start, end);
+	}
+
+	private <T> T readSpec(Class<T> specType) throws IOException {
+		int definitionRef = this.in.readInt();
+		int specIndex;
+		Object spec;
+
+		if (definitionRef == SPEC_WELL_KNOWN) {
+			specIndex = this.in.readInt();
+			spec = (0 <= specIndex && specIndex < WELL_KNOWN_SPECS.size() ? WELL_KNOWN_SPECS.get(specIndex) : null);
+		} else {
+			// The definition entry (if recorded inline) precedes the spec index
+			FormatSpecDefinition definition = readDefinition(definitionRef);
+
+			specIndex = this.in.readInt();
+			spec = definition.definedSpec(specIndex);
+		}
+		if (!specType.isInstance(spec)) {
+			throw new IOException("Unknown spec identity " + definitionRef + ":" + specIndex + " in snapshot file: "
+					+ this.snapshotFile);
+		}
+		return specType.cast(spec);
+	}
+
+	private FormatSpecDefinition readDefinition(int definitionRef) throws IOException {
+		FormatSpecDefinition definition;
+
+		if (0 <= definitionRef && definitionRef < this.definitions.size()) {
+			definition = this.definitions.get(definitionRef);
+		} else if (definitionRef == this.definitions.size()) {
+			// First reference to this definition; resolve it against the submitted formats
+			String formatName = FileScannerResultValueCodec.readString(this.in);
+			String definitionName = FileScannerResultValueCodec.readString(this.in);
+			byte[] fingerprint = new byte[this.in.readInt()];
+
+			this.in.readFully(fingerprint);
+
+			Format format = this.formats.get(formatName);
+
+			if (format == null) {
+				throw new IOException(
+						"Snapshot file '" + this.snapshotFile + "' requires unavailable format: " + formatName);
+			}
+			definition = format.specDefinitions().stream()
+					.filter(specDefinition -> specDefinition.getClass().getName().equals(definitionName)).findFirst()
+					.orElseThrow(() -> new IOException("Snapshot file '" + this.snapshotFile
+							+ "' requires unavailable format spec definition: " + definitionName));
+			if (!Arrays.equals(fingerprint, definition.fingerprint())) {
+				throw new IOException("Snapshot file '" + this.snapshotFile
+						+ "' does not match format spec definition: " + definitionName);
+			}
+			this.definitions.add(definition);
+		} else {
+			throw new IOException("Invalid spec definition reference " + definitionRef + " in snapshot file: "
+					+ this.snapshotFile);
+		}
+		return definition;
+	}
+
+	private final class ValueReader extends DataInputStream implements FileScannerResultValueCodec.ValueInput {
+
+		private final FileScannerInput input;
+
+		ValueReader(FileScannerInput input) {
+			super(FileScannerSnapshot.this.snapshotStream);
+			this.input = input;
+		}
+
+		@Override
+		public FileScannerInputRange readInputRange() throws IOException {
+			return FileScannerSnapshot.this.readInputRange(this.input);
+		}
+
+		@Override
+		public Object readObject() throws IOException {
+			return readSpec(Object.class);
+		}
+
+	}
+
+	private static final class Writer {
+
+		private final DataOutputStream out;
+		private final Map<Object, DefinedSpec> definedSpecs = new IdentityHashMap<>();
+		private final Map<FormatSpecDefinition, Integer> definitionRefs = new IdentityHashMap<>();
+
+		Writer(DataOutputStream out, Collection<Format> formats) {
+			this.out = out;
+			for (Format format : formats) {
+				// Inactive formats have not created any results
+				if (format.isActive()) {
+					for (FormatSpecDefinition definition : format.specDefinitions()) {
+						Object spec;
+
+						for (int specIndex = 0; (spec = definition.definedSpec(specIndex)) != null; specIndex++) {
+							this.definedSpecs.put(spec, new DefinedSpec(format, definition, specIndex));
+						}
+					}
+				}
+			}
+		}
+
+		void writeChildren(FileScannerResultBuilder result, FileScannerInput input) throws IOException {
+			List<FileScannerResultBuilder> children = result.committedChildren();
+
+			this.out.writeInt(children.size());
+			for (FileScannerResultBuilder child : children) {
+				if (child.type() == FileScannerResult.Type.INPUT) {
+					writeInputRecord(child);
+				} else if (result.type() == FileScannerResult.Type.INPUT && !isRestorable(child, input)) {
+					writeRecipeRecord(child, input);
+				} else {
+					writeResultRecord(child, input);
+				}
+			}
+		}
+
+		private void writeInputRecord(FileScannerResultBuilder result) throws IOException {
+			FileScannerInput input = result.input();
+			long size = input.size();
+
+			this.out.writeByte(RECORD_INPUT);
+			FileScannerResultValueCodec.writeString(this.out, input.name());
+			this.out.writeLong(size);
+
+			ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+			long position = 0;
+
+			while (position < size) {
+				buffer.clear();
+
+				int read = input.read(buffer, position);
+
+				if (read < 0) {
+					throw new EOFException("Unexpected end of input: " + input);
+				}
+				this.out.write(buffer.array(), 0, read);
+				position += read;
+			}
+			writeChildren(result, input);
+		}
+
+		private void writeRecipeRecord(FileScannerResultBuilder result, FileScannerInput input) throws IOException {
+			CompositeSpec resultSpec = resultSpec(result);
+
+			if (!isIdentified(resultSpec)) {
+				throw new IOException("Cannot snapshot result: " + result);
+			}
+
+			LOG.info("Recording re-decode recipe for result ''{0}''", result);
+
+			this.out.writeByte(RECORD_RECIPE);
+			writeInputRange(this.out, result.input(), input);
+			this.out.writeLong(result.start());
+			writeSpec(resultSpec);
+		}
+
+		private void writeResultRecord(FileScannerResultBuilder result, FileScannerInput input) throws IOException {
+			boolean formatResult = result.type() == FileScannerResult.Type.FORMAT;
+
+			this.out.writeByte(formatResult ? RECORD_FORMAT : RECORD_ENCODED_INPUT);
+			writeInputRange(this.out, result.input(), input);
+			this.out.writeLong(result.start());
+			this.out.writeLong(result.end());
+			FileScannerResultValueCodec.writeString(this.out, result.name());
+			writeSpec(resultSpec(result));
+			if (formatResult) {
+				this.out.writeBoolean(result.isRelocated());
+			}
+
+			Map<Object, Object> values = result.committedValues();
+			ValueWriter valueWriter = new ValueWriter(input);
+
+			this.out.writeInt(values.size());
+			for (Map.Entry<Object, Object> value : values.entrySet()) {
+				writeSpec(value.getKey());
+				FileScannerResultValueCodec.writeValue(valueWriter, value.getValue());
+			}
+			writeChildren(result, input);
+		}
+
+		private boolean isRestorable(FileScannerResultBuilder result, FileScannerInput input) {
+			boolean restorable = isIdentified(resultSpec(result)) && isInputRange(result.input(), input);
+
+			if (restorable) {
+				for (Map.Entry<Object, Object> value : result.committedValues().entrySet()) {
+					if (!isIdentified(value.getKey()) || !isValue(value.getValue(), input)) {
+						restorable = false;
+						break;
+					}
+				}
+			}
+			if (restorable) {
+				for (FileScannerResultBuilder child : result.committedChildren()) {
+					if (child.type() != FileScannerResult.Type.INPUT && !isRestorable(child, input)) {
+						restorable = false;
+						break;
+					}
+				}
+			}
+			return restorable;
+		}
+
+		private boolean isValue(Object value, FileScannerInput input) {
+			boolean isValue;
+
+			if (value instanceof StreamValue) {
+				isValue = isInputRange(((StreamValue) value).inputRange(), input);
+			} else if (value instanceof Byte || value instanceof Short || value instanceof Integer
+					|| value instanceof Long || value instanceof String || value instanceof byte[]
+					|| value instanceof short[] || value instanceof int[] || value instanceof long[]) {
+				isValue = true;
+			} else {
+				isValue = isIdentified(value);
+			}
+			return isValue;
+		}
+
+		private boolean isIdentified(Object spec) {
+			return wellKnownIndex(spec) >= 0 || this.definedSpecs.containsKey(spec);
+		}
+
+		private void writeSpec(Object spec) throws IOException {
+			int wellKnownIndex = wellKnownIndex(spec);
+
+			if (wellKnownIndex >= 0) {
+				this.out.writeInt(SPEC_WELL_KNOWN);
+				this.out.writeInt(wellKnownIndex);
+			} else {
+				DefinedSpec definedSpec = this.definedSpecs.get(spec);
+
+				if (definedSpec == null) {
+					throw new IOException("Cannot snapshot unidentified spec: " + spec);
+				}
+
+				Integer definitionRef = this.definitionRefs.get(definedSpec.definition);
+
+				if (definitionRef == null) {
+					// First reference to this definition; record it inline
+					definitionRef = this.definitionRefs.size();
+					this.definitionRefs.put(definedSpec.definition, definitionRef);
+					this.out.writeInt(definitionRef.intValue());
+					FileScannerResultValueCodec.writeString(this.out, definedSpec.format.name());
+					FileScannerResultValueCodec.writeString(this.out, definedSpec.definition.getClass().getName());
+
+					byte[] fingerprint = definedSpec.definition.fingerprint();
+
+					this.out.writeInt(fingerprint.length);
+					this.out.write(fingerprint);
+				} else {
+					this.out.writeInt(definitionRef.intValue());
+				}
+				this.out.writeInt(definedSpec.index);
+			}
+		}
+
+		private static int wellKnownIndex(Object spec) {
+			int wellKnownIndex = WELL_KNOWN_SPECS.size() - 1;
+
+			while (wellKnownIndex >= 0 && WELL_KNOWN_SPECS.get(wellKnownIndex) != spec) {
+				wellKnownIndex--;
+			}
+			return wellKnownIndex;
+		}
+
+		private final class ValueWriter extends DataOutputStream implements FileScannerResultValueCodec.ValueOutput {
+
+			private final FileScannerInput input;
+
+			ValueWriter(FileScannerInput input) {
+				super(Writer.this.out);
+				this.input = input;
+			}
+
+			@Override
+			public void writeInputRange(FileScannerInput inputRange) throws IOException {
+				FileScannerSnapshot.writeInputRange(this, inputRange, this.input);
+			}
+
+			@Override
+			public void writeObject(Object object) throws IOException {
+				writeSpec(object);
+			}
+
+		}
+
+	}
+
+	private static final class DefinedSpec {
+
+		final Format format;
+		final FormatSpecDefinition definition;
+		final int index;
+
+		DefinedSpec(Format format, FormatSpecDefinition definition, int index) {
+			this.format = format;
+			this.definition = definition;
+			this.index = index;
+		}
+
+	}
+
+	private static boolean isInputRange(FileScannerInput range, FileScannerInput input) {
+		return range == input
+				|| (range instanceof FileScannerInputRange && ((FileScannerInputRange) range).input() == input);
+	}
+
+	private static CompositeSpec resultSpec(FileScannerResultBuilder result) {
+		CompositeSpec resultSpec = result.resultSpec();
+
+		if (resultSpec == null) {
+			throw new IllegalArgumentException("Result has no spec: " + result);
+		}
+		return resultSpec;
+	}
+
+	private static void writeInputRange(DataOutput out, FileScannerInput range, FileScannerInput input)
+			throws IOException {
+		FileScannerInputRange inputRange = (FileScannerInputRange) range;
+
+		if (!isInputRange(inputRange, input)) {
+			throw new IOException("Cannot snapshot input range: " + inputRange);
+		}
+		out.writeLong(inputRange.start());
+		out.writeLong(inputRange.end());
+	}
+
+	/**
+	 * Re-decode recipe for a result which cannot be restored directly.
+	 */
+	static final class Recipe {
+
+		private final FileScannerResultBuilder parent;
+		private final FileScannerInputRange inputRange;
+		private final long position;
+		private final CompositeSpec formatSpec;
+
+		Recipe(FileScannerResultBuilder parent, FileScannerInputRange inputRange, long position,
+				CompositeSpec formatSpec) {
+			this.parent = parent;
+			this.inputRange = inputRange;
+			this.position = position;
+			this.formatSpec = formatSpec;
+		}
+
+		FileScannerResultBuilder parent() {
+			return this.parent;
+		}
+
+		FileScannerInputRange inputRange() {
+			return this.inputRange;
+		}
+
+		long position() {
+			return this.position;
+		}
+
+		CompositeSpec formatSpec() {
+			return this.formatSpec;
+		}
+
+	}
+
+	private static final class PositionInputStream extends FilterInputStream {
+
+		private long position = 0;
+
+		PositionInputStream(InputStream in) {
+			super(in);
+		}
+
+		public long position() {
+			return this.position;
+		}
+
+		public void skipFully(long n) throws IOException {
+			long remaining = n;
+
+			while (remaining > 0) {
+				long skipped = skip(remaining);
+
+				if (skipped <= 0) {
+					if (read() < 0) {
+						throw new EOFException();
+					}
+					skipped = 1;
+				}
+				remaining -= skipped;
+			}
+		}
+
+		@Override
+		public int read() throws IOException {
+			int read = super.read();
+
+			if (read >= 0) {
+				this.position++;
+			}
+			return read;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+
+			if (read > 0) {
+				this.position += read;
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+
+			this.position += skipped;
+			return skipped;
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+	}
+
+}
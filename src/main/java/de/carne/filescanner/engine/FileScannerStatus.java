@@ -16,6 +16,8 @@
  */
 package de.carne.filescanner.engine;
 
+import java.util.List;
+
 /**
  * Callback interface receiving {@linkplain FileScanner} status information during a scan operation.
  */
@@ -53,6 +55,37 @@ public interface FileScannerStatus {
 	 */
 	void scanResult(FileScanner scanner, FileScannerResult result);
 
+	/**
+	 * Called whenever a batch of new scan results is available.
+	 * <p>
+	 * Unless synchronous reporting has been requested (see {@linkplain #isSynchronousScanResults()}) scan results are
+	 * queued, repeated updates of the same result are coalesced and the queued results are reported in batches via a
+	 * dedicated dispatcher thread. The default implementation calls {@linkplain #scanResult(FileScanner,
+	 * FileScannerResult)} for each result in the batch.
+	 * </p>
+	 *
+	 * @param scanner the calling {@linkplain FileScanner}.
+	 * @param results the new or updated scan results.
+	 */
+	default void scanResults(FileScanner scanner, List<FileScannerResult> results) {
+		for (FileScannerResult result : results) {
+			scanResult(scanner, result);
+		}
+	}
+
+	/**
+	 * Determines whether scan results are reported synchronously.
+	 * <p>
+	 * If this function returns {@code true}, each result commit is reported immediately via
+	 * {@linkplain #scanResult(FileScanner, FileScannerResult)} on the scanning thread.
+	 * </p>
+	 *
+	 * @return {@code true} if scan results are reported synchronously.
+	 */
+	default boolean isSynchronousScanResults() {
+		return false;
+	}
+
 	/**
 	 * Called whenever an exception occurs.
 	 *
@@ -46,20 +46,33 @@ final class FormatMatcherBuilder {
 		int matchBufferSize = 0;
 
 		for (Format format : this.formats) {
-			for (CompositeSpec headerSpec : format.headerSpecs()) {
-				matchBufferSize = Math.max(matchBufferSize, headerSpec.matchSize());
+			if (!format.isActive() && format.hasHeaderMagics()) {
+				// Inactive formats are matched via their header magics until they are activated
+				for (byte[] headerMagic : format.headerMagics()) {
+					matchBufferSize = Math.max(matchBufferSize, headerMagic.length);
+				}
+			} else {
+				matchBufferSize = Math.max(matchBufferSize, headerMatchSize(format));
 			}
 		}
 		return matchBufferSize;
 	}
 
+	private static int headerMatchSize(Format format) {
+		int matchSize = 0;
+
+		for (CompositeSpec headerSpec : format.headerSpecs()) {
+			matchSize = Math.max(matchSize, headerSpec.matchSize());
+		}
+		return matchSize;
+	}
+
 	private int matchTrailerBufferSize() {
 		int matchBufferSize = 0;
 
 		for (Format format : this.formats) {
-			for (CompositeSpec trailerSpec : format.trailerSpecs()) {
-				matchBufferSize = Math.max(matchBufferSize, trailerSpec.matchSize());
-			}
+			// Use the registered match size to keep inactive formats inactive
+			matchBufferSize = Math.max(matchBufferSize, format.trailerMatchSize());
 		}
 		return matchBufferSize;
 	}
@@ -71,7 +84,7 @@ final class FormatMatcherBuilder {
 	public final class Matcher {
 
 		private final Format[] matcherFormats;
-		private final ByteBuffer matchHeaderBuffer;
+		private ByteBuffer matchHeaderBuffer;
 		private final ByteBuffer matchTrailerBuffer;
 
 		public Matcher(Format[] matcherFormats, int matchHeaderBufferSize, int matchTrailerBufferSize) {
@@ -99,7 +112,13 @@ final class FormatMatcherBuilder {
 
 			for (Format format : this.matcherFormats) {
 				if (scanPosition == 0 || !format.isAbsolute()) {
-					if (format.hasHeaderSpecs()) {
+					if (format.hasHeaderMagics()) {
+						if (matchHeaderMagics(format, this.matchHeaderBuffer)
+								&& matchHeaderSpecs(format, activateHeaderBuffer(format, inputRange, scanPosition))) {
+							matchingFormats.add(trailerMatches + headerMatches, format);
+							headerMatches++;
+						}
+					} else if (format.hasHeaderSpecs()) {
 						if (matchHeaderSpecs(format, this.matchHeaderBuffer)) {
 							matchingFormats.add(trailerMatches + headerMatches, format);
 							headerMatches++;
@@ -122,6 +141,39 @@ final class FormatMatcherBuilder {
 			return matchingFormats;
 		}
 
+		private ByteBuffer activateHeaderBuffer(Format format, FileScannerInputRange inputRange, long scanPosition)
+				throws IOException {
+			format.activate();
+
+			int headerMatchSize = headerMatchSize(format);
+
+			if (this.matchHeaderBuffer.capacity() < headerMatchSize) {
+				this.matchHeaderBuffer = ByteBuffer.allocate(headerMatchSize);
+				inputRange.read(this.matchHeaderBuffer, scanPosition);
+				this.matchHeaderBuffer.flip();
+			}
+			return this.matchHeaderBuffer;
+		}
+
+		private boolean matchHeaderMagics(Format format, ByteBuffer matchBuffer) {
+			boolean match = false;
+
+			for (byte[] headerMagic : format.headerMagics()) {
+				if (headerMagic.length <= matchBuffer.limit()) {
+					int magicIndex = 0;
+
+					while (magicIndex < headerMagic.length && headerMagic[magicIndex] == matchBuffer.get(magicIndex)) {
+						magicIndex++;
+					}
+					if (magicIndex == headerMagic.length) {
+						match = true;
+						break;
+					}
+				}
+			}
+			return match;
+		}
+
 		private boolean matchHeaderSpecs(Format format, ByteBuffer matchBuffer) {
 			boolean match = false;
 
@@ -19,10 +19,14 @@ package de.carne.filescanner.engine;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import de.carne.filescanner.engine.spi.Format;
+import de.carne.util.logging.Log;
 
 /**
  * Helper class used to access the available {@linkplain Format} provider and configure the active ones for a scan.
@@ -33,11 +37,15 @@ public final class Formats implements Iterable<Format> {
 	private final Set<String> disabledFormats = new HashSet<>();
 
 	private Formats() {
-		Format.providers().forEach(this.allFormats::add);
+		this.allFormats.addAll(Providers.FORMATS);
 	}
 
 	/**
 	 * Gets a {@linkplain Formats} instance with all {@linkplain Format}s enabled.
+	 * <p>
+	 * The available {@linkplain Format} providers are loaded once per process and shared by all {@linkplain Formats}
+	 * instances.
+	 * </p>
 	 *
 	 * @return a {@linkplain Formats} instance with all {@linkplain Format}s enabled.
 	 */
@@ -102,4 +110,35 @@ public final class Formats implements Iterable<Format> {
 		return Collections.unmodifiableSet(this.allFormats).iterator();
 	}
 
+	/**
+	 * Process wide registry of the available {@linkplain Format} providers.
+	 * <p>
+	 * The providers are instantiated only once during the first access. Instantiation is done sequentially by the
+	 * accessing thread, so the providers are loaded via this thread's context class loader. Formats registering
+	 * header magics defer loading their format specs until they are activated (see {@linkplain Format#activate()}).
+	 * </p>
+	 */
+	private static final class Providers {
+
+		private static final Log LOG = new Log();
+
+		static final List<Format> FORMATS = loadProviders();
+
+		private Providers() {
+			// Prevent instantiation
+		}
+
+		private static List<Format> loadProviders() {
+			long loadStartNanos = System.nanoTime();
+			List<Format> formats = ServiceLoader.load(Format.class).stream().map(ServiceLoader.Provider::get)
+					.collect(Collectors.toUnmodifiableList());
+
+			LOG.info("Loaded {0} format providers in {1} ms", formats.size(),
+					TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loadStartNanos));
+
+			return formats;
+		}
+
+	}
+
 }
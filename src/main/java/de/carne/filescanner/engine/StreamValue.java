@@ -36,6 +36,18 @@ public class StreamValue {
 		this.end = end;
 	}
 
+	FileScannerInputRange inputRange() {
+		return this.inputRange;
+	}
+
+	long start() {
+		return this.start;
+	}
+
+	long end() {
+		return this.end;
+	}
+
 	/**
 	 * Gets the size of the byte range representing this value.
 	 *
@@ -18,6 +18,8 @@ package de.carne.filescanner.engine;
 
 import java.nio.ByteBuffer;
 
+import org.eclipse.jdt.annotation.Nullable;
+
 /**
  * Functional interface for streamed value processing.
  */
@@ -37,4 +39,21 @@ public interface ValueStreamer {
 	 */
 	ValueStreamerStatus stream(ByteBuffer buffer);
 
+	/**
+	 * Gets the prefix of the terminator pattern this streamer is looking for.
+	 * <p>
+	 * If a streamer declares a terminator prefix, the value is scanned in bulk mode. The engine searches the input for
+	 * the prefix itself and consumes all bytes in front of a prefix occurrence without passing them to the streamer.
+	 * {@linkplain #stream(ByteBuffer)} is only invoked for the candidate positions (with the buffer positioned at the
+	 * prefix and limited to the scan step size). A streamer declaring a terminator prefix must therefore not depend on
+	 * the bytes in front of the terminator. If the streamer neither completes nor fails at a candidate position, the
+	 * scan continues behind the candidate. The prefix must not exceed the scan step size.
+	 * </p>
+	 *
+	 * @return the terminator prefix or {@code null} if this streamer does not support bulk scanning.
+	 */
+	default byte @Nullable [] terminatorPrefix() {
+		return null;
+	}
+
 }
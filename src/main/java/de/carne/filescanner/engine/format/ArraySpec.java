@@ -151,23 +151,68 @@ public class ArraySpec extends CompositeSpec {
 			super.renderComposite(out, context);
 		} else {
 			int elementCount = this.size.get().intValue();
+			RenderOutput windowOut = context.claimElementWindow(elementCount);
 
-			for (int elementIndex = 0; elementIndex < elementCount; elementIndex++) {
-				String arrayLabel = formatArrayLabel(elementIndex);
-
-				for (AttributeSpec<?> element : this.elements) {
-					out.setStyle(RenderStyle.LABEL);
-					out.write(arrayLabel);
-					element.render(out, context);
+			if (windowOut == null) {
+				for (int elementIndex = 0; elementIndex < elementCount; elementIndex++) {
+					renderElement(out, context, elementIndex);
 				}
+			} else {
+				renderElementWindow(out, windowOut, context, elementCount);
+			}
+		}
+	}
+
+	private void renderElementWindow(RenderOutput out, RenderOutput windowOut, FileScannerResultRenderContext context,
+			int elementCount) throws IOException {
+		long windowStart = context.elementWindowStart();
+		long windowEnd = context.elementWindowEnd();
+		long elementSize = fixedElementSize();
+
+		if (elementSize >= 0) {
+			long arrayStart = context.position();
+
+			for (long elementIndex = windowStart; elementIndex < windowEnd; elementIndex++) {
+				context.skip(arrayStart + elementIndex * elementSize - context.position());
+				renderElement(windowOut, context, elementIndex);
+			}
+			context.skip(arrayStart + elementCount * elementSize - context.position());
+		} else {
+			for (long elementIndex = 0; elementIndex < elementCount; elementIndex++) {
+				renderElement(windowStart <= elementIndex && elementIndex < windowEnd ? windowOut : out, context,
+						elementIndex);
 			}
 		}
 	}
 
-	private String formatArrayLabel(int elementIndex) {
+	private long fixedElementSize() {
+		long elementSize = 0;
+
+		for (AttributeSpec<?> element : this.elements) {
+			if (elementSize >= 0 && element.isFixedSize()) {
+				elementSize += element.matchSize();
+			} else {
+				elementSize = -1;
+			}
+		}
+		return elementSize;
+	}
+
+	private void renderElement(RenderOutput out, FileScannerResultRenderContext context, long elementIndex)
+			throws IOException {
+		String arrayLabel = formatArrayLabel(elementIndex);
+
+		for (AttributeSpec<?> element : this.elements) {
+			out.setStyle(RenderStyle.LABEL);
+			out.write(arrayLabel);
+			element.render(out, context);
+		}
+	}
+
+	private String formatArrayLabel(long elementIndex) {
 		StringBuilder buffer = new StringBuilder();
 
-		buffer.append('[').append(PrettyFormat.formatIntNumber(elementIndex)).append("]: ");
+		buffer.append('[').append(PrettyFormat.formatLongNumber(elementIndex)).append("]: ");
 		return buffer.toString();
 	}
 
@@ -18,10 +18,12 @@ package de.carne.filescanner.engine.format;
 
 import java.io.IOException;
 import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.BiFunction;
 import java.util.function.BiPredicate;
 import java.util.function.Supplier;
 
@@ -30,12 +32,15 @@ import org.eclipse.jdt.annotation.Nullable;
 
 import de.carne.filescanner.engine.FileScannerResultContextValueSpec;
 import de.carne.filescanner.engine.FileScannerResultDecodeContext;
+import de.carne.filescanner.engine.FileScannerResultElementOffsets;
 import de.carne.filescanner.engine.FileScannerResultInputContext;
 import de.carne.filescanner.engine.FileScannerResultRenderContext;
 import de.carne.filescanner.engine.UnexpectedDataException;
 import de.carne.filescanner.engine.transfer.RenderOutput;
 import de.carne.filescanner.engine.transfer.RenderStyle;
 import de.carne.filescanner.engine.util.FinalSupplier;
+import de.carne.filescanner.engine.util.PrettyFormat;
+import de.carne.util.Check;
 import de.carne.util.Strings;
 
 /**
@@ -45,6 +50,8 @@ import de.carne.util.Strings;
  */
 public abstract class AttributeSpec<T> extends FileScannerResultContextValueSpec<T> implements FormatSpec {
 
+	private static final int ELEMENT_WINDOW_LINE_SIZE = 16;
+
 	private final BiPredicate<T, T> typeEquals;
 	private AttributeFormatter<T> format = Object::toString;
 	private final List<AttributeValidator<T>> validators = new ArrayList<>();
@@ -233,6 +240,14 @@ public abstract class AttributeSpec<T> extends FileScannerResultContextValueSpec
 		return this.validators.stream().allMatch(validator -> validator.validate(value));
 	}
 
+	final boolean hasValidators() {
+		return !this.validators.isEmpty();
+	}
+
+	final AttributeBindMode bindMode() {
+		return this.bindMode;
+	}
+
 	@Override
 	public void decode(FileScannerResultDecodeContext context) throws IOException {
 		long decodeStart = context.position();
@@ -241,6 +256,11 @@ public abstract class AttributeSpec<T> extends FileScannerResultContextValueSpec
 		if (!validateValue(value)) {
 			throw new UnexpectedDataException("Unexpected " + this, decodeStart, value);
 		}
+		bindValue(context, value);
+		context.captureValue(this, decodeStart, context.position(), value);
+	}
+
+	void bindValue(FileScannerResultDecodeContext context, @NonNull T value) {
 		switch (this.bindMode) {
 		case NONE:
 			break;
@@ -253,9 +273,78 @@ public abstract class AttributeSpec<T> extends FileScannerResultContextValueSpec
 		}
 	}
 
+	/**
+	 * Gets the attribute value to render.
+	 * <p>
+	 * The value captured during decoding is used if available. Otherwise the value is re-decoded (see
+	 * {@linkplain #redecodeValue(FileScannerResultRenderContext)}).
+	 * </p>
+	 *
+	 * @param context the {@linkplain FileScannerResultRenderContext} to get the value from.
+	 * @return the attribute value to render.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	@NonNull
+	T renderValue(FileScannerResultRenderContext context) throws IOException {
+		Object capturedValue = context.capturedValue(this);
+
+		return (capturedValue != null ? Check.isInstanceOf(capturedValue, type()) : redecodeValue(context));
+	}
+
+	/**
+	 * Renders the element window (see {@linkplain FileScannerResultRenderContext#claimElementWindow(long)}) of an
+	 * array attribute.
+	 * <p>
+	 * The window is only claimed by arrays of more than {@linkplain FileScannerResultElementOffsets#STRIDE} elements
+	 * (hence small arrays like format magics do not take the window from a following sequence). Bound arrays as well
+	 * as arrays with renderers or links are always rendered as a whole. The window elements are read directly from
+	 * the input and rendered in lines of up to {@value #ELEMENT_WINDOW_LINE_SIZE} elements.
+	 * </p>
+	 *
+	 * @param context the {@linkplain FileScannerResultRenderContext} to render from.
+	 * @param elementCount the total number of array elements.
+	 * @param elementSize the size of a single array element.
+	 * @param decoder the function for decoding a range of array elements (of the given size) into an array value.
+	 * @return {@code true} if the element window has been claimed and rendered.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	final boolean renderElementWindow(FileScannerResultRenderContext context, int elementCount, int elementSize,
+			BiFunction<ByteBuffer, Integer, T> decoder) throws IOException {
+		RenderOutput windowOut = null;
+
+		if (elementCount > FileScannerResultElementOffsets.STRIDE && this.bindMode == AttributeBindMode.NONE
+				&& this.renderers.isEmpty() && this.link == null) {
+			windowOut = context.claimElementWindow(elementCount);
+		}
+		if (windowOut != null) {
+			long arrayStart = context.position();
+			long windowEnd = context.elementWindowEnd();
+			String name = name();
+
+			for (long lineStart = context.elementWindowStart(); lineStart < windowEnd;) {
+				int lineSize = (int) Math.min(ELEMENT_WINDOW_LINE_SIZE, windowEnd - lineStart) * elementSize;
+
+				context.skip(arrayStart + lineStart * elementSize - context.position());
+
+				T lineValue = context.readValue(lineSize, buffer -> decoder.apply(buffer, lineSize));
+
+				windowOut.setStyle(RenderStyle.LABEL).write("[" + PrettyFormat.formatLongNumber(lineStart) + "]: ");
+				if (Strings.notEmpty(name)) {
+					windowOut.setStyle(RenderStyle.NORMAL).write(name);
+					windowOut.setStyle(RenderStyle.OPERATOR).write(" = ");
+				}
+				windowOut.setStyle(RenderStyle.VALUE).write(this.format.format(lineValue));
+				windowOut.writeln();
+				lineStart += ELEMENT_WINDOW_LINE_SIZE;
+			}
+			context.skip(arrayStart + (long) elementCount * elementSize - context.position());
+		}
+		return windowOut != null;
+	}
+
 	@Override
 	public void render(RenderOutput out, FileScannerResultRenderContext context) throws IOException {
-		T value = redecodeValue(context);
+		T value = renderValue(context);
 
 		switch (this.bindMode) {
 		case NONE:
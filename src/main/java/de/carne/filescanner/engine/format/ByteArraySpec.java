@@ -22,6 +22,8 @@ import java.util.Arrays;
 import java.util.function.Supplier;
 
 import de.carne.filescanner.engine.FileScannerResultInputContext;
+import de.carne.filescanner.engine.FileScannerResultRenderContext;
+import de.carne.filescanner.engine.transfer.RenderOutput;
 import de.carne.filescanner.engine.util.FinalSupplier;
 import de.carne.filescanner.engine.util.HexFormat;
 
@@ -95,10 +97,23 @@ public class ByteArraySpec extends AttributeSpec<byte[]> {
 		return context.readValue(this.size.get().intValue(), this::decodeValue);
 	}
 
+	@Override
+	public void render(RenderOutput out, FileScannerResultRenderContext context) throws IOException {
+		int arraySize = this.size.get().intValue();
+
+		if (!renderElementWindow(context, arraySize / Byte.BYTES, Byte.BYTES, this::decodeValue)) {
+			super.render(out, context);
+		}
+	}
+
 	private byte[] decodeValue(ByteBuffer buffer) {
+		return decodeValue(buffer, this.size.get().intValue());
+	}
+
+	private byte[] decodeValue(ByteBuffer buffer, int decodeSize) {
 		ByteBuffer slice = buffer.slice();
 
-		slice.limit(this.size.get().intValue());
+		slice.limit(decodeSize);
 
 		byte[] value = new byte[slice.remaining()];
 		int valueIndex = 0;
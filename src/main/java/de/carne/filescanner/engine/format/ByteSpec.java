@@ -52,8 +52,13 @@ public final class ByteSpec extends NumberAttributeSpec<Byte> {
 	}
 
 	@Override
-	protected Byte decodeValue(ByteBuffer buffer) {
+	protected long decodeNumber(ByteBuffer buffer) {
 		return buffer.get();
 	}
 
+	@Override
+	protected Byte valueOf(long number) {
+		return Byte.valueOf((byte) number);
+	}
+
 }
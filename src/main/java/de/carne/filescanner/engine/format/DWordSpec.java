@@ -52,8 +52,13 @@ public final class DWordSpec extends NumberAttributeSpec<Integer> {
 	}
 
 	@Override
-	protected Integer decodeValue(ByteBuffer buffer) {
+	protected long decodeNumber(ByteBuffer buffer) {
 		return buffer.getInt();
 	}
 
+	@Override
+	protected Integer valueOf(long number) {
+		return Integer.valueOf((int) number);
+	}
+
 }
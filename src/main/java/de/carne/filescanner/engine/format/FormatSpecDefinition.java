@@ -16,6 +16,7 @@
  */
 package de.carne.filescanner.engine.format;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
@@ -23,9 +24,12 @@ import java.lang.reflect.Method;
 import java.net.URL;
 import java.nio.ByteOrder;
 import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -139,7 +143,6 @@ import de.carne.filescanner.engine.util.LongHelper;
 import de.carne.filescanner.engine.util.PrettyFormat;
 import de.carne.filescanner.engine.util.ShortHelper;
 import de.carne.filescanner.engine.util.SizeRenderer;
-import de.carne.filescanner.engine.util.StringHelper;
 import de.carne.util.Exceptions;
 import de.carne.util.Lazy;
 import de.carne.util.Strings;
@@ -155,6 +158,8 @@ public abstract class FormatSpecDefinition {
 	private static final String LOG_LOADED_SPEC = "Loaded spec: {0}";
 	private static final String LOG_ASSIGNED_SPEC = "Assigned spec {0}: {1}";
 
+	private static final String FINGERPRINT_ALGORITHM = "SHA-256";
+
 	// Store symbol map keys for validation definitions
 	private final Map<String, Set<Byte>> byteSymbolsMap = new HashMap<>();
 	private final Map<String, Set<Short>> wordSymbolsMap = new HashMap<>();
@@ -187,6 +192,10 @@ public abstract class FormatSpecDefinition {
 
 	private final List<Runnable> lateBindings = new LinkedList<>();
 
+	private final List<Object> definedSpecs = new ArrayList<>();
+	private final Map<Object, Integer> definedSpecIndices = new IdentityHashMap<>();
+	private byte[] fingerprint = new byte[0];
+
 	/**
 	 * Constructs a new {@linkplain FormatSpecDefinition} instance.
 	 */
@@ -566,9 +575,15 @@ public abstract class FormatSpecDefinition {
 	public void load() {
 		URL formatSpecResourceUrl = getFormatSpecResource();
 
+		this.definedSpecs.clear();
+		this.definedSpecIndices.clear();
 		try (InputStream resourceStream = formatSpecResourceUrl.openStream()) {
+			byte[] formatSpecResource = resourceStream.readAllBytes();
+
+			this.fingerprint = fingerprint(formatSpecResource);
+
 			ErrorListener errorListener = new ErrorListener(formatSpecResourceUrl);
-			CharStream input = CharStreams.fromStream(resourceStream);
+			CharStream input = CharStreams.fromStream(new ByteArrayInputStream(formatSpecResource));
 			FormatSpecGrammarLexer lexer = new FormatSpecGrammarLexer(input);
 
 			lexer.removeErrorListeners();
@@ -593,6 +608,61 @@ public abstract class FormatSpecDefinition {
 		afterLoad();
 	}
 
+	private static byte[] fingerprint(byte[] formatSpecResource) {
+		try {
+			return MessageDigest.getInstance(FINGERPRINT_ALGORITHM).digest(formatSpecResource);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Gets the fingerprint of the loaded format spec resource (see {@linkplain #getFormatSpecResource()}).
+	 * <p>
+	 * As loading is deterministic, two loaded {@linkplain FormatSpecDefinition} instances of the same class and with
+	 * the same fingerprint define equivalent spec elements in the same order (see {@linkplain #definedSpec(int)}).
+	 * </p>
+	 *
+	 * @return the fingerprint of the loaded format spec resource (empty if the definition has not yet been loaded).
+	 */
+	public byte[] fingerprint() {
+		return this.fingerprint.clone();
+	}
+
+	/**
+	 * Gets a spec element defined during {@linkplain #load()}.
+	 *
+	 * @param index the index of the spec element to get.
+	 * @return the spec element or {@code null} if the index is invalid.
+	 * @see #definedSpecIndex(Object)
+	 */
+	@Nullable
+	public Object definedSpec(int index) {
+		return (0 <= index && index < this.definedSpecs.size() ? this.definedSpecs.get(index) : null);
+	}
+
+	/**
+	 * Gets the index of a spec element defined during {@linkplain #load()}.
+	 * <p>
+	 * Spec elements are indexed in creation order. Spec elements created outside of {@linkplain #load()} (e.g. during
+	 * decoding) are not indexed.
+	 * </p>
+	 *
+	 * @param spec the spec element to get the index for.
+	 * @return the spec element's index or {@code -1} if the spec element has not been defined by this definition.
+	 */
+	public int definedSpecIndex(Object spec) {
+		Integer index = this.definedSpecIndices.get(spec);
+
+		return (index != null ? index.intValue() : -1);
+	}
+
+	private <T> T defineSpec(T spec) {
+		this.definedSpecIndices.put(spec, this.definedSpecs.size());
+		this.definedSpecs.add(spec);
+		return spec;
+	}
+
 	protected void afterLoad() {
 		// Default is to do nothing
 	}
@@ -741,7 +811,7 @@ public abstract class FormatSpecDefinition {
 	@SuppressWarnings("null")
 	private void loadFormatSpec(FormatSpecContext specCtx, FormatSpecsContext rootCtx) {
 		String specIdentifier = reserveSpecIdentifier(specCtx.specIdentifier());
-		StructSpec spec = new StructSpec();
+		StructSpec spec = defineSpec(new StructSpec());
 
 		for (StructSpecElementContext elementCtx : specCtx.structSpecElement()) {
 			spec.add(loadStructSpecElement(elementCtx, rootCtx));
@@ -769,7 +839,7 @@ public abstract class FormatSpecDefinition {
 
 	@SuppressWarnings("null")
 	private StructSpec loadAnonymousStructSpec(AnonymousStructSpecContext specCtx, FormatSpecsContext rootCtx) {
-		StructSpec spec = new StructSpec();
+		StructSpec spec = defineSpec(new StructSpec());
 
 		for (StructSpecElementContext elementCtx : specCtx.structSpecElement()) {
 			spec.add(loadStructSpecElement(elementCtx, rootCtx));
@@ -798,7 +868,7 @@ public abstract class FormatSpecDefinition {
 	@SuppressWarnings("null")
 	private SequenceSpec loadAnonymousSequenceSpec(AnonymousSequenceSpecContext specCtx, FormatSpecsContext rootCtx) {
 		FormatSpec elementSpec = loadStructSpecElement(specCtx.structSpecElement(), rootCtx);
-		SequenceSpec spec = new SequenceSpec(elementSpec);
+		SequenceSpec spec = defineSpec(new SequenceSpec(elementSpec));
 
 		applyStopBeforeModifier(spec, specCtx.sequenceSpecStopBeforeModifier(), rootCtx);
 		applyStopAfterModifier(spec, specCtx.sequenceSpecStopAfterModifier(), rootCtx);
@@ -867,7 +937,7 @@ public abstract class FormatSpecDefinition {
 
 	@SuppressWarnings("null")
 	private ArraySpec loadAnonymousArraySpec(AnonymousArraySpecContext specCtx, FormatSpecsContext rootCtx) {
-		ArraySpec spec = new ArraySpec(loadNumberExpression(specCtx.numberExpression()));
+		ArraySpec spec = defineSpec(new ArraySpec(loadNumberExpression(specCtx.numberExpression())));
 
 		for (AttributeSpecContext attributeSpecCtx : specCtx.attributeSpec()) {
 			spec.add(loadAttributeSpec(attributeSpecCtx, rootCtx));
@@ -895,7 +965,7 @@ public abstract class FormatSpecDefinition {
 
 	@SuppressWarnings("null")
 	private UnionSpec loadAnonymousUnionSpec(AnonymousUnionSpecContext specCtx, FormatSpecsContext rootCtx) {
-		UnionSpec spec = new UnionSpec();
+		UnionSpec spec = defineSpec(new UnionSpec());
 
 		for (CompositeSpecExpressionContext expressionCtx : specCtx.compositeSpecExpression()) {
 			spec.add(loadCompositeSpecExpression(expressionCtx, rootCtx));
@@ -954,10 +1024,11 @@ public abstract class FormatSpecDefinition {
 		FormatSpec spec;
 
 		if (CompositeSpec.class.isAssignableFrom(externalReferenceType)) {
-			spec = new ConditionalCompositeSpec(
-					resolveExternalReference(specCtx.externalReference(), CompositeSpec.class));
+			spec = defineSpec(new ConditionalCompositeSpec(
+					resolveExternalReference(specCtx.externalReference(), CompositeSpec.class)));
 		} else {
-			spec = new ConditionalSpec(resolveExternalReference(specCtx.externalReference(), FormatSpec.class));
+			spec = defineSpec(
+					new ConditionalSpec(resolveExternalReference(specCtx.externalReference(), FormatSpec.class)));
 		}
 
 		LOG.debug(LOG_LOADED_SPEC, spec);
@@ -972,8 +1043,8 @@ public abstract class FormatSpecDefinition {
 			resolveSpec(rootCtx, specReferenceCtx.referencedSpec().specIdentifier(), CompositeSpec.class);
 		}
 
-		ConditionalCompositeSpec spec = new ConditionalCompositeSpec(
-				resolveExternalReference(specCtx.externalReference(), CompositeSpec.class));
+		ConditionalCompositeSpec spec = defineSpec(new ConditionalCompositeSpec(
+				resolveExternalReference(specCtx.externalReference(), CompositeSpec.class)));
 
 		LOG.debug(LOG_LOADED_SPEC, spec);
 
@@ -982,8 +1053,8 @@ public abstract class FormatSpecDefinition {
 
 	@SuppressWarnings("null")
 	private EncodedInputSpec loadEncodedInputSpec(EncodedInputSpecContext specCtx) {
-		EncodedInputSpec spec = new EncodedInputSpec(
-				resolveExternalReference(specCtx.externalReference(), EncodedInputSpecConfig.class).get());
+		EncodedInputSpec spec = defineSpec(new EncodedInputSpec(
+				resolveExternalReference(specCtx.externalReference(), EncodedInputSpecConfig.class).get()));
 
 		LOG.debug(LOG_LOADED_SPEC, spec);
 
@@ -992,7 +1063,8 @@ public abstract class FormatSpecDefinition {
 
 	@SuppressWarnings("null")
 	private DecodeAtSpec loadDecodeAtSpec(DecodeAtSpecContext specCtx, FormatSpecsContext rootCtx) {
-		DecodeAtSpec spec = new DecodeAtSpec(loadCompositeSpecExpression(specCtx.compositeSpecExpression(), rootCtx));
+		DecodeAtSpec spec = defineSpec(
+				new DecodeAtSpec(loadCompositeSpecExpression(specCtx.compositeSpecExpression(), rootCtx)));
 
 		spec.position(loadNumberExpression(specCtx.numberExpression()));
 
@@ -1054,7 +1126,7 @@ public abstract class FormatSpecDefinition {
 
 	@SuppressWarnings("null")
 	private ByteSpec loadByteSpec(ByteAttributeSpecContext specCtx, FormatSpecsContext rootCtx) {
-		ByteSpec spec = new ByteSpec(loadTextExpression(specCtx.textExpression()));
+		ByteSpec spec = defineSpec(new ByteSpec(loadTextExpression(specCtx.textExpression())));
 
 		applyValidateNumberModifier(spec, specCtx.attributeValidateNumberModifier(), ByteHelper::decodeUnsigned,
 				this.byteSymbolsMap);
@@ -1070,7 +1142,7 @@ public abstract class FormatSpecDefinition {
 
 	@SuppressWarnings("null")
 	private WordSpec loadWordSpec(WordAttributeSpecContext specCtx, FormatSpecsContext rootCtx) {
-		WordSpec spec = new WordSpec(loadTextExpression(specCtx.textExpression()));
+		WordSpec spec = defineSpec(new WordSpec(loadTextExpression(specCtx.textExpression())));
 
 		applyValidateNumberModifier(spec, specCtx.attributeValidateNumberModifier(), ShortHelper::decodeUnsigned,
 				this.wordSymbolsMap);
@@ -1086,7 +1158,7 @@ public abstract class FormatSpecDefinition {
 
 	@SuppressWarnings("null")
 	private DWordSpec loadDWordSpec(DwordAttributeSpecContext specCtx, FormatSpecsContext rootCtx) {
-		DWordSpec spec = new DWordSpec(loadTextExpression(specCtx.textExpression()));
+		DWordSpec spec = defineSpec(new DWordSpec(loadTextExpression(specCtx.textExpression())));
 
 		applyValidateNumberModifier(spec, specCtx.attributeValidateNumberModifier(), IntHelper::decodeUnsigned,
 				this.dwordSymbolsMap);
@@ -1102,7 +1174,7 @@ public abstract class FormatSpecDefinition {
 
 	@SuppressWarnings("null")
 	private QWordSpec loadQWordSpec(QwordAttributeSpecContext specCtx, FormatSpecsContext rootCtx) {
-		QWordSpec spec = new QWordSpec(loadTextExpression(specCtx.textExpression()));
+		QWordSpec spec = defineSpec(new QWordSpec(loadTextExpression(specCtx.textExpression())));
 
 		applyValidateNumberModifier(spec, specCtx.attributeValidateNumberModifier(), LongHelper::decodeUnsigned,
 				this.qwordSymbolsMap);
@@ -1118,7 +1190,7 @@ public abstract class FormatSpecDefinition {
 
 	@SuppressWarnings("null")
 	private ByteArraySpec loadByteArraySpec(ByteArrayAttributeSpecContext specCtx, FormatSpecsContext rootCtx) {
-		ByteArraySpec spec = new ByteArraySpec(loadTextExpression(specCtx.textExpression()));
+		ByteArraySpec spec = defineSpec(new ByteArraySpec(loadTextExpression(specCtx.textExpression())));
 
 		spec.length(loadNumberExpression(specCtx.numberExpression()));
 		applyValidateNumberArrayModifier(spec, specCtx.attributeValidateNumberArrayModifier(),
@@ -1134,7 +1206,7 @@ public abstract class FormatSpecDefinition {
 
 	@SuppressWarnings("null")
 	private WordArraySpec loadWordArraySpec(WordArrayAttributeSpecContext specCtx, FormatSpecsContext rootCtx) {
-		WordArraySpec spec = new WordArraySpec(loadTextExpression(specCtx.textExpression()));
+		WordArraySpec spec = defineSpec(new WordArraySpec(loadTextExpression(specCtx.textExpression())));
 
 		spec.length(loadNumberExpression(specCtx.numberExpression()));
 		applyValidateNumberArrayModifier(spec, specCtx.attributeValidateNumberArrayModifier(),
@@ -1150,7 +1222,7 @@ public abstract class FormatSpecDefinition {
 
 	@SuppressWarnings("null")
 	private DWordArraySpec loadDWordArraySpec(DwordArrayAttributeSpecContext specCtx, FormatSpecsContext rootCtx) {
-		DWordArraySpec spec = new DWordArraySpec(loadTextExpression(specCtx.textExpression()));
+		DWordArraySpec spec = defineSpec(new DWordArraySpec(loadTextExpression(specCtx.textExpression())));
 
 		spec.length(loadNumberExpression(specCtx.numberExpression()));
 		applyValidateNumberArrayModifier(spec, specCtx.attributeValidateNumberArrayModifier(),
@@ -1166,7 +1238,7 @@ public abstract class FormatSpecDefinition {
 
 	@SuppressWarnings("null")
 	private QWordArraySpec loadQWordArraySpec(QwordArrayAttributeSpecContext specCtx, FormatSpecsContext rootCtx) {
-		QWordArraySpec spec = new QWordArraySpec(loadTextExpression(specCtx.textExpression()));
+		QWordArraySpec spec = defineSpec(new QWordArraySpec(loadTextExpression(specCtx.textExpression())));
 
 		spec.length(loadNumberExpression(specCtx.numberExpression()));
 		applyValidateNumberArrayModifier(spec, specCtx.attributeValidateNumberArrayModifier(),
@@ -1182,7 +1254,7 @@ public abstract class FormatSpecDefinition {
 
 	@SuppressWarnings("null")
 	private CharArraySpec loadCharArraySpec(CharArrayAttributeSpecContext specCtx, FormatSpecsContext rootCtx) {
-		CharArraySpec spec = new CharArraySpec(loadTextExpression(specCtx.textExpression()));
+		CharArraySpec spec = defineSpec(new CharArraySpec(loadTextExpression(specCtx.textExpression())));
 
 		spec.size(loadNumberExpression(specCtx.numberExpression()));
 		applyCharsetModifier(spec, specCtx.stringAttributeCharsetModifier());
@@ -1198,7 +1270,7 @@ public abstract class FormatSpecDefinition {
 
 	@SuppressWarnings("null")
 	private StringSpec loadStringSpec(StringAttributeSpecContext specCtx, FormatSpecsContext rootCtx) {
-		StringSpec spec = new StringSpec(loadTextExpression(specCtx.textExpression()));
+		StringSpec spec = defineSpec(new StringSpec(loadTextExpression(specCtx.textExpression())));
 
 		applyCharsetModifier(spec, specCtx.stringAttributeCharsetModifier());
 		applyValidateStringModifier(spec, specCtx.attributeValidateStringModifier());
@@ -1213,7 +1285,7 @@ public abstract class FormatSpecDefinition {
 
 	@SuppressWarnings("null")
 	private RangeAttributeSpec loadRangeAttributeSpec(RangeAttributeSpecContext specCtx, FormatSpecsContext rootCtx) {
-		RangeAttributeSpec spec = new RangeAttributeSpec(loadTextExpression(specCtx.textExpression()));
+		RangeAttributeSpec spec = defineSpec(new RangeAttributeSpec(loadTextExpression(specCtx.textExpression())));
 		NumberExpressionContext sizeCtx = specCtx.numberExpression();
 
 		if (sizeCtx != null) {
@@ -1229,8 +1301,8 @@ public abstract class FormatSpecDefinition {
 
 	@SuppressWarnings("null")
 	private ScanAttributeSpec loadScanAttributeSpec(ScanAttributeSpecContext specCtx, FormatSpecsContext rootCtx) {
-		ScanAttributeSpec spec = new ScanAttributeSpec(loadTextExpression(specCtx.textExpression()),
-				resolveExternalReference(specCtx.externalReference(), ValueStreamerFactory.class).get());
+		ScanAttributeSpec spec = defineSpec(new ScanAttributeSpec(loadTextExpression(specCtx.textExpression()),
+				resolveExternalReference(specCtx.externalReference(), ValueStreamerFactory.class).get()));
 		List<NumberExpressionContext> numberArguments = specCtx.numberExpression();
 
 		if (numberArguments != null) {
@@ -1573,8 +1645,7 @@ public abstract class FormatSpecDefinition {
 					throw newLoadException(formatTextArgumentCtx, "Unexpected format text argument expression");
 				}
 			}
-			textExpression = () -> String.format(formatText, argumentSpecs.stream().map(Supplier::get)
-					.map(o -> (o instanceof String ? Strings.encode(StringHelper.strip((String) o)) : o)).toArray());
+			textExpression = new TextExpression(formatText, argumentSpecs);
 		} else {
 			throw newLoadException(ctx, "Unexpected text expression");
 		}
@@ -18,18 +18,36 @@ package de.carne.filescanner.engine.format;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
 import java.util.function.Supplier;
 
+import org.eclipse.jdt.annotation.NonNull;
+
+import de.carne.filescanner.engine.FileScannerResultContext;
+import de.carne.filescanner.engine.FileScannerResultDecodeContext;
 import de.carne.filescanner.engine.FileScannerResultInputContext;
+import de.carne.filescanner.engine.FileScannerResultRenderContext;
+import de.carne.filescanner.engine.NumberValueDecoder;
+import de.carne.filescanner.engine.UnexpectedDataException;
 import de.carne.filescanner.engine.util.FinalSupplier;
 
 /**
  * Base class for fixed size number attribute format elements.
+ * <p>
+ * Number attributes are decoded and validated as primitive values. A value is only boxed if it is bound or has to be
+ * passed to a generic {@linkplain AttributeValidator}.
+ * </p>
  *
  * @param <T> The actual number attribute type.
  */
 public abstract class NumberAttributeSpec<T extends Number> extends AttributeSpec<T> {
 
+	private final NumberValueDecoder numberDecoder = this::decodeNumber;
+	private NumberValueSet[] valueSets = new NumberValueSet[0];
+	private boolean unsigned = true;
+
 	/**
 	 * Constructs a new {@linkplain NumberAttributeSpec} instance.
 	 *
@@ -50,6 +68,44 @@ public abstract class NumberAttributeSpec<T extends Number> extends AttributeSpe
 		this(type, FinalSupplier.of(name));
 	}
 
+	@Override
+	public AttributeSpec<T> validate(@NonNull T value) {
+		return validate(Collections.singleton(value));
+	}
+
+	@Override
+	public AttributeSpec<T> validate(Set<T> values) {
+		NumberValueSet[] updatedValueSets = Arrays.copyOf(this.valueSets, this.valueSets.length + 1);
+
+		updatedValueSets[this.valueSets.length] = NumberValueSet.of(values);
+		this.valueSets = updatedValueSets;
+		return this;
+	}
+
+	/**
+	 * Marks this attribute as a signed number.
+	 * <p>
+	 * Number attributes are considered unsigned by default. The signedness is taken into account whenever the attribute
+	 * value is converted into a wider representation (e.g. during export).
+	 * </p>
+	 *
+	 * @return the updated {@linkplain NumberAttributeSpec} instance for chaining.
+	 */
+	public NumberAttributeSpec<T> signed() {
+		this.unsigned = false;
+		return this;
+	}
+
+	/**
+	 * Checks whether this attribute is an unsigned number.
+	 *
+	 * @return {@code true} if this attribute is an unsigned number.
+	 * @see #signed()
+	 */
+	public boolean isUnsigned() {
+		return this.unsigned;
+	}
+
 	@Override
 	public final boolean isFixedSize() {
 		return true;
@@ -62,7 +118,22 @@ public abstract class NumberAttributeSpec<T extends Number> extends AttributeSpe
 
 	@Override
 	public boolean matches(ByteBuffer buffer) {
-		return size() <= buffer.remaining() && validateValue(decodeValue(buffer));
+		boolean matches = false;
+
+		if (size() <= buffer.remaining()) {
+			long number = decodeNumber(buffer);
+
+			matches = validateNumber(number) && (!hasValidators() || super.validateValue(valueOf(number)));
+		}
+		return matches;
+	}
+
+	@Override
+	public void decode(FileScannerResultDecodeContext context) throws IOException {
+		long decodeStart = context.position();
+		long number = context.readNumberValue(size(), this.numberDecoder);
+
+		validateAndBindNumber(context, decodeStart, number);
 	}
 
 	@Override
@@ -70,6 +141,82 @@ public abstract class NumberAttributeSpec<T extends Number> extends AttributeSpe
 		return context.readValue(size(), this::decodeValue);
 	}
 
+	@Override
+	T renderValue(FileScannerResultRenderContext context) throws IOException {
+		Object capturedValue = context.capturedValue(this);
+
+		return (capturedValue instanceof Long ? valueOf(((Long) capturedValue).longValue()) : redecodeValue(context));
+	}
+
+	private void validateAndBindNumber(FileScannerResultDecodeContext context, long decodeStart, long number)
+			throws IOException {
+		if (!validateNumber(number)) {
+			throw new UnexpectedDataException("Unexpected " + this, decodeStart, valueOf(number));
+		}
+		if (hasValidators()) {
+			T value = valueOf(number);
+
+			if (!super.validateValue(value)) {
+				throw new UnexpectedDataException("Unexpected " + this, decodeStart, value);
+			}
+		}
+		switch (bindMode()) {
+		case NONE:
+			break;
+		case CONTEXT:
+			context.bindContextNumber(this, number);
+			break;
+		case RESULT:
+			bindValue(context, valueOf(number));
+			break;
+		}
+		context.captureNumber(this, decodeStart, decodeStart + size(), number);
+	}
+
+	@Override
+	protected boolean validateValue(T value) {
+		return validateNumber(value.longValue()) && super.validateValue(value);
+	}
+
+	private boolean validateNumber(long number) {
+		boolean valid = true;
+
+		for (NumberValueSet valueSet : this.valueSets) {
+			if (!valueSet.contains(number)) {
+				valid = false;
+				break;
+			}
+		}
+		return valid;
+	}
+
+	/**
+	 * Gets the currently bound value as a {@code long}.
+	 * <p>
+	 * The value is sign-extended. See {@linkplain #unsignedLongValue()} for zero-extended access.
+	 * </p>
+	 *
+	 * @return the currently bound value.
+	 */
+	public long longValue() {
+		return FileScannerResultContext.get().getNumberValue(this);
+	}
+
+	/**
+	 * Gets the currently bound value as an unsigned {@code long}.
+	 * <p>
+	 * The value is zero-extended according to the attribute's size.
+	 * </p>
+	 *
+	 * @return the currently bound value.
+	 */
+	public long unsignedLongValue() {
+		long value = longValue();
+		int size = size();
+
+		return (size < Long.BYTES ? value & ((1l << (size << 3)) - 1) : value);
+	}
+
 	/**
 	 * Gets the fixed size of attribute value represented by this instance.
 	 *
@@ -83,6 +230,24 @@ public abstract class NumberAttributeSpec<T extends Number> extends AttributeSpe
 	 * @param buffer the {@linkplain ByteBuffer} to decode from.
 	 * @return the decoded attribute value.
 	 */
-	protected abstract T decodeValue(ByteBuffer buffer);
+	protected T decodeValue(ByteBuffer buffer) {
+		return valueOf(decodeNumber(buffer));
+	}
+
+	/**
+	 * Decodes the attribute value from the given {@linkplain ByteBuffer} as a primitive.
+	 *
+	 * @param buffer the {@linkplain ByteBuffer} to decode from.
+	 * @return the decoded attribute value (sign-extended).
+	 */
+	protected abstract long decodeNumber(ByteBuffer buffer);
+
+	/**
+	 * Converts a primitive attribute value into the attribute's type.
+	 *
+	 * @param number the primitive attribute value to convert.
+	 * @return the converted attribute value.
+	 */
+	protected abstract T valueOf(long number);
 
 }
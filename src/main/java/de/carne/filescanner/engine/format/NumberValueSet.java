@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.format;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Immutable set of integral values used for validating {@linkplain NumberAttributeSpec} elements without boxing.
+ * <p>
+ * Dense value sets are backed by a bitset, sparse ones by a sorted array.
+ * </p>
+ */
+final class NumberValueSet {
+
+	private static final int MAX_BITSET_RANGE = 4096;
+
+	private final long base;
+	private final long[] bits;
+	private final long[] sortedValues;
+
+	private NumberValueSet(long base, long[] bits, long[] sortedValues) {
+		this.base = base;
+		this.bits = bits;
+		this.sortedValues = sortedValues;
+	}
+
+	/**
+	 * Creates a {@linkplain NumberValueSet} instance.
+	 *
+	 * @param values the values to include in the set.
+	 * @return the created {@linkplain NumberValueSet} instance.
+	 */
+	public static NumberValueSet of(Collection<? extends Number> values) {
+		long[] sortedValues = values.stream().mapToLong(Number::longValue).sorted().distinct().toArray();
+		long base = 0;
+		long[] bits = new long[0];
+
+		if (sortedValues.length > 1) {
+			long range = sortedValues[sortedValues.length - 1] - sortedValues[0];
+
+			if (0 <= range && range < MAX_BITSET_RANGE) {
+				base = sortedValues[0];
+				bits = new long[(int) (range >>> 6) + 1];
+				for (long value : sortedValues) {
+					long index = value - base;
+
+					bits[(int) (index >>> 6)] |= 1l << index;
+				}
+			}
+		}
+		return new NumberValueSet(base, bits, sortedValues);
+	}
+
+	/**
+	 * Checks whether a value is contained in this set.
+	 *
+	 * @param value the value to check.
+	 * @return {@code true} if the value is contained in this set.
+	 */
+	public boolean contains(long value) {
+		boolean contains;
+
+		if (this.bits.length > 0) {
+			long index = value - this.base;
+
+			contains = 0 <= index && index < (this.bits.length << 6)
+					&& (this.bits[(int) (index >>> 6)] & (1l << index)) != 0;
+		} else if (this.sortedValues.length == 1) {
+			contains = this.sortedValues[0] == value;
+		} else {
+			contains = Arrays.binarySearch(this.sortedValues, value) >= 0;
+		}
+		return contains;
+	}
+
+}
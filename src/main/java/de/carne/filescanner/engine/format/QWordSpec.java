@@ -52,8 +52,13 @@ public final class QWordSpec extends NumberAttributeSpec<Long> {
 	}
 
 	@Override
-	protected Long decodeValue(ByteBuffer buffer) {
+	protected long decodeNumber(ByteBuffer buffer) {
 		return buffer.getLong();
 	}
 
+	@Override
+	protected Long valueOf(long number) {
+		return Long.valueOf(number);
+	}
+
 }
@@ -31,6 +31,7 @@ import de.carne.filescanner.engine.ValueStreamer;
 import de.carne.filescanner.engine.ValueStreamerFactory;
 import de.carne.filescanner.engine.ValueStreamerStatus;
 import de.carne.filescanner.engine.transfer.RenderOutput;
+import de.carne.filescanner.engine.util.ByteHelper;
 import de.carne.filescanner.engine.util.FinalSupplier;
 import de.carne.filescanner.engine.util.SizeRenderer;
 
@@ -138,7 +139,12 @@ public class ScanAttributeSpec extends AttributeSpec<StreamValue> {
 	@Override
 	protected StreamValue decodeValue(FileScannerResultInputContext context) throws IOException {
 		ValueStreamer streamer = this.valueStreamerFactory.getInstance();
-		long length = context.readValue(this.step.get().intValue(), decoder(streamer)).longValue();
+		int chunkSize = this.step.get().intValue();
+		byte[] terminatorPrefix = streamer.terminatorPrefix();
+		StreamValueDecoder<Long> decoder = (terminatorPrefix != null && 0 < terminatorPrefix.length
+				&& terminatorPrefix.length <= chunkSize ? bulkDecoder(streamer, terminatorPrefix, chunkSize)
+						: decoder(streamer));
+		long length = context.readValue(chunkSize, decoder).longValue();
 
 		return context.streamValue(length, false);
 	}
@@ -170,6 +176,77 @@ public class ScanAttributeSpec extends AttributeSpec<StreamValue> {
 		};
 	}
 
+	private static StreamValueDecoder<Long> bulkDecoder(ValueStreamer streamer, byte[] terminatorPrefix,
+			int chunkSize) {
+		return new StreamValueDecoder<>() {
+
+			private long length = 0;
+
+			@Override
+			public ValueStreamerStatus stream(ByteBuffer buffer) {
+				int decodeStart = buffer.position();
+				int bufferLimit = buffer.limit();
+				int searchLimit = bufferLimit - chunkSize + 1;
+				ValueStreamerStatus status;
+
+				if (decodeStart < searchLimit) {
+					status = ValueStreamerStatus.STREAMING;
+					while (status == ValueStreamerStatus.STREAMING && buffer.position() < searchLimit) {
+						status = streamCandidate(buffer, searchLimit, bufferLimit);
+					}
+				} else {
+					// Not enough data left for a full candidate (EOF); let the streamer decide
+					status = streamer.stream(buffer);
+				}
+				this.length += buffer.position() - decodeStart;
+				return status;
+			}
+
+			private ValueStreamerStatus streamCandidate(ByteBuffer buffer, int searchLimit, int bufferLimit) {
+				int candidate = ByteHelper.indexOf(buffer, terminatorPrefix[0], buffer.position(), searchLimit);
+				ValueStreamerStatus status = ValueStreamerStatus.STREAMING;
+
+				if (candidate < 0) {
+					buffer.position(searchLimit);
+				} else if (!matchesPrefix(buffer, candidate)) {
+					buffer.position(candidate + 1);
+				} else {
+					buffer.position(candidate);
+					buffer.limit(candidate + chunkSize);
+					try {
+						status = streamer.stream(buffer);
+					} finally {
+						buffer.limit(bufferLimit);
+					}
+					if (status == ValueStreamerStatus.STREAMING && buffer.position() == candidate) {
+						buffer.position(candidate + 1);
+					}
+				}
+				return status;
+			}
+
+			private boolean matchesPrefix(ByteBuffer buffer, int candidate) {
+				boolean match = true;
+
+				for (int prefixIndex = 1; match && prefixIndex < terminatorPrefix.length; prefixIndex++) {
+					match = buffer.get(candidate + prefixIndex) == terminatorPrefix[prefixIndex];
+				}
+				return match;
+			}
+
+			@Override
+			public byte[] terminatorPrefix() {
+				return terminatorPrefix;
+			}
+
+			@Override
+			public Long decode() throws IOException {
+				return this.length;
+			}
+
+		};
+	}
+
 	private void sizeRenderer(RenderOutput out, StreamValue value) throws IOException {
 		SizeRenderer.LONG_RENDERER.render(out, value.size());
 	}
@@ -24,6 +24,7 @@ import org.eclipse.jdt.annotation.Nullable;
 
 import de.carne.filescanner.engine.FileScannerResultContextValueSpecs;
 import de.carne.filescanner.engine.FileScannerResultDecodeContext;
+import de.carne.filescanner.engine.FileScannerResultElementOffsets;
 import de.carne.filescanner.engine.FileScannerResultRenderContext;
 import de.carne.filescanner.engine.UnexpectedDataException;
 import de.carne.filescanner.engine.transfer.RenderOutput;
@@ -163,13 +164,15 @@ public class SequenceSpec extends CompositeSpec {
 		}
 
 		boolean done = maxMatchCount == 0;
+		FileScannerResultElementOffsets elementOffsets = new FileScannerResultElementOffsets(decodeStart);
 
 		try {
 			while (!done) {
 				FormatSpec checkedStopBeforeSpec = this.stopBeforeSpec;
 				FormatSpec checkedStopAfterSpec = this.stopAfterSpec;
 
-				context.bindContextValue(FileScannerResultContextValueSpecs.SEQUENCE_ELEMENT_INDEX, matchCount);
+				elementOffsets.record(matchCount, context.position());
+				context.bindContextNumber(FileScannerResultContextValueSpecs.SEQUENCE_ELEMENT_INDEX, matchCount);
 				if (checkedStopBeforeSpec != null && context.matchFormat(checkedStopBeforeSpec)) {
 					done = true;
 				} else if (checkedStopAfterSpec != null && context.matchFormat(checkedStopAfterSpec)) {
@@ -185,12 +188,15 @@ public class SequenceSpec extends CompositeSpec {
 				}
 			}
 		} finally {
-			context.bindContextValue(FileScannerResultContextValueSpecs.SEQUENCE_ELEMENT_INDEX, -1);
+			context.bindContextNumber(FileScannerResultContextValueSpecs.SEQUENCE_ELEMENT_INDEX, -1);
 		}
 		if (matchCount < minMatchCount) {
 			throw new UnexpectedDataException("Insufficent sequence length", decodeStart);
 		}
 		context.bindDecodedValue(this.decodedElementCount, matchCount);
+		if (matchCount > FileScannerResultElementOffsets.STRIDE && !FormatSpecs.isResult(this.elementSpec)) {
+			context.captureElementOffsets(this, elementOffsets.finish(matchCount, context.position()));
+		}
 	}
 
 	@Override
@@ -199,18 +205,49 @@ public class SequenceSpec extends CompositeSpec {
 			super.renderComposite(out, context);
 		} else if (!FormatSpecs.isResult(this.elementSpec)) {
 			int elementCount = context.getValue(this.decodedElementCount).intValue();
+			RenderOutput windowOut = context.claimElementWindow(elementCount);
 
 			try {
-				for (int elementIndex = 0; elementIndex < elementCount; elementIndex++) {
-					context.bindContextValue(FileScannerResultContextValueSpecs.SEQUENCE_ELEMENT_INDEX, elementIndex);
-					this.elementSpec.render(out, context);
+				if (windowOut == null) {
+					for (int elementIndex = 0; elementIndex < elementCount; elementIndex++) {
+						context.bindContextNumber(FileScannerResultContextValueSpecs.SEQUENCE_ELEMENT_INDEX,
+								elementIndex);
+						this.elementSpec.render(out, context);
+					}
+				} else {
+					renderElementWindow(out, windowOut, context, elementCount);
 				}
 			} finally {
-				context.bindContextValue(FileScannerResultContextValueSpecs.SEQUENCE_ELEMENT_INDEX, -1);
+				context.bindContextNumber(FileScannerResultContextValueSpecs.SEQUENCE_ELEMENT_INDEX, -1);
 			}
 		} else {
 			context.skip(context.remaining());
 		}
 	}
 
+	private void renderElementWindow(RenderOutput out, RenderOutput windowOut, FileScannerResultRenderContext context,
+			int elementCount) throws IOException {
+		FileScannerResultElementOffsets elementOffsets = context.capturedElementOffsets(this);
+		long windowStart = context.elementWindowStart();
+		long windowEnd = context.elementWindowEnd();
+		long elementIndex = 0;
+		long renderEnd = elementCount;
+
+		if (elementOffsets != null && elementOffsets.elementCount() == elementCount) {
+			elementIndex = elementOffsets.checkpoint(windowStart);
+			renderEnd = windowEnd;
+			context.skip(elementOffsets.position(elementIndex) - context.position());
+		} else {
+			elementOffsets = null;
+		}
+		while (elementIndex < renderEnd) {
+			context.bindContextNumber(FileScannerResultContextValueSpecs.SEQUENCE_ELEMENT_INDEX, elementIndex);
+			this.elementSpec.render(windowStart <= elementIndex && elementIndex < windowEnd ? windowOut : out, context);
+			elementIndex++;
+		}
+		if (elementOffsets != null) {
+			context.skip(elementOffsets.end() - context.position());
+		}
+	}
+
 }
@@ -86,7 +86,9 @@ public class StructSpec extends CompositeSpec {
 	public boolean matches(ByteBuffer buffer) {
 		boolean match = true;
 
-		for (FormatSpec element : this.elements) {
+		for (int elementIndex = 0; elementIndex < this.elements.size(); elementIndex++) {
+			FormatSpec element = this.elements.get(elementIndex);
+
 			match = element.matches(buffer);
 			if (!match || !element.isFixedSize()) {
 				break;
@@ -98,7 +100,9 @@ public class StructSpec extends CompositeSpec {
 	@Override
 	public void decodeComposite(FileScannerResultDecodeContext context) throws IOException {
 		if (this.elements.size() != 1) {
-			for (FormatSpec element : this.elements) {
+			for (int elementIndex = 0; elementIndex < this.elements.size(); elementIndex++) {
+				FormatSpec element = this.elements.get(elementIndex);
+
 				element.decode(context);
 			}
 		} else {
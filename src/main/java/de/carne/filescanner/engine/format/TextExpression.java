@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.format;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import de.carne.filescanner.engine.util.StringHelper;
+import de.carne.filescanner.engine.util.TextFormat;
+import de.carne.util.Strings;
+
+/**
+ * Formatted text expression (e.g. {@code text("%s chunk", @CHUNK_TYPE)}) used for result names.
+ * <p>
+ * The format text is compiled once (see {@linkplain TextFormat}). Via {@linkplain #resolve()} the argument values can
+ * be resolved while the decode context is available and the actual formatting can be deferred until the text is first
+ * accessed.
+ * </p>
+ */
+public final class TextExpression implements Supplier<String> {
+
+	private final TextFormat format;
+	private final Supplier<?>[] arguments;
+
+	/**
+	 * Constructs a new {@linkplain TextExpression} instance.
+	 *
+	 * @param format the format text to use.
+	 * @param arguments the format arguments.
+	 */
+	public TextExpression(String format, List<Supplier<?>> arguments) {
+		this.format = TextFormat.compile(format);
+		this.arguments = arguments.toArray(new Supplier<?>[arguments.size()]);
+	}
+
+	/**
+	 * Resolves the argument values of this text expression and returns a {@linkplain Supplier} formatting them on first
+	 * access.
+	 *
+	 * @return the {@linkplain Supplier} providing the formatted text.
+	 */
+	public Supplier<String> resolve() {
+		return new Resolved(this.format, resolveArguments());
+	}
+
+	@Override
+	public String get() {
+		return format(this.format, resolveArguments());
+	}
+
+	private @Nullable Object[] resolveArguments() {
+		@Nullable Object[] argumentValues = new Object[this.arguments.length];
+
+		for (int argumentIndex = 0; argumentIndex < argumentValues.length; argumentIndex++) {
+			argumentValues[argumentIndex] = this.arguments[argumentIndex].get();
+		}
+		return argumentValues;
+	}
+
+	static String format(TextFormat format, @Nullable Object[] argumentValues) {
+		for (int argumentIndex = 0; argumentIndex < argumentValues.length; argumentIndex++) {
+			Object argumentValue = argumentValues[argumentIndex];
+
+			if (argumentValue instanceof String) {
+				argumentValues[argumentIndex] = Strings.encode(StringHelper.strip((String) argumentValue));
+			}
+		}
+		return format.format(argumentValues);
+	}
+
+	@Override
+	public String toString() {
+		return this.format.toString();
+	}
+
+	private static final class Resolved implements Supplier<String> {
+
+		private final TextFormat format;
+		private @Nullable Object @Nullable [] argumentValues;
+		private @Nullable String text = null;
+
+		Resolved(TextFormat format, @Nullable Object[] argumentValues) {
+			this.format = format;
+			this.argumentValues = argumentValues;
+		}
+
+		@Override
+		public synchronized String get() {
+			String checkedText = this.text;
+
+			if (checkedText == null) {
+				checkedText = format(this.format, Objects.requireNonNull(this.argumentValues));
+				this.text = checkedText;
+				this.argumentValues = null;
+			}
+			return checkedText;
+		}
+
+		@Override
+		public String toString() {
+			return get();
+		}
+
+	}
+
+}
@@ -22,6 +22,8 @@ import java.util.Arrays;
 import java.util.function.Supplier;
 
 import de.carne.filescanner.engine.FileScannerResultInputContext;
+import de.carne.filescanner.engine.FileScannerResultRenderContext;
+import de.carne.filescanner.engine.transfer.RenderOutput;
 import de.carne.filescanner.engine.util.FinalSupplier;
 import de.carne.filescanner.engine.util.HexFormat;
 
@@ -96,10 +98,23 @@ public class WordArraySpec extends AttributeSpec<short[]> {
 		return context.readValue(this.size.get().intValue(), this::decodeValue);
 	}
 
+	@Override
+	public void render(RenderOutput out, FileScannerResultRenderContext context) throws IOException {
+		int arraySize = this.size.get().intValue();
+
+		if (!renderElementWindow(context, arraySize / Short.BYTES, Short.BYTES, this::decodeValue)) {
+			super.render(out, context);
+		}
+	}
+
 	private short[] decodeValue(ByteBuffer buffer) {
+		return decodeValue(buffer, this.size.get().intValue());
+	}
+
+	private short[] decodeValue(ByteBuffer buffer, int decodeSize) {
 		ByteBuffer slice = buffer.slice();
 
-		slice.limit(this.size.get().intValue());
+		slice.limit(decodeSize);
 
 		short[] value = new short[slice.remaining() >> 1];
 		int valueIndex = 0;
@@ -52,8 +52,13 @@ public final class WordSpec extends NumberAttributeSpec<Short> {
 	}
 
 	@Override
-	protected Short decodeValue(ByteBuffer buffer) {
+	protected long decodeNumber(ByteBuffer buffer) {
 		return buffer.getShort();
 	}
 
+	@Override
+	protected Short valueOf(long number) {
+		return Short.valueOf((short) number);
+	}
+
 }
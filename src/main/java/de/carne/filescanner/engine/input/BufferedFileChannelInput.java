@@ -20,8 +20,10 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.lang.ref.SoftReference;
 import java.nio.ByteBuffer;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 import org.eclipse.jdt.annotation.Nullable;
 
@@ -35,8 +37,9 @@ import de.carne.util.logging.Log;
  */
 public class BufferedFileChannelInput extends FileScannerInput implements Closeable {
 
-	private final Map<Thread, Buffer> threadBuffers = new HashMap<>();
 	private final FileChannelInput input;
+	private final Set<Buffer> buffers = Collections.newSetFromMap(new WeakHashMap<>());
+	private final ThreadLocal<Buffer> threadBuffers = ThreadLocal.withInitial(this::newBuffer);
 
 	/**
 	 * Constructs a new {@linkplain BufferedFileChannelInput} instance.
@@ -72,12 +75,32 @@ public class BufferedFileChannelInput extends FileScannerInput implements Closea
 		return getBuffer().read(this.input, position, size);
 	}
 
-	private synchronized Buffer getBuffer() {
-		return this.threadBuffers.computeIfAbsent(Thread.currentThread(), t -> new Buffer());
+	@Override
+	public long transferTo(WritableByteChannel target, long start, long end) throws IOException {
+		// Bulk transfers bypass the per thread cache
+		return this.input.transferTo(target, start, end);
+	}
+
+	private Buffer getBuffer() {
+		return this.threadBuffers.get();
+	}
+
+	private Buffer newBuffer() {
+		Buffer buffer = new Buffer();
+
+		synchronized (this.buffers) {
+			this.buffers.add(buffer);
+		}
+		return buffer;
 	}
 
-	private synchronized void clearBuffers() {
-		this.threadBuffers.clear();
+	private void clearBuffers() {
+		// Release the cached data of all threads (each thread's buffer re-reads its data on next access)
+		synchronized (this.buffers) {
+			for (Buffer buffer : this.buffers) {
+				buffer.clear();
+			}
+		}
 	}
 
 	private static class Buffer {
@@ -101,22 +124,29 @@ public class BufferedFileChannelInput extends FileScannerInput implements Closea
 			BUFFER_SIZE = bufferSize;
 		}
 
-		private SoftReference<@Nullable ByteBuffer> bufferReference = new SoftReference<>(null);
+		private volatile SoftReference<@Nullable ByteBuffer> bufferReference = new SoftReference<>(null);
 		private long bufferPosition = -1;
 
 		public Buffer() {
 			// Nothing to do here
 		}
 
+		public void clear() {
+			this.bufferReference.clear();
+		}
+
 		public int read(FileScannerInput input, ByteBuffer buffer, long position) throws IOException {
 			int bufferRemaining = buffer.remaining();
 			int read;
 
 			if (bufferRemaining <= (BUFFER_SIZE >> 1)) {
-				ByteBuffer cacheBuffer = read0(input, position, bufferRemaining);
+				// Copy directly from the cache buffer's backing array (no need to create a view)
+				ByteBuffer cacheBuffer = mapBuffer(input, position, bufferRemaining);
+				int cacheLimit = cacheBuffer.limit();
+				int cacheStart = Math.min(cacheLimit, (int) (position - this.bufferPosition));
 
-				read = cacheBuffer.remaining();
-				buffer.put(cacheBuffer);
+				read = Math.min(cacheLimit - cacheStart, bufferRemaining);
+				buffer.put(cacheBuffer.array(), cacheStart, read);
 			} else {
 				read = input.read(buffer, position);
 			}
@@ -136,7 +166,8 @@ public class BufferedFileChannelInput extends FileScannerInput implements Closea
 
 		private ByteBuffer read0(FileScannerInput input, long position, int size) throws IOException {
 			ByteBuffer buffer = mapBuffer(input, position, size);
-			ByteBuffer readBuffer = buffer.slice().asReadOnlyBuffer();
+			// The cache buffer is always flipped at position 0, hence a plain view is sufficient (no need to slice)
+			ByteBuffer readBuffer = buffer.asReadOnlyBuffer();
 
 			readBuffer.limit(Math.min(readBuffer.remaining(), (int) (position - this.bufferPosition + size)));
 			readBuffer.position(Math.min(readBuffer.limit(), (int) (position - this.bufferPosition)));
@@ -20,6 +20,7 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
 
@@ -65,4 +66,27 @@ class FileChannelInput extends FileScannerInput implements Closeable {
 		return this.fileChannel.read(buffer, position);
 	}
 
+	@Override
+	public long transferTo(WritableByteChannel target, long start, long end) throws IOException {
+		long transferred;
+
+		if (target instanceof FileChannel) {
+			long transferEnd = Math.min(end, this.fileChannel.size());
+			long position = start;
+
+			while (position < transferEnd) {
+				long transfer = this.fileChannel.transferTo(position, transferEnd - position, target);
+
+				if (transfer <= 0) {
+					break;
+				}
+				position += transfer;
+			}
+			transferred = Math.max(position - start, 0);
+		} else {
+			transferred = super.transferTo(target, start, end);
+		}
+		return transferred;
+	}
+
 }
@@ -18,18 +18,28 @@ package de.carne.filescanner.engine.input;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.ref.SoftReference;
 import java.nio.ByteBuffer;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 
+import org.eclipse.jdt.annotation.Nullable;
+
 import de.carne.util.Check;
+import de.carne.util.SystemProperties;
 
 /**
  * Base class for all kinds of scan input data streams.
  */
 public abstract class FileScannerInput {
 
+	private static final int TRANSFER_BUFFER_SIZE = Math
+			.max(SystemProperties.intValue(FileScannerInput.class, ".transferBufferSize", 0x100000), 0x1000);
+
+	private static final ThreadLocal<@Nullable SoftReference<ByteBuffer>> TRANSFER_BUFFERS = new ThreadLocal<>();
+
 	private final String name;
 
 	/**
@@ -115,6 +125,27 @@ public abstract class FileScannerInput {
 		return new FileScannerInputRange(this.name, this, 0, start, end);
 	}
 
+	/**
+	 * Creates a named {@linkplain FileScannerInput} instance backed up by a section of this
+	 * {@linkplain FileScannerInput}.
+	 * <p>
+	 * In difference to {@linkplain #range(long, long)} the created {@linkplain FileScannerInput} starts at position 0.
+	 * </p>
+	 *
+	 * @param sectionName the name of the created {@linkplain FileScannerInput}.
+	 * @param start the start position of the section.
+	 * @param end the end position of the section.
+	 * @return the created {@linkplain FileScannerInput} instance.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public FileScannerInput section(String sectionName, long start, long end) throws IOException {
+		Check.assertTrue(0 <= start);
+		Check.assertTrue(start <= end);
+		Check.assertTrue(end <= size());
+
+		return new FileScannerInputRange(sectionName, this, start, start, end);
+	}
+
 	/**
 	 * Creates a {@linkplain SeekableByteChannel} instance backed up by this {@linkplain FileScannerInput} and
 	 * restricted to the given range.
@@ -149,6 +180,69 @@ public abstract class FileScannerInput {
 		return new FileScannerInputInputStream(this, start, end);
 	}
 
+	/**
+	 * Transfers a range of this {@linkplain FileScannerInput} to a {@linkplain WritableByteChannel}.
+	 * <p>
+	 * The default implementation copies the data via a direct buffer which is cached per thread and reused by
+	 * subsequent transfers (e.g. when a large range is transferred in chunks). Implementations backed up by a physical
+	 * file transfer the data directly from the file to the target channel (see
+	 * {@linkplain java.nio.channels.FileChannel#transferTo(long, long, WritableByteChannel)}).
+	 * </p>
+	 *
+	 * @param target the {@linkplain WritableByteChannel} to transfer to.
+	 * @param start the start position of the range to transfer.
+	 * @param end the end position of the range to transfer.
+	 * @return the number of transferred bytes (which is less than the range size if EOF has been reached).
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public long transferTo(WritableByteChannel target, long start, long end) throws IOException {
+		Check.assertTrue(0 <= start);
+		Check.assertTrue(start <= end);
+
+		ByteBuffer buffer = acquireTransferBuffer();
+		long position = start;
+
+		try {
+			while (position < end) {
+				buffer.clear();
+				if (end - position < buffer.capacity()) {
+					buffer.limit((int) (end - position));
+				}
+
+				int read = read(buffer, position);
+
+				if (read <= 0) {
+					break;
+				}
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					target.write(buffer);
+				}
+				position += read;
+			}
+		} finally {
+			releaseTransferBuffer(buffer);
+		}
+		return position - start;
+	}
+
+	private static ByteBuffer acquireTransferBuffer() {
+		SoftReference<ByteBuffer> bufferReference = TRANSFER_BUFFERS.get();
+		ByteBuffer buffer = (bufferReference != null ? bufferReference.get() : null);
+
+		if (buffer != null) {
+			// Keep the buffer out of the cache while it is in use (transfers may be nested)
+			TRANSFER_BUFFERS.remove();
+		} else {
+			buffer = ByteBuffer.allocateDirect(TRANSFER_BUFFER_SIZE);
+		}
+		return buffer;
+	}
+
+	private static void releaseTransferBuffer(ByteBuffer buffer) {
+		TRANSFER_BUFFERS.set(new SoftReference<>(buffer));
+	}
+
 	@Override
 	public String toString() {
 		return this.name;
@@ -61,7 +61,7 @@ class FileScannerInputByteChannel implements SeekableByteChannel {
 		} else if (this.position < this.end) {
 			ByteBuffer limitedDst = dst.duplicate();
 
-			limitedDst.limit((int) (this.end - this.position));
+			limitedDst.limit(limitedDst.position() + (int) (this.end - this.position));
 			read = this.input.read(limitedDst, this.position);
 			dst.position(limitedDst.position());
 		} else {
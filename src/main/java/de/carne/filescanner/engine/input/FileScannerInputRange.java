@@ -18,6 +18,7 @@ package de.carne.filescanner.engine.input;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 import de.carne.filescanner.engine.util.HexFormat;
 
@@ -49,6 +50,10 @@ public class FileScannerInputRange extends FileScannerInput {
 		return this.input;
 	}
 
+	long base() {
+		return this.base;
+	}
+
 	/**
 	 * Gets the range start position.
 	 *
@@ -91,6 +96,14 @@ public class FileScannerInputRange extends FileScannerInput {
 		return read;
 	}
 
+	@Override
+	public long transferTo(WritableByteChannel target, long transferStart, long transferEnd) throws IOException {
+		long rebasedStart = this.base + transferStart;
+		long rebasedEnd = Math.min(this.base + transferEnd, this.end);
+
+		return (rebasedStart < rebasedEnd ? this.input.transferTo(target, rebasedStart, rebasedEnd) : 0l);
+	}
+
 	@Override
 	public FileScannerInputRange range(long rangeStart, long rangeEnd) throws IOException {
 		return (this.base == 0 && this.start == rangeStart && this.end == rangeEnd ? this
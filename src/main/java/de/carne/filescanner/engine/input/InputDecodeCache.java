@@ -29,6 +29,8 @@ import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 
+import org.eclipse.jdt.annotation.Nullable;
+
 import de.carne.filescanner.engine.InsufficientDataException;
 import de.carne.filescanner.engine.InvalidPositionException;
 import de.carne.filescanner.engine.util.HexFormat;
@@ -190,19 +192,29 @@ public final class InputDecodeCache implements Closeable {
 			Decoder decoder = inputDecoder.newDecoder();
 			long decodedPosition = cacheFile.beginDecode();
 			long decodedSize = 0;
+			// Digest the decoded data while it is written to the cache (avoiding a second read)
+			InputDigester digester = InputDigester.newDigester();
 
 			ByteBuffer buffer = ByteBuffer.allocate(DECODE_BUFFER_SIZE);
 
 			while (!this.shutdownCommenced.get().booleanValue() && decoder.decode(buffer, encodedByteChannel) >= 0) {
 				buffer.flip();
+				if (digester != null) {
+					digester.update(buffer);
+				}
 				decodedSize += cacheFileChannel.write(buffer);
 				buffer.clear();
 			}
 			cacheFile.endDecode(decodedSize);
-			decodeResult = new DecodeResult(
-					decodedInputMapper.map(new FileScannerInputRange(decodedInputMapper.name(), cacheFile.input(),
-							decodedPosition, decodedPosition, decodedPosition + decodedSize)),
-					start, decoder.totalIn());
+
+			FileScannerInput decodedInput = new FileScannerInputRange(decodedInputMapper.name(), cacheFile.input(),
+					decodedPosition, decodedPosition, decodedPosition + decodedSize);
+			List<FileScannerInput> decodedInputs = decodedInputMapper.map(decodedInput);
+			// Digests are only valid if the decoded input has been mapped as a whole
+			InputDigests decodedDigests = (digester != null && decodedInputs.size() == 1
+					&& decodedInputs.get(0) == decodedInput ? digester.digest() : null);
+
+			decodeResult = new DecodeResult(decodedInputs, start, decoder.totalIn(), decodedDigests);
 		} catch (IOException e) {
 			throw new InputDecoderException(inputDecoder, e);
 		}
@@ -266,11 +278,19 @@ public final class InputDecodeCache implements Closeable {
 		private final List<FileScannerInput> decodedInputs;
 		private final long decodePosition;
 		private final long encodedSize;
+		@Nullable
+		private final InputDigests decodedDigests;
 
 		DecodeResult(List<FileScannerInput> decodedInputs, long decodePosition, long encodedSize) {
+			this(decodedInputs, decodePosition, encodedSize, null);
+		}
+
+		DecodeResult(List<FileScannerInput> decodedInputs, long decodePosition, long encodedSize,
+				@Nullable InputDigests decodedDigests) {
 			this.decodedInputs = decodedInputs;
 			this.decodePosition = decodePosition;
 			this.encodedSize = encodedSize;
+			this.decodedDigests = decodedDigests;
 		}
 
 		/**
@@ -300,6 +320,20 @@ public final class InputDecodeCache implements Closeable {
 			return this.encodedSize;
 		}
 
+		/**
+		 * Gets the digests of the complete decoded data.
+		 * <p>
+		 * Digests are only available if digest computation is enabled (see {@linkplain InputDigester}) and the data has
+		 * actually been decoded (identity mapped input ranges are not digested during decoding).
+		 * </p>
+		 *
+		 * @return the digests of the complete decoded data or {@code null} if no digests are available.
+		 */
+		@Nullable
+		public InputDigests decodedDigests() {
+			return this.decodedDigests;
+		}
+
 	}
 
 	private static class CacheFile implements Closeable {
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.input;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import de.carne.util.SystemProperties;
+
+/**
+ * Computes the digests of an input range and of any number of ranges nested into it in a single read pass.
+ * <p>
+ * Nested ranges may be defined via any {@linkplain FileScannerInput} that is backed by the same physical input as the
+ * outer range (e.g. the input of a stored archive member). The outer range is read sequentially at most once and each
+ * chunk read is fed into all of the digests covering it. Data not covered by any of the added ranges is skipped. The
+ * actual digesters are only created once the reading reaches the corresponding range.
+ * </p>
+ *
+ * @param <K> the type of the keys used to identify the individual ranges.
+ */
+public final class InputDigestPass<K> {
+
+	private static final int READ_BUFFER_SIZE = SystemProperties.intValue(InputDigestPass.class, ".readBufferSize",
+			0x10000);
+
+	private final Collection<String> algorithms;
+	private final FileScannerInput input;
+	private final long start;
+	private final long end;
+	private final FileScannerInput physicalInput;
+	private final long physicalStart;
+	private final List<Target<K>> targets = new ArrayList<>();
+
+	/**
+	 * Constructs a new {@linkplain InputDigestPass} instance.
+	 *
+	 * @param algorithms the digest algorithms to compute (see {@linkplain InputDigester#checkAlgorithms(String...)}).
+	 * @param input the {@linkplain FileScannerInput} to read.
+	 * @param start the start position of the outer range.
+	 * @param end the end position of the outer range.
+	 */
+	public InputDigestPass(Collection<String> algorithms, FileScannerInput input, long start, long end) {
+		this.algorithms = algorithms;
+		this.input = input;
+		this.start = start;
+		this.end = end;
+		this.physicalInput = physicalInput(input);
+		this.physicalStart = physicalOffset(input) + start;
+	}
+
+	/**
+	 * Constructs a new {@linkplain InputDigestPass} instance covering the complete physical input backing the given
+	 * {@linkplain FileScannerInput}.
+	 *
+	 * @param <K> the type of the keys used to identify the individual ranges.
+	 * @param algorithms the digest algorithms to compute (see {@linkplain InputDigester#checkAlgorithms(String...)}).
+	 * @param input the {@linkplain FileScannerInput} whose physical input is to be read.
+	 * @return the created {@linkplain InputDigestPass} instance.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static <K> InputDigestPass<K> physical(Collection<String> algorithms, FileScannerInput input)
+			throws IOException {
+		FileScannerInput physicalInput = physicalInput(input);
+
+		return new InputDigestPass<>(algorithms, physicalInput, 0, physicalInput.size());
+	}
+
+	/**
+	 * Adds the outer range itself to the digest pass.
+	 *
+	 * @param key the key to identify the range's digests.
+	 */
+	public void addOuter(K key) {
+		addTarget(key, this.physicalStart, this.physicalStart + (this.end - this.start));
+	}
+
+	/**
+	 * Adds a nested range to the digest pass.
+	 *
+	 * @param key the key to identify the range's digests.
+	 * @param nestedInput the {@linkplain FileScannerInput} defining the range.
+	 * @param nestedStart the start position of the range (relative to the submitted input).
+	 * @param nestedEnd the end position of the range (relative to the submitted input).
+	 * @return {@code true} if the range is covered by the outer range and has been added; {@code false} if the range is
+	 * not covered by the outer range and cannot be digested by this pass.
+	 */
+	public boolean addNested(K key, FileScannerInput nestedInput, long nestedStart, long nestedEnd) {
+		boolean added = false;
+
+		if (physicalInput(nestedInput) == this.physicalInput) {
+			long nestedPhysicalStart = physicalOffset(nestedInput) + nestedStart;
+			long nestedPhysicalEnd = nestedPhysicalStart + (nestedEnd - nestedStart);
+
+			if (this.physicalStart <= nestedPhysicalStart
+					&& nestedPhysicalEnd <= this.physicalStart + (this.end - this.start)) {
+				addTarget(key, nestedPhysicalStart, nestedPhysicalEnd);
+				added = true;
+			}
+		}
+		return added;
+	}
+
+	/**
+	 * Reads the outer range and computes the digests of all added ranges.
+	 *
+	 * @return the computed digests by range key.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public Map<K, InputDigests> run() throws IOException {
+		return run(() -> Boolean.FALSE);
+	}
+
+	/**
+	 * Reads the outer range and computes the digests of all added ranges.
+	 * <p>
+	 * If a shutdown commences while reading, reading is stopped and only the digests completed so far are returned.
+	 * </p>
+	 *
+	 * @param shutdownCommenced the function to check for a commenced shutdown.
+	 * @return the computed digests by range key.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public Map<K, InputDigests> run(Supplier<Boolean> shutdownCommenced) throws IOException {
+		Map<K, InputDigests> digests = new LinkedHashMap<>();
+
+		if (!this.targets.isEmpty()) {
+			this.targets.sort(Comparator.comparingLong(Target::start));
+
+			Iterator<Target<K>> pendingTargets = this.targets.iterator();
+			Target<K> nextTarget = pendingTargets.next();
+			List<Target<K>> activeTargets = new LinkedList<>();
+			ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(READ_BUFFER_SIZE, 0x1000));
+			long position = this.start;
+
+			while (!shutdownCommenced.get().booleanValue()
+					&& (position < this.end || !activeTargets.isEmpty() || nextTarget != null)) {
+				if (activeTargets.isEmpty() && nextTarget != null) {
+					// Skip any data not covered by the pending ranges
+					position = Math.max(position, this.start + (nextTarget.start() - this.physicalStart));
+				}
+				buffer.clear();
+				buffer.limit((int) Math.min(buffer.capacity(), this.end - position));
+
+				int read = (buffer.hasRemaining() ? this.input.read(buffer, position) : -1);
+				long chunkStart = this.physicalStart + (position - this.start);
+				long chunkEnd = chunkStart + Math.max(read, 0);
+
+				buffer.flip();
+				while (nextTarget != null && nextTarget.start() <= chunkEnd) {
+					nextTarget.activate(this.algorithms);
+					activeTargets.add(nextTarget);
+					nextTarget = (pendingTargets.hasNext() ? pendingTargets.next() : null);
+				}
+
+				Iterator<Target<K>> activeTargetsIterator = activeTargets.iterator();
+
+				while (activeTargetsIterator.hasNext()) {
+					Target<K> activeTarget = activeTargetsIterator.next();
+
+					activeTarget.update(buffer, chunkStart, chunkEnd);
+					if (activeTarget.end() <= chunkEnd) {
+						digests.put(activeTarget.key(), activeTarget.digest());
+						activeTargetsIterator.remove();
+					} else if (read < 0) {
+						// Input ended prematurely; drop the incomplete digest
+						activeTargetsIterator.remove();
+					}
+				}
+				if (read < 0) {
+					nextTarget = null;
+					position = this.end;
+				} else {
+					position += read;
+				}
+			}
+		}
+		return digests;
+	}
+
+	private void addTarget(K key, long targetStart, long targetEnd) {
+		this.targets.add(new Target<>(key, targetStart, targetEnd));
+	}
+
+	private static FileScannerInput physicalInput(FileScannerInput input) {
+		FileScannerInput physicalInput = input;
+
+		while (physicalInput instanceof FileScannerInputRange) {
+			physicalInput = ((FileScannerInputRange) physicalInput).input();
+		}
+		return physicalInput;
+	}
+
+	private static long physicalOffset(FileScannerInput input) {
+		FileScannerInput physicalInput = input;
+		long physicalOffset = 0;
+
+		while (physicalInput instanceof FileScannerInputRange) {
+			FileScannerInputRange inputRange = (FileScannerInputRange) physicalInput;
+
+			physicalOffset += inputRange.base();
+			physicalInput = inputRange.input();
+		}
+		return physicalOffset;
+	}
+
+	private static final class Target<K> {
+
+		private final K key;
+		private final long start;
+		private final long end;
+		@Nullable
+		private InputDigester digester = null;
+
+		Target(K key, long start, long end) {
+			this.key = key;
+			this.start = start;
+			this.end = end;
+		}
+
+		void activate(Collection<String> algorithms) {
+			this.digester = Objects.requireNonNull(InputDigester.newDigester(algorithms));
+		}
+
+		K key() {
+			return this.key;
+		}
+
+		long start() {
+			return this.start;
+		}
+
+		long end() {
+			return this.end;
+		}
+
+		void update(ByteBuffer buffer, long chunkStart, long chunkEnd) {
+			long updateStart = Math.max(this.start, chunkStart);
+			long updateEnd = Math.min(this.end, chunkEnd);
+
+			if (updateStart < updateEnd) {
+				ByteBuffer slice = buffer.duplicate();
+
+				slice.limit((int) (updateEnd - chunkStart));
+				slice.position((int) (updateStart - chunkStart));
+				Objects.requireNonNull(this.digester).update(slice);
+			}
+		}
+
+		InputDigests digest() {
+			return Objects.requireNonNull(this.digester).digest();
+		}
+
+	}
+
+}
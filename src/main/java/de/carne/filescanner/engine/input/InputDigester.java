@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.input;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import de.carne.util.SystemProperties;
+import de.carne.util.logging.Log;
+
+/**
+ * Computes a set of message digests over a chunk of input data.
+ * <p>
+ * The default set of digest algorithms is defined via the system property
+ * {@code de.carne.filescanner.engine.input.InputDigester.algorithms} (a comma separated list of
+ * {@linkplain MessageDigest} algorithm names like {@code MD5,SHA-256}). If the property is not set, digest computation
+ * is disabled by default.
+ * </p>
+ */
+public final class InputDigester {
+
+	private static final Log LOG = new Log();
+
+	private static final List<String> DEFAULT_ALGORITHMS = checkAlgorithms(
+			SystemProperties.value(InputDigester.class, ".algorithms", "").split(","));
+
+	private final List<String> algorithms;
+	private final MessageDigest[] messageDigests;
+
+	private InputDigester(List<String> algorithms) {
+		this.algorithms = algorithms;
+		this.messageDigests = new MessageDigest[algorithms.size()];
+		for (int algorithmIndex = 0; algorithmIndex < this.messageDigests.length; algorithmIndex++) {
+			try {
+				this.messageDigests[algorithmIndex] = MessageDigest.getInstance(algorithms.get(algorithmIndex));
+			} catch (NoSuchAlgorithmException e) {
+				// Should not happen as the algorithms have been checked already
+				throw new IllegalArgumentException(e);
+			}
+		}
+	}
+
+	/**
+	 * Checks a set of digest algorithm names and drops the unsupported ones.
+	 *
+	 * @param algorithms the digest algorithm names to check.
+	 * @return the supported digest algorithm names.
+	 */
+	public static List<String> checkAlgorithms(String... algorithms) {
+		List<String> checkedAlgorithms = new ArrayList<>(algorithms.length);
+
+		for (String algorithm : algorithms) {
+			String trimmedAlgorithm = algorithm.trim();
+
+			if (!trimmedAlgorithm.isEmpty() && !checkedAlgorithms.contains(trimmedAlgorithm)) {
+				try {
+					MessageDigest.getInstance(trimmedAlgorithm);
+					checkedAlgorithms.add(trimmedAlgorithm);
+				} catch (NoSuchAlgorithmException e) {
+					LOG.warning(e, "Ignoring unsupported digest algorithm ''{0}''", trimmedAlgorithm);
+				}
+			}
+		}
+		return Collections.unmodifiableList(checkedAlgorithms);
+	}
+
+	/**
+	 * Gets the default digest algorithms.
+	 *
+	 * @return the default digest algorithms (may be empty if digest computation is disabled).
+	 */
+	public static List<String> defaultAlgorithms() {
+		return DEFAULT_ALGORITHMS;
+	}
+
+	/**
+	 * Creates a new {@linkplain InputDigester} instance for the default digest algorithms.
+	 *
+	 * @return the created {@linkplain InputDigester} instance or {@code null} if digest computation is disabled.
+	 */
+	@Nullable
+	public static InputDigester newDigester() {
+		return newDigester(DEFAULT_ALGORITHMS);
+	}
+
+	/**
+	 * Creates a new {@linkplain InputDigester} instance.
+	 *
+	 * @param algorithms the digest algorithms to compute (see {@linkplain #checkAlgorithms(String...)}).
+	 * @return the created {@linkplain InputDigester} instance or {@code null} if no algorithms have been submitted.
+	 */
+	@Nullable
+	public static InputDigester newDigester(Collection<String> algorithms) {
+		return (!algorithms.isEmpty() ? new InputDigester(new ArrayList<>(algorithms)) : null);
+	}
+
+	/**
+	 * Feeds the remaining bytes of a buffer into the digests.
+	 * <p>
+	 * The buffer's position is not changed.
+	 * </p>
+	 *
+	 * @param buffer the buffer containing the data to digest.
+	 */
+	public void update(ByteBuffer buffer) {
+		int position = buffer.position();
+
+		for (MessageDigest messageDigest : this.messageDigests) {
+			buffer.position(position);
+			messageDigest.update(buffer);
+		}
+		buffer.position(position);
+	}
+
+	/**
+	 * Completes the digest computation.
+	 * <p>
+	 * The digester is reset afterwards and can be reused.
+	 * </p>
+	 *
+	 * @return the computed {@linkplain InputDigests}.
+	 */
+	public InputDigests digest() {
+		Map<String, byte[]> digests = new LinkedHashMap<>();
+
+		for (int algorithmIndex = 0; algorithmIndex < this.messageDigests.length; algorithmIndex++) {
+			digests.put(this.algorithms.get(algorithmIndex), this.messageDigests[algorithmIndex].digest());
+		}
+		return new InputDigests(digests);
+	}
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.input;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The message digests computed for a chunk of input data (see {@linkplain InputDigester}).
+ */
+public final class InputDigests {
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private final Map<String, byte[]> digests;
+
+	InputDigests(Map<String, byte[]> digests) {
+		this.digests = Collections.unmodifiableMap(digests);
+	}
+
+	/**
+	 * Gets the names of the digest algorithms contained in this instance.
+	 *
+	 * @return the names of the digest algorithms contained in this instance.
+	 */
+	public Set<String> algorithms() {
+		return this.digests.keySet();
+	}
+
+	/**
+	 * Gets the digest computed by a specific algorithm.
+	 *
+	 * @param algorithm the name of the digest algorithm to get the digest for.
+	 * @return the digest computed by the requested algorithm or {@code null} if the algorithm has not been computed.
+	 */
+	public byte @Nullable [] digest(String algorithm) {
+		byte[] digest = this.digests.get(algorithm);
+
+		return (digest != null ? digest.clone() : null);
+	}
+
+	/**
+	 * Gets the hexadecimal representation of the digest computed by a specific algorithm.
+	 *
+	 * @param algorithm the name of the digest algorithm to get the digest for.
+	 * @return the hexadecimal representation of the digest or {@code null} if the algorithm has not been computed.
+	 */
+	@Nullable
+	public String hexDigest(String algorithm) {
+		byte[] digest = this.digests.get(algorithm);
+
+		return (digest != null ? formatDigest(new StringBuilder(), digest).toString() : null);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buffer = new StringBuilder();
+
+		for (Map.Entry<String, byte[]> digestEntry : this.digests.entrySet()) {
+			if (buffer.length() > 0) {
+				buffer.append(", ");
+			}
+			buffer.append(digestEntry.getKey()).append(':');
+			formatDigest(buffer, digestEntry.getValue());
+		}
+		return buffer.toString();
+	}
+
+	private static StringBuilder formatDigest(StringBuilder buffer, byte[] digest) {
+		for (byte digestByte : digest) {
+			buffer.append(HEX_DIGITS[(digestByte >> 4) & 0xf]).append(HEX_DIGITS[digestByte & 0xf]);
+		}
+		return buffer;
+	}
+
+}
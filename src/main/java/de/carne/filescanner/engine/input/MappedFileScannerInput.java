@@ -18,6 +18,7 @@ package de.carne.filescanner.engine.input;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.TreeMap;
@@ -105,6 +106,28 @@ public class MappedFileScannerInput extends FileScannerInput {
 		return totalRead;
 	}
 
+	@Override
+	public long transferTo(WritableByteChannel target, long start, long end) throws IOException {
+		long transferPosition = start;
+		Map.Entry<Long, Mapping> entry = this.mappings.floorEntry(start);
+
+		while (entry != null && transferPosition < end) {
+			long mappingOffset = transferPosition - entry.getKey();
+			Mapping mapping = entry.getValue();
+			long transferSize = Math.min(mapping.size() - mappingOffset, end - transferPosition);
+
+			if (transferSize > 0) {
+				long transferred = mapping.transferTo(target, mappingOffset, transferSize);
+
+				transferPosition += transferred;
+				entry = (transferred == transferSize ? nextMapping(transferPosition) : null);
+			} else {
+				entry = null;
+			}
+		}
+		return transferPosition - start;
+	}
+
 	private Map.@Nullable Entry<Long, Mapping> nextMapping(long nextOffset) {
 		Long nextKey = Long.valueOf(nextOffset);
 		Map.Entry<Long, Mapping> next = this.mappings.floorEntry(nextKey);
@@ -140,6 +163,10 @@ public class MappedFileScannerInput extends FileScannerInput {
 			return read;
 		}
 
+		public final long transferTo(WritableByteChannel target, long offset, long size) throws IOException {
+			return this.input.transferTo(target, this.start + offset, this.start + offset + size);
+		}
+
 	}
 
 }
@@ -26,6 +26,7 @@ import java.util.regex.Pattern;
 import de.carne.filescanner.engine.FileScannerResult;
 import de.carne.filescanner.engine.FileScannerResultDecodeContext;
 import de.carne.filescanner.engine.format.CompositeSpec;
+import de.carne.filescanner.engine.format.FormatSpecDefinition;
 
 /**
  * Base class for all decodable file formats.
@@ -36,7 +37,11 @@ public abstract class Format {
 	private final List<CompositeSpec> headerSpecs = new ArrayList<>();
 	private final List<CompositeSpec> trailerSpecs = new ArrayList<>();
 	private final List<Pattern> inputNamePatterns = new ArrayList<>();
+	private final List<byte[]> headerMagics = new ArrayList<>();
+	private final List<FormatSpecDefinition> specDefinitions = new ArrayList<>();
+	private int trailerMatchSize = 0;
 	private boolean absolute = false;
+	private volatile boolean active = false;
 
 	/**
 	 * Constructs a new {@linkplain Format} instance.
@@ -56,6 +61,64 @@ public abstract class Format {
 		return ServiceLoader.load(Format.class);
 	}
 
+	/**
+	 * Loads the resources needed for matching and decoding this {@linkplain Format} instance.
+	 * <p>
+	 * This function is called once during activation (see {@linkplain #activate()}). Formats registering header
+	 * magics (see {@linkplain #registerHeaderMagic(byte...)}) should defer loading their format spec definition as
+	 * well as registering their header specs to this function. The default implementation does nothing.
+	 * </p>
+	 */
+	protected void load() {
+		// Default is to do nothing
+	}
+
+	/**
+	 * Activates this {@linkplain Format} instance.
+	 * <p>
+	 * Activation loads the resources needed for matching and decoding (see {@linkplain #load()}). It is performed
+	 * only once and is safe to invoke concurrently.
+	 * </p>
+	 */
+	public final void activate() {
+		if (!this.active) {
+			activate0();
+		}
+	}
+
+	private synchronized void activate0() {
+		if (!this.active) {
+			load();
+			this.active = true;
+		}
+	}
+
+	/**
+	 * Checks whether this {@linkplain Format} instance has already been activated.
+	 *
+	 * @return {@code true} if this {@linkplain Format} instance has already been activated.
+	 * @see #activate()
+	 */
+	public final boolean isActive() {
+		return this.active;
+	}
+
+	/**
+	 * Registers a header magic hinting at this {@linkplain Format} instance.
+	 * <p>
+	 * Header magics are matched against the input data starting at the current scan position prior to activating the
+	 * format (see {@linkplain #activate()}). Hence a format registering header magics is only loaded once one of them
+	 * has been matched. A header magic must be a necessary condition for one of the format's header specs to match.
+	 * </p>
+	 *
+	 * @param magic the header magic bytes to register.
+	 * @return the updated {@linkplain Format} instance for chaining.
+	 */
+	protected Format registerHeaderMagic(byte... magic) {
+		this.headerMagics.add(magic.clone());
+		return this;
+	}
+
 	/**
 	 * Registers a header {@linkplain CompositeSpec} hinting at this {@linkplain Format} instance.
 	 *
@@ -75,6 +138,24 @@ public abstract class Format {
 	 */
 	protected Format registerTrailerSpec(CompositeSpec trailerSpec) {
 		this.trailerSpecs.add(trailerSpec);
+		this.trailerMatchSize = Math.max(this.trailerMatchSize, trailerSpec.matchSize());
+		return this;
+	}
+
+	/**
+	 * Registers the match size of the trailer {@linkplain CompositeSpec}s hinting at this {@linkplain Format}
+	 * instance.
+	 * <p>
+	 * Like header magics (see {@linkplain #registerHeaderMagic(byte...)}) the trailer match size is available prior
+	 * to activating the format (see {@linkplain #activate()}). A format deferring the registration of its trailer
+	 * specs to {@linkplain #load()} has to register the maximum match size of these specs during construction.
+	 * </p>
+	 *
+	 * @param matchSize the trailer match size to register.
+	 * @return the updated {@linkplain Format} instance for chaining.
+	 */
+	protected Format registerTrailerMatchSize(int matchSize) {
+		this.trailerMatchSize = Math.max(this.trailerMatchSize, matchSize);
 		return this;
 	}
 
@@ -89,6 +170,23 @@ public abstract class Format {
 		return this;
 	}
 
+	/**
+	 * Registers a {@linkplain FormatSpecDefinition} used by this {@linkplain Format} instance.
+	 * <p>
+	 * The spec elements defined by the registered definitions are identified by their definition (see
+	 * {@linkplain FormatSpecDefinition#definedSpecIndex(Object)}). This allows the scan results referring to these
+	 * spec elements to be saved to and restored from snapshot files. The definition may be registered prior to being
+	 * loaded.
+	 * </p>
+	 *
+	 * @param specDefinition the {@linkplain FormatSpecDefinition} to register.
+	 * @return the updated {@linkplain Format} instance for chaining.
+	 */
+	protected Format registerSpecDefinition(FormatSpecDefinition specDefinition) {
+		this.specDefinitions.add(specDefinition);
+		return this;
+	}
+
 	/**
 	 * Defines whether this format is absolute or not.
 	 * <p>
@@ -121,7 +219,7 @@ public abstract class Format {
 	 * @see #registerHeaderSpec(CompositeSpec)
 	 */
 	public boolean hasHeaderSpecs() {
-		return !this.headerSpecs.isEmpty();
+		return (!this.active && hasHeaderMagics()) || !headerSpecs().isEmpty();
 	}
 
 	/**
@@ -131,9 +229,30 @@ public abstract class Format {
 	 * @see #registerHeaderSpec(CompositeSpec)
 	 */
 	public List<CompositeSpec> headerSpecs() {
+		activate();
 		return Collections.unmodifiableList(this.headerSpecs);
 	}
 
+	/**
+	 * Checks whether this {@linkplain Format} instance has any header magics defined.
+	 *
+	 * @return {@code true} if at least one header magic is associated with this {@linkplain Format} instance.
+	 * @see #registerHeaderMagic(byte...)
+	 */
+	public boolean hasHeaderMagics() {
+		return !this.headerMagics.isEmpty();
+	}
+
+	/**
+	 * Gets the header magics hinting at this {@linkplain Format} instance.
+	 *
+	 * @return the header magics hinting at this {@linkplain Format} instance.
+	 * @see #registerHeaderMagic(byte...)
+	 */
+	public List<byte[]> headerMagics() {
+		return Collections.unmodifiableList(this.headerMagics);
+	}
+
 	/**
 	 * Checks whether this {@linkplain Format} instance has any trailer {@linkplain CompositeSpec}s defined.
 	 *
@@ -142,7 +261,21 @@ public abstract class Format {
 	 * @see #registerTrailerSpec(CompositeSpec)
 	 */
 	public boolean hasTrailerSpecs() {
-		return !this.trailerSpecs.isEmpty();
+		return this.trailerMatchSize > 0 || !this.trailerSpecs.isEmpty();
+	}
+
+	/**
+	 * Gets the maximum match size of the trailer {@linkplain CompositeSpec}s hinting at this {@linkplain Format}
+	 * instance.
+	 * <p>
+	 * In contrast to {@linkplain #trailerSpecs()} this function does not activate the format.
+	 * </p>
+	 *
+	 * @return the maximum match size of the trailer {@linkplain CompositeSpec}s.
+	 * @see #registerTrailerMatchSize(int)
+	 */
+	public int trailerMatchSize() {
+		return this.trailerMatchSize;
 	}
 
 	/**
@@ -152,9 +285,21 @@ public abstract class Format {
 	 * @see #registerTrailerSpec(CompositeSpec)
 	 */
 	public List<CompositeSpec> trailerSpecs() {
+		activate();
 		return Collections.unmodifiableList(this.trailerSpecs);
 	}
 
+	/**
+	 * Gets the {@linkplain FormatSpecDefinition}s used by this {@linkplain Format} instance.
+	 *
+	 * @return the {@linkplain FormatSpecDefinition}s used by this {@linkplain Format} instance.
+	 * @see #registerSpecDefinition(FormatSpecDefinition)
+	 */
+	public List<FormatSpecDefinition> specDefinitions() {
+		activate();
+		return Collections.unmodifiableList(this.specDefinitions);
+	}
+
 	/**
 	 * Checks whether this {@linkplain Format} instance has any input name {@linkplain Pattern}s defined.
 	 *
@@ -0,0 +1,393 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.transfer;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import de.carne.filescanner.engine.FileScannerResult;
+import de.carne.filescanner.engine.input.FileScannerInput;
+import de.carne.util.SystemProperties;
+import de.carne.util.logging.Log;
+
+/**
+ * Exports all results of a result sub-tree into a target directory.
+ * <p>
+ * The export handler to use for each result is determined via a handler selection function (results without a
+ * handler are skipped). The exports are run in parallel using a bounded number of threads. Exports are started
+ * ordered by their source input and position, so each source input is read sequentially.
+ * </p>
+ * <p>
+ * Results covering the very same extent (same input, start and end position) and using the same export handler are
+ * only exported once; the additional target files are created as links to (or copies of) the initially exported file.
+ * Results with identical content but different extents are exported separately (the content itself is not compared).
+ * </p>
+ * <p>
+ * Existing files in the target directory are never overwritten. Target file names already in use (by this or any
+ * previous export) are made unique by appending a counter to the file's base name.
+ * </p>
+ */
+public class BulkResultExporter {
+
+	private static final Log LOG = new Log();
+
+	private static final int THREAD_COUNT = SystemProperties.intValue(BulkResultExporter.class, ".threadCount",
+			Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * Interface used to report the export status of the individual results.
+	 * <p>
+	 * The status functions are called from the export threads and may therefore be called concurrently.
+	 * </p>
+	 */
+	public interface Status {
+
+		/**
+		 * Called whenever a result has been exported successfully.
+		 *
+		 * @param result the exported {@linkplain FileScannerResult}.
+		 * @param file the file the result has been exported to.
+		 */
+		void resultExported(FileScannerResult result, Path file);
+
+		/**
+		 * Called whenever the export of a result has failed.
+		 *
+		 * @param result the failed {@linkplain FileScannerResult}.
+		 * @param file the file the result should have been exported to.
+		 * @param cause the cause of the failure.
+		 */
+		void resultFailed(FileScannerResult result, Path file, Exception cause);
+
+	}
+
+	private final Path targetDirectory;
+	private final Function<FileScannerResult, @Nullable FileScannerResultExportHandler> handlerSelector;
+	private final int threadCount;
+	private final AtomicLong exportedCount = new AtomicLong();
+	private final AtomicLong failedCount = new AtomicLong();
+
+	/**
+	 * Constructs a new {@linkplain BulkResultExporter} instance using the default handler selection (see
+	 * {@linkplain #defaultExportHandler(FileScannerResult)}).
+	 *
+	 * @param targetDirectory the directory to export into.
+	 */
+	public BulkResultExporter(Path targetDirectory) {
+		this(targetDirectory, BulkResultExporter::defaultExportHandler, THREAD_COUNT);
+	}
+
+	/**
+	 * Constructs a new {@linkplain BulkResultExporter} instance.
+	 *
+	 * @param targetDirectory the directory to export into.
+	 * @param handlerSelector the function selecting the export handler to use for a result ({@code null} if the result
+	 * is not to be exported).
+	 * @param threadCount the maximum number of exports to run in parallel.
+	 */
+	public BulkResultExporter(Path targetDirectory,
+			Function<FileScannerResult, @Nullable FileScannerResultExportHandler> handlerSelector, int threadCount) {
+		this.targetDirectory = targetDirectory;
+		this.handlerSelector = handlerSelector;
+		this.threadCount = Math.max(threadCount, 1);
+	}
+
+	/**
+	 * Default handler selection function.
+	 * <p>
+	 * Selects the first available export handler for all {@linkplain FileScannerResult.Type#INPUT} results (e.g. the
+	 * members of an archive).
+	 * </p>
+	 *
+	 * @param result the {@linkplain FileScannerResult} to select the export handler for.
+	 * @return the selected export handler or {@code null} if the result is not to be exported.
+	 */
+	public static @Nullable FileScannerResultExportHandler defaultExportHandler(FileScannerResult result) {
+		FileScannerResultExportHandler[] exportHandlers = result.exportHandlers();
+
+		return (result.type() == FileScannerResult.Type.INPUT && exportHandlers.length > 0 ? exportHandlers[0] : null);
+	}
+
+	/**
+	 * Gets the number of successfully exported results.
+	 *
+	 * @return the number of successfully exported results.
+	 */
+	public long exportedCount() {
+		return this.exportedCount.get();
+	}
+
+	/**
+	 * Gets the number of failed results.
+	 *
+	 * @return the number of failed results.
+	 */
+	public long failedCount() {
+		return this.failedCount.get();
+	}
+
+	/**
+	 * Exports all results of the given result sub-tree (excluding the sub-tree's root).
+	 * <p>
+	 * The function returns after all exports have been finished.
+	 * </p>
+	 *
+	 * @param root the root of the result sub-tree to export.
+	 * @param status the {@linkplain Status} instance receiving the export status of the individual results.
+	 * @return the number of successfully exported results.
+	 * @throws IOException if an I/O error occurs while preparing the export.
+	 * @throws InterruptedException if the calling thread has been interrupted while waiting for the exports to finish.
+	 */
+	public long export(FileScannerResult root, Status status) throws IOException, InterruptedException {
+		Files.createDirectories(this.targetDirectory);
+
+		List<ExportJob> exportJobs = collectExportJobs(root);
+
+		LOG.info("Exporting {0} results to ''{1}'' (using {2} threads)...", exportJobs.size(), this.targetDirectory,
+				this.threadCount);
+
+		ExecutorService threadPool = Executors.newFixedThreadPool(this.threadCount);
+		long exported = this.exportedCount.get();
+
+		try {
+			// The pool's queue is FIFO, hence the exports are started in the sorted job order
+			for (ExportJob exportJob : exportJobs) {
+				threadPool.execute(() -> runExportJob(exportJob, status));
+			}
+			threadPool.shutdown();
+			while (!threadPool.awaitTermination(1, TimeUnit.SECONDS)) {
+				// Keep on waiting
+			}
+		} catch (InterruptedException e) {
+			threadPool.shutdownNow();
+			throw e;
+		}
+		return this.exportedCount.get() - exported;
+	}
+
+	private List<ExportJob> collectExportJobs(FileScannerResult root) throws IOException {
+		Map<FileScannerInput, Integer> inputOrder = new IdentityHashMap<>();
+		Map<ExportKey, ExportJob> exportJobs = new HashMap<>();
+		Set<String> fileNames = new HashSet<>();
+		Deque<FileScannerResult> pending = new ArrayDeque<>();
+
+		pending.push(root);
+		while (!pending.isEmpty()) {
+			FileScannerResult result = pending.pop();
+			FileScannerResultExportHandler exportHandler = (result != root ? this.handlerSelector.apply(result) : null);
+
+			if (exportHandler != null) {
+				FileScannerInput input = result.input();
+				Integer inputIndex = inputOrder.computeIfAbsent(input, key -> Integer.valueOf(inputOrder.size()));
+				Path file = uniqueFile(fileNames, exportHandler.defaultFileName(result));
+
+				exportJobs.computeIfAbsent(new ExportKey(input, result.start(), result.end(), exportHandler),
+						key -> new ExportJob(inputIndex.intValue(), key)).add(result, file);
+			}
+
+			FileScannerResult[] children = result.children();
+
+			for (int childIndex = children.length - 1; childIndex >= 0; childIndex--) {
+				pending.push(children[childIndex]);
+			}
+		}
+
+		List<ExportJob> sortedExportJobs = new ArrayList<>(exportJobs.values());
+
+		sortedExportJobs.sort(Comparator.comparingInt(ExportJob::inputIndex).thenComparingLong(ExportJob::start));
+		return sortedExportJobs;
+	}
+
+	private Path uniqueFile(Set<String> fileNames, String fileName) {
+		String uniqueFileName = fileName;
+		int extensionIndex = fileName.lastIndexOf('.');
+		String baseName = (extensionIndex > 0 ? fileName.substring(0, extensionIndex) : fileName);
+		String extension = (extensionIndex > 0 ? fileName.substring(extensionIndex) : "");
+		int uniqueIndex = 1;
+		Path uniqueFile = this.targetDirectory.resolve(uniqueFileName);
+
+		while (!fileNames.add(uniqueFileName.toLowerCase(Locale.ROOT)) || Files.exists(uniqueFile)) {
+			uniqueIndex++;
+			uniqueFileName = baseName + "_" + uniqueIndex + extension;
+			uniqueFile = this.targetDirectory.resolve(uniqueFileName);
+		}
+		return uniqueFile;
+	}
+
+	private void runExportJob(ExportJob exportJob, Status status) {
+		List<FileScannerResult> results = exportJob.results();
+		List<Path> files = exportJob.files();
+		Path exportFile = files.get(0);
+		boolean created = false;
+		boolean exported = false;
+
+		try {
+			// Never overwrite a file created concurrently (e.g. by another process) after the file names were chosen
+			try (FileChannel target = FileChannel.open(exportFile, StandardOpenOption.CREATE_NEW,
+					StandardOpenOption.WRITE)) {
+				created = true;
+				results.get(0).export(exportJob.exportHandler()).transfer(target);
+			}
+			exported(results.get(0), exportFile, status);
+			exported = true;
+		} catch (IOException | RuntimeException e) {
+			LOG.warning(e, "Failed to export ''{0}''", exportFile);
+			if (created) {
+				deleteFile(exportFile);
+			}
+			for (int resultIndex = 0; resultIndex < results.size(); resultIndex++) {
+				failed(results.get(resultIndex), files.get(resultIndex), e, status);
+			}
+		}
+		for (int resultIndex = 1; exported && resultIndex < results.size(); resultIndex++) {
+			FileScannerResult result = results.get(resultIndex);
+			Path file = files.get(resultIndex);
+
+			try {
+				linkOrCopy(exportFile, file);
+				exported(result, file, status);
+			} catch (IOException | RuntimeException e) {
+				LOG.warning(e, "Failed to export ''{0}''", file);
+				failed(result, file, e, status);
+			}
+		}
+	}
+
+	private static void linkOrCopy(Path exportFile, Path file) throws IOException {
+		try {
+			Files.createLink(file, exportFile);
+		} catch (IOException | UnsupportedOperationException e) {
+			LOG.debug(e, "Failed to link ''{0}''; copying instead", file);
+			Files.copy(exportFile, file);
+		}
+	}
+
+	private static void deleteFile(Path file) {
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			LOG.warning(e, "Failed to delete ''{0}''", file);
+		}
+	}
+
+	private void exported(FileScannerResult result, Path file, Status status) {
+		this.exportedCount.incrementAndGet();
+		status.resultExported(result, file);
+	}
+
+	private void failed(FileScannerResult result, Path file, Exception cause, Status status) {
+		this.failedCount.incrementAndGet();
+		status.resultFailed(result, file, cause);
+	}
+
+	private static final class ExportKey {
+
+		private final FileScannerInput input;
+		private final long start;
+		private final long end;
+		private final FileScannerResultExportHandler exportHandler;
+
+		ExportKey(FileScannerInput input, long start, long end, FileScannerResultExportHandler exportHandler) {
+			this.input = input;
+			this.start = start;
+			this.end = end;
+			this.exportHandler = exportHandler;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(System.identityHashCode(this.input), this.start, this.end,
+					System.identityHashCode(this.exportHandler));
+		}
+
+		@Override
+		public boolean equals(@Nullable Object obj) {
+			boolean equal = false;
+
+			if (obj instanceof ExportKey) {
+				ExportKey other = (ExportKey) obj;
+
+				equal = this.input == other.input && this.start == other.start && this.end == other.end
+						&& this.exportHandler == other.exportHandler;
+			}
+			return equal;
+		}
+
+	}
+
+	private static final class ExportJob {
+
+		private final int inputIndex;
+		private final ExportKey key;
+		private final List<FileScannerResult> results = new ArrayList<>(1);
+		private final List<Path> files = new ArrayList<>(1);
+
+		ExportJob(int inputIndex, ExportKey key) {
+			this.inputIndex = inputIndex;
+			this.key = key;
+		}
+
+		void add(FileScannerResult result, Path file) {
+			this.results.add(result);
+			this.files.add(file);
+		}
+
+		int inputIndex() {
+			return this.inputIndex;
+		}
+
+		long start() {
+			return this.key.start;
+		}
+
+		FileScannerResultExportHandler exportHandler() {
+			return this.key.exportHandler;
+		}
+
+		List<FileScannerResult> results() {
+			return this.results;
+		}
+
+		List<Path> files() {
+			return this.files;
+		}
+
+	}
+
+}
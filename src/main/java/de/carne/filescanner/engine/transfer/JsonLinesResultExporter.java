@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.transfer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import de.carne.filescanner.engine.FileScanner;
+import de.carne.filescanner.engine.FileScannerResult;
+import de.carne.filescanner.engine.FileScannerResultContextValueSpec;
+import de.carne.filescanner.engine.FileScannerResultListener;
+import de.carne.filescanner.engine.format.ByteArraySpec;
+import de.carne.filescanner.engine.format.DWordArraySpec;
+import de.carne.filescanner.engine.format.NumberAttributeSpec;
+import de.carne.filescanner.engine.format.QWordArraySpec;
+import de.carne.filescanner.engine.format.WordArraySpec;
+
+/**
+ * {@linkplain FileScannerResultListener} writing each finished {@linkplain FileScannerResult} as a
+ * <a href="https://jsonlines.org">JSON Lines</a> record to a {@linkplain WritableByteChannel}.
+ * <p>
+ * Each record contains the result's key, parent key, type, name, start and end position, the name of the
+ * top-level format result containing the result, as well as the result values selected via
+ * {@linkplain #selectValues(String...)}. Number values are written according to their attribute's signedness. Records
+ * are collected in a fixed size buffer which is written to the target channel whenever it is full (and on
+ * {@linkplain #close()}). The exporter does not keep any references to the exported results.
+ * </p>
+ */
+public class JsonLinesResultExporter implements FileScannerResultListener, Closeable {
+
+	private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private final WritableByteChannel channel;
+	private final boolean retainResults;
+	private final Set<String> valueNames = new LinkedHashSet<>();
+	private final ByteBuffer buffer;
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private final StringBuilder line = new StringBuilder();
+	private long recordCount = 0;
+
+	/**
+	 * Constructs a new {@linkplain JsonLinesResultExporter} instance.
+	 *
+	 * @param channel the {@linkplain WritableByteChannel} to write to.
+	 * @param retainResults whether to retain the exported results in the result tree ({@code true}) or to drop them
+	 * right after they have been exported ({@code false}).
+	 * @see FileScannerResultListener#isRetainingResults()
+	 */
+	public JsonLinesResultExporter(WritableByteChannel channel, boolean retainResults) {
+		this(channel, retainResults, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Constructs a new {@linkplain JsonLinesResultExporter} instance.
+	 *
+	 * @param channel the {@linkplain WritableByteChannel} to write to.
+	 * @param retainResults whether to retain the exported results in the result tree ({@code true}) or to drop them
+	 * right after they have been exported ({@code false}).
+	 * @param bufferSize the size of the write buffer (in bytes).
+	 * @see FileScannerResultListener#isRetainingResults()
+	 */
+	public JsonLinesResultExporter(WritableByteChannel channel, boolean retainResults, int bufferSize) {
+		this.channel = channel;
+		this.retainResults = retainResults;
+		this.buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, 1024));
+	}
+
+	/**
+	 * Selects the result values to export.
+	 *
+	 * @param names the names of the values to export.
+	 * @return the updated {@linkplain JsonLinesResultExporter} instance for chaining.
+	 */
+	public synchronized JsonLinesResultExporter selectValues(String... names) {
+		this.valueNames.addAll(Arrays.asList(names));
+		return this;
+	}
+
+	/**
+	 * Gets the number of exported records.
+	 *
+	 * @return the number of exported records.
+	 */
+	public synchronized long recordCount() {
+		return this.recordCount;
+	}
+
+	@Override
+	public boolean isRetainingResults() {
+		return this.retainResults;
+	}
+
+	@Override
+	public synchronized void resultFinished(FileScanner scanner, @Nullable FileScannerResult parent,
+			FileScannerResult result, @Nullable FileScannerResult formatResult) throws IOException {
+		this.line.setLength(0);
+		this.line.append("{\"key\":");
+		appendKey(result.key());
+		this.line.append(",\"parent\":");
+		appendKey(parent != null ? parent.key() : null);
+		this.line.append(",\"type\":");
+		appendString(result.type().name());
+		this.line.append(",\"name\":");
+		appendString(result.name());
+		this.line.append(",\"start\":").append(result.start());
+		this.line.append(",\"end\":").append(result.end());
+		this.line.append(",\"format\":");
+		if (formatResult != null) {
+			appendString(formatResult.name());
+		} else {
+			this.line.append("null");
+		}
+		if (!this.valueNames.isEmpty()) {
+			Map<String, Object> values = result.values();
+			Map<String, FileScannerResultContextValueSpec<?>> valueSpecs = result.valueSpecs();
+			boolean firstValue = true;
+
+			this.line.append(",\"values\":{");
+			for (String valueName : this.valueNames) {
+				Object value = values.get(valueName);
+
+				if (value != null) {
+					if (!firstValue) {
+						this.line.append(',');
+					}
+					appendString(valueName);
+					this.line.append(':');
+					appendValue(value, isUnsigned(valueSpecs.get(valueName)));
+					firstValue = false;
+				}
+			}
+			this.line.append('}');
+		}
+		this.line.append("}\n");
+		writeLine();
+		this.recordCount++;
+	}
+
+	/**
+	 * Writes all buffered records to the target channel.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public synchronized void flush() throws IOException {
+		this.buffer.flip();
+		while (this.buffer.hasRemaining()) {
+			this.channel.write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			this.channel.close();
+		}
+	}
+
+	private void writeLine() throws IOException {
+		CharBuffer chars = CharBuffer.wrap(this.line);
+		CoderResult coderResult;
+
+		this.encoder.reset();
+		do {
+			coderResult = this.encoder.encode(chars, this.buffer, true);
+			if (coderResult.isOverflow()) {
+				flush();
+			} else if (coderResult.isError()) {
+				coderResult.throwException();
+			}
+		} while (coderResult.isOverflow());
+		while (this.encoder.flush(this.buffer).isOverflow()) {
+			flush();
+		}
+	}
+
+	private void appendKey(byte @Nullable [] key) {
+		if (key != null) {
+			this.line.append('"');
+			for (byte keyByte : key) {
+				this.line.append(HEX_DIGITS[(keyByte >> 4) & 0xf]).append(HEX_DIGITS[keyByte & 0xf]);
+			}
+			this.line.append('"');
+		} else {
+			this.line.append("null");
+		}
+	}
+
+	private static boolean isUnsigned(@Nullable FileScannerResultContextValueSpec<?> valueSpec) {
+		boolean unsigned;
+
+		if (valueSpec instanceof NumberAttributeSpec) {
+			unsigned = ((NumberAttributeSpec<?>) valueSpec).isUnsigned();
+		} else {
+			// Number arrays are always unsigned
+			unsigned = valueSpec instanceof ByteArraySpec || valueSpec instanceof WordArraySpec
+					|| valueSpec instanceof DWordArraySpec || valueSpec instanceof QWordArraySpec;
+		}
+		return unsigned;
+	}
+
+	private void appendValue(Object value, boolean unsigned) {
+		if (unsigned && value instanceof Byte) {
+			this.line.append(Byte.toUnsignedInt(((Byte) value).byteValue()));
+		} else if (unsigned && value instanceof Short) {
+			this.line.append(Short.toUnsignedInt(((Short) value).shortValue()));
+		} else if (unsigned && value instanceof Integer) {
+			this.line.append(Integer.toUnsignedLong(((Integer) value).intValue()));
+		} else if (unsigned && value instanceof Long) {
+			this.line.append(Long.toUnsignedString(((Long) value).longValue()));
+		} else if (value instanceof Number || value instanceof Boolean) {
+			this.line.append(value);
+		} else if (value.getClass().isArray()) {
+			int length = Array.getLength(value);
+
+			this.line.append('[');
+			for (int elementIndex = 0; elementIndex < length; elementIndex++) {
+				Object element = Array.get(value, elementIndex);
+
+				if (elementIndex > 0) {
+					this.line.append(',');
+				}
+				if (element != null) {
+					appendValue(element, unsigned);
+				} else {
+					this.line.append("null");
+				}
+			}
+			this.line.append(']');
+		} else {
+			appendString(value.toString());
+		}
+	}
+
+	private void appendString(String s) {
+		this.line.append('"');
+
+		int length = s.length();
+
+		for (int charIndex = 0; charIndex < length; charIndex++) {
+			char c = s.charAt(charIndex);
+
+			switch (c) {
+			case '"':
+				this.line.append("\\\"");
+				break;
+			case '\\':
+				this.line.append("\\\\");
+				break;
+			case '\n':
+				this.line.append("\\n");
+				break;
+			case '\r':
+				this.line.append("\\r");
+				break;
+			case '\t':
+				this.line.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					this.line.append("\\u00").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xf]);
+				} else {
+					this.line.append(c);
+				}
+			}
+		}
+		this.line.append('"');
+	}
+
+}
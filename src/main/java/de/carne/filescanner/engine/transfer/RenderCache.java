@@ -0,0 +1,411 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.transfer;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import de.carne.filescanner.engine.FileScannerResult;
+import de.carne.util.SystemProperties;
+
+/**
+ * Memory bounded cache for render output.
+ * <p>
+ * Via {@linkplain #render(FileScannerResult, Renderer, FileScannerResultRenderHandler, long)} a result is rendered
+ * exactly like via {@linkplain RenderOutput#render(FileScannerResult, Renderer, FileScannerResultRenderHandler, long)}.
+ * In addition the emitted render operations are recorded and replayed on subsequent calls for the same result, render
+ * handler, offset and renderer style support. Cached output is discarded as soon as the result's state is committed
+ * again (see {@linkplain FileScannerResult#commitCount()}). The least recently used output is evicted as soon as the
+ * overall size of the cached output exceeds the cache's byte budget.
+ * </p>
+ * <p>
+ * As results are identified by their key (see {@linkplain FileScannerResult#key()}), a cache instance must only be
+ * used for the results of a single scan.
+ * </p>
+ */
+public final class RenderCache {
+
+	private static final long DEFAULT_BUDGET = SystemProperties.longValue(RenderCache.class, ".budget",
+			16l * 1024 * 1024);
+
+	private final long budget;
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long size = 0;
+
+	/**
+	 * Constructs a new {@linkplain RenderCache} instance using the default byte budget.
+	 */
+	public RenderCache() {
+		this(DEFAULT_BUDGET);
+	}
+
+	/**
+	 * Constructs a new {@linkplain RenderCache} instance.
+	 *
+	 * @param budget the maximum number of bytes to use for the cached output.
+	 */
+	public RenderCache(long budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * Renders the given {@linkplain FileScannerResult} using the cached output (if available).
+	 *
+	 * @param result the {@linkplain FileScannerResult} to render.
+	 * @param renderer the {@linkplain Renderer} to use for output generation.
+	 * @param renderHandler the {@linkplain FileScannerResultRenderHandler} to use for rendering. May {@code null} to
+	 * use the default handler.
+	 * @param offset the offset to start rendering at.
+	 * @return the number of decoded bytes.
+	 * @throws IOException if an I/O error occurs.
+	 * @see RenderOutput#render(FileScannerResult, Renderer, FileScannerResultRenderHandler, long)
+	 */
+	public long render(FileScannerResult result, Renderer renderer,
+			@Nullable FileScannerResultRenderHandler renderHandler, long offset) throws IOException {
+		Key key = new Key(result.key(), renderHandler, offset, renderer.isStyled());
+		long commitCount = result.commitCount();
+		Entry entry = getEntry(key, commitCount);
+		long decoded;
+
+		if (entry != null) {
+			try {
+				decoded = entry.replay(renderer);
+			} finally {
+				renderer.close();
+			}
+		} else {
+			RecordingRenderer recordingRenderer = new RecordingRenderer(renderer, this.budget >> 2);
+
+			decoded = RenderOutput.render(result, recordingRenderer, renderHandler, offset);
+
+			Entry recordedEntry = recordingRenderer.toEntry(commitCount, decoded);
+
+			if (recordedEntry != null) {
+				putEntry(key, recordedEntry);
+			}
+		}
+		return decoded;
+	}
+
+	/**
+	 * Gets the overall size (in bytes) of the cached output.
+	 *
+	 * @return the overall size (in bytes) of the cached output.
+	 */
+	public synchronized long size() {
+		return this.size;
+	}
+
+	/**
+	 * Discards all cached output.
+	 */
+	public synchronized void clear() {
+		this.entries.clear();
+		this.size = 0;
+	}
+
+	private synchronized @Nullable Entry getEntry(Key key, long commitCount) {
+		Entry entry = this.entries.get(key);
+
+		if (entry != null && entry.commitCount() != commitCount) {
+			this.entries.remove(key);
+			this.size -= entry.size();
+			entry = null;
+		}
+		return entry;
+	}
+
+	private synchronized void putEntry(Key key, Entry entry) {
+		Entry replacedEntry = this.entries.put(key, entry);
+
+		if (replacedEntry != null) {
+			this.size -= replacedEntry.size();
+		}
+		this.size += entry.size();
+
+		Iterator<Entry> entryIterator = this.entries.values().iterator();
+
+		while (this.size > this.budget && entryIterator.hasNext()) {
+			this.size -= entryIterator.next().size();
+			entryIterator.remove();
+		}
+	}
+
+	private static final class Key {
+
+		private final byte[] resultKey;
+		private final @Nullable FileScannerResultRenderHandler renderHandler;
+		private final long offset;
+		private final boolean styled;
+		private final int hashCode;
+
+		Key(byte[] resultKey, @Nullable FileScannerResultRenderHandler renderHandler, long offset, boolean styled) {
+			this.resultKey = resultKey;
+			this.renderHandler = renderHandler;
+			this.offset = offset;
+			this.styled = styled;
+			this.hashCode = ((Arrays.hashCode(resultKey) * 31 + System.identityHashCode(renderHandler)) * 31
+					+ Long.hashCode(offset)) * 31 + Boolean.hashCode(styled);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hashCode;
+		}
+
+		@Override
+		public boolean equals(@Nullable Object obj) {
+			boolean equal = false;
+
+			if (obj instanceof Key) {
+				Key other = (Key) obj;
+
+				equal = this.renderHandler == other.renderHandler && this.offset == other.offset
+						&& this.styled == other.styled && Arrays.equals(this.resultKey, other.resultKey);
+			}
+			return equal;
+		}
+
+	}
+
+	// Operation codes are packed as: indent + 1 (bits 31-8), style (bits 7-3), line break (bit 2), operation (bits 1-0)
+	private static final int OP_TEXT = 0;
+	private static final int OP_LINK = 1;
+	private static final int OP_MEDIA = 2;
+
+	private static final int OP_MASK = 0x3;
+	private static final int LINE_BREAK_BIT = 0x4;
+	private static final int STYLE_SHIFT = 3;
+	private static final int STYLE_MASK = 0x1f;
+	private static final int INDENT_SHIFT = 8;
+
+	private static final RenderStyle[] STYLES = RenderStyle.values();
+
+	private static final int REPLAY_BATCH_SIZE = 256;
+
+	// Rough per object overhead used for size estimation
+	private static final int OBJECT_SIZE = 16;
+
+	private static final class Entry {
+
+		private final long commitCount;
+		private final long decoded;
+		private final @Nullable Set<RenderOption> options;
+		private final int[] ops;
+		private final Object[] payloads;
+		private final long[] hrefs;
+		private final long size;
+
+		Entry(long commitCount, long decoded, @Nullable Set<RenderOption> options, int[] ops, Object[] payloads,
+				long[] hrefs, long size) {
+			this.commitCount = commitCount;
+			this.decoded = decoded;
+			this.options = options;
+			this.ops = ops;
+			this.payloads = payloads;
+			this.hrefs = hrefs;
+			this.size = size;
+		}
+
+		long commitCount() {
+			return this.commitCount;
+		}
+
+		long size() {
+			return this.size;
+		}
+
+		long replay(Renderer renderer) throws IOException {
+			Set<RenderOption> checkedOptions = this.options;
+
+			if (checkedOptions != null) {
+				renderer.emitPrologue(EnumSet.copyOf(checkedOptions));
+
+				RenderTextBatch batch = new RenderTextBatch(REPLAY_BATCH_SIZE);
+				int hrefIndex = 0;
+
+				for (int opIndex = 0; opIndex < this.ops.length; opIndex++) {
+					int op = this.ops[opIndex];
+					int indent = (op >> INDENT_SHIFT) - 1;
+					RenderStyle style = STYLES[(op >>> STYLE_SHIFT) & STYLE_MASK];
+					boolean lineBreak = (op & LINE_BREAK_BIT) != 0;
+					Object payload = this.payloads[opIndex];
+
+					switch (op & OP_MASK) {
+					case OP_TEXT:
+						batch.add(indent, style, (String) payload, lineBreak);
+						break;
+					case OP_LINK:
+						batch.add(indent, style, (String) payload, this.hrefs[hrefIndex], lineBreak);
+						hrefIndex++;
+						break;
+					default:
+						flushBatch(renderer, batch);
+						renderer.emitMediaData(indent, style, (TransferSource) payload, lineBreak);
+					}
+					if (batch.isFull()) {
+						flushBatch(renderer, batch);
+					}
+				}
+				flushBatch(renderer, batch);
+				renderer.emitEpilogue();
+			}
+			return this.decoded;
+		}
+
+		private static void flushBatch(Renderer renderer, RenderTextBatch batch) throws IOException {
+			if (!batch.isEmpty()) {
+				renderer.emitTextBatch(batch);
+				batch.clear();
+			}
+		}
+
+	}
+
+	private static final class RecordingRenderer implements Renderer {
+
+		private final Renderer renderer;
+		private final long sizeLimit;
+		private @Nullable Set<RenderOption> options = null;
+		private int[] ops = new int[64];
+		private Object[] payloads = new Object[64];
+		private long[] hrefs = new long[8];
+		private int opCount = 0;
+		private int hrefCount = 0;
+		private long size = OBJECT_SIZE * 4l;
+		private boolean recording = true;
+
+		RecordingRenderer(Renderer renderer, long sizeLimit) {
+			this.renderer = renderer;
+			this.sizeLimit = sizeLimit;
+		}
+
+		@Nullable
+		Entry toEntry(long commitCount, long decoded) {
+			return (this.recording
+					? new Entry(commitCount, decoded, this.options, Arrays.copyOf(this.ops, this.opCount),
+							Arrays.copyOf(this.payloads, this.opCount), Arrays.copyOf(this.hrefs, this.hrefCount),
+							this.size)
+					: null);
+		}
+
+		@Override
+		public boolean isStyled() {
+			return this.renderer.isStyled();
+		}
+
+		@Override
+		public void emitPrologue(Set<RenderOption> prologueOptions) throws IOException {
+			this.renderer.emitPrologue(prologueOptions);
+			this.options = (prologueOptions.isEmpty() ? EnumSet.noneOf(RenderOption.class)
+					: EnumSet.copyOf(prologueOptions));
+		}
+
+		@Override
+		public void emitText(int indent, RenderStyle style, String text, boolean lineBreak) throws IOException {
+			this.renderer.emitText(indent, style, text, lineBreak);
+			record(OP_TEXT, indent, style, lineBreak, text, OBJECT_SIZE * 3l + 2l * text.length());
+		}
+
+		@Override
+		public void emitText(int indent, RenderStyle style, String text, long href, boolean lineBreak)
+				throws IOException {
+			this.renderer.emitText(indent, style, text, href, lineBreak);
+			recordLink(indent, style, text, href, lineBreak);
+		}
+
+		@Override
+		public void emitTextBatch(RenderTextBatch batch) throws IOException {
+			this.renderer.emitTextBatch(batch);
+
+			int batchSize = batch.size();
+
+			for (int index = 0; index < batchSize; index++) {
+				String text = batch.text(index);
+
+				if (batch.hasHref(index)) {
+					recordLink(batch.indent(index), batch.style(index), text, batch.href(index),
+							batch.lineBreak(index));
+				} else {
+					record(OP_TEXT, batch.indent(index), batch.style(index), batch.lineBreak(index), text,
+							OBJECT_SIZE * 3l + 2l * text.length());
+				}
+			}
+		}
+
+		@Override
+		public void emitMediaData(int indent, RenderStyle style, TransferSource source, boolean lineBreak)
+				throws IOException {
+			this.renderer.emitMediaData(indent, style, source, lineBreak);
+			record(OP_MEDIA, indent, style, lineBreak, source, OBJECT_SIZE * 4l);
+		}
+
+		@Override
+		public void emitEpilogue() throws IOException {
+			this.renderer.emitEpilogue();
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.renderer.close();
+		}
+
+		private void recordLink(int indent, RenderStyle style, String text, long href, boolean lineBreak) {
+			if (record(OP_LINK, indent, style, lineBreak, text, OBJECT_SIZE * 3l + 2l * text.length() + 8)) {
+				if (this.hrefCount == this.hrefs.length) {
+					this.hrefs = Arrays.copyOf(this.hrefs, this.hrefCount << 1);
+				}
+				this.hrefs[this.hrefCount] = href;
+				this.hrefCount++;
+			}
+		}
+
+		private boolean record(int op, int indent, RenderStyle style, boolean lineBreak, Object payload,
+				long payloadSize) {
+			if (this.recording) {
+				this.size += 4 + payloadSize;
+				if (this.size <= this.sizeLimit) {
+					if (this.opCount == this.ops.length) {
+						int capacity = this.opCount << 1;
+
+						this.ops = Arrays.copyOf(this.ops, capacity);
+						this.payloads = Arrays.copyOf(this.payloads, capacity);
+					}
+					this.ops[this.opCount] = ((indent + 1) << INDENT_SHIFT) | (style.ordinal() << STYLE_SHIFT)
+							| (lineBreak ? LINE_BREAK_BIT : 0) | op;
+					this.payloads[this.opCount] = payload;
+					this.opCount++;
+				} else {
+					// Output too large for caching; stop recording and release the recorded data
+					this.recording = false;
+					this.ops = new int[0];
+					this.payloads = new Object[0];
+				}
+			}
+			return this.recording;
+		}
+
+	}
+
+}
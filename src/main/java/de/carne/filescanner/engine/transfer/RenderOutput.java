@@ -25,13 +25,23 @@ import org.eclipse.jdt.annotation.Nullable;
 
 import de.carne.filescanner.engine.FileScannerResult;
 import de.carne.util.Check;
+import de.carne.util.SystemProperties;
 
 /**
  * Class used to output file scanner results in a generic manner to different kind of outputs.
+ * <p>
+ * Text output is collected in a reusable {@linkplain RenderTextBatch} and handed to the {@linkplain Renderer} via
+ * {@linkplain Renderer#emitTextBatch(RenderTextBatch)} whenever the batch is full, before any media data is written
+ * and when this instance is closed.
+ * </p>
  */
 public final class RenderOutput implements Closeable {
 
+	private static final int BATCH_SIZE = Math.max(SystemProperties.intValue(RenderOutput.class, ".batchSize", 256),
+			1);
+
 	private final Renderer renderer;
+	private final RenderTextBatch batch = new RenderTextBatch(BATCH_SIZE);
 	private final Set<RenderOption> options = new HashSet<>();
 	private boolean prepared = false;
 	private boolean newLine = true;
@@ -162,7 +172,7 @@ public final class RenderOutput implements Closeable {
 	 */
 	public RenderOutput write(String text) throws IOException {
 		prepareIfNeeded();
-		this.renderer.emitText((this.newLine ? this.currentIndent : -1), this.currentStyle, text, false);
+		addText(text, false);
 		this.newLine = false;
 		return this;
 	}
@@ -177,7 +187,7 @@ public final class RenderOutput implements Closeable {
 	 */
 	public RenderOutput write(String text, long href) throws IOException {
 		prepareIfNeeded();
-		this.renderer.emitText((this.newLine ? this.currentIndent : -1), this.currentStyle, text, href, false);
+		addText(text, href, false);
 		this.newLine = false;
 		return this;
 	}
@@ -191,7 +201,7 @@ public final class RenderOutput implements Closeable {
 	 */
 	public RenderOutput writeln(String text) throws IOException {
 		prepareIfNeeded();
-		this.renderer.emitText((this.newLine ? this.currentIndent : -1), this.currentStyle, text, true);
+		addText(text, true);
 		this.newLine = true;
 		return this;
 	}
@@ -207,7 +217,7 @@ public final class RenderOutput implements Closeable {
 	 */
 	public RenderOutput writeln(String text, long href) throws IOException {
 		prepareIfNeeded();
-		this.renderer.emitText((this.newLine ? this.currentIndent : -1), this.currentStyle, text, href, true);
+		addText(text, href, true);
 		this.newLine = true;
 		return this;
 	}
@@ -221,6 +231,7 @@ public final class RenderOutput implements Closeable {
 	 */
 	public RenderOutput write(TransferSource source) throws IOException {
 		prepareIfNeeded();
+		flushBatch();
 		this.renderer.emitMediaData((this.newLine ? this.currentIndent : -1), this.currentStyle, source, false);
 		this.newLine = false;
 		return this;
@@ -235,6 +246,7 @@ public final class RenderOutput implements Closeable {
 	 */
 	public RenderOutput writeln(TransferSource source) throws IOException {
 		prepareIfNeeded();
+		flushBatch();
 		this.renderer.emitMediaData((this.newLine ? this.currentIndent : -1), this.currentStyle, source, true);
 		this.newLine = true;
 		return this;
@@ -252,10 +264,38 @@ public final class RenderOutput implements Closeable {
 
 	@Override
 	public void close() throws IOException {
-		if (this.prepared) {
-			this.renderer.emitEpilogue();
+		try {
+			if (this.prepared) {
+				flushBatch();
+				this.renderer.emitEpilogue();
+			}
+		} finally {
+			this.renderer.close();
+		}
+	}
+
+	private void addText(String text, boolean lineBreak) throws IOException {
+		this.batch.add((this.newLine ? this.currentIndent : -1), this.currentStyle, text, lineBreak);
+		if (this.batch.isFull()) {
+			flushBatch();
+		}
+	}
+
+	private void addText(String text, long href, boolean lineBreak) throws IOException {
+		this.batch.add((this.newLine ? this.currentIndent : -1), this.currentStyle, text, href, lineBreak);
+		if (this.batch.isFull()) {
+			flushBatch();
+		}
+	}
+
+	private void flushBatch() throws IOException {
+		if (!this.batch.isEmpty()) {
+			try {
+				this.renderer.emitTextBatch(this.batch);
+			} finally {
+				this.batch.clear();
+			}
 		}
-		this.renderer.close();
 	}
 
 	private void prepareIfNeeded() throws IOException {
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.transfer;
+
+import java.io.IOException;
+
+/**
+ * Batch of styled text segments collected by {@linkplain RenderOutput} and handed to the {@linkplain Renderer} via
+ * {@linkplain Renderer#emitTextBatch(RenderTextBatch)}.
+ * <p>
+ * Each segment corresponds to a single {@linkplain Renderer#emitText(int, RenderStyle, String, boolean)} (or
+ * {@linkplain Renderer#emitText(int, RenderStyle, String, long, boolean)}) call. A batch instance is reused by its
+ * {@linkplain RenderOutput} and its content is only valid during the emit call.
+ * </p>
+ */
+public final class RenderTextBatch {
+
+	private static final long NO_HREF = Long.MIN_VALUE;
+
+	private final int[] indents;
+	private final RenderStyle[] styles;
+	private final String[] texts;
+	private final long[] hrefs;
+	private final boolean[] lineBreaks;
+	private int size = 0;
+
+	RenderTextBatch(int capacity) {
+		this.indents = new int[capacity];
+		this.styles = new RenderStyle[capacity];
+		this.texts = new String[capacity];
+		this.hrefs = new long[capacity];
+		this.lineBreaks = new boolean[capacity];
+	}
+
+	/**
+	 * Gets the number of segments in this batch.
+	 *
+	 * @return the number of segments in this batch.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Gets a segment's indent.
+	 *
+	 * @param index the index of the segment.
+	 * @return the segment's indent (or {@code -1} if the segment does not start a line).
+	 */
+	public int indent(int index) {
+		return this.indents[index];
+	}
+
+	/**
+	 * Gets a segment's {@linkplain RenderStyle}.
+	 *
+	 * @param index the index of the segment.
+	 * @return the segment's {@linkplain RenderStyle}.
+	 */
+	public RenderStyle style(int index) {
+		return this.styles[index];
+	}
+
+	/**
+	 * Gets a segment's text.
+	 *
+	 * @param index the index of the segment.
+	 * @return the segment's text.
+	 */
+	public String text(int index) {
+		return this.texts[index];
+	}
+
+	/**
+	 * Checks whether a segment is linked to a position.
+	 *
+	 * @param index the index of the segment.
+	 * @return {@code true} if the segment is linked to a position.
+	 */
+	public boolean hasHref(int index) {
+		return this.hrefs[index] != NO_HREF;
+	}
+
+	/**
+	 * Gets the position a segment is linked to.
+	 *
+	 * @param index the index of the segment.
+	 * @return the position the segment is linked to (only valid if {@linkplain #hasHref(int)} is {@code true}).
+	 */
+	public long href(int index) {
+		return this.hrefs[index];
+	}
+
+	/**
+	 * Checks whether a segment is followed by a line break.
+	 *
+	 * @param index the index of the segment.
+	 * @return {@code true} if the segment is followed by a line break.
+	 */
+	public boolean lineBreak(int index) {
+		return this.lineBreaks[index];
+	}
+
+	/**
+	 * Emits all segments of this batch one by one via {@linkplain Renderer#emitText(int, RenderStyle, String, boolean)}
+	 * (or {@linkplain Renderer#emitText(int, RenderStyle, String, long, boolean)}).
+	 *
+	 * @param renderer the {@linkplain Renderer} to emit to.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void emitEach(Renderer renderer) throws IOException {
+		for (int index = 0; index < this.size; index++) {
+			long href = this.hrefs[index];
+
+			if (href != NO_HREF) {
+				renderer.emitText(this.indents[index], this.styles[index], this.texts[index], href,
+						this.lineBreaks[index]);
+			} else {
+				renderer.emitText(this.indents[index], this.styles[index], this.texts[index], this.lineBreaks[index]);
+			}
+		}
+	}
+
+	boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	boolean isFull() {
+		return this.size == this.texts.length;
+	}
+
+	void add(int indent, RenderStyle style, String text, boolean lineBreak) {
+		add(indent, style, text, NO_HREF, lineBreak);
+	}
+
+	void add(int indent, RenderStyle style, String text, long href, boolean lineBreak) {
+		this.indents[this.size] = indent;
+		this.styles[this.size] = style;
+		this.texts[this.size] = text;
+		this.hrefs[this.size] = href;
+		this.lineBreaks[this.size] = lineBreak;
+		this.size++;
+	}
+
+	void clear() {
+		this.size = 0;
+	}
+
+}
@@ -73,6 +73,21 @@ public interface Renderer extends Closeable {
 		emitText(indent, style, text, lineBreak);
 	}
 
+	/**
+	 * Emits a batch of text segments.
+	 * <p>
+	 * {@linkplain RenderOutput} collects consecutive text output and hands it to the renderer in batches. The default
+	 * implementation emits the segments one by one (see {@linkplain RenderTextBatch#emitEach(Renderer)}). Renderers
+	 * may override this function to process the whole batch at once.
+	 * </p>
+	 *
+	 * @param batch the {@linkplain RenderTextBatch} to emit.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	default void emitTextBatch(RenderTextBatch batch) throws IOException {
+		batch.emitEach(this);
+	}
+
 	/**
 	 * Emits media data.
 	 *
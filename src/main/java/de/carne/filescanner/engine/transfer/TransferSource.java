@@ -19,6 +19,7 @@ package de.carne.filescanner.engine.transfer;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.Executor;
 
 /**
  * Interface used to transfer byte based data in a generic way.
@@ -64,4 +65,34 @@ public interface TransferSource {
 	 */
 	void transfer(OutputStream target) throws IOException;
 
+	/**
+	 * Transfers the data asynchronously.
+	 * <p>
+	 * The default implementation invokes {@linkplain #transfer(WritableByteChannel)} on the submitted
+	 * {@linkplain Executor} and reports the bytes written to the target as progress. Implementations may override this
+	 * function to provide a more fine grained progress reporting (e.g. based on the source bytes processed).
+	 * </p>
+	 * <p>
+	 * The target channel is not closed by the transfer. The caller has to close it after the transfer has finished.
+	 * </p>
+	 *
+	 * @param target the {@linkplain WritableByteChannel} to transfer the data to.
+	 * @param executor the {@linkplain Executor} to run the transfer on.
+	 * @return the {@linkplain TransferTask} handle of the started transfer.
+	 */
+	default TransferTask transferAsync(WritableByteChannel target, Executor executor) {
+		return TransferTask.start(name(), size(), executor, task -> transfer(task.trackTarget(target)));
+	}
+
+	/**
+	 * Transfers the data asynchronously using the {@linkplain TransferTask#defaultExecutor()}.
+	 *
+	 * @param target the {@linkplain WritableByteChannel} to transfer the data to.
+	 * @return the {@linkplain TransferTask} handle of the started transfer.
+	 * @see #transferAsync(WritableByteChannel, Executor)
+	 */
+	default TransferTask transferAsync(WritableByteChannel target) {
+		return transferAsync(target, TransferTask.defaultExecutor());
+	}
+
 }
@@ -0,0 +1,341 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.transfer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import de.carne.util.SystemProperties;
+import de.carne.util.logging.Log;
+
+/**
+ * Handle of an asynchronous transfer started via {@linkplain TransferSource#transferAsync(WritableByteChannel,
+ * Executor)}.
+ * <p>
+ * The handle provides access to the transfer progress, the transfer's completion and allows cancelling the transfer.
+ * Progress is measured in bytes. Depending on the actual {@linkplain TransferSource} the counted bytes are either the
+ * source bytes processed so far or the bytes written to the target so far. The transfer target is never closed by the
+ * transfer.
+ * </p>
+ */
+public final class TransferTask {
+
+	private static final Log LOG = new Log();
+
+	private static final int DEFAULT_THREAD_COUNT = SystemProperties.intValue(TransferTask.class, ".threadCount",
+			Runtime.getRuntime().availableProcessors());
+
+	private static final AtomicInteger THREAD_INDEX = new AtomicInteger();
+
+	private static final ExecutorService DEFAULT_EXECUTOR = Executors
+			.newFixedThreadPool(Math.max(DEFAULT_THREAD_COUNT, 1), runnable -> {
+				Thread thread = new Thread(runnable, TransferTask.class.getSimpleName() + "-"
+						+ THREAD_INDEX.incrementAndGet());
+
+				thread.setDaemon(true);
+				return thread;
+			});
+
+	/**
+	 * Functional interface for the actual transfer execution.
+	 */
+	@FunctionalInterface
+	public interface Body {
+
+		/**
+		 * Executes the transfer.
+		 * <p>
+		 * The transfer is expected to report its progress via {@linkplain TransferTask#progress(long)} (or by using the
+		 * channels provided via {@linkplain TransferTask#trackSource(ReadableByteChannel)} and
+		 * {@linkplain TransferTask#trackTarget(WritableByteChannel)}). A cancelled transfer is stopped during the next
+		 * progress update.
+		 * </p>
+		 *
+		 * @param task the {@linkplain TransferTask} executing the transfer.
+		 * @throws IOException if an I/O error occurs.
+		 */
+		void run(TransferTask task) throws IOException;
+
+	}
+
+	private final String name;
+	private final long total;
+	private final AtomicLong transferred = new AtomicLong();
+	private final CompletableFuture<Long> completion = new CompletableFuture<>();
+	private boolean finished;
+
+	private TransferTask(String name, long total) {
+		this.name = name;
+		this.total = total;
+	}
+
+	/**
+	 * Gets the default {@linkplain Executor} for asynchronous transfers.
+	 * <p>
+	 * The default executor uses a fixed number of daemon threads (defined via the system property
+	 * {@code de.carne.filescanner.engine.transfer.TransferTask.threadCount}).
+	 * </p>
+	 *
+	 * @return the default {@linkplain Executor} for asynchronous transfers.
+	 */
+	public static Executor defaultExecutor() {
+		return DEFAULT_EXECUTOR;
+	}
+
+	/**
+	 * Starts an asynchronous transfer.
+	 *
+	 * @param name the name of the transfer (used for logging).
+	 * @param total the total number of bytes to transfer or {@code -1} if the total number is not known in advance.
+	 * @param executor the {@linkplain Executor} to run the transfer on.
+	 * @param body the {@linkplain Body} executing the actual transfer.
+	 * @return the {@linkplain TransferTask} handle of the started transfer.
+	 */
+	public static TransferTask start(String name, long total, Executor executor, Body body) {
+		TransferTask task = new TransferTask(name, total);
+
+		executor.execute(() -> task.run(body));
+		return task;
+	}
+
+	/**
+	 * Gets the number of bytes transferred so far.
+	 *
+	 * @return the number of bytes transferred so far.
+	 */
+	public long transferred() {
+		return this.transferred.get();
+	}
+
+	/**
+	 * Gets the total number of bytes to transfer.
+	 *
+	 * @return the total number of bytes to transfer or {@code -1} if the total number is not known in advance.
+	 */
+	public long total() {
+		return this.total;
+	}
+
+	/**
+	 * Gets the transfer's {@linkplain CompletionStage}.
+	 * <p>
+	 * The stage completes with the number of transferred bytes once the transfer has finished. It completes
+	 * exceptionally if the transfer has failed or has been cancelled.
+	 * </p>
+	 *
+	 * @return the transfer's {@linkplain CompletionStage}.
+	 */
+	public CompletionStage<Long> completion() {
+		return this.completion.copy();
+	}
+
+	/**
+	 * Checks whether the transfer has finished (either successfully, by failure or by cancellation).
+	 *
+	 * @return {@code true} if the transfer has finished.
+	 */
+	public boolean isDone() {
+		return this.completion.isDone();
+	}
+
+	/**
+	 * Checks whether the transfer has been cancelled.
+	 *
+	 * @return {@code true} if the transfer has been cancelled.
+	 */
+	public boolean isCancelled() {
+		return this.completion.isCancelled();
+	}
+
+	/**
+	 * Cancels the transfer.
+	 * <p>
+	 * A transfer that has not yet been started is not started at all. A running transfer is stopped during its next
+	 * progress update.
+	 * </p>
+	 *
+	 * @return {@code true} if the transfer has been cancelled; {@code false} if the transfer has already finished.
+	 */
+	public boolean cancel() {
+		boolean cancelled;
+
+		synchronized (this) {
+			// A transfer whose body has already finished can no longer be cancelled
+			cancelled = !this.finished && this.completion.cancel(false);
+		}
+		return cancelled;
+	}
+
+	/**
+	 * Waits for the transfer to finish.
+	 *
+	 * @return the number of transferred bytes.
+	 * @throws IOException if the transfer has failed.
+	 * @throws InterruptedException if the calling thread has been interrupted while waiting.
+	 * @throws CancellationException if the transfer has been cancelled.
+	 */
+	public long await() throws IOException, InterruptedException {
+		long transferredTotal;
+
+		try {
+			transferredTotal = this.completion.get().longValue();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException("Transfer '" + this.name + "' failed", cause);
+		}
+		return transferredTotal;
+	}
+
+	/**
+	 * Reports transfer progress.
+	 *
+	 * @param bytes the number of additionally transferred bytes.
+	 * @throws CancellationException if the transfer has been cancelled.
+	 */
+	public void progress(long bytes) {
+		checkCancelled();
+		this.transferred.addAndGet(bytes);
+	}
+
+	/**
+	 * Checks whether the transfer has been cancelled and stops it if this is the case.
+	 *
+	 * @throws CancellationException if the transfer has been cancelled.
+	 */
+	public void checkCancelled() {
+		if (this.completion.isCancelled()) {
+			throw new CancellationException("Transfer '" + this.name + "' has been cancelled");
+		}
+	}
+
+	/**
+	 * Wraps a {@linkplain ReadableByteChannel} to report the bytes read from it as transfer progress.
+	 *
+	 * @param channel the {@linkplain ReadableByteChannel} to wrap.
+	 * @return the wrapped {@linkplain ReadableByteChannel}.
+	 */
+	public ReadableByteChannel trackSource(ReadableByteChannel channel) {
+		return new ReadableByteChannel() {
+
+			@Override
+			public boolean isOpen() {
+				return channel.isOpen();
+			}
+
+			@Override
+			public void close() throws IOException {
+				channel.close();
+			}
+
+			@Override
+			public int read(ByteBuffer dst) throws IOException {
+				checkCancelled();
+
+				int read = channel.read(dst);
+
+				if (read > 0) {
+					progress(read);
+				}
+				return read;
+			}
+
+		};
+	}
+
+	/**
+	 * Wraps a {@linkplain WritableByteChannel} to report the bytes written to it as transfer progress.
+	 *
+	 * @param channel the {@linkplain WritableByteChannel} to wrap.
+	 * @return the wrapped {@linkplain WritableByteChannel}.
+	 */
+	public WritableByteChannel trackTarget(WritableByteChannel channel) {
+		return new WritableByteChannel() {
+
+			@Override
+			public boolean isOpen() {
+				return channel.isOpen();
+			}
+
+			@Override
+			public void close() throws IOException {
+				channel.close();
+			}
+
+			@Override
+			public int write(ByteBuffer src) throws IOException {
+				checkCancelled();
+
+				int written = channel.write(src);
+
+				progress(written);
+				return written;
+			}
+
+		};
+	}
+
+	private void run(Body body) {
+		if (!this.completion.isDone()) {
+			try {
+				body.run(this);
+				finish(null);
+			} catch (CancellationException e) {
+				// Completion has already been cancelled
+				LOG.debug(e, "Transfer ''{0}'' cancelled", this.name);
+			} catch (IOException | RuntimeException e) {
+				LOG.warning(e, "Transfer ''{0}'' failed", this.name);
+				finish(e);
+			}
+		}
+	}
+
+	private synchronized void finish(@Nullable Exception exception) {
+		// Completion may already be cancelled; in this case the cancellation takes precedence
+		this.finished = true;
+		if (exception != null) {
+			this.completion.completeExceptionally(exception);
+		} else {
+			this.completion.complete(this.transferred.get());
+		}
+	}
+
+	@Override
+	public String toString() {
+		return this.name + " (" + this.transferred.get() + "/" + this.total + ")";
+	}
+
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.transfer.handler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+import de.carne.filescanner.engine.FileScannerResult;
+import de.carne.filescanner.engine.FileScannerResultRenderContext;
+import de.carne.filescanner.engine.FileScannerResults;
+import de.carne.filescanner.engine.input.FileScannerInput;
+import de.carne.filescanner.engine.transfer.FileScannerResultExportHandler;
+import de.carne.filescanner.engine.transfer.FileScannerResultRenderHandler;
+import de.carne.filescanner.engine.transfer.RenderOutput;
+import de.carne.filescanner.engine.transfer.RenderStyle;
+import de.carne.filescanner.engine.transfer.TransferSource;
+import de.carne.filescanner.engine.transfer.TransferType;
+import de.carne.util.SystemProperties;
+
+/**
+ * {@linkplain FileScannerResultExportHandler} and {@linkplain FileScannerResultRenderHandler} implementation for hex
+ * dump output.
+ * <p>
+ * Each line covers 16 bytes and consists of the line's input position, the hexadecimal byte values and the printable
+ * ASCII characters (e.g. {@code 00000010  50 4b 03 04 ...  |PK..|}). Lines are formatted via precomputed lookup tables
+ * into a reusable character buffer and emitted line by line. Rendering is paged: each render call renders at most
+ * {@code pageSize} bytes starting at the render offset. The number of decoded bytes returned by
+ * {@linkplain FileScannerResult#render(RenderOutput, FileScannerResultRenderHandler, long)} can be used to render the
+ * next page.
+ * </p>
+ * <p>
+ * The handler is offered as render handler for any result (see {@linkplain HexDumpTransferHandlerFactory}). It is not
+ * part of the results' default export handlers, but any result can be exported with it explicitly.
+ * </p>
+ */
+public class HexDumpTransferHandler implements FileScannerResultExportHandler, FileScannerResultRenderHandler {
+
+	private static final int LINE_BYTES = 16;
+	private static final int LINES_PER_READ = 256;
+
+	// Page size is kept line aligned
+	private static final long PAGE_SIZE = Math
+			.max(SystemProperties.longValue(HexDumpTransferHandler.class, ".pageSize", 0x10000), LINE_BYTES)
+			& ~(LINE_BYTES - 1l);
+
+	/**
+	 * The single hex dump handler instance.
+	 */
+	public static final HexDumpTransferHandler HEX_DUMP_TRANSFER = new HexDumpTransferHandler(PAGE_SIZE);
+
+	private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+	private static final char[] HEX_PAIRS = new char[256 * 2];
+	private static final char[] ASCII_CHARS = new char[256];
+
+	static {
+		for (int value = 0; value < 256; value++) {
+			HEX_PAIRS[value << 1] = HEX_CHARS[value >> 4];
+			HEX_PAIRS[(value << 1) + 1] = HEX_CHARS[value & 0xf];
+			ASCII_CHARS[value] = (0x20 <= value && value < 0x7f ? (char) value : '.');
+		}
+	}
+
+	private static final String LINE_SEPARATOR = System.lineSeparator();
+
+	private final long pageSize;
+
+	private HexDumpTransferHandler(long pageSize) {
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Gets a {@linkplain FileScannerResultRenderHandler} rendering a bounded window of lines.
+	 *
+	 * @param lineCount the maximum number of lines to render.
+	 * @return the {@linkplain FileScannerResultRenderHandler} rendering the requested window.
+	 */
+	public FileScannerResultRenderHandler window(long lineCount) {
+		return new HexDumpTransferHandler(Math.max(lineCount, 1) * LINE_BYTES);
+	}
+
+	@Override
+	public String name() {
+		return "Hex dump";
+	}
+
+	@Override
+	public TransferType transferType() {
+		return TransferType.TEXT_PLAIN;
+	}
+
+	@Override
+	public String defaultFileExtension() {
+		return ".txt";
+	}
+
+	@Override
+	public String defaultFileName(FileScannerResult result) throws IOException {
+		return FileScannerResults.defaultFileName(result, defaultFileExtension());
+	}
+
+	@Override
+	public void render(RenderOutput out, FileScannerResultRenderContext context) throws IOException {
+		FileScannerResult result = context.result();
+		long renderStart = context.position();
+		long renderEnd = renderStart + Math.min(context.remaining(), this.pageSize);
+		LineFormatter formatter = new LineFormatter(result.input(), renderStart, renderEnd, result.end());
+
+		while (formatter.formatLine()) {
+			out.setStyle(RenderStyle.VALUE).writeln(formatter.line());
+		}
+		context.skip(formatter.position() - renderStart);
+	}
+
+	@Override
+	public TransferSource export(FileScannerResultRenderContext context) throws IOException {
+		FileScannerResult exportResult = context.result();
+
+		return new TransferSource() {
+
+			@Override
+			public String name() {
+				return HexDumpTransferHandler.this.name();
+			}
+
+			@Override
+			public TransferType transferType() {
+				return HexDumpTransferHandler.this.transferType();
+			}
+
+			@Override
+			public long size() {
+				long resultSize = exportResult.size();
+				int offsetDigits = offsetDigits(exportResult.end());
+				long lineCount = resultSize / LINE_BYTES;
+				int lastLineBytes = (int) (resultSize % LINE_BYTES);
+
+				return lineCount * lineSize(offsetDigits, LINE_BYTES)
+						+ (lastLineBytes > 0 ? lineSize(offsetDigits, lastLineBytes) : 0);
+			}
+
+			@Override
+			public void transfer(WritableByteChannel target) throws IOException {
+				LineFormatter formatter = new LineFormatter(exportResult.input(), exportResult.start(),
+						exportResult.end(), exportResult.end());
+				ByteBuffer buffer = ByteBuffer.allocate(LINES_PER_READ * lineSize(16, LINE_BYTES));
+
+				while (formatter.formatLine()) {
+					if (buffer.remaining() < formatter.lineLength() + LINE_SEPARATOR.length()) {
+						writeBuffer(target, buffer);
+					}
+					formatter.encodeLine(buffer);
+				}
+				writeBuffer(target, buffer);
+			}
+
+			@Override
+			public void transfer(OutputStream target) throws IOException {
+				// Don't close the channel (this would close the stream)
+				transfer(Channels.newChannel(target));
+			}
+
+		};
+	}
+
+	private static int offsetDigits(long end) {
+		return (end > 0xffffffffl ? 16 : 8);
+	}
+
+	private static int lineSize(int offsetDigits, int lineBytes) {
+		// offset + 2 spaces + 16 * 3 hex characters + 1 group space + 1 space + |ascii| + line separator
+		return offsetDigits + 2 + LINE_BYTES * 3 + 1 + 1 + 1 + lineBytes + 1 + LINE_SEPARATOR.length();
+	}
+
+	private static void writeBuffer(WritableByteChannel target, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			target.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	private static final class LineFormatter {
+
+		private final FileScannerInput input;
+		private final long end;
+		private final int offsetDigits;
+		private final ByteBuffer data = ByteBuffer.allocate(LINES_PER_READ * LINE_BYTES);
+		private final char[] line;
+		private long dataPosition;
+		private long position;
+		private int lineLength = 0;
+
+		LineFormatter(FileScannerInput input, long start, long end, long resultEnd) {
+			this.input = input;
+			this.end = end;
+			this.offsetDigits = offsetDigits(resultEnd);
+			this.line = new char[lineSize(this.offsetDigits, LINE_BYTES)];
+			this.dataPosition = start;
+			this.position = start;
+			this.data.limit(0);
+		}
+
+		long position() {
+			return this.position;
+		}
+
+		int lineLength() {
+			return this.lineLength;
+		}
+
+		String line() {
+			return new String(this.line, 0, this.lineLength);
+		}
+
+		void encodeLine(ByteBuffer buffer) {
+			for (int lineIndex = 0; lineIndex < this.lineLength; lineIndex++) {
+				buffer.put((byte) this.line[lineIndex]);
+			}
+			for (int separatorIndex = 0; separatorIndex < LINE_SEPARATOR.length(); separatorIndex++) {
+				buffer.put((byte) LINE_SEPARATOR.charAt(separatorIndex));
+			}
+		}
+
+		boolean formatLine() throws IOException {
+			int lineBytes = (int) Math.min(this.end - this.position, LINE_BYTES);
+
+			if (lineBytes > 0 && this.data.remaining() < lineBytes) {
+				fillData();
+				lineBytes = Math.min(lineBytes, this.data.remaining());
+			}
+			if (lineBytes > 0) {
+				formatLine(lineBytes);
+				this.position += lineBytes;
+			}
+			return lineBytes > 0;
+		}
+
+		private void fillData() throws IOException {
+			this.dataPosition += this.data.position();
+			this.data.compact();
+			this.data.limit((int) Math.min(this.data.capacity(), this.end - this.dataPosition));
+
+			int read = 0;
+
+			while (this.data.hasRemaining() && read >= 0) {
+				read = this.input.read(this.data, this.dataPosition + this.data.position());
+			}
+			this.data.flip();
+		}
+
+		private void formatLine(int lineBytes) {
+			char[] chars = this.line;
+			int charIndex = 0;
+			long offset = this.position;
+
+			for (int digit = this.offsetDigits - 1; digit >= 0; digit--) {
+				chars[charIndex + digit] = HEX_CHARS[((int) offset) & 0xf];
+				offset >>>= 4;
+			}
+			charIndex += this.offsetDigits;
+			chars[charIndex++] = ' ';
+			chars[charIndex++] = ' ';
+
+			int asciiIndex = charIndex + LINE_BYTES * 3 + 1 + 1 + 1;
+
+			for (int byteIndex = 0; byteIndex < LINE_BYTES; byteIndex++) {
+				if (byteIndex == LINE_BYTES / 2) {
+					chars[charIndex++] = ' ';
+				}
+				if (byteIndex < lineBytes) {
+					int value = this.data.get() & 0xff;
+
+					chars[charIndex++] = HEX_PAIRS[value << 1];
+					chars[charIndex++] = HEX_PAIRS[(value << 1) + 1];
+					chars[asciiIndex + byteIndex] = ASCII_CHARS[value];
+				} else {
+					chars[charIndex++] = ' ';
+					chars[charIndex++] = ' ';
+				}
+				chars[charIndex++] = ' ';
+			}
+			chars[charIndex++] = ' ';
+			chars[charIndex] = '|';
+			charIndex = asciiIndex + lineBytes;
+			chars[charIndex++] = '|';
+			this.lineLength = charIndex;
+		}
+
+	}
+
+}
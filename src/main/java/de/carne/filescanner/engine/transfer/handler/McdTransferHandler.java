@@ -21,8 +21,15 @@ import java.io.OutputStream;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
 import java.util.function.Supplier;
 
+import org.eclipse.jdt.annotation.Nullable;
+
 import de.carne.filescanner.engine.FileScannerResult;
 import de.carne.filescanner.engine.FileScannerResultRenderContext;
 import de.carne.filescanner.engine.FileScannerResults;
@@ -31,6 +38,7 @@ import de.carne.filescanner.engine.transfer.FileScannerResultRenderHandler;
 import de.carne.filescanner.engine.transfer.RenderOutput;
 import de.carne.filescanner.engine.transfer.RenderStyle;
 import de.carne.filescanner.engine.transfer.TransferSource;
+import de.carne.filescanner.engine.transfer.TransferTask;
 import de.carne.filescanner.engine.transfer.TransferType;
 import de.carne.mcd.MCDOutput;
 import de.carne.mcd.MachineCodeDecoder;
@@ -44,6 +52,15 @@ import de.carne.util.logging.Log;
 /**
  * {@linkplain FileScannerResultExportHandler} and {@linkplain FileScannerResultRenderHandler} implementation for
  * machine code data decodable via the java-mcd library.
+ * <p>
+ * Via {@linkplain #lineWindow(long)} and {@linkplain #byteWindow(long)} the machine code can be decoded in bounded
+ * windows. A window only ends at an instruction boundary which has been verified by decoding beyond it (the window's
+ * output must not change if more data is available). Verified boundaries are recorded in a sparse index. A window
+ * started at an arbitrary offset starts at the nearest recorded boundary at or before this offset. Hence later
+ * windows as well as backward navigation start at a valid instruction without re-decoding the preceding data.
+ * Decoders which cannot restart at an arbitrary instruction (e.g. the Java class file decoder) as well as data for
+ * which no boundary can be verified are rendered completely by the first window.
+ * </p>
  */
 public class McdTransferHandler implements FileScannerResultExportHandler, FileScannerResultRenderHandler {
 
@@ -51,38 +68,47 @@ public class McdTransferHandler implements FileScannerResultExportHandler, FileS
 
 	private static final String EXTENSION_TXT = ".txt";
 
+	// Number of bytes decoded beyond a window to verify its end (exceeds the maximum instruction length)
+	private static final int WINDOW_MARGIN = 64;
+	// Number of bytes per line assumed to size line windows
+	private static final int WINDOW_LINE_SIZE = 8;
+	private static final int WINDOW_ATTEMPTS = 16;
+
 	/**
 	 * Java class file handler.
 	 */
 	public static final McdTransferHandler JAVA_CLASS_FILE_TRANSFER = new McdTransferHandler(ClassFileDecoder::new,
-			ClassFileDecoder.NAME, EXTENSION_TXT);
+			ClassFileDecoder.NAME, EXTENSION_TXT, false);
 
 	/**
 	 * x86-16 code handler.
 	 */
 	public static final McdTransferHandler X86B16_TRANSFER = new McdTransferHandler(X86b16Decoder::new,
-			X86b16Decoder.NAME, EXTENSION_TXT);
+			X86b16Decoder.NAME, EXTENSION_TXT, true);
 
 	/**
 	 * x86-32 code handler.
 	 */
 	public static final McdTransferHandler X86B32_TRANSFER = new McdTransferHandler(X86b32Decoder::new,
-			X86b32Decoder.NAME, EXTENSION_TXT);
+			X86b32Decoder.NAME, EXTENSION_TXT, true);
 
 	/**
 	 * x86-64 code handler.
 	 */
 	public static final McdTransferHandler X86B64_TRANSFER = new McdTransferHandler(X86b64Decoder::new,
-			X86b64Decoder.NAME, EXTENSION_TXT);
+			X86b64Decoder.NAME, EXTENSION_TXT, true);
 
 	private final Supplier<MachineCodeDecoder> mcd;
 	private final String name;
 	private final String extension;
+	private final boolean restartable;
 
-	private McdTransferHandler(Supplier<MachineCodeDecoder> mcd, String name, String extension) {
+	private McdTransferHandler(Supplier<MachineCodeDecoder> mcd, String name, String extension,
+			boolean restartable) {
 		this.mcd = mcd;
 		this.name = name;
 		this.extension = extension;
+		this.restartable = restartable;
 	}
 
 	@Override
@@ -141,10 +167,53 @@ public class McdTransferHandler implements FileScannerResultExportHandler, FileS
 					transfer(targetChannel);
 				}
 			}
+
+			@Override
+			public TransferTask transferAsync(WritableByteChannel target, Executor executor) {
+				// The decoded size is not known in advance; hence progress is reported in consumed input bytes
+				return TransferTask.start(name(), exportResult.size(), executor, task -> {
+					try (ReadableByteChannel in = task.trackSource(
+							exportResult.input().byteChannel(exportResult.start(), exportResult.end()));
+							PlainMCDOutput out = new PlainMCDOutput(target, false)) {
+						exportMcd.get().decode(in, out);
+					}
+				});
+			}
 		};
 
 	}
 
+	/**
+	 * Gets a {@linkplain FileScannerResultRenderHandler} decoding a bounded window of lines.
+	 * <p>
+	 * The window contains at most the given number of lines (typically one per instruction) and ends at a verified
+	 * instruction boundary. After rendering, the render context is positioned at the instruction following the window.
+	 * Hence the number of decoded bytes returned by
+	 * {@linkplain FileScannerResult#render(RenderOutput, FileScannerResultRenderHandler, long)} can be used to render
+	 * the next window. The returned number is always positive as long as there is data left to render.
+	 * </p>
+	 *
+	 * @param lineCount the maximum number of lines to decode.
+	 * @return the {@linkplain FileScannerResultRenderHandler} rendering the requested window.
+	 */
+	public FileScannerResultRenderHandler lineWindow(long lineCount) {
+		return (out, context) -> renderWindow(out, context, lineCount, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Gets a {@linkplain FileScannerResultRenderHandler} decoding a bounded window of bytes.
+	 * <p>
+	 * The window covers at most the given number of bytes and ends at a verified instruction boundary (see
+	 * {@linkplain #lineWindow(long)}).
+	 * </p>
+	 *
+	 * @param byteCount the maximum number of bytes to decode.
+	 * @return the {@linkplain FileScannerResultRenderHandler} rendering the requested window.
+	 */
+	public FileScannerResultRenderHandler byteWindow(long byteCount) {
+		return (out, context) -> renderWindow(out, context, Long.MAX_VALUE, byteCount);
+	}
+
 	@Override
 	public void render(RenderOutput out, FileScannerResultRenderContext context) throws IOException {
 		FileScannerResult result = context.result();
@@ -160,112 +229,372 @@ public class McdTransferHandler implements FileScannerResultExportHandler, FileS
 		}
 	}
 
-	private static class MCDRenderOutput implements MCDOutput {
+	private void renderWindow(RenderOutput out, FileScannerResultRenderContext context, long lineCount,
+			long byteCount) throws IOException {
+		FileScannerResult result = context.result();
+		long offset = context.position() - result.start();
+
+		if (!this.restartable) {
+			// The first window renders all data
+			if (offset == 0) {
+				renderRemaining(out, context);
+			} else {
+				context.skip(context.remaining());
+			}
+		} else {
+			Boundaries boundaries = boundaries(result);
+			long decodeStart = boundaries.floor(offset);
+			WindowBuffer window = null;
+
+			try {
+				window = decodeWindow(result, decodeStart, lineCount, byteCount);
+				// Walk forward until the window covers the requested offset
+				while (window != null && decodeStart + window.decoded() <= offset) {
+					decodeStart += window.decoded();
+					boundaries.add(decodeStart);
+					window = decodeWindow(result, decodeStart, lineCount, byteCount);
+				}
+			} catch (IOException e) {
+				LOG.error(e, "Failed to decode window of ''{0}''", this.name);
+				window = null;
+			}
+			if (window != null) {
+				long windowEnd = decodeStart + window.decoded();
+
+				window.replay(new MCDRenderOutput(out));
+				boundaries.add(windowEnd);
+				context.skip(windowEnd - offset);
+			} else {
+				// No verifiable window (or decoding failed); fall back to rendering the remaining data
+				renderRemaining(out, context);
+			}
+		}
+	}
 
-		private final RenderOutput out;
+	private void renderRemaining(RenderOutput out, FileScannerResultRenderContext context) throws IOException {
+		long renderStart = context.position();
 
-		MCDRenderOutput(RenderOutput out) {
-			this.out = out;
+		render(out, context);
+		// Make sure the window advances even if decoding fails
+		if (context.position() == renderStart) {
+			context.skip(context.remaining());
+		}
+	}
+
+	@Nullable
+	private WindowBuffer decodeWindow(FileScannerResult result, long decodeStart, long lineCount, long byteCount)
+			throws IOException {
+		long available = result.size() - decodeStart;
+		long windowSize = Math.min(byteCount, available);
+
+		if (lineCount < available / WINDOW_LINE_SIZE) {
+			windowSize = Math.min(windowSize, lineCount * WINDOW_LINE_SIZE);
+		}
+
+		WindowBuffer window = null;
+		int attempts = 0;
+
+		while (window == null && windowSize > 0 && attempts < WINDOW_ATTEMPTS) {
+			WindowBuffer candidate = decodeBuffer(result, decodeStart, windowSize);
+			long decoded = candidate.decoded();
+
+			if (decoded <= 0 || decoded > windowSize) {
+				// No progress (or inconsistent decoder); give up
+				windowSize = 0;
+			} else if (candidate.lines() > lineCount && windowSize > 1) {
+				windowSize = Math.max(Math.min((long) ((double) windowSize * lineCount / candidate.lines()),
+						windowSize - 1), 1);
+			} else if (windowSize == available || candidate
+					.isPrefixOf(decodeBuffer(result, decodeStart, Math.min(windowSize + WINDOW_MARGIN, available)))) {
+				window = candidate;
+			} else {
+				// The last instruction has been affected by the window end; retry without it
+				windowSize = decoded - 1;
+			}
+			attempts++;
+		}
+		return window;
+	}
+
+	private WindowBuffer decodeBuffer(FileScannerResult result, long decodeStart, long decodeSize) throws IOException {
+		WindowBuffer buffer = new WindowBuffer();
+		long start = result.start() + decodeStart;
+
+		try (ReadableByteChannel in = result.input().byteChannel(start, start + decodeSize)) {
+			buffer.setDecoded(this.mcd.get().decode(in, buffer, decodeStart));
+		}
+		return buffer;
+	}
+
+	private Boundaries boundaries(FileScannerResult result) {
+		Boundaries boundaries;
+
+		synchronized (result) {
+			boundaries = result.getData(this, Boundaries.class);
+			if (boundaries == null) {
+				boundaries = new Boundaries();
+				result.setData(this, boundaries);
+			}
+		}
+		return boundaries;
+	}
+
+	private static final class Boundaries {
+
+		// Offset 0 (the start of the result) is always a valid boundary
+		private long[] offsets = new long[16];
+		private int size = 1;
+
+		synchronized void add(long offset) {
+			int index = Arrays.binarySearch(this.offsets, 0, this.size, offset);
+
+			if (index < 0) {
+				int insertIndex = -index - 1;
+
+				if (this.size == this.offsets.length) {
+					this.offsets = Arrays.copyOf(this.offsets, this.size << 1);
+				}
+				System.arraycopy(this.offsets, insertIndex, this.offsets, insertIndex + 1, this.size - insertIndex);
+				this.offsets[insertIndex] = offset;
+				this.size++;
+			}
+		}
+
+		synchronized long floor(long offset) {
+			int index = Arrays.binarySearch(this.offsets, 0, this.size, offset);
+
+			return this.offsets[index >= 0 ? index : Math.max(-index - 2, 0)];
+		}
+
+	}
+
+	private abstract static class StyledMCDOutput implements MCDOutput {
+
+		StyledMCDOutput() {
+			// Make class package accessible
+		}
+
+		protected abstract void indent(int delta) throws IOException;
+
+		protected abstract void emit(@Nullable RenderStyle style, String text, boolean lineBreak) throws IOException;
+
+		@Override
+		public StyledMCDOutput increaseIndent() throws IOException {
+			indent(1);
+			return this;
+		}
+
+		@Override
+		public StyledMCDOutput decreaseIndent() throws IOException {
+			indent(-1);
+			return this;
 		}
 
 		@Override
-		public MCDRenderOutput increaseIndent() throws IOException {
-			this.out.increaseIndent();
+		public StyledMCDOutput println() throws IOException {
+			emit(null, "", true);
 			return this;
 		}
 
 		@Override
-		public MCDRenderOutput decreaseIndent() throws IOException {
-			this.out.decreaseIndent();
+		public StyledMCDOutput print(String text) throws IOException {
+			emit(RenderStyle.NORMAL, text, false);
 			return this;
 		}
 
 		@Override
-		public MCDRenderOutput println() throws IOException {
-			this.out.writeln();
+		public StyledMCDOutput println(String text) throws IOException {
+			emit(RenderStyle.NORMAL, text, true);
 			return this;
 		}
 
 		@Override
-		public MCDRenderOutput print(String text) throws IOException {
-			return printStyle(RenderStyle.NORMAL, text);
+		public StyledMCDOutput printValue(String value) throws IOException {
+			emit(RenderStyle.VALUE, value, false);
+			return this;
 		}
 
 		@Override
-		public MCDRenderOutput println(String text) throws IOException {
-			return printlnStyle(RenderStyle.NORMAL, text);
+		public StyledMCDOutput printlnValue(String value) throws IOException {
+			emit(RenderStyle.VALUE, value, true);
+			return this;
 		}
 
 		@Override
-		public MCDRenderOutput printValue(String value) throws IOException {
-			return printStyle(RenderStyle.VALUE, value);
+		public StyledMCDOutput printComment(String comment) throws IOException {
+			emit(RenderStyle.COMMENT, comment, false);
+			return this;
 		}
 
 		@Override
-		public MCDRenderOutput printlnValue(String value) throws IOException {
-			return printlnStyle(RenderStyle.VALUE, value);
+		public StyledMCDOutput printlnComment(String comment) throws IOException {
+			emit(RenderStyle.COMMENT, comment, true);
+			return this;
 		}
 
 		@Override
-		public MCDRenderOutput printComment(String comment) throws IOException {
-			return printStyle(RenderStyle.COMMENT, comment);
+		public StyledMCDOutput printKeyword(String keyword) throws IOException {
+			emit(RenderStyle.KEYWORD, keyword, false);
+			return this;
 		}
 
 		@Override
-		public MCDRenderOutput printlnComment(String comment) throws IOException {
-			return printlnStyle(RenderStyle.COMMENT, comment);
+		public StyledMCDOutput printlnKeyword(String keyword) throws IOException {
+			emit(RenderStyle.KEYWORD, keyword, true);
+			return this;
 		}
 
 		@Override
-		public MCDRenderOutput printKeyword(String keyword) throws IOException {
-			return printStyle(RenderStyle.KEYWORD, keyword);
+		public StyledMCDOutput printOperator(String operator) throws IOException {
+			emit(RenderStyle.OPERATOR, operator, false);
+			return this;
 		}
 
 		@Override
-		public MCDRenderOutput printlnKeyword(String keyword) throws IOException {
-			return printlnStyle(RenderStyle.KEYWORD, keyword);
+		public StyledMCDOutput printlnOperator(String operator) throws IOException {
+			emit(RenderStyle.OPERATOR, operator, true);
+			return this;
 		}
 
 		@Override
-		public MCDRenderOutput printOperator(String operator) throws IOException {
-			return printStyle(RenderStyle.OPERATOR, operator);
+		public StyledMCDOutput printLabel(String label) throws IOException {
+			emit(RenderStyle.LABEL, label, false);
+			return this;
 		}
 
 		@Override
-		public MCDRenderOutput printlnOperator(String operator) throws IOException {
-			return printlnStyle(RenderStyle.OPERATOR, operator);
+		public StyledMCDOutput printlnLabel(String label) throws IOException {
+			emit(RenderStyle.LABEL, label, true);
+			return this;
 		}
 
 		@Override
-		public MCDRenderOutput printLabel(String label) throws IOException {
-			return printStyle(RenderStyle.LABEL, label);
+		public StyledMCDOutput printError(String error) throws IOException {
+			emit(RenderStyle.ERROR, error, false);
+			return this;
 		}
 
 		@Override
-		public MCDRenderOutput printlnLabel(String label) throws IOException {
-			return printlnStyle(RenderStyle.LABEL, label);
+		public StyledMCDOutput printlnError(String error) throws IOException {
+			emit(RenderStyle.ERROR, error, true);
+			return this;
+		}
+
+	}
+
+	private static final class MCDRenderOutput extends StyledMCDOutput {
+
+		private final RenderOutput out;
+
+		MCDRenderOutput(RenderOutput out) {
+			this.out = out;
 		}
 
 		@Override
-		public MCDRenderOutput printError(String error) throws IOException {
-			return printStyle(RenderStyle.ERROR, error);
+		protected void indent(int delta) throws IOException {
+			if (delta > 0) {
+				this.out.increaseIndent();
+			} else {
+				this.out.decreaseIndent();
+			}
 		}
 
 		@Override
-		public MCDRenderOutput printlnError(String error) throws IOException {
-			return printlnStyle(RenderStyle.ERROR, error);
+		protected void emit(@Nullable RenderStyle style, String text, boolean lineBreak) throws IOException {
+			if (style != null) {
+				this.out.setStyle(style);
+			}
+			if (lineBreak) {
+				this.out.writeln(text);
+			} else {
+				this.out.write(text);
+			}
 		}
 
-		private MCDRenderOutput printStyle(RenderStyle style, String text) throws IOException {
-			this.out.setStyle(style);
-			this.out.write(text);
-			return this;
+	}
+
+	private static final class WindowBuffer extends StyledMCDOutput {
+
+		private final List<Object> ops = new ArrayList<>();
+		private long lines = 0;
+		private long decoded = 0;
+
+		WindowBuffer() {
+			// Make class package accessible
 		}
 
-		private MCDRenderOutput printlnStyle(RenderStyle style, String text) throws IOException {
-			this.out.setStyle(style);
-			this.out.writeln(text);
-			return this;
+		void setDecoded(long decoded) {
+			this.decoded = decoded;
+		}
+
+		long decoded() {
+			return this.decoded;
+		}
+
+		long lines() {
+			return this.lines;
+		}
+
+		boolean isPrefixOf(WindowBuffer buffer) {
+			return this.ops.size() <= buffer.ops.size() && this.decoded <= buffer.decoded
+					&& this.ops.equals(buffer.ops.subList(0, this.ops.size()));
+		}
+
+		void replay(StyledMCDOutput out) throws IOException {
+			for (Object op : this.ops) {
+				if (op instanceof Integer) {
+					out.indent(((Integer) op).intValue());
+				} else {
+					Text text = (Text) op;
+
+					out.emit(text.style, text.text, text.lineBreak);
+				}
+			}
+		}
+
+		@Override
+		protected void indent(int delta) {
+			this.ops.add(Integer.valueOf(delta));
+		}
+
+		@Override
+		protected void emit(@Nullable RenderStyle style, String text, boolean lineBreak) {
+			this.ops.add(new Text(style, text, lineBreak));
+			if (lineBreak) {
+				this.lines++;
+			}
+		}
+
+	}
+
+	private static final class Text {
+
+		@Nullable
+		final RenderStyle style;
+		final String text;
+		final boolean lineBreak;
+
+		Text(@Nullable RenderStyle style, String text, boolean lineBreak) {
+			this.style = style;
+			this.text = text;
+			this.lineBreak = lineBreak;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(this.style, this.text, this.lineBreak);
+		}
+
+		@Override
+		public boolean equals(@Nullable Object obj) {
+			boolean equal = this == obj;
+
+			if (!equal && obj instanceof Text) {
+				Text other = (Text) obj;
+
+				equal = this.style == other.style && this.text.equals(other.text) && this.lineBreak == other.lineBreak;
+			}
+			return equal;
 		}
 
 	}
@@ -16,6 +16,8 @@
  */
 package de.carne.filescanner.engine.transfer.handler;
 
+import java.io.EOFException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -23,6 +25,7 @@ import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import org.eclipse.jdt.annotation.NonNull;
 
@@ -33,10 +36,12 @@ import de.carne.filescanner.engine.transfer.FileScannerResultRenderHandler;
 import de.carne.filescanner.engine.transfer.RenderOption;
 import de.carne.filescanner.engine.transfer.RenderOutput;
 import de.carne.filescanner.engine.transfer.TransferSource;
+import de.carne.filescanner.engine.transfer.TransferTask;
 import de.carne.filescanner.engine.transfer.TransferType;
 import de.carne.filescanner.engine.FileScannerResultRenderContext;
 import de.carne.filescanner.engine.FileScannerResults;
 import de.carne.io.IOUtil;
+import de.carne.util.SystemProperties;
 
 /**
  * {@linkplain FileScannerResultExportHandler} and {@linkplain FileScannerResultRenderHandler} implementation for raw
@@ -44,6 +49,9 @@ import de.carne.io.IOUtil;
  */
 public class RawTransferHandler implements FileScannerResultExportHandler, FileScannerResultRenderHandler {
 
+	private static final long ASYNC_CHUNK_SIZE = SystemProperties.longValue(RawTransferHandler.class,
+			".asyncChunkSize", 0x100000l);
+
 	/**
 	 * Predefined APPLICATION_OCTET_STREAM transfer handler.
 	 */
@@ -190,19 +198,45 @@ public class RawTransferHandler implements FileScannerResultExportHandler, FileS
 
 		@Override
 		public void transfer(WritableByteChannel target) throws IOException {
-			try (ReadableByteChannel resultChannel = this.result.input().byteChannel(this.result.start(),
-					this.result.end())) {
-				IOUtil.copyChannel(target, resultChannel);
-			}
+			// Transfers directly from the underlying file (if possible) and bypasses the input buffers
+			this.result.input().transferTo(target, this.result.start(), this.result.end());
 		}
 
 		@Override
 		public void transfer(OutputStream target) throws IOException {
-			try (InputStream resultStream = this.result.input().inputStream(this.result.start(), this.result.end())) {
-				IOUtil.copyStream(target, resultStream);
+			if (target instanceof FileOutputStream) {
+				// Don't close the stream's channel (this would close the stream)
+				transfer(((FileOutputStream) target).getChannel());
+			} else {
+				try (InputStream resultStream = this.result.input().inputStream(this.result.start(),
+						this.result.end())) {
+					IOUtil.copyStream(target, resultStream);
+				}
 			}
 		}
 
+		@Override
+		public TransferTask transferAsync(WritableByteChannel target, Executor executor) {
+			return TransferTask.start(name(), size(), executor, task -> {
+				// Transfer chunk wise to report progress and to check for cancellation in between
+				long chunkSize = Math.max(ASYNC_CHUNK_SIZE, 0x1000l);
+				long position = this.result.start();
+				long end = this.result.end();
+
+				while (position < end) {
+					long chunkEnd = Math.min(position + chunkSize, end);
+					long transferred = this.result.input().transferTo(target, position, chunkEnd);
+
+					task.progress(transferred);
+					position += transferred;
+					if (position < chunkEnd) {
+						throw new EOFException("Unexpected end of input while transferring '" + this.result.name()
+								+ "' (" + position + "/" + end + ")");
+					}
+				}
+			});
+		}
+
 	}
 
 }
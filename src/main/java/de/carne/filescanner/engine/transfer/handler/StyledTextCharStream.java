@@ -30,6 +30,7 @@ import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.misc.Interval;
 import org.eclipse.jdt.annotation.Nullable;
 
+import de.carne.filescanner.engine.input.FileScannerInput;
 import de.carne.util.Check;
 import de.carne.util.Exceptions;
 import de.carne.util.logging.Log;
@@ -40,7 +41,10 @@ class StyledTextCharStream implements CharStream {
 
 	private static final int READ_BUFFER_SIZE = 1024;
 	private static final int DECODE_BUFFER_SIZE = 2048;
+	private static final int BOUNDARY_COUNT = 64;
 
+	private final FileScannerInput input;
+	private final long start;
 	private final ReadableByteChannel channel;
 	private final long channelSize;
 	private boolean channelEof = false;
@@ -53,11 +57,24 @@ class StyledTextCharStream implements CharStream {
 	private int decodeBufferDisplacement = 0;
 	private int markIndex = -1;
 	private long decodedBytes = 0;
+	private final long[] boundaryIndexes = new long[BOUNDARY_COUNT];
+	private final long[] boundaryBytes = new long[BOUNDARY_COUNT];
+	private int pendingChar = -1;
+	private int boundaryCount = 0;
+	private int nextBoundary = 0;
+	@Nullable
+	private ByteTracker byteTracker = null;
+
+	StyledTextCharStream(FileScannerInput input, long start, long end, Charset charset) throws IOException {
+		this.input = input;
+		this.start = start;
+		this.channel = input.byteChannel(start, end);
+		this.channelSize = end - start;
+		this.decoder = newDecoder(charset);
+	}
 
-	StyledTextCharStream(ReadableByteChannel channel, long channelSize, Charset charset) {
-		this.channel = channel;
-		this.channelSize = channelSize;
-		this.decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+	private static CharsetDecoder newDecoder(Charset charset) {
+		return charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
 				.onUnmappableCharacter(CodingErrorAction.REPLACE);
 	}
 
@@ -65,6 +82,45 @@ class StyledTextCharStream implements CharStream {
 		return this.decodedBytes;
 	}
 
+	/**
+	 * Determines the exact number of bytes decoded up to the given char index.
+	 * <p>
+	 * The result is only exact for charsets whose decoder does not carry any state across character boundaries (see
+	 * {@linkplain StyledTextRenderHandler}). The char index must not be located within a surrogate pair.
+	 * </p>
+	 *
+	 * @param index the char index to determine the byte offset for.
+	 * @return the number of bytes decoded up to the given char index.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public long byteOffset(int index) throws IOException {
+		ByteTracker checkedByteTracker = this.byteTracker;
+
+		if (checkedByteTracker == null) {
+			checkedByteTracker = this.byteTracker = new ByteTracker(this.input, this.start, this.channelSize,
+					this.decoder.charset());
+		}
+
+		boolean resetTracker = checkedByteTracker.index() > index;
+		long baseIndex = (resetTracker ? 0 : checkedByteTracker.index());
+		long baseBytes = (resetTracker ? 0 : checkedByteTracker.bytes());
+
+		for (int boundary = 0; boundary < this.boundaryCount; boundary++) {
+			long boundaryIndex = this.boundaryIndexes[boundary];
+
+			if (baseIndex < boundaryIndex && boundaryIndex <= index) {
+				baseIndex = boundaryIndex;
+				baseBytes = this.boundaryBytes[boundary];
+				resetTracker = true;
+			}
+		}
+		if (resetTracker) {
+			checkedByteTracker.reset(baseIndex, baseBytes);
+		}
+		checkedByteTracker.advance(index);
+		return checkedByteTracker.bytes();
+	}
+
 	@Override
 	public void consume() {
 		if (this.decodeBuffer0.hasRemaining()) {
@@ -198,7 +254,8 @@ class StyledTextCharStream implements CharStream {
 						int capacity = this.decodeBuffer0.capacity();
 
 						if (this.decoded0 < capacity) {
-							int feeds0 = Math.min(feed, capacity - this.decoded0);
+							// Feed at least two chars to make room for surrogate pairs
+							int feeds0 = Math.min(Math.max(feed, 2), capacity - this.decoded0);
 							CharBuffer decodeBuffer = this.decodeBuffer0.duplicate();
 
 							decodeBuffer.position(this.decoded0);
@@ -209,8 +266,13 @@ class StyledTextCharStream implements CharStream {
 
 							feed -= (nextDecoded0 - this.decoded0);
 							this.decoded0 = nextDecoded0;
+							if (decodeResult.isOverflow() && nextDecoded0 == capacity - 1
+									&& decodeBuffer.limit() == capacity) {
+								decodeResult = decodeSplitPair();
+								feed -= (this.decoded0 - nextDecoded0) + this.decoded1;
+							}
 						} else if (this.decoded1 < capacity) {
-							int feeds1 = Math.min(feed, capacity - this.decoded1);
+							int feeds1 = Math.min(Math.max(feed, 2), capacity - this.decoded1);
 							CharBuffer decodeBuffer = this.decodeBuffer1.duplicate();
 
 							decodeBuffer.position(this.decoded1);
@@ -221,10 +283,18 @@ class StyledTextCharStream implements CharStream {
 
 							feed -= (nextDecoded1 - this.decoded1);
 							this.decoded1 = nextDecoded1;
+							if (decodeResult.isOverflow() && nextDecoded1 == capacity - 1
+									&& decodeBuffer.limit() == capacity) {
+								decodeResult = decodeSplitPair();
+								feed -= this.decoded1 - nextDecoded1;
+							}
 						} else {
 							Check.fail("Insufficent LA buffer");
 						}
 						this.decodedBytes += (this.readBuffer.position() - readBufferStart);
+						if (this.pendingChar < 0) {
+							recordBoundary();
+						}
 					} while (feed > 0 && (!this.channelEof || this.readBuffer.hasRemaining()));
 				} catch (IOException e) {
 					throw Exceptions.toRuntime(e);
@@ -233,6 +303,29 @@ class StyledTextCharStream implements CharStream {
 		}
 	}
 
+	private CoderResult decodeSplitPair() {
+		// A surrogate pair does not fit into the current decode buffer; split it across the decode buffers (or keep
+		// the low surrogate pending until the next decode buffer becomes available)
+		CharBuffer pairBuffer = CharBuffer.allocate(2);
+		CoderResult decodeResult = this.decoder.decode(this.readBuffer, pairBuffer, this.channelEof);
+		int capacity = this.decodeBuffer0.capacity();
+
+		for (int pairIndex = 0; pairIndex < pairBuffer.position(); pairIndex++) {
+			char pairChar = pairBuffer.get(pairIndex);
+
+			if (this.decoded0 < capacity) {
+				this.decodeBuffer0.put(this.decoded0, pairChar);
+				this.decoded0++;
+			} else if (this.decoded1 < capacity) {
+				this.decodeBuffer1.put(this.decoded1, pairChar);
+				this.decoded1++;
+			} else {
+				this.pendingChar = pairChar;
+			}
+		}
+		return decodeResult;
+	}
+
 	private void feedReadBuffer() throws IOException {
 		if (this.readBuffer.hasRemaining()) {
 			ByteBuffer remainingBuffer = this.readBuffer.duplicate();
@@ -254,6 +347,13 @@ class StyledTextCharStream implements CharStream {
 		this.readBuffer.flip();
 	}
 
+	private void recordBoundary() {
+		this.boundaryIndexes[this.nextBoundary] = (long) this.decodeBufferDisplacement + this.decoded0 + this.decoded1;
+		this.boundaryBytes[this.nextBoundary] = this.decodedBytes;
+		this.boundaryCount = Math.max(this.boundaryCount, this.nextBoundary + 1);
+		this.nextBoundary = (this.nextBoundary + 1) % BOUNDARY_COUNT;
+	}
+
 	private void compactDecodeBuffer() {
 		if (!this.decodeBuffer0.hasRemaining() && !this.decodeBuffer1.hasRemaining()) {
 			this.decodeBufferDisplacement += this.decoded0;
@@ -264,10 +364,79 @@ class StyledTextCharStream implements CharStream {
 			this.decoded0 = this.decoded1;
 			this.decodeBuffer1 = nextDecodeBuffer1;
 			this.decoded1 = 0;
+			if (this.pendingChar >= 0) {
+				this.decodeBuffer1.put(0, (char) this.pendingChar);
+				this.decoded1 = 1;
+				this.pendingChar = -1;
+			}
 			if (0 <= this.markIndex && this.markIndex < this.decodeBufferDisplacement) {
 				LOG.warning("Mark buffer exceeded: {0}", this.decodeBufferDisplacement - this.markIndex);
 			}
 		}
 	}
 
+	private static final class ByteTracker {
+
+		private final FileScannerInput input;
+		private final long start;
+		private final long size;
+		private final CharsetDecoder decoder;
+		private final ByteBuffer inBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE).limit(0);
+		private final CharBuffer outBuffer = CharBuffer.allocate(DECODE_BUFFER_SIZE);
+		private long index = 0;
+		private long bytes = 0;
+
+		ByteTracker(FileScannerInput input, long start, long size, Charset charset) {
+			this.input = input;
+			this.start = start;
+			this.size = size;
+			this.decoder = newDecoder(charset);
+		}
+
+		long index() {
+			return this.index;
+		}
+
+		long bytes() {
+			return this.bytes;
+		}
+
+		void reset(long resetIndex, long resetBytes) {
+			this.decoder.reset();
+			this.inBuffer.clear().limit(0);
+			this.index = resetIndex;
+			this.bytes = resetBytes;
+		}
+
+		void advance(long targetIndex) throws IOException {
+			boolean progress = true;
+
+			while (progress && this.index < targetIndex) {
+				long readPosition = this.bytes + this.inBuffer.remaining();
+
+				if (this.inBuffer.remaining() < READ_BUFFER_SIZE / 2 && readPosition < this.size) {
+					this.inBuffer.compact();
+					this.inBuffer.limit((int) Math.min(this.inBuffer.capacity(),
+							this.inBuffer.position() + this.size - readPosition));
+					this.input.read(this.inBuffer, this.start + readPosition);
+					this.inBuffer.flip();
+				}
+
+				boolean eof = this.bytes + this.inBuffer.remaining() >= this.size;
+				int inStart = this.inBuffer.position();
+
+				this.outBuffer.clear().limit((int) Math.min(this.outBuffer.capacity(), targetIndex - this.index));
+				this.decoder.decode(this.inBuffer, this.outBuffer, eof);
+
+				int decodedChars = this.outBuffer.position();
+				int decodedInBytes = this.inBuffer.position() - inStart;
+
+				this.index += decodedChars;
+				this.bytes += decodedInBytes;
+				progress = decodedChars > 0 || decodedInBytes > 0;
+			}
+		}
+
+	}
+
 }
@@ -17,9 +17,9 @@
 package de.carne.filescanner.engine.transfer.handler;
 
 import java.io.IOException;
-import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.function.Function;
@@ -36,12 +36,24 @@ import de.carne.filescanner.engine.transfer.RenderOutput;
 import de.carne.filescanner.engine.transfer.RenderStyle;
 import de.carne.filescanner.engine.transfer.renderer.textstyle.PlainStyle;
 import de.carne.filescanner.engine.transfer.renderer.textstyle.XMLStyle;
+import de.carne.util.SystemProperties;
 
 /**
  * {@linkplain FileScannerResultRenderHandler} implementation for styled text rendering.
+ * <p>
+ * While rendering, checkpoints (byte offset, lexer mode and line number) are recorded at line starts roughly every
+ * {@code checkpointInterval} bytes. Checkpoints are only recorded for charsets whose decoder does not carry any state
+ * across character boundaries (the byte offset then fully describes the decoder state). Via
+ * {@linkplain #lineWindow(long, long)} and {@linkplain #byteWindow(long)} a bounded window of lines can be rendered
+ * starting from the nearest checkpoint without re-decoding the preceding text. Lines are separated by line break
+ * tokens (a multi-line token like a XML comment is considered part of a single line).
+ * </p>
  */
 public class StyledTextRenderHandler implements FileScannerResultRenderHandler {
 
+	private static final long CHECKPOINT_INTERVAL = Math
+			.max(SystemProperties.longValue(StyledTextRenderHandler.class, ".checkpointInterval", 0x10000), 0x400);
+
 	private static class Style {
 
 		private final Function<CharStream, Lexer> lexerFactory;
@@ -83,6 +95,7 @@ public class StyledTextRenderHandler implements FileScannerResultRenderHandler {
 
 	private final Style style;
 	private final Charset charset;
+	private final boolean checkpointable;
 
 	/**
 	 * Predefined TEXT_PLAIN/UTF-8 renderer handler.
@@ -134,13 +147,57 @@ public class StyledTextRenderHandler implements FileScannerResultRenderHandler {
 	private StyledTextRenderHandler(Style style, Charset charset) {
 		this.style = style;
 		this.charset = charset;
+		this.checkpointable = StandardCharsets.UTF_8.equals(charset) || StandardCharsets.UTF_16LE.equals(charset)
+				|| StandardCharsets.UTF_16BE.equals(charset)
+				|| (charset.canEncode() && charset.newEncoder().maxBytesPerChar() <= 1.0f);
+	}
+
+	/**
+	 * Gets a {@linkplain FileScannerResultRenderHandler} rendering a bounded window of lines.
+	 * <p>
+	 * The window starts at the first line beginning at or after the render offset. After rendering, the render
+	 * context is positioned at the beginning of the line following the window. Hence the number of decoded bytes
+	 * returned by {@linkplain FileScannerResult#render(RenderOutput, FileScannerResultRenderHandler, long)} can be
+	 * used to render the next window.
+	 * </p>
+	 *
+	 * @param firstLine the index of the first line to render (relative to the render offset).
+	 * @param lineCount the maximum number of lines to render.
+	 * @return the {@linkplain FileScannerResultRenderHandler} rendering the requested window.
+	 */
+	public FileScannerResultRenderHandler lineWindow(long firstLine, long lineCount) {
+		return (out, context) -> renderWindow(out, context, firstLine, lineCount, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Gets a {@linkplain FileScannerResultRenderHandler} rendering a bounded window of bytes.
+	 * <p>
+	 * The window starts at the first line beginning at or after the render offset and is extended line by line until
+	 * at least the given number of bytes has been rendered (see {@linkplain #lineWindow(long, long)}).
+	 * </p>
+	 *
+	 * @param byteCount the number of bytes to render.
+	 * @return the {@linkplain FileScannerResultRenderHandler} rendering the requested window.
+	 */
+	public FileScannerResultRenderHandler byteWindow(long byteCount) {
+		return (out, context) -> renderWindow(out, context, 0, Long.MAX_VALUE, byteCount);
 	}
 
 	@Override
 	public void render(RenderOutput out, FileScannerResultRenderContext context) throws IOException {
+		if (context.position() == context.result().start()) {
+			renderWindow(out, context, 0, Long.MAX_VALUE, Long.MAX_VALUE);
+		} else {
+			renderFrom(out, context);
+		}
+	}
+
+	private void renderFrom(RenderOutput out, FileScannerResultRenderContext context) throws IOException {
 		out.enableOption(RenderOption.WRAP);
 
-		StyledTextCharStream lexerInput = newLexerInput(context);
+		FileScannerResult result = context.result();
+		StyledTextCharStream lexerInput = new StyledTextCharStream(result.input(), context.position(), result.end(),
+				this.charset);
 		Lexer lexer = this.style.lexer(lexerInput);
 
 		while (!lexer._hitEOF) {
@@ -157,11 +214,160 @@ public class StyledTextRenderHandler implements FileScannerResultRenderHandler {
 		context.skip(lexerInput.decodedBytes());
 	}
 
-	private StyledTextCharStream newLexerInput(FileScannerResultRenderContext context) throws IOException {
+	@SuppressWarnings("java:S3776")
+	private void renderWindow(RenderOutput out, FileScannerResultRenderContext context, long firstLine, long lineCount,
+			long byteCount) throws IOException {
+		out.enableOption(RenderOption.WRAP);
+
 		FileScannerResult result = context.result();
-		ReadableByteChannel channel = result.input().byteChannel(context.position(), result.end());
+		long offset = context.position() - result.start();
+		Checkpoints checkpoints = checkpoints(result);
+		int checkpoint = (offset == 0 ? checkpoints.floorLine(firstLine) : checkpoints.floorOffset(offset));
+		long checkpointOffset = checkpoints.offset(checkpoint);
+		StyledTextCharStream lexerInput = new StyledTextCharStream(result.input(), result.start() + checkpointOffset,
+				result.end(), this.charset);
+		Lexer lexer = this.style.lexer(lexerInput);
+
+		lexer.mode(checkpoints.mode(checkpoint));
+
+		long line = checkpoints.line(checkpoint);
+		long windowStartLine = (offset == 0 ? firstLine : -1);
+		long windowStartOffset = -1;
+		long windowEndOffset = -1;
+		long nextCheckpointOffset = checkpointOffset + CHECKPOINT_INTERVAL;
+		boolean lineStart = true;
+
+		while (windowEndOffset < 0 && !lexer._hitEOF) {
+			if (lineStart) {
+				// The decoded bytes are an upper bound for the line offset; determine the exact offset only if needed
+				long estimatedOffset = checkpointOffset + lexerInput.decodedBytes();
+				long lineOffset = -1;
+
+				if (this.checkpointable && estimatedOffset >= nextCheckpointOffset && lexer._modeStack.isEmpty()) {
+					lineOffset = lineOffset(lexerInput, checkpointOffset, lineOffset);
+					if (lineOffset >= nextCheckpointOffset) {
+						checkpoints.add(lineOffset, lexer._mode, line);
+						nextCheckpointOffset = lineOffset + CHECKPOINT_INTERVAL;
+					}
+				}
+				if (windowStartLine < 0 && estimatedOffset >= offset) {
+					lineOffset = lineOffset(lexerInput, checkpointOffset, lineOffset);
+					if (lineOffset >= offset) {
+						windowStartLine = line + firstLine;
+					}
+				}
+				if (windowStartLine >= 0 && line >= windowStartLine) {
+					if (line == windowStartLine && byteCount < Long.MAX_VALUE) {
+						lineOffset = lineOffset(lexerInput, checkpointOffset, lineOffset);
+						windowStartOffset = lineOffset;
+					}
+					if (line - windowStartLine >= lineCount) {
+						windowEndOffset = lineOffset(lexerInput, checkpointOffset, lineOffset);
+					} else if (line > windowStartLine && estimatedOffset - windowStartOffset >= byteCount) {
+						lineOffset = lineOffset(lexerInput, checkpointOffset, lineOffset);
+						if (lineOffset - windowStartOffset >= byteCount) {
+							windowEndOffset = lineOffset;
+						}
+					}
+				}
+			}
+			if (windowEndOffset < 0) {
+				Token token = lexer.nextToken();
+				int tokenType = token.getType();
+				boolean render = windowStartLine >= 0 && line >= windowStartLine;
+
+				lineStart = this.style.isLineBreakTokenType(tokenType);
+				if (!lineStart) {
+					if (render) {
+						out.setStyle(this.style.style(tokenType));
+						out.write(token.getText());
+					}
+				} else {
+					if (render) {
+						out.writeln();
+					}
+					line++;
+				}
+			}
+		}
+		if (windowEndOffset >= 0) {
+			context.skip(result.start() + windowEndOffset - context.position());
+		} else {
+			context.skip(result.start() + checkpointOffset + lexerInput.decodedBytes() - context.position());
+		}
+	}
+
+	private static long lineOffset(StyledTextCharStream lexerInput, long checkpointOffset, long lineOffset)
+			throws IOException {
+		return (lineOffset >= 0 ? lineOffset : checkpointOffset + lexerInput.byteOffset(lexerInput.index()));
+	}
+
+	private Checkpoints checkpoints(FileScannerResult result) {
+		Checkpoints checkpoints;
+
+		synchronized (result) {
+			checkpoints = result.getData(this, Checkpoints.class);
+			if (checkpoints == null) {
+				checkpoints = new Checkpoints();
+				result.setData(this, checkpoints);
+			}
+		}
+		return checkpoints;
+	}
+
+	private static final class Checkpoints {
+
+		private long[] offsets = new long[16];
+		private int[] modes = new int[16];
+		private long[] lines = new long[16];
+		private int size = 1;
+
+		Checkpoints() {
+			this.modes[0] = Lexer.DEFAULT_MODE;
+		}
+
+		synchronized void add(long offset, int mode, long line) {
+			if (this.offsets[this.size - 1] < offset) {
+				if (this.size == this.offsets.length) {
+					int capacity = this.size << 1;
+
+					this.offsets = Arrays.copyOf(this.offsets, capacity);
+					this.modes = Arrays.copyOf(this.modes, capacity);
+					this.lines = Arrays.copyOf(this.lines, capacity);
+				}
+				this.offsets[this.size] = offset;
+				this.modes[this.size] = mode;
+				this.lines[this.size] = line;
+				this.size++;
+			}
+		}
+
+		synchronized int floorOffset(long offset) {
+			return floor(this.offsets, offset);
+		}
+
+		synchronized int floorLine(long line) {
+			return floor(this.lines, line);
+		}
+
+		private int floor(long[] keys, long key) {
+			int index = Arrays.binarySearch(keys, 0, this.size, key);
+
+			return (index >= 0 ? index : Math.max(-index - 2, 0));
+		}
+
+		synchronized long offset(int checkpoint) {
+			return this.offsets[checkpoint];
+		}
+
+		synchronized int mode(int checkpoint) {
+			return this.modes[checkpoint];
+		}
+
+		synchronized long line(int checkpoint) {
+			return this.lines[checkpoint];
+		}
 
-		return new StyledTextCharStream(channel, context.remaining(), this.charset);
 	}
 
 }
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.transfer.renderer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+import de.carne.filescanner.engine.transfer.RenderStyle;
+import de.carne.filescanner.engine.transfer.RenderTextBatch;
+import de.carne.filescanner.engine.transfer.Renderer;
+import de.carne.filescanner.engine.transfer.TransferSource;
+
+/**
+ * {@linkplain Renderer} implementation creating a HTML fragment representation of a scan result.
+ * <p>
+ * Each text segment is emitted as a {@code span} element whose class is the lower case name of the segment's
+ * {@linkplain RenderStyle} (e.g. {@code value}). The necessary style definitions have to be provided by the
+ * surrounding document. Media data is emitted as a placeholder naming the media's mime type.
+ * </p>
+ */
+public class HtmlRenderer implements Renderer {
+
+	private static final String INDENT = "&nbsp;&nbsp;&nbsp;&nbsp;";
+	private static final String LINE_BREAK = "<br/>";
+
+	private static final String[] STYLE_CLASSES;
+
+	static {
+		RenderStyle[] styles = RenderStyle.values();
+
+		STYLE_CLASSES = new String[styles.length];
+		for (RenderStyle style : styles) {
+			STYLE_CLASSES[style.ordinal()] = style.name().toLowerCase(Locale.ROOT);
+		}
+	}
+
+	private final Writer writer;
+	private final boolean autoClose;
+	private final StringBuilder buffer = new StringBuilder();
+
+	/**
+	 * Constructs a new {@linkplain HtmlRenderer} instance.
+	 *
+	 * @param writer the {@linkplain Writer} to write the rendered output into.
+	 */
+	public HtmlRenderer(Writer writer) {
+		this(writer, true);
+	}
+
+	/**
+	 * Constructs a new {@linkplain HtmlRenderer} instance.
+	 *
+	 * @param writer the {@linkplain Writer} to write the rendered output into.
+	 * @param autoClose whether to close the {@linkplain Writer} when this instance is closed.
+	 */
+	public HtmlRenderer(Writer writer, boolean autoClose) {
+		this.writer = writer;
+		this.autoClose = autoClose;
+	}
+
+	/**
+	 * Escapes all HTML special characters in the given text.
+	 *
+	 * @param buffer the {@linkplain StringBuilder} to append the escaped text to.
+	 * @param text the text to escape.
+	 * @return the updated {@linkplain StringBuilder}.
+	 */
+	public static StringBuilder escape(StringBuilder buffer, String text) {
+		int length = text.length();
+
+		for (int charIndex = 0; charIndex < length; charIndex++) {
+			char c = text.charAt(charIndex);
+
+			switch (c) {
+			case '<':
+				buffer.append("&lt;");
+				break;
+			case '>':
+				buffer.append("&gt;");
+				break;
+			case '&':
+				buffer.append("&amp;");
+				break;
+			case '"':
+				buffer.append("&quot;");
+				break;
+			case ' ':
+				buffer.append(charIndex + 1 < length && text.charAt(charIndex + 1) == ' ' ? "&nbsp;" : " ");
+				break;
+			default:
+				buffer.append(c);
+			}
+		}
+		return buffer;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.autoClose) {
+			this.writer.close();
+		} else {
+			this.writer.flush();
+		}
+	}
+
+	@Override
+	public void emitText(int indent, RenderStyle style, String text, boolean lineBreak) throws IOException {
+		this.buffer.setLength(0);
+		appendText(indent, style, text, lineBreak);
+		this.writer.append(this.buffer);
+	}
+
+	@Override
+	public void emitTextBatch(RenderTextBatch batch) throws IOException {
+		int batchSize = batch.size();
+
+		this.buffer.setLength(0);
+		for (int index = 0; index < batchSize; index++) {
+			appendText(batch.indent(index), batch.style(index), batch.text(index), batch.lineBreak(index));
+		}
+		this.writer.append(this.buffer);
+	}
+
+	@Override
+	public void emitMediaData(int indent, RenderStyle style, TransferSource source, boolean lineBreak)
+			throws IOException {
+		this.buffer.setLength(0);
+		appendText(indent, style, "[" + source.transferType().mimeType() + "]", lineBreak);
+		this.writer.append(this.buffer);
+	}
+
+	private void appendText(int indent, RenderStyle style, String text, boolean lineBreak) {
+		for (int indentCount = 0; indentCount < indent; indentCount++) {
+			this.buffer.append(INDENT);
+		}
+		this.buffer.append("<span class=\"").append(STYLE_CLASSES[style.ordinal()]).append("\">");
+		escape(this.buffer, text);
+		this.buffer.append("</span>");
+		if (lineBreak) {
+			this.buffer.append(LINE_BREAK).append(System.lineSeparator());
+		}
+	}
+
+	@Override
+	public String toString() {
+		return this.writer.toString();
+	}
+
+}
@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.io.Writer;
 
 import de.carne.filescanner.engine.transfer.RenderStyle;
+import de.carne.filescanner.engine.transfer.RenderTextBatch;
 import de.carne.filescanner.engine.transfer.Renderer;
 import de.carne.filescanner.engine.transfer.TransferSource;
 
@@ -33,6 +34,7 @@ public class PlainTextRenderer implements Renderer {
 
 	private final Writer writer;
 	private final boolean autoClose;
+	private final StringBuilder batchBuffer = new StringBuilder();
 
 	/**
 	 * Constructs a new {@linkplain PlainTextRenderer} instance.
@@ -75,6 +77,26 @@ public class PlainTextRenderer implements Renderer {
 		emitLineBreak(lineBreak);
 	}
 
+	@Override
+	public void emitTextBatch(RenderTextBatch batch) throws IOException {
+		StringBuilder buffer = this.batchBuffer;
+		int batchSize = batch.size();
+
+		buffer.setLength(0);
+		for (int index = 0; index < batchSize; index++) {
+			int indent = batch.indent(index);
+
+			for (int indentCount = 0; indentCount < indent; indentCount++) {
+				buffer.append(INDENT);
+			}
+			buffer.append(batch.text(index));
+			if (batch.lineBreak(index)) {
+				buffer.append(System.lineSeparator());
+			}
+		}
+		this.writer.append(buffer);
+	}
+
 	@Override
 	public void emitMediaData(int indent, RenderStyle style, TransferSource source, boolean lineBreak)
 			throws IOException {
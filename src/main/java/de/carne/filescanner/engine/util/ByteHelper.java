@@ -16,6 +16,9 @@
  */
 package de.carne.filescanner.engine.util;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 import org.eclipse.jdt.annotation.NonNull;
 
 /**
@@ -27,6 +30,9 @@ public final class ByteHelper {
 		// Prevent instantiation
 	}
 
+	private static final long SWAR_ONES = 0x0101010101010101l;
+	private static final long SWAR_HIGHS = 0x8080808080808080l;
+
 	/**
 	 * Decode unsigned {@code byte} value.
 	 *
@@ -80,4 +86,49 @@ public final class ByteHelper {
 		return unsignedInt;
 	}
 
+	/**
+	 * Searches a {@linkplain ByteBuffer} for a specific {@code byte} value.
+	 * <p>
+	 * The search is performed word-at-a-time (8 bytes per step) and does not alter the buffer's position or limit.
+	 * </p>
+	 *
+	 * @param buffer the {@linkplain ByteBuffer} to search.
+	 * @param value the {@code byte} value to search for.
+	 * @param fromIndex the index to start the search at (inclusive).
+	 * @param toIndex the index to stop the search at (exclusive).
+	 * @return the index of the first matching byte or {@code -1} if the value was not found.
+	 */
+	public static int indexOf(ByteBuffer buffer, byte value, int fromIndex, int toIndex) {
+		long pattern = (value & 0xffl) * SWAR_ONES;
+		boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+		int index = fromIndex;
+		int found = -1;
+
+		while (found < 0 && index + Long.BYTES <= toIndex) {
+			long word = buffer.getLong(index);
+
+			// Reorder to little endian, as only the lowest matching byte is reliably detected by the zero byte test
+			if (bigEndian) {
+				word = Long.reverseBytes(word);
+			}
+			word ^= pattern;
+
+			long mask = (word - SWAR_ONES) & ~word & SWAR_HIGHS;
+
+			if (mask != 0) {
+				found = index + (Long.numberOfTrailingZeros(mask) >>> 3);
+			} else {
+				index += Long.BYTES;
+			}
+		}
+		while (found < 0 && index < toIndex) {
+			if (buffer.get(index) == value) {
+				found = index;
+			} else {
+				index++;
+			}
+		}
+		return found;
+	}
+
 }
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+import de.carne.filescanner.engine.FileScannerResult;
+import de.carne.filescanner.engine.transfer.Renderer;
+import de.carne.filescanner.engine.transfer.renderer.HtmlRenderer;
+
+/**
+ * {@linkplain ReportGenerator} implementation creating a HTML document.
+ * <p>
+ * The document is based on the {@code HtmlReportGenerator.html} template. The result tree is rendered as a nested
+ * list; results with children are collapsed initially and can be expanded by clicking on the result title.
+ * </p>
+ */
+public class HtmlReportGenerator extends ReportGenerator {
+
+	private static final String TEMPLATE_RESOURCE = "HtmlReportGenerator.html";
+
+	private static final String INPUT_NAME_PLACEHOLDER = "%INPUT_NAME%";
+	private static final String RESULT_TREE_PLACEHOLDER = "%RESULT_TREE%";
+	private static final String ENGINE_VERSION_PLACEHOLDER = "%ENGINE_VERSION%";
+	private static final String REPORT_TIMESTAMP_PLACEHOLDER = "%REPORT_TIMESTAMP%";
+
+	private final String template;
+
+	/**
+	 * Constructs a new {@linkplain HtmlReportGenerator} instance using the default worker count.
+	 *
+	 * @throws IOException if the report template cannot be loaded.
+	 */
+	public HtmlReportGenerator() throws IOException {
+		super();
+		this.template = loadTemplate();
+	}
+
+	/**
+	 * Constructs a new {@linkplain HtmlReportGenerator} instance.
+	 *
+	 * @param workerCount the number of worker threads to use for rendering.
+	 * @throws IOException if the report template cannot be loaded.
+	 */
+	public HtmlReportGenerator(int workerCount) throws IOException {
+		super(workerCount);
+		this.template = loadTemplate();
+	}
+
+	private static String loadTemplate() throws IOException {
+		String template;
+
+		try (InputStream templateStream = Objects
+				.requireNonNull(HtmlReportGenerator.class.getResourceAsStream(TEMPLATE_RESOURCE))) {
+			template = new String(templateStream.readAllBytes(), StandardCharsets.UTF_8);
+		}
+		if (!template.contains(RESULT_TREE_PLACEHOLDER)) {
+			throw new IOException("Invalid report template: " + TEMPLATE_RESOURCE);
+		}
+		return template;
+	}
+
+	@Override
+	protected String renderResult(FileScannerResult result, int depth) throws IOException {
+		StringWriter details = new StringWriter();
+
+		try (Renderer renderer = new HtmlRenderer(details)) {
+			renderDetails(result, renderer);
+		}
+		return details.toString();
+	}
+
+	@Override
+	protected void writeHeader(Writer out, FileScannerResult root) throws IOException {
+		int resultTreeIndex = this.template.indexOf(RESULT_TREE_PLACEHOLDER);
+
+		out.write(resolvePlaceholders(this.template.substring(0, resultTreeIndex), root));
+		out.write("<ul id=\"root\">");
+		out.write(System.lineSeparator());
+	}
+
+	@Override
+	protected void writeResultStart(Writer out, FileScannerResult result, int depth, boolean hasChildren,
+			String details) throws IOException {
+		out.write("<li><span class=\"");
+		out.write(hasChildren ? "node" : "leaf");
+		out.write("\"><span class=\"title\">");
+		out.write(escape(resultTitle(result)));
+		out.write("</span></span>");
+		if (hasChildren) {
+			out.write("<div class=\"toggle\">");
+		}
+		out.write("<div class=\"details\">");
+		out.write(System.lineSeparator());
+		out.write(details);
+		out.write("</div>");
+		if (hasChildren) {
+			out.write("<ul>");
+		}
+		out.write(System.lineSeparator());
+	}
+
+	@Override
+	protected void writeResultEnd(Writer out, FileScannerResult result, int depth, boolean hasChildren)
+			throws IOException {
+		if (hasChildren) {
+			out.write("</ul></div>");
+		}
+		out.write("</li>");
+		out.write(System.lineSeparator());
+	}
+
+	@Override
+	protected void writeFooter(Writer out, FileScannerResult root) throws IOException {
+		int resultTreeIndex = this.template.indexOf(RESULT_TREE_PLACEHOLDER);
+
+		out.write("</ul>");
+		out.write(resolvePlaceholders(this.template.substring(resultTreeIndex + RESULT_TREE_PLACEHOLDER.length()),
+				root));
+	}
+
+	private String resolvePlaceholders(String templatePart, FileScannerResult root) {
+		return templatePart.replace(INPUT_NAME_PLACEHOLDER, escape(root.name()))
+				.replace(ENGINE_VERSION_PLACEHOLDER, escape(engineVersion()))
+				.replace(REPORT_TIMESTAMP_PLACEHOLDER, escape(reportTimestamp()));
+	}
+
+	private static String escape(String text) {
+		return HtmlRenderer.escape(new StringBuilder(), text).toString();
+	}
+
+}
@@ -0,0 +1,470 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import de.carne.filescanner.engine.FileScannerResult;
+import de.carne.filescanner.engine.ModuleManifestInfos;
+import de.carne.filescanner.engine.transfer.RenderOption;
+import de.carne.filescanner.engine.transfer.RenderOutput;
+import de.carne.filescanner.engine.transfer.RenderStyle;
+import de.carne.filescanner.engine.transfer.Renderer;
+import de.carne.filescanner.engine.transfer.TransferSource;
+import de.carne.util.SystemProperties;
+import de.carne.util.logging.Log;
+
+/**
+ * Base class for report generators writing the complete result tree of a scan into a single document.
+ * <p>
+ * The individual results are rendered in parallel using a bounded number of worker threads. The rendered results are
+ * written to the target {@linkplain Writer} in tree order as soon as they become available. The number of results
+ * being rendered or waiting to be written is bounded by a fixed multiple of the worker count and the result tree is
+ * traversed lazily (children are visited one after another). Each result's rendered details are limited to a fixed
+ * number of lines (see {@linkplain #resultLineLimit(int)}). Hence memory usage depends neither on the size of the
+ * result tree nor on the size of the individual results.
+ * </p>
+ * <p>
+ * Results failing to render are reported inline and do not abort the report.
+ * </p>
+ */
+public abstract class ReportGenerator {
+
+	private static final Log LOG = new Log();
+
+	private static final int WORKER_COUNT = SystemProperties.intValue(ReportGenerator.class, ".workerCount",
+			Runtime.getRuntime().availableProcessors());
+
+	private static final int PENDING_RESULTS_PER_WORKER = SystemProperties.intValue(ReportGenerator.class,
+			".pendingResultsPerWorker", 16);
+
+	private static final int RESULT_LINE_LIMIT = SystemProperties.intValue(ReportGenerator.class, ".resultLineLimit",
+			1000);
+
+	private final int workerCount;
+	private final int pendingLimit;
+	private int resultLineLimit = RESULT_LINE_LIMIT;
+
+	/**
+	 * Constructs a new {@linkplain ReportGenerator} instance using the default worker count.
+	 */
+	protected ReportGenerator() {
+		this(WORKER_COUNT);
+	}
+
+	/**
+	 * Constructs a new {@linkplain ReportGenerator} instance.
+	 *
+	 * @param workerCount the number of worker threads to use for rendering.
+	 */
+	protected ReportGenerator(int workerCount) {
+		this.workerCount = Math.max(workerCount, 1);
+		this.pendingLimit = this.workerCount * Math.max(PENDING_RESULTS_PER_WORKER, 1);
+	}
+
+	/**
+	 * Sets the maximum number of lines to render per result.
+	 * <p>
+	 * Rendering output exceeding this limit is dropped and replaced by a corresponding note.
+	 * </p>
+	 *
+	 * @param lineLimit the maximum number of lines to render per result.
+	 * @return the updated {@linkplain ReportGenerator} instance.
+	 */
+	public ReportGenerator resultLineLimit(int lineLimit) {
+		this.resultLineLimit = Math.max(lineLimit, 1);
+		return this;
+	}
+
+	/**
+	 * Generates the report for the given result tree.
+	 *
+	 * @param root the root of the result tree to report.
+	 * @param out the {@linkplain Writer} to write the report to.
+	 * @return the number of reported results.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws InterruptedException if the calling thread has been interrupted while waiting for the rendering to
+	 * finish.
+	 */
+	public long generate(FileScannerResult root, Writer out) throws IOException, InterruptedException {
+		LOG.info("Generating report for ''{0}'' (using {1} threads)...", root.name(), this.workerCount);
+
+		ExecutorService threadPool = Executors.newFixedThreadPool(this.workerCount);
+		Deque<ReportLevel> levels = new ArrayDeque<>();
+		Deque<ReportStep> writeSteps = new ArrayDeque<>();
+		int pendingResults = 0;
+		long resultCount = 0;
+
+		try {
+			writeHeader(out, root);
+
+			ReportStep step = new ReportStep(root, 0);
+
+			while (step != null) {
+				FileScannerResult[] children = step.start(threadPool, this);
+
+				if (children.length > 0) {
+					levels.push(new ReportLevel(step, children));
+				}
+				writeSteps.add(step);
+				pendingResults++;
+				resultCount++;
+				step = null;
+				// Visit the next child of the innermost level (or finish the levels without any remaining children)
+				while (step == null && !levels.isEmpty()) {
+					ReportLevel level = levels.peek();
+
+					if (level.hasNext()) {
+						step = level.next();
+					} else {
+						writeSteps.add(levels.pop().end());
+					}
+				}
+				while (pendingResults > this.pendingLimit) {
+					pendingResults -= writeStep(out, writeSteps.remove());
+				}
+			}
+			while (!writeSteps.isEmpty()) {
+				writeStep(out, writeSteps.remove());
+			}
+			writeFooter(out, root);
+			out.flush();
+		} finally {
+			threadPool.shutdownNow();
+		}
+		return resultCount;
+	}
+
+	/**
+	 * Gets the title to display for a result.
+	 *
+	 * @param result the {@linkplain FileScannerResult} to get the title for.
+	 * @return the title to display for the result.
+	 */
+	protected String resultTitle(FileScannerResult result) {
+		return result.name() + " [" + HexFormat.formatLong(result.start()) + "-" + HexFormat.formatLong(result.end())
+				+ "]";
+	}
+
+	/**
+	 * Gets the engine name and version to display in the report.
+	 *
+	 * @return the engine name and version to display in the report.
+	 */
+	protected String engineVersion() {
+		ModuleManifestInfos manifestInfos = new ModuleManifestInfos();
+
+		return manifestInfos.name() + " " + manifestInfos.version();
+	}
+
+	/**
+	 * Gets the timestamp to display in the report.
+	 *
+	 * @return the timestamp to display in the report.
+	 */
+	protected String reportTimestamp() {
+		return DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now());
+	}
+
+	/**
+	 * Renders the details of a single result to the given {@linkplain Renderer}.
+	 * <p>
+	 * The rendering is limited to the configured number of lines (see {@linkplain #resultLineLimit(int)}). Any I/O
+	 * error encountered while rendering the result is reported inline. The given {@linkplain Renderer} is not closed.
+	 * </p>
+	 *
+	 * @param result the {@linkplain FileScannerResult} to render.
+	 * @param renderer the {@linkplain Renderer} to render to.
+	 * @throws IOException if an I/O error occurs while writing to the renderer.
+	 */
+	protected void renderDetails(FileScannerResult result, Renderer renderer) throws IOException {
+		LimitingRenderer limitingRenderer = new LimitingRenderer(renderer, this.resultLineLimit);
+
+		try {
+			RenderOutput.render(result, limitingRenderer, null, 0);
+		} catch (IOException e) {
+			LOG.warning(e, "Failed to render result ''{0}''", result.name());
+
+			renderer.emitText(0, RenderStyle.ERROR, "Failed to render result: " + e.getLocalizedMessage(), true);
+		}
+		if (limitingRenderer.isTruncated()) {
+			renderer.emitText(0, RenderStyle.COMMENT, "Output truncated after " + this.resultLineLimit + " lines",
+					true);
+		}
+	}
+
+	/**
+	 * Renders the details of a single result.
+	 * <p>
+	 * This function is invoked concurrently by the worker threads. Implementations should render the result via
+	 * {@linkplain #renderDetails(FileScannerResult, Renderer)} to limit the output and to report render failures
+	 * inline.
+	 * </p>
+	 *
+	 * @param result the {@linkplain FileScannerResult} to render.
+	 * @param depth the depth of the result within the reported result tree.
+	 * @return the rendered result details.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	protected abstract String renderResult(FileScannerResult result, int depth) throws IOException;
+
+	/**
+	 * Writes the report header.
+	 *
+	 * @param out the {@linkplain Writer} to write to.
+	 * @param root the root of the reported result tree.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	protected abstract void writeHeader(Writer out, FileScannerResult root) throws IOException;
+
+	/**
+	 * Writes the start of a result (including the result's rendered details).
+	 *
+	 * @param out the {@linkplain Writer} to write to.
+	 * @param result the {@linkplain FileScannerResult} to write.
+	 * @param depth the depth of the result within the reported result tree.
+	 * @param hasChildren whether the result has children.
+	 * @param details the result's rendered details.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	protected abstract void writeResultStart(Writer out, FileScannerResult result, int depth, boolean hasChildren,
+			String details) throws IOException;
+
+	/**
+	 * Writes the end of a result (after all children of the result have been written).
+	 *
+	 * @param out the {@linkplain Writer} to write to.
+	 * @param result the {@linkplain FileScannerResult} to write.
+	 * @param depth the depth of the result within the reported result tree.
+	 * @param hasChildren whether the result has children.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	protected abstract void writeResultEnd(Writer out, FileScannerResult result, int depth, boolean hasChildren)
+			throws IOException;
+
+	/**
+	 * Writes the report footer.
+	 *
+	 * @param out the {@linkplain Writer} to write to.
+	 * @param root the root of the reported result tree.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	protected abstract void writeFooter(Writer out, FileScannerResult root) throws IOException;
+
+	private int writeStep(Writer out, ReportStep step) throws IOException, InterruptedException {
+		int writtenResults = 0;
+
+		if (step.isEnd()) {
+			writeResultEnd(out, step.result(), step.depth(), true);
+		} else {
+			boolean hasChildren = step.hasChildren();
+
+			writeResultStart(out, step.result(), step.depth(), hasChildren, step.details());
+			if (!hasChildren) {
+				writeResultEnd(out, step.result(), step.depth(), false);
+			}
+			writtenResults = 1;
+		}
+		return writtenResults;
+	}
+
+	private static final class ReportStep {
+
+		private final FileScannerResult result;
+		private final int depth;
+		private final boolean end;
+		private boolean hasChildren = false;
+		private @Nullable Future<String> details = null;
+
+		ReportStep(FileScannerResult result, int depth) {
+			this(result, depth, false);
+		}
+
+		private ReportStep(FileScannerResult result, int depth, boolean end) {
+			this.result = result;
+			this.depth = depth;
+			this.end = end;
+		}
+
+		FileScannerResult result() {
+			return this.result;
+		}
+
+		int depth() {
+			return this.depth;
+		}
+
+		boolean isEnd() {
+			return this.end;
+		}
+
+		boolean hasChildren() {
+			return this.hasChildren;
+		}
+
+		FileScannerResult[] start(ExecutorService threadPool, ReportGenerator generator) {
+			FileScannerResult[] children = this.result.children();
+
+			this.hasChildren = children.length > 0;
+			this.details = threadPool.submit(() -> generator.renderResult(this.result, this.depth));
+			return children;
+		}
+
+		ReportStep end() {
+			return new ReportStep(this.result, this.depth, true);
+		}
+
+		String details() throws IOException, InterruptedException {
+			Future<String> checkedDetails = this.details;
+			String renderedDetails;
+
+			if (checkedDetails == null) {
+				throw new IllegalStateException("Result rendering not started");
+			}
+			try {
+				renderedDetails = checkedDetails.get();
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				}
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				throw new IOException("Failed to render result '" + this.result.name() + "'", cause);
+			}
+			return renderedDetails;
+		}
+
+	}
+
+	private static final class ReportLevel {
+
+		private final ReportStep step;
+		private final FileScannerResult[] children;
+		private int nextChildIndex = 0;
+
+		ReportLevel(ReportStep step, FileScannerResult[] children) {
+			this.step = step;
+			this.children = children;
+		}
+
+		boolean hasNext() {
+			return this.nextChildIndex < this.children.length;
+		}
+
+		ReportStep next() {
+			ReportStep childStep = new ReportStep(this.children[this.nextChildIndex], this.step.depth() + 1);
+
+			this.nextChildIndex++;
+			return childStep;
+		}
+
+		ReportStep end() {
+			return this.step.end();
+		}
+
+	}
+
+	private static final class LimitingRenderer implements Renderer {
+
+		private final Renderer renderer;
+		private final int lineLimit;
+		private int lineCount = 0;
+		private boolean truncated = false;
+
+		LimitingRenderer(Renderer renderer, int lineLimit) {
+			this.renderer = renderer;
+			this.lineLimit = lineLimit;
+		}
+
+		boolean isTruncated() {
+			return this.truncated;
+		}
+
+		@Override
+		public boolean isStyled() {
+			return this.renderer.isStyled();
+		}
+
+		@Override
+		public void emitPrologue(Set<RenderOption> options) throws IOException {
+			this.renderer.emitPrologue(options);
+		}
+
+		@Override
+		public void emitText(int indent, RenderStyle style, String text, boolean lineBreak) throws IOException {
+			if (checkLine(lineBreak)) {
+				this.renderer.emitText(indent, style, text, lineBreak);
+			}
+		}
+
+		@Override
+		public void emitText(int indent, RenderStyle style, String text, long href, boolean lineBreak)
+				throws IOException {
+			if (checkLine(lineBreak)) {
+				this.renderer.emitText(indent, style, text, href, lineBreak);
+			}
+		}
+
+		@Override
+		public void emitMediaData(int indent, RenderStyle style, TransferSource source, boolean lineBreak)
+				throws IOException {
+			if (checkLine(lineBreak)) {
+				this.renderer.emitMediaData(indent, style, source, lineBreak);
+			}
+		}
+
+		@Override
+		public void emitEpilogue() throws IOException {
+			this.renderer.emitEpilogue();
+		}
+
+		@Override
+		public void close() throws IOException {
+			// The wrapped renderer is closed by its owner
+		}
+
+		private boolean checkLine(boolean lineBreak) {
+			boolean emit = this.lineCount < this.lineLimit;
+
+			if (emit) {
+				if (lineBreak) {
+					this.lineCount++;
+				}
+			} else {
+				this.truncated = true;
+			}
+			return emit;
+		}
+
+	}
+
+}
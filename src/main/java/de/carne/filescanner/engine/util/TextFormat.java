@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.util;
+
+import java.util.ArrayList;
+import java.util.Formattable;
+import java.util.List;
+import java.util.Locale;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Precompiled {@linkplain String#format(String, Object...)} format string.
+ * <p>
+ * The format string is parsed once during compilation. Format strings consisting only of plain {@code %s}, {@code %d},
+ * {@code %x} and {@code %X} conversions (as well as {@code %%} and {@code %n}) are formatted directly without invoking
+ * {@linkplain java.util.Formatter}. All other format strings (as well as arguments not supported by the direct
+ * formatting) are formatted via {@linkplain String#format(String, Object...)}.
+ * </p>
+ */
+public final class TextFormat {
+
+	private final String format;
+	private final String @Nullable [] literals;
+	private final char[] conversions;
+
+	private TextFormat(String format, String @Nullable [] literals, char[] conversions) {
+		this.format = format;
+		this.literals = literals;
+		this.conversions = conversions;
+	}
+
+	/**
+	 * Compiles a format string.
+	 *
+	 * @param format the format string to compile.
+	 * @return the compiled {@linkplain TextFormat} instance.
+	 */
+	public static TextFormat compile(String format) {
+		List<String> literals = new ArrayList<>();
+		StringBuilder literal = new StringBuilder();
+		StringBuilder conversions = new StringBuilder();
+		int formatLength = format.length();
+		int formatIndex = 0;
+		boolean simple = true;
+
+		while (simple && formatIndex < formatLength) {
+			char formatChar = format.charAt(formatIndex);
+
+			if (formatChar != '%') {
+				literal.append(formatChar);
+			} else if (formatIndex + 1 < formatLength) {
+				formatIndex++;
+
+				char conversion = format.charAt(formatIndex);
+
+				switch (conversion) {
+				case '%':
+					literal.append('%');
+					break;
+				case 'n':
+					literal.append(System.lineSeparator());
+					break;
+				case 's':
+				case 'd':
+				case 'x':
+				case 'X':
+					literals.add(literal.toString());
+					literal.setLength(0);
+					conversions.append(conversion);
+					break;
+				default:
+					simple = false;
+				}
+			} else {
+				simple = false;
+			}
+			formatIndex++;
+		}
+		literals.add(literal.toString());
+		return (simple ? new TextFormat(format, literals.toArray(new String[literals.size()]),
+				conversions.toString().toCharArray()) : new TextFormat(format, null, new char[0]));
+	}
+
+	/**
+	 * Formats the given arguments.
+	 * <p>
+	 * The result is identical to the one of {@linkplain String#format(String, Object...)} invoked with this instance's
+	 * format string.
+	 * </p>
+	 *
+	 * @param args the arguments to format.
+	 * @return the formatted text.
+	 */
+	public String format(@Nullable Object... args) {
+		String[] checkedLiterals = this.literals;
+		String formatted = null;
+
+		if (checkedLiterals != null && args.length >= this.conversions.length) {
+			StringBuilder buffer = new StringBuilder(this.format.length() + 16 * this.conversions.length);
+			int argIndex = 0;
+
+			buffer.append(checkedLiterals[0]);
+			while (argIndex < this.conversions.length && formatArg(buffer, this.conversions[argIndex], args[argIndex])) {
+				argIndex++;
+				buffer.append(checkedLiterals[argIndex]);
+			}
+			if (argIndex == this.conversions.length) {
+				formatted = buffer.toString();
+			}
+		}
+		return (formatted != null ? formatted : String.format(this.format, args));
+	}
+
+	private static boolean formatArg(StringBuilder buffer, char conversion, @Nullable Object arg) {
+		boolean formatted = true;
+
+		if (conversion == 's') {
+			if (arg instanceof Formattable) {
+				formatted = false;
+			} else {
+				buffer.append(arg);
+			}
+		} else if (arg == null) {
+			buffer.append(arg);
+		} else if (conversion == 'd') {
+			if (arg instanceof Byte || arg instanceof Short || arg instanceof Integer || arg instanceof Long) {
+				buffer.append(((Number) arg).longValue());
+			} else {
+				formatted = false;
+			}
+		} else {
+			String hex = null;
+
+			if (arg instanceof Byte) {
+				hex = Integer.toHexString(((Byte) arg).byteValue() & 0xff);
+			} else if (arg instanceof Short) {
+				hex = Integer.toHexString(((Short) arg).shortValue() & 0xffff);
+			} else if (arg instanceof Integer) {
+				hex = Integer.toHexString(((Integer) arg).intValue());
+			} else if (arg instanceof Long) {
+				hex = Long.toHexString(((Long) arg).longValue());
+			}
+			if (hex != null) {
+				buffer.append(conversion == 'X' ? hex.toUpperCase(Locale.ROOT) : hex);
+			} else {
+				formatted = false;
+			}
+		}
+		return formatted;
+	}
+
+	@Override
+	public String toString() {
+		return this.format;
+	}
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.util;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import de.carne.filescanner.engine.FileScannerResult;
+import de.carne.filescanner.engine.transfer.Renderer;
+import de.carne.filescanner.engine.transfer.renderer.PlainTextRenderer;
+
+/**
+ * {@linkplain ReportGenerator} implementation creating a plain text document.
+ * <p>
+ * Each result is written as a title line followed by the result's rendered details. Title and details are indented
+ * according to the result's depth within the result tree.
+ * </p>
+ */
+public class TextReportGenerator extends ReportGenerator {
+
+	private static final String INDENT = "    ";
+
+	/**
+	 * Constructs a new {@linkplain TextReportGenerator} instance using the default worker count.
+	 */
+	public TextReportGenerator() {
+		super();
+	}
+
+	/**
+	 * Constructs a new {@linkplain TextReportGenerator} instance.
+	 *
+	 * @param workerCount the number of worker threads to use for rendering.
+	 */
+	public TextReportGenerator(int workerCount) {
+		super(workerCount);
+	}
+
+	@Override
+	protected String renderResult(FileScannerResult result, int depth) throws IOException {
+		StringWriter details = new StringWriter();
+
+		try (Renderer renderer = new PlainTextRenderer(details)) {
+			renderDetails(result, renderer);
+		}
+
+		// Indent each rendered line below the result's title
+		String indent = INDENT.repeat(depth + 1);
+		StringBuilder indentedDetails = new StringBuilder();
+
+		details.toString().lines().forEach(line -> {
+			if (!line.isEmpty()) {
+				indentedDetails.append(indent).append(line);
+			}
+			indentedDetails.append(System.lineSeparator());
+		});
+		return indentedDetails.toString();
+	}
+
+	@Override
+	protected void writeHeader(Writer out, FileScannerResult root) throws IOException {
+		out.write("Scan result for file: ");
+		out.write(root.name());
+		out.write(System.lineSeparator());
+		out.write(System.lineSeparator());
+	}
+
+	@Override
+	protected void writeResultStart(Writer out, FileScannerResult result, int depth, boolean hasChildren,
+			String details) throws IOException {
+		out.write(INDENT.repeat(depth));
+		out.write(resultTitle(result));
+		out.write(System.lineSeparator());
+		out.write(details);
+	}
+
+	@Override
+	protected void writeResultEnd(Writer out, FileScannerResult result, int depth, boolean hasChildren)
+			throws IOException {
+		// Nothing to write
+	}
+
+	@Override
+	protected void writeFooter(Writer out, FileScannerResult root) throws IOException {
+		out.write(System.lineSeparator());
+		out.write("Generated by ");
+		out.write(engineVersion());
+		out.write(" at ");
+		out.write(reportTimestamp());
+		out.write(System.lineSeparator());
+	}
+
+}
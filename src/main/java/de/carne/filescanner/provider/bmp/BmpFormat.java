@@ -40,6 +40,12 @@ public class BmpFormat extends Format {
 	public BmpFormat() {
 		super(FORMAT_NAME);
 		this.formatSpecDefinition = new BmpFormatSpecDefinition();
+		registerSpecDefinition(this.formatSpecDefinition);
+		registerHeaderMagic((byte) 0x42, (byte) 0x4d);
+	}
+
+	@Override
+	protected void load() {
 		this.formatSpecDefinition.load();
 		registerHeaderSpec(this.formatSpecDefinition.headerSpec());
 	}
@@ -40,6 +40,12 @@ public class Bzip2Format extends Format {
 	public Bzip2Format() {
 		super(FORMAT_NAME);
 		this.formatSpecDefinition = new Bzip2FormatSpecDefinition();
+		registerSpecDefinition(this.formatSpecDefinition);
+		registerHeaderMagic((byte) 0x42, (byte) 0x5a);
+	}
+
+	@Override
+	protected void load() {
 		this.formatSpecDefinition.load();
 		registerHeaderSpec(this.formatSpecDefinition.headerSpec());
 	}
@@ -40,6 +40,7 @@ public class CpioFormat extends Format {
 	public CpioFormat() {
 		super(FORMAT_NAME);
 		this.formatSpecDefinition = new CpioFormatSpecDefinition();
+		registerSpecDefinition(this.formatSpecDefinition);
 		this.formatSpecDefinition.load();
 		registerHeaderSpec(this.formatSpecDefinition.headerSpec());
 	}
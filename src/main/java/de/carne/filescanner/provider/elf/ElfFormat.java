@@ -40,6 +40,12 @@ public class ElfFormat extends Format {
 	public ElfFormat() {
 		super(FORMAT_NAME);
 		this.formatSpecDefinition = new ElfFormatSpecDefinition();
+		registerSpecDefinition(this.formatSpecDefinition);
+		registerHeaderMagic((byte) 0x7f, (byte) 0x45, (byte) 0x4c, (byte) 0x46);
+	}
+
+	@Override
+	protected void load() {
 		this.formatSpecDefinition.load();
 		registerHeaderSpec(this.formatSpecDefinition.headerSpec());
 	}
@@ -40,6 +40,12 @@ public class ExeFormat extends Format {
 	public ExeFormat() {
 		super(FORMAT_NAME);
 		this.formatSpecDefinition = new ExeFormatSpecDefinition();
+		registerSpecDefinition(this.formatSpecDefinition);
+		registerHeaderMagic((byte) 0x4d, (byte) 0x5a);
+	}
+
+	@Override
+	protected void load() {
 		this.formatSpecDefinition.load();
 		registerHeaderSpec(this.formatSpecDefinition.headerSpec());
 	}
@@ -40,6 +40,12 @@ public class GifFormat extends Format {
 	public GifFormat() {
 		super(FORMAT_NAME);
 		this.formatSpecDefinition = new GifFormatSpecDefinition();
+		registerSpecDefinition(this.formatSpecDefinition);
+		registerHeaderMagic((byte) 0x47, (byte) 0x49, (byte) 0x46);
+	}
+
+	@Override
+	protected void load() {
 		this.formatSpecDefinition.load();
 		registerHeaderSpec(this.formatSpecDefinition.headerSpec());
 	}
@@ -40,6 +40,12 @@ public class GzipFormat extends Format {
 	public GzipFormat() {
 		super(FORMAT_NAME);
 		this.formatSpecDefinition = new GzipFormatSpecDefinition();
+		registerSpecDefinition(this.formatSpecDefinition);
+		registerHeaderMagic((byte) 0x1f, (byte) 0x8b);
+	}
+
+	@Override
+	protected void load() {
 		this.formatSpecDefinition.load();
 		registerHeaderSpec(this.formatSpecDefinition.headerSpec());
 	}
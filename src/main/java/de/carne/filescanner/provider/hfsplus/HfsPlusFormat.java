@@ -40,6 +40,7 @@ public class HfsPlusFormat extends Format {
 	public HfsPlusFormat() {
 		super(FORMAT_NAME);
 		this.formatSpecDefinition = new HfsPlusFormatSpecDefinition();
+		registerSpecDefinition(this.formatSpecDefinition);
 		this.formatSpecDefinition.load();
 		registerHeaderSpec(this.formatSpecDefinition.headerSpec());
 		setAbsolute(true);
@@ -40,6 +40,12 @@ public class JpegFormat extends Format {
 	public JpegFormat() {
 		super(FORMAT_NAME);
 		this.formatSpecDefinition = new JpegFormatSpecDefinition();
+		registerSpecDefinition(this.formatSpecDefinition);
+		registerHeaderMagic((byte) 0xff, (byte) 0xd8);
+	}
+
+	@Override
+	protected void load() {
 		this.formatSpecDefinition.load();
 		registerHeaderSpec(this.formatSpecDefinition.headerSpec());
 	}
@@ -20,6 +20,7 @@ import java.net.URL;
 import java.nio.ByteBuffer;
 import java.util.Objects;
 
+import de.carne.filescanner.engine.ValueStreamer;
 import de.carne.filescanner.engine.ValueStreamerFactory;
 import de.carne.filescanner.engine.ValueStreamerStatus;
 import de.carne.filescanner.engine.format.ByteSpec;
@@ -65,35 +66,51 @@ final class JpegFormatSpecDefinition extends FormatSpecDefinition {
 	}
 
 	public Integer app0ThumbnailSize() {
-		return Byte.toUnsignedInt(this.xThumbnail.get().get().byteValue())
-				* Byte.toUnsignedInt(this.yThumbnail.get().get().byteValue());
+		return (int) this.xThumbnail.get().unsignedLongValue() * (int) this.yThumbnail.get().unsignedLongValue();
 	}
 
 	public Integer genericMarkerDataSize() {
-		return Short.toUnsignedInt(this.genericLength.get().get().shortValue()) - 2;
+		return (int) this.genericLength.get().unsignedLongValue() - 2;
 	}
 
 	public ValueStreamerFactory sosScanner() {
-		return () -> this::streamSos;
+		return SosScanner::new;
 	}
 
-	private ValueStreamerStatus streamSos(ByteBuffer buffer) {
-		ValueStreamerStatus status = ValueStreamerStatus.FAILED;
+	private static final class SosScanner implements ValueStreamer {
 
-		while (buffer.remaining() >= Short.BYTES && status != ValueStreamerStatus.COMPLETE) {
-			int bufferPosition = buffer.position();
-			int markerValue = Short.toUnsignedInt(buffer.getShort());
+		// Any marker (except RSTn and the stuffed 0xff00) terminates the entropy coded segment
+		private static final byte[] TERMINATOR_PREFIX = new byte[] { (byte) 0xff };
 
-			if ((markerValue & 0xff00) == 0xff00 && markerValue != 0xff00 && markerValue != 0xffff
-					&& (markerValue < 0xffd0 || 0xffd7 < markerValue)) {
-				buffer.position(bufferPosition);
-				status = ValueStreamerStatus.COMPLETE;
-			} else {
-				buffer.position(bufferPosition + 1);
-				status = ValueStreamerStatus.STREAMING;
+		SosScanner() {
+			// Make class package accessible
+		}
+
+		@Override
+		public ValueStreamerStatus stream(ByteBuffer buffer) {
+			ValueStreamerStatus status = ValueStreamerStatus.FAILED;
+
+			while (buffer.remaining() >= Short.BYTES && status != ValueStreamerStatus.COMPLETE) {
+				int bufferPosition = buffer.position();
+				int markerValue = Short.toUnsignedInt(buffer.getShort());
+
+				if ((markerValue & 0xff00) == 0xff00 && markerValue != 0xff00 && markerValue != 0xffff
+						&& (markerValue < 0xffd0 || 0xffd7 < markerValue)) {
+					buffer.position(bufferPosition);
+					status = ValueStreamerStatus.COMPLETE;
+				} else {
+					buffer.position(bufferPosition + 1);
+					status = ValueStreamerStatus.STREAMING;
+				}
 			}
+			return status;
 		}
-		return status;
+
+		@Override
+		public byte[] terminatorPrefix() {
+			return TERMINATOR_PREFIX;
+		}
+
 	}
 
 }
@@ -40,9 +40,15 @@ public class ClassFormat extends Format {
 	public ClassFormat() {
 		super(FORMAT_NAME);
 		this.formatSpecDefinition = new ClassFormatSpecDefinition();
+		registerSpecDefinition(this.formatSpecDefinition);
+		registerHeaderMagic((byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe);
+		setAbsolute(true);
+	}
+
+	@Override
+	protected void load() {
 		this.formatSpecDefinition.load();
 		registerHeaderSpec(this.formatSpecDefinition.headerSpec());
-		setAbsolute(true);
 	}
 
 	@Override
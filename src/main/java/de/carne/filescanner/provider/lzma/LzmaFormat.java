@@ -40,6 +40,7 @@ public class LzmaFormat extends Format {
 	public LzmaFormat() {
 		super(FORMAT_NAME);
 		this.formatSpecDefinition = new LzmaFormatSpecDefinition();
+		registerSpecDefinition(this.formatSpecDefinition);
 		this.formatSpecDefinition.load();
 		registerHeaderSpec(this.formatSpecDefinition.headerSpec());
 		// To reduce the number of false positives this format is considered absolute
@@ -40,6 +40,12 @@ public class MachOFormat extends Format {
 	public MachOFormat() {
 		super(FORMAT_NAME);
 		this.formatSpecDefinition = new MachOFormatSpecDefinition();
+		registerSpecDefinition(this.formatSpecDefinition);
+		registerHeaderMagic((byte) 0xcf, (byte) 0xfa, (byte) 0xed, (byte) 0xfe);
+	}
+
+	@Override
+	protected void load() {
 		this.formatSpecDefinition.load();
 		registerHeaderSpec(this.formatSpecDefinition.headerSpec());
 	}
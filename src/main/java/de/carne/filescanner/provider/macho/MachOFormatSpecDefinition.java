@@ -64,7 +64,7 @@ final class MachOFormatSpecDefinition extends FormatSpecDefinition {
 	}
 
 	public Long segment64Position() {
-		long minOffsetValue = 0x20l + Integer.toUnsignedLong(this.sizeOfCmds.get().get().intValue());
+		long minOffsetValue = 0x20l + this.sizeOfCmds.get().unsignedLongValue();
 		long segment64OffsetValue = this.segment64Offset.get().get().longValue();
 
 		return Math.max(minOffsetValue, segment64OffsetValue);
@@ -72,7 +72,7 @@ final class MachOFormatSpecDefinition extends FormatSpecDefinition {
 
 	public Long segment64Size() {
 		long segment64SizeValue = this.segment64Size.get().get().longValue();
-		long minOffsetValue = 0x20l + Integer.toUnsignedLong(this.sizeOfCmds.get().get().intValue());
+		long minOffsetValue = 0x20l + this.sizeOfCmds.get().unsignedLongValue();
 		long segment64OffsetValue = this.segment64Offset.get().get().longValue();
 
 		if (segment64OffsetValue < minOffsetValue) {
@@ -40,9 +40,17 @@ public class PdfFormat extends Format {
 	public PdfFormat() {
 		super(FORMAT_NAME);
 		this.formatSpecDefinition = new PdfFormatSpecDefinition();
+		registerSpecDefinition(this.formatSpecDefinition);
+		registerHeaderMagic((byte) 0xef, (byte) 0xbb, (byte) 0xbf, (byte) 0x25, (byte) 0x50, (byte) 0x44, (byte) 0x46,
+				(byte) 0x2d);
+		registerHeaderMagic((byte) 0x25, (byte) 0x50, (byte) 0x44, (byte) 0x46, (byte) 0x2d);
+		setAbsolute(true);
+	}
+
+	@Override
+	protected void load() {
 		this.formatSpecDefinition.load();
 		registerHeaderSpec(this.formatSpecDefinition.headerSpec());
-		setAbsolute(true);
 	}
 
 	@Override
@@ -40,6 +40,13 @@ public class PngFormat extends Format {
 	public PngFormat() {
 		super(FORMAT_NAME);
 		this.formatSpecDefinition = new PngFormatSpecDefinition();
+		registerSpecDefinition(this.formatSpecDefinition);
+		registerHeaderMagic((byte) 0x89, (byte) 0x50, (byte) 0x4e, (byte) 0x47, (byte) 0x0d, (byte) 0x0a, (byte) 0x1a,
+				(byte) 0x0a);
+	}
+
+	@Override
+	protected void load() {
 		this.formatSpecDefinition.load();
 		registerHeaderSpec(this.formatSpecDefinition.headerSpec());
 	}
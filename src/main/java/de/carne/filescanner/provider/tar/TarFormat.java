@@ -40,6 +40,7 @@ public class TarFormat extends Format {
 	public TarFormat() {
 		super(FORMAT_NAME);
 		this.formatSpecDefinition = new TarFormatSpecDefinition();
+		registerSpecDefinition(this.formatSpecDefinition);
 		this.formatSpecDefinition.load();
 		registerHeaderSpec(this.formatSpecDefinition.headerSpec());
 	}
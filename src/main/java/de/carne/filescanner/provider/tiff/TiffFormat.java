@@ -41,6 +41,12 @@ public class TiffFormat extends Format {
 	public TiffFormat() {
 		super(FORMAT_NAME);
 		this.formatSpecDefinition = new TiffFormatSpecDefinition();
+		registerSpecDefinition(this.formatSpecDefinition);
+		registerHeaderMagic((byte) 0x49, (byte) 0x49, (byte) 0x2a, (byte) 0x00);
+	}
+
+	@Override
+	protected void load() {
 		this.formatSpecDefinition.load();
 		for (CompositeSpec headerSpec : this.formatSpecDefinition.headerSpecs()) {
 			registerHeaderSpec(headerSpec);
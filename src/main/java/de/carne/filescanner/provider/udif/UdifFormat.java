@@ -40,6 +40,7 @@ public class UdifFormat extends Format {
 	public UdifFormat() {
 		super(FORMAT_NAME);
 		this.formatSpecDefinition = new UdifFormatSpecDefinition();
+		registerSpecDefinition(this.formatSpecDefinition);
 		this.formatSpecDefinition.load();
 		registerTrailerSpec(this.formatSpecDefinition.trailerSpec());
 		setAbsolute(true);
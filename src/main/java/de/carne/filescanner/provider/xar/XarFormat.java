@@ -40,6 +40,12 @@ public class XarFormat extends Format {
 	public XarFormat() {
 		super(FORMAT_NAME);
 		this.formatSpecDefinition = new XarFormatSpecDefinition();
+		registerSpecDefinition(this.formatSpecDefinition);
+		registerHeaderMagic((byte) 0x78, (byte) 0x61, (byte) 0x72, (byte) 0x21);
+	}
+
+	@Override
+	protected void load() {
 		this.formatSpecDefinition.load();
 		registerHeaderSpec(this.formatSpecDefinition.headerSpec());
 	}
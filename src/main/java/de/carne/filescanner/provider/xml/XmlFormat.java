@@ -40,6 +40,7 @@ public class XmlFormat extends Format {
 	public XmlFormat() {
 		super(FORMAT_NAME);
 		this.formatSpecDefinition = new XmlFormatSpecDefinition();
+		registerSpecDefinition(this.formatSpecDefinition);
 		this.formatSpecDefinition.load();
 		registerHeaderSpec(this.formatSpecDefinition.headerSpec());
 		setAbsolute(true);
@@ -40,6 +40,12 @@ public class ZipFormat extends Format {
 	public ZipFormat() {
 		super(FORMAT_NAME);
 		this.formatSpecDefinition = new ZipFormatSpecDefinition();
+		registerSpecDefinition(this.formatSpecDefinition);
+		registerHeaderMagic((byte) 0x50, (byte) 0x4b, (byte) 0x03, (byte) 0x04);
+	}
+
+	@Override
+	protected void load() {
 		this.formatSpecDefinition.load();
 		registerHeaderSpec(this.formatSpecDefinition.headerSpec());
 	}
@@ -67,14 +67,14 @@ final class ZipFormatSpecDefinition extends FormatSpecDefinition {
 	}
 
 	private long encodedInputSize() {
-		return Integer.toUnsignedLong(this.lfhCompressedSize.get().get().intValue());
+		return this.lfhCompressedSize.get().unsignedLongValue();
 	}
 
 	private long optionalEncodedInputSize() {
-		int bitFlag = Short.toUnsignedInt(this.lfhGenerapPurposeBitFlag.get().get().shortValue());
+		int bitFlag = (int) this.lfhGenerapPurposeBitFlag.get().unsignedLongValue();
 		boolean ddPresent = (bitFlag & 0x0008) != 0;
 
-		return (ddPresent ? -1l : Integer.toUnsignedLong(this.lfhCompressedSize.get().get().intValue()));
+		return (ddPresent ? -1l : this.lfhCompressedSize.get().unsignedLongValue());
 	}
 
 	private InputDecoderTable inputDecoderTable() {
@@ -102,7 +102,7 @@ final class ZipFormatSpecDefinition extends FormatSpecDefinition {
 	}
 
 	public CompositeSpec dataDescriptorSpec() {
-		int bitFlag = Short.toUnsignedInt(this.lfhGenerapPurposeBitFlag.get().get().shortValue());
+		int bitFlag = (int) this.lfhGenerapPurposeBitFlag.get().unsignedLongValue();
 		boolean ddPresent = (bitFlag & 0x0008) != 0;
 
 		return (ddPresent ? this.ddSpec.get() : FormatSpecs.EMPTY);
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import de.carne.filescanner.engine.FileScanner;
+import de.carne.filescanner.engine.FileScannerResult;
+import de.carne.filescanner.engine.transfer.BulkResultExporter;
+import de.carne.filescanner.engine.transfer.FileScannerResultExportHandler;
+import de.carne.test.annotation.io.TempDir;
+import de.carne.test.extension.io.TempPathExtension;
+
+/**
+ * Test {@linkplain BulkResultExporter} class.
+ */
+@ExtendWith(TempPathExtension.class)
+class BulkResultExporterTest {
+
+	private static final int RECORD_COUNT = 100;
+	private static final int THREAD_COUNT = 4;
+
+	private static final byte[] KEEP_BYTES = "keep".getBytes(StandardCharsets.US_ASCII);
+
+	@SuppressWarnings("null")
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testDefaultExport() throws IOException, InterruptedException {
+		Path exportDir = this.tempDir.resolve("default");
+
+		try (FileScanner fileScanner = scan()) {
+			BulkResultExporter exporter = new BulkResultExporter(exportDir);
+			ExportStatus status = new ExportStatus();
+
+			// The test data does not contain any nested inputs
+			Assertions.assertEquals(0, exporter.export(fileScanner.result(), status));
+			Assertions.assertEquals(Collections.emptyMap(), status.exportedFiles());
+			Assertions.assertEquals(Collections.emptyList(), status.failures());
+		}
+	}
+
+	@Test
+	void testSelectedExport() throws IOException, InterruptedException {
+		Path exportDir = this.tempDir.resolve("selected");
+
+		try (FileScanner fileScanner = scan()) {
+			byte[] data = Files.readAllBytes(testFile());
+			BulkResultExporter exporter = new BulkResultExporter(exportDir, BulkResultExporterTest::selectRecord,
+					THREAD_COUNT);
+			ExportStatus status = new ExportStatus();
+
+			Assertions.assertEquals(RECORD_COUNT, exporter.export(fileScanner.result(), status));
+			Assertions.assertEquals(RECORD_COUNT, exporter.exportedCount());
+			Assertions.assertEquals(0, exporter.failedCount());
+			Assertions.assertEquals(Collections.emptyList(), status.failures());
+
+			Map<Path, FileScannerResult> exportedFiles = status.exportedFiles();
+
+			Assertions.assertEquals(RECORD_COUNT, exportedFiles.size());
+			Assertions.assertEquals(exportedFiles.keySet(), listFiles(exportDir));
+			for (Map.Entry<Path, FileScannerResult> exportedFile : exportedFiles.entrySet()) {
+				FileScannerResult result = exportedFile.getValue();
+
+				Assertions.assertArrayEquals(Arrays.copyOfRange(data, (int) result.start(), (int) result.end()),
+						Files.readAllBytes(exportedFile.getKey()));
+			}
+		}
+	}
+
+	@Test
+	void testRepeatedExport() throws IOException, InterruptedException {
+		Path exportDir = this.tempDir.resolve("repeated");
+
+		try (FileScanner fileScanner = scan()) {
+			ExportStatus status = new ExportStatus();
+
+			new BulkResultExporter(exportDir, BulkResultExporterTest::selectRecord, THREAD_COUNT)
+					.export(fileScanner.result(), status);
+
+			Path keepFile = status.exportedFiles().keySet().iterator().next();
+
+			Files.write(keepFile, KEEP_BYTES);
+
+			// A second export into the same directory must not overwrite any existing file
+			ExportStatus reexportStatus = new ExportStatus();
+			long reexported = new BulkResultExporter(exportDir, BulkResultExporterTest::selectRecord, THREAD_COUNT)
+					.export(fileScanner.result(), reexportStatus);
+
+			Assertions.assertEquals(RECORD_COUNT, reexported);
+			Assertions.assertEquals(Collections.emptyList(), reexportStatus.failures());
+			Assertions.assertFalse(reexportStatus.exportedFiles().containsKey(keepFile));
+			for (Path exportedFile : reexportStatus.exportedFiles().keySet()) {
+				Assertions.assertFalse(status.exportedFiles().containsKey(exportedFile));
+			}
+			Assertions.assertArrayEquals(KEEP_BYTES, Files.readAllBytes(keepFile));
+			Assertions.assertEquals(2 * RECORD_COUNT, listFiles(exportDir).size());
+		}
+	}
+
+	private static @Nullable FileScannerResultExportHandler selectRecord(FileScannerResult result) {
+		return (TestRecordsFormat.RECORD_NAME.equals(result.name()) ? result.exportHandlers()[0] : null);
+	}
+
+	private static Set<Path> listFiles(Path dir) throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files.collect(Collectors.toSet());
+		}
+	}
+
+	private Path testFile() {
+		return this.tempDir.resolve(getClass().getSimpleName() + ".bin");
+	}
+
+	private FileScanner scan() throws IOException, InterruptedException {
+		Path file = TestRecordsFormat.writeTestFile(testFile(), RECORD_COUNT);
+		TestStatus status = new TestStatus();
+		FileScanner fileScanner = FileScanner.scan(file, Arrays.asList(new TestRecordsFormat(RECORD_COUNT)), status);
+
+		status.await();
+		Assertions.assertEquals(Collections.emptyList(), status.exceptions());
+		return fileScanner;
+	}
+
+	private static class ExportStatus implements BulkResultExporter.Status {
+
+		private final Map<Path, FileScannerResult> exportedFiles = new ConcurrentHashMap<>();
+		private final List<Exception> failures = Collections.synchronizedList(new ArrayList<>());
+
+		ExportStatus() {
+			// Make class package accessible
+		}
+
+		Map<Path, FileScannerResult> exportedFiles() {
+			return this.exportedFiles;
+		}
+
+		List<Exception> failures() {
+			return this.failures;
+		}
+
+		@Override
+		public void resultExported(FileScannerResult result, Path file) {
+			this.exportedFiles.put(file, result);
+		}
+
+		@Override
+		public void resultFailed(FileScannerResult result, Path file, Exception cause) {
+			this.failures.add(cause);
+		}
+
+	}
+
+}
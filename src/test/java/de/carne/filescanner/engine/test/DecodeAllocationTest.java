@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import de.carne.filescanner.engine.FileScanner;
+import de.carne.filescanner.engine.FileScannerProgress;
+import de.carne.filescanner.engine.FileScannerResult;
+import de.carne.filescanner.engine.FileScannerResultContextValueSpec;
+import de.carne.filescanner.engine.FileScannerResultDecodeContext;
+import de.carne.filescanner.engine.FileScannerResultInputContext;
+import de.carne.filescanner.engine.FileScannerStatus;
+import de.carne.filescanner.engine.format.CompositeSpec;
+import de.carne.filescanner.engine.format.DWordSpec;
+import de.carne.filescanner.engine.format.SequenceSpec;
+import de.carne.filescanner.engine.format.StructSpec;
+import de.carne.filescanner.engine.input.BufferedFileChannelInput;
+import de.carne.filescanner.engine.input.FileScannerInput;
+import de.carne.filescanner.engine.input.FileScannerInputRange;
+import de.carne.filescanner.engine.spi.Format;
+import de.carne.test.annotation.io.TempDir;
+import de.carne.test.extension.io.TempPathExtension;
+
+/**
+ * Test the allocation behavior of the decode hot path (matching and reading of number values as well as decoding,
+ * binding and committing an actual struct based result).
+ * <p>
+ * The allocated bytes per decode operation are measured via the thread allocation counter of the
+ * {@linkplain com.sun.management.ThreadMXBean} and must stay below the configured budget in steady state. Value
+ * capturing is disabled during the struct decode measurement, as captured values are retained by design.
+ * </p>
+ */
+@ExtendWith(TempPathExtension.class)
+class DecodeAllocationTest {
+
+	private static final int INPUT_SIZE = 0x10000;
+	private static final int WARMUP_ROUNDS = 20;
+	private static final int MEASURE_ROUNDS = 20;
+	private static final double ALLOCATION_BUDGET = 1.0;
+
+	@SuppressWarnings("null")
+	@TempDir
+	Path tempDir;
+
+	private static class TestContext extends FileScannerResultInputContext {
+
+		TestContext(FileScannerInputRange inputRange) {
+			super(inputRange, inputRange.start());
+		}
+
+		void rewind() throws IOException {
+			setPosition(inputRange().start());
+		}
+
+		@Override
+		public <T> T getValue(FileScannerResultContextValueSpec<T> valueSpec) {
+			throw new IllegalStateException();
+		}
+
+	}
+
+	@Test
+	void testMatchAndReadAllocation() throws IOException {
+		com.sun.management.ThreadMXBean allocationMXBean = allocationMXBean();
+		Path inputFile = writeInputFile();
+
+		DWordSpec spec = new DWordSpec("dword");
+
+		spec.validate(IntStream.range(0, 0x100).boxed().collect(Collectors.toSet()));
+
+		try (BufferedFileChannelInput input = FileScannerInput.open(inputFile)) {
+			TestContext context = new TestContext(input.range(0, input.size()));
+			long checksum = 0;
+
+			for (int round = 0; round < WARMUP_ROUNDS; round++) {
+				checksum += runDecodeRound(context, spec);
+			}
+
+			long threadId = Thread.currentThread().getId();
+			long allocatedBefore = allocationMXBean.getThreadAllocatedBytes(threadId);
+
+			for (int round = 0; round < MEASURE_ROUNDS; round++) {
+				checksum += runDecodeRound(context, spec);
+			}
+
+			long allocatedAfter = allocationMXBean.getThreadAllocatedBytes(threadId);
+			double allocatedPerOp = (allocatedAfter - allocatedBefore)
+					/ (double) (MEASURE_ROUNDS * (INPUT_SIZE / Integer.BYTES));
+
+			Assertions.assertNotEquals(0, checksum);
+			Assertions.assertTrue(allocatedPerOp < ALLOCATION_BUDGET,
+					"Decode allocation exceeds budget: " + allocatedPerOp + " bytes/op");
+		}
+	}
+
+	@Test
+	void testStructDecodeAllocation() throws IOException, InterruptedException {
+		com.sun.management.ThreadMXBean allocationMXBean = allocationMXBean();
+		Path inputFile = writeInputFile();
+		StructDecodeFormat format = new StructDecodeFormat(allocationMXBean);
+		String captureBudgetProperty = FileScanner.class.getName() + ".captureBudget";
+
+		System.setProperty(captureBudgetProperty, "0");
+		try {
+			for (int round = 0; round < WARMUP_ROUNDS + MEASURE_ROUNDS; round++) {
+				Status status = new Status();
+
+				try (FileScanner fileScanner = FileScanner.scan(inputFile, Arrays.asList(format), status)) {
+					status.await();
+
+					FileScannerResult[] results = fileScanner.result().children();
+
+					Assertions.assertEquals(1, results.length);
+					Assertions.assertEquals(INPUT_SIZE, results[0].size());
+				}
+			}
+		} finally {
+			System.clearProperty(captureBudgetProperty);
+		}
+
+		double allocatedPerOp = format.allocatedBytes.get()
+				/ (double) (format.decodeCount.get() * (INPUT_SIZE / StructDecodeFormat.ELEMENT_SIZE));
+
+		Assertions.assertEquals(MEASURE_ROUNDS, format.decodeCount.get());
+		Assertions.assertTrue(allocatedPerOp < ALLOCATION_BUDGET,
+				"Struct decode allocation exceeds budget: " + allocatedPerOp + " bytes/op");
+	}
+
+	private static long runDecodeRound(TestContext context, DWordSpec spec) throws IOException {
+		long checksum = 0;
+
+		context.rewind();
+		while (context.remaining() > 0) {
+			Assertions.assertTrue(context.matchFormat(spec));
+
+			checksum += context.readNumberValue(Integer.BYTES, buffer -> buffer.getInt());
+		}
+		return checksum;
+	}
+
+	private static com.sun.management.ThreadMXBean allocationMXBean() {
+		java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+		Assumptions.assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+
+		com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+
+		Assumptions.assumeTrue(allocationMXBean.isThreadAllocatedMemorySupported());
+
+		allocationMXBean.setThreadAllocatedMemoryEnabled(true);
+		return allocationMXBean;
+	}
+
+	private Path writeInputFile() throws IOException {
+		Path inputFile = this.tempDir.resolve(getClass().getSimpleName() + ".bin");
+		ByteBuffer inputData = ByteBuffer.allocate(INPUT_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+		inputData.put(StructDecodeFormat.MAGIC);
+		while (inputData.hasRemaining()) {
+			inputData.putInt(inputData.position() & 0xff);
+		}
+		Files.write(inputFile, inputData.array());
+		return inputFile;
+	}
+
+	private static class Status implements FileScannerStatus {
+
+		private boolean finished = false;
+
+		Status() {
+			// Make class package accessible
+		}
+
+		synchronized void await() throws InterruptedException {
+			while (!this.finished) {
+				wait();
+			}
+		}
+
+		@Override
+		public void scanStarted(FileScanner scanner) {
+			// Nothing to do
+		}
+
+		@Override
+		public synchronized void scanFinished(FileScanner scanner) {
+			this.finished = true;
+			notifyAll();
+		}
+
+		@Override
+		public void scanProgress(FileScanner scanner, FileScannerProgress progress) {
+			// Nothing to do
+		}
+
+		@Override
+		public void scanResult(FileScanner scanner, FileScannerResult result) {
+			// Nothing to do
+		}
+
+		@Override
+		public void scanException(FileScanner scanner, Exception cause) {
+			Assertions.fail(cause);
+		}
+
+	}
+
+	private static class StructDecodeFormat extends Format {
+
+		static final byte[] MAGIC = new byte[] { 0, 0, 0, 0 };
+		static final int ELEMENT_SIZE = 2 * Integer.BYTES;
+
+		final AtomicLong allocatedBytes = new AtomicLong();
+		final AtomicInteger decodeCount = new AtomicInteger(-WARMUP_ROUNDS);
+		private final com.sun.management.ThreadMXBean allocationMXBean;
+		private final CompositeSpec formatSpec;
+
+		StructDecodeFormat(com.sun.management.ThreadMXBean allocationMXBean) {
+			super("Struct decode data");
+			this.allocationMXBean = allocationMXBean;
+
+			StructSpec element = new StructSpec();
+
+			element.add(new DWordSpec("bound").validate(IntStream.range(0, 0x100).boxed().collect(Collectors.toSet()))
+					.bind());
+			element.add(new DWordSpec("plain"));
+
+			StructSpec struct = new StructSpec();
+
+			struct.result("Struct decode data");
+			struct.add(new SequenceSpec(element).size(INPUT_SIZE / ELEMENT_SIZE));
+			this.formatSpec = struct;
+			registerHeaderMagic(MAGIC);
+			registerHeaderSpec(element);
+		}
+
+		@Override
+		public FileScannerResult decode(FileScannerResultDecodeContext context) throws IOException {
+			long threadId = Thread.currentThread().getId();
+			long allocatedBefore = this.allocationMXBean.getThreadAllocatedBytes(threadId);
+			FileScannerResult result = context.decodeComposite(this.formatSpec);
+			long allocatedAfter = this.allocationMXBean.getThreadAllocatedBytes(threadId);
+
+			// Only measure once the warm up rounds are done
+			if (this.decodeCount.incrementAndGet() > 0) {
+				this.allocatedBytes.addAndGet(allocatedAfter - allocatedBefore);
+			}
+			return result;
+		}
+
+	}
+
+}
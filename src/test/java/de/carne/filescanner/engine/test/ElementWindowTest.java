@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import de.carne.filescanner.engine.FileScanner;
+import de.carne.filescanner.engine.FileScannerProgress;
+import de.carne.filescanner.engine.FileScannerResult;
+import de.carne.filescanner.engine.FileScannerResultDecodeContext;
+import de.carne.filescanner.engine.FileScannerResultElementOffsets;
+import de.carne.filescanner.engine.FileScannerResultListener;
+import de.carne.filescanner.engine.FileScannerStatus;
+import de.carne.filescanner.engine.format.AttributeSpec;
+import de.carne.filescanner.engine.format.ByteArraySpec;
+import de.carne.filescanner.engine.format.CompositeSpec;
+import de.carne.filescanner.engine.format.DWordArraySpec;
+import de.carne.filescanner.engine.format.DWordSpec;
+import de.carne.filescanner.engine.format.FormatSpec;
+import de.carne.filescanner.engine.format.SequenceSpec;
+import de.carne.filescanner.engine.format.StructSpec;
+import de.carne.filescanner.engine.format.WordArraySpec;
+import de.carne.filescanner.engine.spi.Format;
+import de.carne.filescanner.engine.transfer.RenderOutput;
+import de.carne.filescanner.engine.transfer.renderer.PlainTextRenderer;
+import de.carne.filescanner.engine.util.HexFormat;
+import de.carne.filescanner.engine.util.PrettyFormat;
+import de.carne.test.annotation.io.TempDir;
+import de.carne.test.extension.io.TempPathExtension;
+
+/**
+ * Test the element windows of array attributes and sequences as well as the element offsets budget.
+ */
+@ExtendWith(TempPathExtension.class)
+class ElementWindowTest {
+
+	private static final byte[] MAGIC = new byte[] { 'W', 'I', 'N', '!' };
+	private static final int ELEMENT_COUNT = 4096;
+	private static final int WINDOW_START = 1000;
+	private static final int WINDOW_SIZE = 40;
+	private static final int LINE_SIZE = 16;
+
+	@SuppressWarnings("null")
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testByteArrayWindow() throws IOException, InterruptedException {
+		assertArrayWindow(new ByteArraySpec("array").length(ELEMENT_COUNT), Byte.BYTES, buffer -> {
+			byte[] value = new byte[buffer.remaining()];
+
+			buffer.get(value);
+			return HexFormat.formatByteArray(value);
+		});
+	}
+
+	@Test
+	void testWordArrayWindow() throws IOException, InterruptedException {
+		assertArrayWindow(new WordArraySpec("array").length(() -> ELEMENT_COUNT), Short.BYTES, buffer -> {
+			short[] value = new short[buffer.remaining() / Short.BYTES];
+
+			buffer.asShortBuffer().get(value);
+			return HexFormat.formatShortArray(value);
+		});
+	}
+
+	@Test
+	void testDWordArrayWindow() throws IOException, InterruptedException {
+		assertArrayWindow(new DWordArraySpec("array").length(() -> ELEMENT_COUNT), Integer.BYTES, buffer -> {
+			int[] value = new int[buffer.remaining() / Integer.BYTES];
+
+			buffer.asIntBuffer().get(value);
+			return HexFormat.formatIntArray(value);
+		});
+	}
+
+	@Test
+	void testSequenceElementWindow() throws IOException, InterruptedException {
+		AtomicInteger renderedElements = new AtomicInteger();
+		SequenceSpec sequence = new SequenceSpec(new DWordSpec("element").renderer((out, value) -> {
+			renderedElements.incrementAndGet();
+			out.write(" #" + value);
+		})).size(ELEMENT_COUNT);
+
+		try (FileScanner fileScanner = scan(sequence, Integer.BYTES, null)) {
+			FileScannerResult[] results = fileScanner.result().children();
+
+			Assertions.assertEquals(1, results.length);
+
+			StringWriter text = new StringWriter();
+			long elementTotal;
+
+			renderedElements.set(0);
+			try (RenderOutput out = new RenderOutput(new PlainTextRenderer(text, false))) {
+				elementTotal = results[0].renderElements(out, WINDOW_START, WINDOW_SIZE);
+			}
+
+			Assertions.assertEquals(ELEMENT_COUNT, elementTotal);
+
+			String[] lines = text.toString().split("\\R");
+			ByteBuffer data = testData(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+			Assertions.assertEquals(WINDOW_SIZE, lines.length);
+			for (int lineIndex = 0; lineIndex < lines.length; lineIndex++) {
+				int element = data.getInt(MAGIC.length + (WINDOW_START + lineIndex) * Integer.BYTES);
+
+				Assertions.assertTrue(lines[lineIndex].endsWith(" #" + element), lines[lineIndex]);
+			}
+			// Rendering starts at the nearest recorded element offset (not at the first element)
+			Assertions.assertTrue(renderedElements.get() < FileScannerResultElementOffsets.STRIDE + WINDOW_SIZE);
+		}
+	}
+
+	@Test
+	void testElementOffsetsRetained() throws IOException, InterruptedException {
+		try (FileScanner fileScanner = scan(new SequenceSpec(new DWordSpec("element")).size(ELEMENT_COUNT),
+				Integer.BYTES, null)) {
+			Assertions.assertTrue(fileScanner.progress().elementOffsetsFootprint() > 0);
+		}
+	}
+
+	@Test
+	void testElementOffsetsReleasedOnSpill() throws IOException, InterruptedException {
+		String heapBudgetProperty = FileScanner.class.getName() + ".heapBudget";
+
+		// Only nested results are spilled
+		StructSpec nested = new StructSpec();
+
+		nested.result("Test elements");
+		nested.add(new SequenceSpec(new DWordSpec("element")).size(ELEMENT_COUNT));
+		System.setProperty(heapBudgetProperty, "1");
+		try (FileScanner fileScanner = scan(nested, Integer.BYTES, null)) {
+			Assertions.assertEquals(0, fileScanner.progress().elementOffsetsFootprint());
+		} finally {
+			System.clearProperty(heapBudgetProperty);
+		}
+	}
+
+	@Test
+	void testElementOffsetsReleasedOnForget() throws IOException, InterruptedException {
+		FileScannerResultListener forgettingListener = new FileScannerResultListener() {
+
+			@Override
+			public void resultFinished(FileScanner scanner, @Nullable FileScannerResult parent,
+					FileScannerResult result, @Nullable FileScannerResult formatResult) {
+				// Nothing to do
+			}
+
+			@Override
+			public boolean isRetainingResults() {
+				return false;
+			}
+
+		};
+
+		try (FileScanner fileScanner = scan(new SequenceSpec(new DWordSpec("element")).size(ELEMENT_COUNT),
+				Integer.BYTES, forgettingListener)) {
+			Assertions.assertEquals(0, fileScanner.result().children().length);
+			Assertions.assertEquals(0, fileScanner.progress().elementOffsetsFootprint());
+		}
+	}
+
+	private void assertArrayWindow(AttributeSpec<?> array, int elementSize, Function<ByteBuffer, String> formatter)
+			throws IOException, InterruptedException {
+		try (FileScanner fileScanner = scan(array, elementSize, null)) {
+			FileScannerResult[] results = fileScanner.result().children();
+
+			Assertions.assertEquals(1, results.length);
+
+			StringWriter text = new StringWriter();
+			long elementTotal;
+
+			try (RenderOutput out = new RenderOutput(new PlainTextRenderer(text, false))) {
+				elementTotal = results[0].renderElements(out, WINDOW_START, WINDOW_SIZE);
+			}
+
+			// The window is claimed by the array (and not by the preceding small magic array)
+			Assertions.assertEquals(ELEMENT_COUNT, elementTotal);
+
+			String[] lines = text.toString().split("\\R");
+			ByteBuffer data = testData(elementSize);
+
+			Assertions.assertEquals((WINDOW_SIZE + LINE_SIZE - 1) / LINE_SIZE, lines.length);
+			for (int lineIndex = 0; lineIndex < lines.length; lineIndex++) {
+				int lineStart = WINDOW_START + lineIndex * LINE_SIZE;
+				int lineEnd = Math.min(lineStart + LINE_SIZE, WINDOW_START + WINDOW_SIZE);
+
+				data.limit(MAGIC.length + lineEnd * elementSize);
+				data.position(MAGIC.length + lineStart * elementSize);
+
+				// Like the array specs, decode the elements from a slice (and hence in its default byte order)
+				Assertions.assertEquals(
+						"[" + PrettyFormat.formatLongNumber(lineStart) + "]: array = " + formatter.apply(data.slice()),
+						lines[lineIndex]);
+			}
+		}
+	}
+
+	private FileScanner scan(FormatSpec elements, int elementSize, @Nullable FileScannerResultListener listener)
+			throws IOException, InterruptedException {
+		Path file = this.tempDir.resolve(getClass().getSimpleName() + ".bin");
+
+		Files.write(file, testData(elementSize).array());
+
+		Format format = new ElementsFormat(elements);
+		Status status = new Status();
+		FileScanner fileScanner = (listener != null ? FileScanner.scan(file, Arrays.asList(format), status, listener)
+				: FileScanner.scan(file, Arrays.asList(format), status));
+
+		status.await();
+		return fileScanner;
+	}
+
+	private static ByteBuffer testData(int elementSize) {
+		ByteBuffer data = ByteBuffer.allocate(MAGIC.length + ELEMENT_COUNT * elementSize);
+
+		data.put(MAGIC);
+		for (int dataIndex = MAGIC.length; dataIndex < data.capacity(); dataIndex++) {
+			data.put((byte) (dataIndex * 7 + (dataIndex >> 8)));
+		}
+		data.flip();
+		return data;
+	}
+
+	private static class ElementsFormat extends Format {
+
+		private final CompositeSpec formatSpec;
+
+		ElementsFormat(FormatSpec elements) {
+			super("Test elements data");
+
+			StructSpec header = new StructSpec();
+
+			header.add(new ByteArraySpec("magic").length(MAGIC.length).validate(MAGIC));
+
+			StructSpec formatSpec = new StructSpec();
+
+			formatSpec.result("Test elements data");
+			formatSpec.add(header);
+			formatSpec.add(elements);
+			this.formatSpec = formatSpec;
+			registerHeaderMagic(MAGIC);
+			registerHeaderSpec(header);
+		}
+
+		@Override
+		public FileScannerResult decode(FileScannerResultDecodeContext context) throws IOException {
+			return context.decodeComposite(this.formatSpec);
+		}
+
+	}
+
+	private static class Status implements FileScannerStatus {
+
+		private boolean finished = false;
+
+		Status() {
+			// Make class package accessible
+		}
+
+		synchronized void await() throws InterruptedException {
+			while (!this.finished) {
+				wait();
+			}
+		}
+
+		@Override
+		public void scanStarted(FileScanner scanner) {
+			// Nothing to do
+		}
+
+		@Override
+		public synchronized void scanFinished(FileScanner scanner) {
+			this.finished = true;
+			notifyAll();
+		}
+
+		@Override
+		public void scanProgress(FileScanner scanner, FileScannerProgress progress) {
+			// Nothing to do
+		}
+
+		@Override
+		public void scanResult(FileScanner scanner, FileScannerResult result) {
+			// Nothing to do
+		}
+
+		@Override
+		public void scanException(FileScanner scanner, Exception cause) {
+			Assertions.fail(cause);
+		}
+
+	}
+
+}
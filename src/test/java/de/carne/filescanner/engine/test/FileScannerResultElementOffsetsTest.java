@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.test;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.carne.filescanner.engine.FileScannerResultElementOffsets;
+
+/**
+ * Test {@linkplain FileScannerResultElementOffsets} class.
+ */
+class FileScannerResultElementOffsetsTest {
+
+	private static final int STRIDE = FileScannerResultElementOffsets.STRIDE;
+	private static final long START = 0x100;
+	private static final long ELEMENT_SIZE = 3;
+
+	@Test
+	void testCheckpoints() {
+		long elementCount = STRIDE * 10l + 5;
+		FileScannerResultElementOffsets offsets = new FileScannerResultElementOffsets(START);
+
+		for (long elementIndex = 0; elementIndex < elementCount; elementIndex++) {
+			offsets.record(elementIndex, elementPosition(elementIndex));
+			// Recording an element twice must not affect the result
+			offsets.record(elementIndex, elementPosition(elementIndex));
+		}
+		offsets.finish(elementCount, elementPosition(elementCount));
+
+		Assertions.assertEquals(START, offsets.start());
+		Assertions.assertEquals(elementPosition(elementCount), offsets.end());
+		Assertions.assertEquals(elementCount, offsets.elementCount());
+		for (long elementIndex = 0; elementIndex < elementCount; elementIndex++) {
+			long checkpoint = offsets.checkpoint(elementIndex);
+
+			Assertions.assertTrue(checkpoint <= elementIndex);
+			Assertions.assertTrue(elementIndex - checkpoint < STRIDE);
+			Assertions.assertEquals(elementPosition(checkpoint), offsets.position(checkpoint));
+		}
+		Assertions.assertEquals(STRIDE * 10l, offsets.checkpoint(elementCount * 2));
+		Assertions.assertEquals(0, offsets.checkpoint(-1));
+	}
+
+	private static long elementPosition(long elementIndex) {
+		return START + elementIndex * ELEMENT_SIZE;
+	}
+
+}
@@ -46,4 +46,12 @@ class FormatsTest {
 		Assertions.assertEquals(formatCount, formats.enabledFormats().size());
 	}
 
+	@Test
+	void testSharedFormats() {
+		Formats formats1 = Formats.all();
+		Formats formats2 = Formats.all();
+
+		Assertions.assertEquals(formats1.enabledFormats(), formats2.enabledFormats());
+	}
+
 }
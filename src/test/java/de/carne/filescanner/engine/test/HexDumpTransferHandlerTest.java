@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import de.carne.filescanner.engine.FileScanner;
+import de.carne.filescanner.engine.FileScannerProgress;
+import de.carne.filescanner.engine.FileScannerResult;
+import de.carne.filescanner.engine.FileScannerStatus;
+import de.carne.filescanner.engine.transfer.FileScannerResultRenderHandler;
+import de.carne.filescanner.engine.transfer.RenderOutput;
+import de.carne.filescanner.engine.transfer.TransferSource;
+import de.carne.filescanner.engine.transfer.handler.HexDumpTransferHandler;
+import de.carne.filescanner.engine.transfer.handler.RawTransferHandler;
+import de.carne.filescanner.engine.transfer.renderer.PlainTextRenderer;
+import de.carne.test.annotation.io.TempDir;
+import de.carne.test.extension.io.TempPathExtension;
+
+/**
+ * Test the paged rendering and the export of {@linkplain HexDumpTransferHandler}.
+ * <p>
+ * The test data spans several default pages (see system property
+ * {@code de.carne.filescanner.engine.transfer.handler.HexDumpTransferHandler.pageSize}) and ends with an incomplete
+ * line.
+ * </p>
+ */
+@ExtendWith(TempPathExtension.class)
+class HexDumpTransferHandlerTest {
+
+	private static final int LINE_BYTES = 16;
+	private static final int DEFAULT_PAGE_SIZE = 0x10000;
+	private static final int DATA_SIZE = 2 * DEFAULT_PAGE_SIZE + 0x123;
+	private static final int WINDOW_LINE_COUNT = 100;
+
+	@SuppressWarnings("null")
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testRenderPages() throws IOException, InterruptedException {
+		byte[] data = testData();
+		String expectedDump = hexDump(data, 0, data.length);
+
+		try (FileScanner fileScanner = scan(data)) {
+			FileScannerResult result = fileScanner.result();
+			String dump = renderPages(result, HexDumpTransferHandler.HEX_DUMP_TRANSFER, DEFAULT_PAGE_SIZE);
+
+			Assertions.assertEquals(expectedDump, dump);
+		}
+	}
+
+	@Test
+	void testRenderWindows() throws IOException, InterruptedException {
+		byte[] data = testData();
+		int windowSize = WINDOW_LINE_COUNT * LINE_BYTES;
+
+		try (FileScanner fileScanner = scan(data)) {
+			FileScannerResult result = fileScanner.result();
+			FileScannerResultRenderHandler window = HexDumpTransferHandler.HEX_DUMP_TRANSFER
+					.window(WINDOW_LINE_COUNT);
+
+			Assertions.assertEquals(hexDump(data, 0, data.length), renderPages(result, window, windowSize));
+
+			// Windows are independent of each other and can be rendered in any order
+			long[] decoded = new long[1];
+
+			int lastWindowStart = (data.length / windowSize) * windowSize;
+
+			for (int windowStart = lastWindowStart; windowStart >= 0; windowStart -= windowSize) {
+				int windowEnd = Math.min(windowStart + windowSize, data.length);
+
+				Assertions.assertEquals(hexDump(data, windowStart, windowEnd),
+						render(result, window, windowStart, decoded));
+				Assertions.assertEquals(windowEnd - windowStart, decoded[0]);
+			}
+			Assertions.assertEquals(hexDump(data, 0x30, 0x40),
+					render(result, HexDumpTransferHandler.HEX_DUMP_TRANSFER.window(0), 0x30, decoded));
+			Assertions.assertEquals(LINE_BYTES, decoded[0]);
+		}
+	}
+
+	@Test
+	void testExport() throws IOException, InterruptedException {
+		byte[] data = testData();
+		byte[] expectedDump = hexDump(data, 0, data.length).getBytes(StandardCharsets.US_ASCII);
+
+		try (FileScanner fileScanner = scan(data)) {
+			FileScannerResult result = fileScanner.result();
+
+			// The hex dump is offered for rendering only and does not change the default export handlers
+			Assertions.assertFalse(
+					Arrays.asList(result.exportHandlers()).contains(HexDumpTransferHandler.HEX_DUMP_TRANSFER));
+			Assertions.assertEquals(RawTransferHandler.APPLICATION_OCTET_STREAM_TRANSFER, result.exportHandlers()[0]);
+
+			TransferSource exportSource = result.export(HexDumpTransferHandler.HEX_DUMP_TRANSFER);
+			ByteArrayOutputStream channelBytes = new ByteArrayOutputStream();
+
+			exportSource.transfer(Channels.newChannel(channelBytes));
+
+			Assertions.assertEquals(exportSource.size(), channelBytes.size());
+			Assertions.assertArrayEquals(expectedDump, channelBytes.toByteArray());
+
+			ByteArrayOutputStream streamBytes = new ByteArrayOutputStream();
+
+			exportSource.transfer(streamBytes);
+
+			Assertions.assertEquals(exportSource.size(), streamBytes.size());
+			Assertions.assertArrayEquals(expectedDump, streamBytes.toByteArray());
+		}
+	}
+
+	private FileScanner scan(byte[] data) throws IOException, InterruptedException {
+		Path inputFile = this.tempDir.resolve(getClass().getSimpleName() + ".bin");
+
+		Files.write(inputFile, data);
+
+		Status status = new Status();
+		FileScanner fileScanner = FileScanner.scan(inputFile, Collections.emptyList(), status);
+
+		status.await();
+		return fileScanner;
+	}
+
+	private static String renderPages(FileScannerResult result, FileScannerResultRenderHandler renderHandler,
+			int pageSize) throws IOException {
+		StringBuilder dump = new StringBuilder();
+		long offset = 0;
+		long[] decoded = new long[1];
+
+		while (offset < result.size()) {
+			dump.append(render(result, renderHandler, offset, decoded));
+
+			Assertions.assertEquals(Math.min(pageSize, result.size() - offset), decoded[0]);
+
+			offset += decoded[0];
+		}
+		return dump.toString();
+	}
+
+	private static String render(FileScannerResult result, FileScannerResultRenderHandler renderHandler, long offset,
+			long[] decoded) throws IOException {
+		StringWriter text = new StringWriter();
+
+		try (RenderOutput out = new RenderOutput(new PlainTextRenderer(text, false))) {
+			decoded[0] = result.render(out, renderHandler, offset);
+		}
+		return text.toString();
+	}
+
+	private static byte[] testData() {
+		byte[] data = new byte[DATA_SIZE];
+
+		for (int dataIndex = 0; dataIndex < data.length; dataIndex++) {
+			data[dataIndex] = (byte) (dataIndex * 7 + (dataIndex >> 8));
+		}
+		return data;
+	}
+
+	private static String hexDump(byte[] data, int start, int end) {
+		StringBuilder dump = new StringBuilder();
+
+		for (int lineStart = start; lineStart < end; lineStart += LINE_BYTES) {
+			StringBuilder ascii = new StringBuilder();
+
+			dump.append(String.format("%08x  ", lineStart));
+			for (int byteIndex = 0; byteIndex < LINE_BYTES; byteIndex++) {
+				if (byteIndex == LINE_BYTES / 2) {
+					dump.append(' ');
+				}
+				if (lineStart + byteIndex < end) {
+					int value = data[lineStart + byteIndex] & 0xff;
+
+					dump.append(String.format("%02x", value));
+					ascii.append(0x20 <= value && value < 0x7f ? (char) value : '.');
+				} else {
+					dump.append("  ");
+				}
+				dump.append(' ');
+			}
+			dump.append(" |").append(ascii).append('|').append(System.lineSeparator());
+		}
+		return dump.toString();
+	}
+
+	private static class Status implements FileScannerStatus {
+
+		private boolean finished = false;
+
+		Status() {
+			// Make class package accessible
+		}
+
+		synchronized void await() throws InterruptedException {
+			while (!this.finished) {
+				wait();
+			}
+		}
+
+		@Override
+		public void scanStarted(FileScanner scanner) {
+			// Nothing to do
+		}
+
+		@Override
+		public synchronized void scanFinished(FileScanner scanner) {
+			this.finished = true;
+			notifyAll();
+		}
+
+		@Override
+		public void scanProgress(FileScanner scanner, FileScannerProgress progress) {
+			// Nothing to do
+		}
+
+		@Override
+		public void scanResult(FileScanner scanner, FileScannerResult result) {
+			// Nothing to do
+		}
+
+		@Override
+		public void scanException(FileScanner scanner, Exception cause) {
+			Assertions.fail(cause);
+		}
+
+	}
+
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import de.carne.filescanner.engine.FileScanner;
+import de.carne.filescanner.engine.FileScannerResult;
+import de.carne.filescanner.engine.FileScannerResultContextValueSpec;
+import de.carne.filescanner.engine.format.ByteSpec;
+import de.carne.filescanner.engine.format.DWordArraySpec;
+import de.carne.filescanner.engine.format.DWordSpec;
+import de.carne.filescanner.engine.transfer.JsonLinesResultExporter;
+import de.carne.test.annotation.io.TempDir;
+import de.carne.test.extension.io.TempPathExtension;
+
+/**
+ * Test {@linkplain JsonLinesResultExporter} class.
+ */
+@ExtendWith(TempPathExtension.class)
+class JsonLinesResultExporterTest {
+
+	private static final int RECORD_COUNT = 100;
+
+	private static final Pattern RECORD_LINE = linePattern(TestRecordsFormat.RECORD_NAME, "index");
+	private static final Pattern VALUE_LINE = linePattern(TestRecordsFormat.VALUE_NAME, "value");
+
+	@SuppressWarnings("null")
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testRetainingExport() throws IOException, InterruptedException {
+		Path exportFile = this.tempDir.resolve("retaining.jsonl");
+		long recordCount;
+
+		try (JsonLinesResultExporter exporter = new JsonLinesResultExporter(newExportChannel(exportFile), true)
+				.selectValues("index", "value"); FileScanner fileScanner = scan(exporter)) {
+			Assertions.assertTrue(exporter.isRetainingResults());
+			Assertions.assertEquals(1 + 2 * RECORD_COUNT, countResults(fileScanner.result().children()[0]));
+
+			recordCount = exporter.recordCount();
+		}
+		assertExport(exportFile, recordCount);
+	}
+
+	@Test
+	void testForgettingExport() throws IOException, InterruptedException {
+		Path exportFile = this.tempDir.resolve("forgetting.jsonl");
+		long recordCount;
+
+		try (JsonLinesResultExporter exporter = new JsonLinesResultExporter(newExportChannel(exportFile), false, 1024)
+				.selectValues("index", "value"); FileScanner fileScanner = scan(exporter)) {
+			Assertions.assertFalse(exporter.isRetainingResults());
+
+			// Only the input results are kept in the result tree
+			for (FileScannerResult child : fileScanner.result().children()) {
+				Assertions.assertEquals(FileScannerResult.Type.INPUT, child.type());
+			}
+
+			recordCount = exporter.recordCount();
+		}
+		assertExport(exportFile, recordCount);
+	}
+
+	@SuppressWarnings("null")
+	@Test
+	void testUnsignedValues() throws IOException {
+		Map<String, Object> values = new HashMap<>();
+		Map<String, FileScannerResultContextValueSpec<?>> valueSpecs = new HashMap<>();
+
+		values.put("byte", Byte.valueOf((byte) 0xff));
+		valueSpecs.put("byte", new ByteSpec("byte"));
+		values.put("dword", Integer.valueOf(0x80000000));
+		valueSpecs.put("dword", new DWordSpec("dword"));
+		values.put("signed dword", Integer.valueOf(-1));
+		valueSpecs.put("signed dword", new DWordSpec("signed dword").signed());
+		values.put("dwords", new int[] { 0xffffffff, 1 });
+		valueSpecs.put("dwords", new DWordArraySpec("dwords"));
+
+		FileScannerResult result = (FileScannerResult) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { FileScannerResult.class }, (proxy, method, args) -> {
+					Object returnValue;
+
+					switch (method.getName()) {
+					case "key":
+						returnValue = new byte[0];
+						break;
+					case "type":
+						returnValue = FileScannerResult.Type.FORMAT;
+						break;
+					case "name":
+						returnValue = "unsigned values";
+						break;
+					case "start":
+					case "end":
+						returnValue = Long.valueOf(0);
+						break;
+					case "values":
+						returnValue = values;
+						break;
+					case "valueSpecs":
+						returnValue = valueSpecs;
+						break;
+					default:
+						throw new UnsupportedOperationException(method.getName());
+					}
+					return returnValue;
+				});
+		ByteArrayOutputStream exportBytes = new ByteArrayOutputStream();
+
+		try (JsonLinesResultExporter exporter = new JsonLinesResultExporter(Channels.newChannel(exportBytes), false)
+				.selectValues("byte", "dword", "signed dword", "dwords")) {
+			exporter.resultFinished(null, null, result, null);
+		}
+
+		String exportLine = exportBytes.toString(StandardCharsets.UTF_8);
+
+		Assertions.assertTrue(exportLine.contains("\"byte\":255"));
+		Assertions.assertTrue(exportLine.contains("\"dword\":2147483648"));
+		Assertions.assertTrue(exportLine.contains("\"signed dword\":-1"));
+		Assertions.assertTrue(exportLine.contains("\"dwords\":[4294967295,1]"));
+	}
+
+	private static void assertExport(Path exportFile, long recordCount) throws IOException {
+		List<String> lines = Files.readAllLines(exportFile);
+
+		// One line per input, format, record and value result
+		Assertions.assertEquals(2 + 2 * RECORD_COUNT, lines.size());
+		Assertions.assertEquals(lines.size(), recordCount);
+
+		boolean[] exportedRecords = new boolean[RECORD_COUNT];
+		boolean[] exportedValues = new boolean[RECORD_COUNT];
+
+		for (String line : lines) {
+			Matcher recordMatcher = RECORD_LINE.matcher(line);
+			Matcher valueMatcher = VALUE_LINE.matcher(line);
+
+			if (recordMatcher.matches()) {
+				int recordIndex = Integer.parseInt(recordMatcher.group(3));
+
+				Assertions.assertEquals(TestRecordsFormat.recordStart(recordIndex),
+						Long.parseLong(recordMatcher.group(1)));
+				Assertions.assertEquals(TestRecordsFormat.recordStart(recordIndex + 1),
+						Long.parseLong(recordMatcher.group(2)));
+				Assertions.assertFalse(exportedRecords[recordIndex]);
+				exportedRecords[recordIndex] = true;
+			} else if (valueMatcher.matches()) {
+				int recordIndex = Integer.parseInt(valueMatcher.group(3)) / TestRecordsFormat.recordValue(1);
+
+				Assertions.assertEquals(TestRecordsFormat.recordStart(recordIndex + 1) - Integer.BYTES,
+						Long.parseLong(valueMatcher.group(1)));
+				Assertions.assertFalse(exportedValues[recordIndex]);
+				exportedValues[recordIndex] = true;
+			}
+		}
+		for (int recordIndex = 0; recordIndex < RECORD_COUNT; recordIndex++) {
+			Assertions.assertTrue(exportedRecords[recordIndex], "Record " + recordIndex);
+			Assertions.assertTrue(exportedValues[recordIndex], "Value " + recordIndex);
+		}
+	}
+
+	private static Pattern linePattern(String name, String valueName) {
+		return Pattern.compile("\\{\"key\":\"\\p{XDigit}+\",\"parent\":\"\\p{XDigit}+\",\"type\":\"FORMAT\",\"name\":\""
+				+ name + "\",\"start\":(\\d+),\"end\":(\\d+),\"format\":\"" + TestRecordsFormat.FORMAT_NAME
+				+ "\",\"values\":\\{\"" + valueName + "\":(\\d+)\\}\\}");
+	}
+
+	private static int countResults(FileScannerResult result) {
+		int count = 1;
+
+		for (FileScannerResult child : result.children()) {
+			count += countResults(child);
+		}
+		return count;
+	}
+
+	private static WritableByteChannel newExportChannel(Path exportFile) throws IOException {
+		return Files.newByteChannel(exportFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE);
+	}
+
+	private FileScanner scan(JsonLinesResultExporter exporter) throws IOException, InterruptedException {
+		Path file = TestRecordsFormat.writeTestFile(this.tempDir.resolve(getClass().getSimpleName() + ".bin"),
+				RECORD_COUNT);
+		TestStatus status = new TestStatus();
+		FileScanner fileScanner = FileScanner.scan(file, Arrays.asList(new TestRecordsFormat(RECORD_COUNT)), status,
+				exporter);
+
+		status.await();
+		Assertions.assertEquals(Arrays.asList(), status.exceptions());
+		return fileScanner;
+	}
+
+}
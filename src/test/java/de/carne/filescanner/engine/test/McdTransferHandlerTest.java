@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import de.carne.filescanner.engine.FileScanner;
+import de.carne.filescanner.engine.FileScannerResult;
+import de.carne.filescanner.engine.transfer.FileScannerResultRenderHandler;
+import de.carne.filescanner.engine.transfer.RenderOutput;
+import de.carne.filescanner.engine.transfer.handler.McdTransferHandler;
+import de.carne.filescanner.engine.transfer.renderer.PlainTextRenderer;
+import de.carne.test.annotation.io.TempDir;
+import de.carne.test.extension.io.TempPathExtension;
+
+/**
+ * Test the windowed rendering of {@linkplain McdTransferHandler}.
+ * <p>
+ * The test data consists of a repeated sequence of x86-64 instructions of different lengths.
+ * </p>
+ */
+@ExtendWith(TempPathExtension.class)
+class McdTransferHandlerTest {
+
+	private static final int SEQUENCE_COUNT = 5000;
+	private static final int WINDOW_LINE_COUNT = 100;
+	private static final int WINDOW_BYTE_COUNT = 4096;
+
+	@SuppressWarnings("null")
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testLineWindows() throws IOException, InterruptedException {
+		Set<Long> boundaries = new HashSet<>();
+		byte[] data = testData(boundaries);
+
+		try (FileScanner fileScanner = scan(data)) {
+			FileScannerResult result = fileScanner.result();
+			String fullText = render(result, McdTransferHandler.X86B64_TRANSFER, 0, new long[1]);
+			StringBuilder windowsText = new StringBuilder();
+			long offset = 0;
+			long[] decoded = new long[1];
+
+			while (offset < result.size()) {
+				String windowText = render(result, McdTransferHandler.X86B64_TRANSFER.lineWindow(WINDOW_LINE_COUNT),
+						offset, decoded);
+
+				Assertions.assertTrue(decoded[0] > 0);
+				Assertions.assertTrue(windowText.lines().count() <= WINDOW_LINE_COUNT);
+
+				offset += decoded[0];
+
+				Assertions.assertTrue(boundaries.contains(offset), "Window end " + offset);
+
+				windowsText.append(windowText);
+			}
+			Assertions.assertEquals(fullText, windowsText.toString());
+		}
+	}
+
+	@Test
+	void testByteWindows() throws IOException, InterruptedException {
+		Set<Long> boundaries = new HashSet<>();
+		byte[] data = testData(boundaries);
+
+		try (FileScanner fileScanner = scan(data)) {
+			FileScannerResult result = fileScanner.result();
+			String fullText = render(result, McdTransferHandler.X86B64_TRANSFER, 0, new long[1]);
+			StringBuilder windowsText = new StringBuilder();
+			long offset = 0;
+			long[] decoded = new long[1];
+
+			while (offset < result.size()) {
+				windowsText.append(render(result, McdTransferHandler.X86B64_TRANSFER.byteWindow(WINDOW_BYTE_COUNT),
+						offset, decoded));
+
+				Assertions.assertTrue(decoded[0] > 0);
+				Assertions.assertTrue(decoded[0] <= WINDOW_BYTE_COUNT);
+
+				offset += decoded[0];
+
+				Assertions.assertTrue(boundaries.contains(offset), "Window end " + offset);
+			}
+			Assertions.assertEquals(fullText, windowsText.toString());
+		}
+	}
+
+	@Test
+	void testBackwardWindows() throws IOException, InterruptedException {
+		Set<Long> boundaries = new HashSet<>();
+		byte[] data = testData(boundaries);
+
+		try (FileScanner fileScanner = scan(data)) {
+			FileScannerResult result = fileScanner.result();
+			FileScannerResultRenderHandler window = McdTransferHandler.X86B64_TRANSFER.lineWindow(WINDOW_LINE_COUNT);
+			long[] decoded = new long[1];
+			String firstWindowText = render(result, window, 0, decoded);
+			long secondWindowStart = decoded[0];
+			String secondWindowText = render(result, window, secondWindowStart, decoded);
+
+			// Windows started at a recorded boundary are rendered the same way regardless of the rendering order
+			Assertions.assertEquals(secondWindowText, render(result, window, secondWindowStart, decoded));
+			Assertions.assertEquals(firstWindowText, render(result, window, 0, decoded));
+			Assertions.assertEquals(secondWindowStart, decoded[0]);
+		}
+	}
+
+	private static byte[] testData(Set<Long> boundaries) {
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+		for (int sequenceIndex = 0; sequenceIndex < SEQUENCE_COUNT; sequenceIndex++) {
+			// movabs rax, imm64
+			boundaries.add(Long.valueOf(data.size()));
+			data.write(0x48);
+			data.write(0xb8);
+			for (int immIndex = 0; immIndex < Long.BYTES; immIndex++) {
+				data.write(sequenceIndex + immIndex);
+			}
+			// nop
+			boundaries.add(Long.valueOf(data.size()));
+			data.write(0x90);
+			// mov ecx, imm32
+			boundaries.add(Long.valueOf(data.size()));
+			data.write(0xb9);
+			for (int immIndex = 0; immIndex < Integer.BYTES; immIndex++) {
+				data.write(sequenceIndex >> (immIndex * 8));
+			}
+			// mov rbx, rax
+			boundaries.add(Long.valueOf(data.size()));
+			data.write(0x48);
+			data.write(0x89);
+			data.write(0xc3);
+		}
+		boundaries.add(Long.valueOf(data.size()));
+		return data.toByteArray();
+	}
+
+	private static String render(FileScannerResult result, FileScannerResultRenderHandler renderHandler, long offset,
+			long[] decoded) throws IOException {
+		StringWriter text = new StringWriter();
+
+		try (RenderOutput out = new RenderOutput(new PlainTextRenderer(text, false))) {
+			decoded[0] = result.render(out, renderHandler, offset);
+		}
+		return text.toString();
+	}
+
+	private FileScanner scan(byte[] data) throws IOException, InterruptedException {
+		Path file = Files.write(this.tempDir.resolve(getClass().getSimpleName() + ".bin"), data);
+		TestStatus status = new TestStatus();
+		FileScanner fileScanner = FileScanner.scan(file, Collections.emptyList(), status);
+
+		status.await();
+		Assertions.assertEquals(Collections.emptyList(), status.exceptions());
+		return fileScanner;
+	}
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import de.carne.filescanner.engine.FileScanner;
+import de.carne.filescanner.engine.FileScannerResult;
+import de.carne.filescanner.engine.transfer.RenderCache;
+import de.carne.filescanner.engine.transfer.RenderOutput;
+import de.carne.filescanner.engine.transfer.Renderer;
+import de.carne.filescanner.engine.transfer.renderer.PlainTextRenderer;
+import de.carne.test.annotation.io.TempDir;
+import de.carne.test.extension.io.TempPathExtension;
+
+/**
+ * Test {@linkplain RenderCache} class.
+ */
+@ExtendWith(TempPathExtension.class)
+class RenderCacheTest {
+
+	private static final int RECORD_COUNT = 1000;
+	private static final long SMALL_BUDGET = 0x1000;
+
+	@SuppressWarnings("null")
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testCachedRender() throws IOException, InterruptedException {
+		TestRecordsFormat format = new TestRecordsFormat(RECORD_COUNT);
+
+		try (FileScanner fileScanner = scan(format)) {
+			FileScannerResult result = fileScanner.result();
+			String renderedText = render(result, null);
+			RenderCache renderCache = new RenderCache();
+			int renderedValues = format.renderedValues();
+
+			Assertions.assertEquals(RECORD_COUNT, renderedValues);
+			Assertions.assertEquals(renderedText, render(result, renderCache));
+			Assertions.assertEquals(2 * renderedValues, format.renderedValues());
+			Assertions.assertTrue(renderCache.size() > 0);
+
+			// Cached output is replayed without rendering the results again
+			Assertions.assertEquals(renderedText, render(result, renderCache));
+			Assertions.assertEquals(2 * renderedValues, format.renderedValues());
+
+			renderCache.clear();
+
+			Assertions.assertEquals(0, renderCache.size());
+			Assertions.assertEquals(renderedText, render(result, renderCache));
+			Assertions.assertEquals(3 * renderedValues, format.renderedValues());
+		}
+	}
+
+	@Test
+	void testCacheBudget() throws IOException, InterruptedException {
+		TestRecordsFormat format = new TestRecordsFormat(RECORD_COUNT);
+
+		try (FileScanner fileScanner = scan(format)) {
+			FileScannerResult result = fileScanner.result();
+			String renderedText = render(result, null);
+			RenderCache smallRenderCache = new RenderCache(SMALL_BUDGET);
+
+			Assertions.assertEquals(renderedText, render(result, smallRenderCache));
+			Assertions.assertTrue(smallRenderCache.size() > 0);
+			Assertions.assertTrue(smallRenderCache.size() <= SMALL_BUDGET);
+
+			// Evicted output is rendered again
+			int renderedValues = format.renderedValues();
+
+			Assertions.assertEquals(renderedText, render(result, smallRenderCache));
+			Assertions.assertTrue(smallRenderCache.size() <= SMALL_BUDGET);
+			Assertions.assertTrue(format.renderedValues() > renderedValues);
+		}
+	}
+
+	private static String render(FileScannerResult result, @Nullable RenderCache renderCache) throws IOException {
+		StringWriter text = new StringWriter();
+
+		try (Renderer renderer = new PlainTextRenderer(text, false)) {
+			if (renderCache != null) {
+				renderCache.render(result, renderer, null, 0);
+			} else {
+				RenderOutput.render(result, renderer, null, 0);
+			}
+		}
+		for (FileScannerResult child : result.children()) {
+			text.write(render(child, renderCache));
+		}
+		return text.toString();
+	}
+
+	private FileScanner scan(TestRecordsFormat format) throws IOException, InterruptedException {
+		Path file = TestRecordsFormat.writeTestFile(this.tempDir.resolve(getClass().getSimpleName() + ".bin"),
+				RECORD_COUNT);
+		TestStatus status = new TestStatus();
+		FileScanner fileScanner = FileScanner.scan(file, Arrays.asList(format), status);
+
+		status.await();
+		Assertions.assertEquals(Collections.emptyList(), status.exceptions());
+		return fileScanner;
+	}
+
+}
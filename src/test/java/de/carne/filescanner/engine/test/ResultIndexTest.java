@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import de.carne.filescanner.engine.FileScanner;
+import de.carne.filescanner.engine.FileScannerResult;
+import de.carne.test.annotation.io.TempDir;
+import de.carne.test.extension.io.TempPathExtension;
+
+/**
+ * Test the result index queries ({@linkplain FileScanner#getResultsAt(FileScannerResult, long)},
+ * {@linkplain FileScanner#getResultsIn(FileScannerResult, long, long)} and
+ * {@linkplain FileScanner#getInnermostResultAt(FileScannerResult, long)}).
+ */
+@ExtendWith(TempPathExtension.class)
+class ResultIndexTest {
+
+	private static final String HEAP_BUDGET_PROPERTY = FileScanner.class.getName() + ".heapBudget";
+
+	private static final int RECORD_COUNT = 1000;
+
+	@SuppressWarnings("null")
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testResultsAt() throws IOException, InterruptedException {
+		try (FileScanner fileScanner = scan()) {
+			assertResultsAt(fileScanner);
+		}
+	}
+
+	@Test
+	void testResultsAtWithResultSpilling() throws IOException, InterruptedException {
+		System.setProperty(HEAP_BUDGET_PROPERTY, "1");
+		try (FileScanner fileScanner = scan()) {
+			Assertions.assertTrue(fileScanner.progress().spilledResults() > 0);
+
+			// Spilled results are resolved via the index without being held by the tree
+			System.gc();
+			assertResultsAt(fileScanner);
+		} finally {
+			System.clearProperty(HEAP_BUDGET_PROPERTY);
+		}
+	}
+
+	@Test
+	void testResultsIn() throws IOException, InterruptedException {
+		try (FileScanner fileScanner = scan()) {
+			FileScannerResult inputResult = fileScanner.result();
+
+			// The format result plus a record and a value result per record
+			Assertions.assertEquals(1 + 2 * RECORD_COUNT,
+					fileScanner.getResultsIn(inputResult, 0, inputResult.size()).length);
+
+			// Two adjacent records overlapping the range (the first one with its value only)
+			long rangeStart = TestRecordsFormat.recordStart(10) + Integer.BYTES;
+			long rangeEnd = TestRecordsFormat.recordStart(11) + 1;
+
+			List<String> expected = new ArrayList<>(expectedResultsAt(rangeStart));
+
+			expected.add(TestRecordsFormat.RECORD_NAME + "[" + TestRecordsFormat.recordStart(11) + "]");
+
+			Assertions.assertEquals(expected, describe(fileScanner.getResultsIn(inputResult, rangeStart, rangeEnd)));
+			Assertions.assertEquals(4, expected.size());
+			Assertions.assertEquals(0,
+					fileScanner.getResultsIn(inputResult, inputResult.size(), inputResult.size() + 1).length);
+		}
+	}
+
+	private static void assertResultsAt(FileScanner fileScanner) {
+		FileScannerResult inputResult = fileScanner.result();
+
+		for (long position = 0; position < inputResult.size(); position += 3) {
+			List<String> expected = expectedResultsAt(position);
+			FileScannerResult[] results = fileScanner.getResultsAt(inputResult, position);
+
+			Assertions.assertEquals(expected, describe(results), "Position: " + position);
+
+			FileScannerResult innermostResult = fileScanner.getInnermostResultAt(inputResult, position);
+
+			Assertions.assertNotNull(innermostResult);
+			Assertions.assertEquals(expected.get(expected.size() - 1),
+					describe(Collections.singletonList(innermostResult)).get(0));
+		}
+		Assertions.assertNull(fileScanner.getInnermostResultAt(inputResult, inputResult.size()));
+	}
+
+	private static List<String> expectedResultsAt(long position) {
+		List<String> expected = new ArrayList<>();
+
+		expected.add(TestRecordsFormat.FORMAT_NAME + "[0]");
+		if (position >= TestRecordsFormat.MAGIC.length) {
+			int recordIndex = (int) ((position - TestRecordsFormat.MAGIC.length) / TestRecordsFormat.RECORD_SIZE);
+
+			expected.add(TestRecordsFormat.RECORD_NAME + "[" + TestRecordsFormat.recordStart(recordIndex) + "]");
+			if (position - TestRecordsFormat.recordStart(recordIndex) >= Integer.BYTES) {
+				expected.add(TestRecordsFormat.VALUE_NAME + "[" + (TestRecordsFormat.recordStart(recordIndex)
+						+ Integer.BYTES) + "]");
+			}
+		}
+		return expected;
+	}
+
+	private static List<String> describe(FileScannerResult[] results) {
+		return describe(Arrays.asList(results));
+	}
+
+	private static List<String> describe(List<FileScannerResult> results) {
+		List<String> descriptions = new ArrayList<>(results.size());
+
+		for (FileScannerResult result : results) {
+			descriptions.add(result.name() + "[" + result.start() + "]");
+		}
+		return descriptions;
+	}
+
+	private FileScanner scan() throws IOException, InterruptedException {
+		Path file = TestRecordsFormat.writeTestFile(this.tempDir.resolve(getClass().getSimpleName() + ".bin"),
+				RECORD_COUNT);
+		TestStatus status = new TestStatus();
+		FileScanner fileScanner = FileScanner.scan(file, Arrays.asList(new TestRecordsFormat(RECORD_COUNT)), status);
+
+		status.await();
+		Assertions.assertEquals(Collections.emptyList(), status.exceptions());
+		return fileScanner;
+	}
+
+}
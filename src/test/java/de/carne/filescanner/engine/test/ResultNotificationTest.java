@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import de.carne.filescanner.engine.FileScanner;
+import de.carne.filescanner.engine.FileScannerResult;
+import de.carne.filescanner.engine.FileScannerStatus;
+import de.carne.test.annotation.io.TempDir;
+import de.carne.test.extension.io.TempPathExtension;
+
+/**
+ * Test the reporting of committed results via {@linkplain FileScannerStatus#scanResult(FileScanner, FileScannerResult)}
+ * and {@linkplain FileScannerStatus#scanResults(FileScanner, List)}.
+ */
+@ExtendWith(TempPathExtension.class)
+class ResultNotificationTest {
+
+	private static final String NOTIFY_BATCH_SIZE_PROPERTY = FileScanner.class.getName() + ".notifyBatchSize";
+	private static final String NOTIFY_LATENCY_PROPERTY = FileScanner.class.getName() + ".notifyLatency";
+
+	private static final String DISPATCHER_THREAD_NAME = "FileScannerResultNotifier";
+
+	private static final int RECORD_COUNT = 1000;
+	private static final int BATCH_SIZE = 16;
+
+	@SuppressWarnings("null")
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testSynchronousNotification() throws IOException, InterruptedException {
+		NotificationStatus status = new NotificationStatus(true);
+
+		scan(status);
+
+		// Every commit is reported on the scanning threads right away
+		Assertions.assertEquals(Collections.singleton(Integer.valueOf(1)), status.batchSizes());
+		Assertions.assertFalse(status.threadNames().contains(DISPATCHER_THREAD_NAME));
+		Assertions.assertTrue(status.reportedCount() >= status.distinctResultKeys().size());
+	}
+
+	@Test
+	void testBatchedNotification() throws IOException, InterruptedException {
+		NotificationStatus synchronousStatus = new NotificationStatus(true);
+		NotificationStatus status = new NotificationStatus(false);
+
+		scan(synchronousStatus);
+		System.setProperty(NOTIFY_BATCH_SIZE_PROPERTY, Integer.toString(BATCH_SIZE));
+		try {
+			scan(status);
+		} finally {
+			System.clearProperty(NOTIFY_BATCH_SIZE_PROPERTY);
+		}
+
+		// All committed results are reported (before the scan finishes) via the dispatcher thread
+		Assertions.assertEquals(synchronousStatus.distinctResultKeys(), status.distinctResultKeys());
+		Assertions.assertEquals(Collections.singleton(DISPATCHER_THREAD_NAME), status.threadNames());
+		for (Integer batchSize : status.batchSizes()) {
+			Assertions.assertTrue(0 < batchSize.intValue() && batchSize.intValue() <= BATCH_SIZE);
+		}
+		Assertions.assertTrue(status.reportedCount() <= synchronousStatus.reportedCount());
+	}
+
+	@Test
+	void testCoalescedNotification() throws IOException, InterruptedException {
+		NotificationStatus synchronousStatus = new NotificationStatus(true);
+		NotificationStatus status = new NotificationStatus(false);
+
+		scan(synchronousStatus);
+		System.setProperty(NOTIFY_BATCH_SIZE_PROPERTY, Integer.toString(Integer.MAX_VALUE));
+		System.setProperty(NOTIFY_LATENCY_PROPERTY, Long.toString(Long.MAX_VALUE / 2));
+		try {
+			scan(status);
+		} finally {
+			System.clearProperty(NOTIFY_BATCH_SIZE_PROPERTY);
+			System.clearProperty(NOTIFY_LATENCY_PROPERTY);
+		}
+
+		// Nothing is dispatched until the final flush; hence each result is reported exactly once
+		Assertions.assertEquals(synchronousStatus.distinctResultKeys(), status.distinctResultKeys());
+		Assertions.assertEquals(Collections.singleton(Integer.valueOf(status.reportedCount())), status.batchSizes());
+		Assertions.assertEquals(status.distinctResultKeys().size(), status.reportedCount());
+		Assertions.assertTrue(status.reportedCount() < synchronousStatus.reportedCount());
+	}
+
+	private void scan(NotificationStatus status) throws IOException, InterruptedException {
+		Path file = TestRecordsFormat.writeTestFile(this.tempDir.resolve(getClass().getSimpleName() + ".bin"),
+				RECORD_COUNT);
+
+		try (FileScanner fileScanner = FileScanner.scan(file, Arrays.asList(new TestRecordsFormat(RECORD_COUNT)),
+				status)) {
+			status.await();
+			Assertions.assertEquals(Collections.emptyList(), status.exceptions());
+			Assertions.assertTrue(status.reportedCount() > 0);
+			Assertions.assertFalse(status.isReportedAfterFinish());
+		}
+	}
+
+	private static class NotificationStatus extends TestStatus {
+
+		private final boolean synchronous;
+		private final List<ByteBuffer> reportedResultKeys = new ArrayList<>();
+		private final Set<Integer> batchSizes = new HashSet<>();
+		private final Set<String> threadNames = new HashSet<>();
+		private boolean reportedAfterFinish = false;
+		private boolean finished = false;
+
+		NotificationStatus(boolean synchronous) {
+			this.synchronous = synchronous;
+		}
+
+		synchronized int reportedCount() {
+			return this.reportedResultKeys.size();
+		}
+
+		synchronized Set<ByteBuffer> distinctResultKeys() {
+			return new HashSet<>(this.reportedResultKeys);
+		}
+
+		synchronized Set<Integer> batchSizes() {
+			return new HashSet<>(this.batchSizes);
+		}
+
+		synchronized Set<String> threadNames() {
+			return new HashSet<>(this.threadNames);
+		}
+
+		synchronized boolean isReportedAfterFinish() {
+			return this.reportedAfterFinish;
+		}
+
+		@Override
+		public boolean isSynchronousScanResults() {
+			return this.synchronous;
+		}
+
+		@Override
+		public synchronized void scanFinished(FileScanner scanner) {
+			this.finished = true;
+			super.scanFinished(scanner);
+		}
+
+		@Override
+		public synchronized void scanResults(FileScanner scanner, List<FileScannerResult> results) {
+			// Record the number of distinct results to detect uncoalesced commits within a batch
+			this.batchSizes.add(new HashSet<>(results).size() == results.size() ? results.size() : -1);
+			super.scanResults(scanner, results);
+		}
+
+		@Override
+		public synchronized void scanResult(FileScanner scanner, FileScannerResult result) {
+			if (this.synchronous) {
+				this.batchSizes.add(1);
+			}
+			this.threadNames.add(Thread.currentThread().getName());
+			this.reportedAfterFinish = this.reportedAfterFinish || this.finished;
+			this.reportedResultKeys.add(ByteBuffer.wrap(result.key()));
+		}
+
+	}
+
+}
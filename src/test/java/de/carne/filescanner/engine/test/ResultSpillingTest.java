@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import de.carne.filescanner.engine.FileScanner;
+import de.carne.filescanner.engine.FileScannerProgress;
+import de.carne.filescanner.engine.FileScannerResult;
+import de.carne.filescanner.engine.FileScannerResultDecodeContext;
+import de.carne.filescanner.engine.FileScannerResultListener;
+import de.carne.filescanner.engine.FileScannerStatus;
+import de.carne.filescanner.engine.format.CompositeSpec;
+import de.carne.filescanner.engine.format.DWordSpec;
+import de.carne.filescanner.engine.format.SequenceSpec;
+import de.carne.filescanner.engine.format.StructSpec;
+import de.carne.filescanner.engine.spi.Format;
+import de.carne.filescanner.engine.transfer.RenderOutput;
+import de.carne.filescanner.engine.transfer.renderer.PlainTextRenderer;
+import de.carne.test.annotation.io.TempDir;
+import de.carne.test.extension.io.TempPathExtension;
+
+/**
+ * Test the spilling of results exceeding the heap budget (system property
+ * {@code de.carne.filescanner.engine.FileScanner.heapBudget}).
+ */
+@ExtendWith(TempPathExtension.class)
+class ResultSpillingTest {
+
+	private static final String HEAP_BUDGET_PROPERTY = FileScanner.class.getName() + ".heapBudget";
+
+	private static final byte[] MAGIC = new byte[] { 'S', 'P', 'L', '!' };
+	private static final int RECORD_COUNT = 1000;
+
+	@SuppressWarnings("null")
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testSpillAndPageIn() throws IOException, InterruptedException {
+		String unspilledDump;
+
+		System.setProperty(HEAP_BUDGET_PROPERTY, "0");
+		try (FileScanner fileScanner = scan(null)) {
+			Assertions.assertEquals(0, fileScanner.progress().spilledResults());
+
+			unspilledDump = dumpResults(fileScanner.result());
+		} finally {
+			System.clearProperty(HEAP_BUDGET_PROPERTY);
+		}
+
+		System.setProperty(HEAP_BUDGET_PROPERTY, "1");
+		try (FileScanner fileScanner = scan(null)) {
+			FileScannerProgress spilledProgress = fileScanner.progress();
+
+			// Each record and each record field is spilled (only the top-level result and inputs are kept)
+			Assertions.assertEquals(2l * RECORD_COUNT, spilledProgress.spilledResults());
+			Assertions.assertEquals(0, spilledProgress.pagedInResults());
+
+			// Spilled results not in use are released by the next collection and paged in when accessed again
+			System.gc();
+
+			String spilledDump = dumpResults(fileScanner.result());
+			FileScannerProgress pagedInProgress = fileScanner.progress();
+
+			Assertions.assertEquals(unspilledDump, spilledDump);
+			Assertions.assertTrue(pagedInProgress.pagedInResults() > 0);
+			Assertions.assertTrue(pagedInProgress.pagedInResults() <= pagedInProgress.spilledResults());
+		} finally {
+			System.clearProperty(HEAP_BUDGET_PROPERTY);
+		}
+	}
+
+	@Test
+	void testStableIdentity() throws IOException, InterruptedException {
+		Set<FileScannerResult> heldResults = Collections.newSetFromMap(new IdentityHashMap<>());
+		FileScannerResultListener holdingListener = new FileScannerResultListener() {
+
+			@Override
+			public void resultFinished(FileScanner scanner, @Nullable FileScannerResult parent,
+					FileScannerResult result, @Nullable FileScannerResult formatResult) {
+				if (result.type() != FileScannerResult.Type.INPUT) {
+					result.setData(ResultSpillingTest.class, result.name());
+					synchronized (heldResults) {
+						heldResults.add(result);
+					}
+				}
+			}
+
+		};
+
+		System.setProperty(HEAP_BUDGET_PROPERTY, "1");
+		try (FileScanner fileScanner = scan(holdingListener)) {
+			Assertions.assertEquals(2l * RECORD_COUNT, fileScanner.progress().spilledResults());
+
+			// Results in use are not paged in anew; hence their identity and custom data are kept
+			Assertions.assertEquals(heldResults.size(), assertHeldResults(fileScanner.result(), heldResults));
+			Assertions.assertEquals(0, fileScanner.progress().pagedInResults());
+		} finally {
+			System.clearProperty(HEAP_BUDGET_PROPERTY);
+		}
+	}
+
+	@Test
+	void testTransientData() throws IOException, InterruptedException {
+		FileScannerResultListener markingListener = new FileScannerResultListener() {
+
+			@Override
+			public void resultFinished(FileScanner scanner, @Nullable FileScannerResult parent,
+					FileScannerResult result, @Nullable FileScannerResult formatResult) {
+				result.setData(ResultSpillingTest.class, result.name());
+			}
+
+		};
+
+		System.setProperty(HEAP_BUDGET_PROPERTY, "1");
+		try (FileScanner fileScanner = scan(markingListener)) {
+			Assertions.assertEquals(2l * RECORD_COUNT, fileScanner.progress().spilledResults());
+
+			System.gc();
+
+			FileScannerResult formatResult = fileScanner.result().children()[0];
+
+			// Custom data is not spilled; hence it is dropped along with the released results
+			Assertions.assertNotNull(formatResult.getData(ResultSpillingTest.class, String.class));
+			Assertions.assertEquals(0, countMarkedResults(formatResult));
+			Assertions.assertTrue(fileScanner.progress().pagedInResults() > 0);
+		} finally {
+			System.clearProperty(HEAP_BUDGET_PROPERTY);
+		}
+	}
+
+	private static int assertHeldResults(FileScannerResult result, Set<FileScannerResult> heldResults) {
+		int heldCount = 0;
+
+		for (FileScannerResult child : result.children()) {
+			if (child.type() != FileScannerResult.Type.INPUT) {
+				Assertions.assertTrue(heldResults.contains(child));
+				Assertions.assertEquals(child.name(), child.getData(ResultSpillingTest.class, String.class));
+				heldCount++;
+			}
+			heldCount += assertHeldResults(child, heldResults);
+		}
+		return heldCount;
+	}
+
+	private static int countMarkedResults(FileScannerResult result) {
+		int markedCount = 0;
+
+		for (FileScannerResult child : result.children()) {
+			if (child.getData(ResultSpillingTest.class, String.class) != null) {
+				markedCount++;
+			}
+			markedCount += countMarkedResults(child);
+		}
+		return markedCount;
+	}
+
+	private static String dumpResults(FileScannerResult result) throws IOException {
+		StringWriter text = new StringWriter();
+
+		try (RenderOutput out = new RenderOutput(new PlainTextRenderer(text, false))) {
+			dumpResult(out, result);
+		}
+		return text.toString();
+	}
+
+	private static void dumpResult(RenderOutput out, FileScannerResult result) throws IOException {
+		out.writeln(result.type() + ":" + result.name() + "[" + result.start() + "-" + result.end() + "]"
+				+ new TreeMap<>(result.values()));
+		if (result.type() != FileScannerResult.Type.INPUT) {
+			result.render(out, null, 0);
+		}
+		for (FileScannerResult child : result.children()) {
+			dumpResult(out, child);
+		}
+	}
+
+	private FileScanner scan(@Nullable FileScannerResultListener listener) throws IOException, InterruptedException {
+		Path file = this.tempDir.resolve(getClass().getSimpleName() + ".bin");
+		ByteBuffer data = ByteBuffer.allocate(MAGIC.length + RECORD_COUNT * 2 * Integer.BYTES)
+				.order(ByteOrder.LITTLE_ENDIAN);
+
+		data.put(MAGIC);
+		for (int recordIndex = 0; recordIndex < RECORD_COUNT; recordIndex++) {
+			data.putInt(recordIndex);
+			data.putInt(recordIndex * 7);
+		}
+		Files.write(file, data.array());
+
+		Format format = new RecordsFormat();
+		Status status = new Status();
+		FileScanner fileScanner = (listener != null ? FileScanner.scan(file, Arrays.asList(format), status, listener)
+				: FileScanner.scan(file, Arrays.asList(format), status));
+
+		status.await();
+		return fileScanner;
+	}
+
+	private static class RecordsFormat extends Format {
+
+		private final CompositeSpec formatSpec;
+
+		RecordsFormat() {
+			super("Test records data");
+
+			StructSpec header = new StructSpec();
+
+			header.add(new DWordSpec("magic").validate(ByteBuffer.wrap(MAGIC).order(ByteOrder.LITTLE_ENDIAN).getInt()));
+
+			StructSpec field = new StructSpec();
+
+			field.result("Field");
+			field.add(new DWordSpec("field")).bind(field);
+
+			StructSpec record = new StructSpec();
+
+			record.result("Record");
+			record.add(new DWordSpec("index")).bind(record);
+			record.add(field);
+
+			StructSpec formatSpec = new StructSpec();
+
+			formatSpec.result("Test records data");
+			formatSpec.add(header);
+			formatSpec.add(new SequenceSpec(record).size(RECORD_COUNT));
+			this.formatSpec = formatSpec;
+			registerHeaderMagic(MAGIC);
+			registerHeaderSpec(header);
+		}
+
+		@Override
+		public FileScannerResult decode(FileScannerResultDecodeContext context) throws IOException {
+			return context.decodeComposite(this.formatSpec);
+		}
+
+	}
+
+	private static class Status implements FileScannerStatus {
+
+		private boolean finished = false;
+
+		Status() {
+			// Make class package accessible
+		}
+
+		synchronized void await() throws InterruptedException {
+			while (!this.finished) {
+				wait();
+			}
+		}
+
+		@Override
+		public void scanStarted(FileScanner scanner) {
+			// Nothing to do
+		}
+
+		@Override
+		public synchronized void scanFinished(FileScanner scanner) {
+			this.finished = true;
+			notifyAll();
+		}
+
+		@Override
+		public void scanProgress(FileScanner scanner, FileScannerProgress progress) {
+			// Nothing to do
+		}
+
+		@Override
+		public void scanResult(FileScanner scanner, FileScannerResult result) {
+			// Nothing to do
+		}
+
+		@Override
+		public void scanException(FileScanner scanner, Exception cause) {
+			Assertions.fail(cause);
+		}
+
+	}
+
+}
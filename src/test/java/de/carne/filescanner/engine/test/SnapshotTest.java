@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import de.carne.filescanner.engine.FileScanner;
+import de.carne.filescanner.engine.FileScannerProgress;
+import de.carne.filescanner.engine.FileScannerResult;
+import de.carne.filescanner.engine.FileScannerResultDecodeContext;
+import de.carne.filescanner.engine.FileScannerStatus;
+import de.carne.filescanner.engine.format.CompositeSpec;
+import de.carne.filescanner.engine.format.FormatSpecDefinition;
+import de.carne.filescanner.engine.spi.Format;
+import de.carne.filescanner.engine.transfer.RenderOutput;
+import de.carne.filescanner.engine.transfer.renderer.PlainTextRenderer;
+import de.carne.test.annotation.io.TempDir;
+import de.carne.test.extension.io.TempPathExtension;
+import de.carne.util.Lazy;
+
+/**
+ * Test the saving and restoring of scan results via snapshot files.
+ */
+@ExtendWith(TempPathExtension.class)
+class SnapshotTest {
+
+	private static final byte[] MAGIC = new byte[] { 'R', 'E', 'C', '!' };
+	private static final int RECORD_COUNT = 100;
+
+	private static final String RECORDS1_RESOURCE = "Records1.formatspec";
+	private static final String RECORDS2_RESOURCE = "Records2.formatspec";
+
+	@SuppressWarnings("null")
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testSaveAndRestore() throws IOException, InterruptedException {
+		Path file = writeTestFile();
+		Path snapshotFile = this.tempDir.resolve(getClass().getSimpleName() + ".snapshot");
+		String scannedDump;
+
+		try (FileScanner fileScanner = scan(file)) {
+			scannedDump = dumpResults(fileScanner.result());
+			// The header and the records
+			Assertions.assertEquals(1 + RECORD_COUNT, fileScanner.result().children()[0].children().length);
+			fileScanner.save(snapshotFile);
+		}
+
+		// Spec identities are resolved against the submitted (and hence a fresh) format instance
+		Status status = new Status();
+
+		try (FileScanner fileScanner = FileScanner.open(snapshotFile, file,
+				Arrays.asList(new RecordsFormat(RECORDS1_RESOURCE)), status)) {
+			status.await();
+
+			Assertions.assertEquals(Collections.emptyList(), status.exceptions());
+			Assertions.assertEquals(scannedDump, dumpResults(fileScanner.result()));
+		}
+	}
+
+	@Test
+	void testRestoreChangedDefinition() throws IOException, InterruptedException {
+		IOException restoreException = assertRestoreFailure(Arrays.asList(new RecordsFormat(RECORDS2_RESOURCE)));
+
+		Assertions.assertTrue(restoreException.getMessage().contains("does not match format spec definition"));
+	}
+
+	@Test
+	void testRestoreUnavailableFormat() throws IOException, InterruptedException {
+		IOException restoreException = assertRestoreFailure(Collections.emptyList());
+
+		Assertions.assertTrue(restoreException.getMessage().contains("requires unavailable format"));
+	}
+
+	private IOException assertRestoreFailure(Collection<Format> formats) throws IOException, InterruptedException {
+		Path file = writeTestFile();
+		Path snapshotFile = this.tempDir.resolve(getClass().getSimpleName() + ".snapshot");
+
+		try (FileScanner fileScanner = scan(file)) {
+			fileScanner.save(snapshotFile);
+		}
+
+		Status status = new Status();
+		List<Exception> exceptions;
+
+		try (FileScanner fileScanner = FileScanner.open(snapshotFile, file, formats, status)) {
+			status.await();
+			exceptions = status.exceptions();
+
+			// Nothing is restored from a snapshot not matching the submitted formats
+			Assertions.assertEquals(0, fileScanner.result().children().length);
+		}
+		Assertions.assertEquals(1, exceptions.size());
+		Assertions.assertInstanceOf(IOException.class, exceptions.get(0));
+		return (IOException) exceptions.get(0);
+	}
+
+	private Path writeTestFile() throws IOException {
+		Path file = this.tempDir.resolve(getClass().getSimpleName() + ".bin");
+		ByteBuffer data = ByteBuffer.allocate(MAGIC.length + Integer.BYTES + RECORD_COUNT * 2 * Integer.BYTES)
+				.order(ByteOrder.LITTLE_ENDIAN);
+
+		data.put(MAGIC);
+		data.putInt(RECORD_COUNT);
+		for (int recordIndex = 0; recordIndex < RECORD_COUNT; recordIndex++) {
+			data.putInt(recordIndex);
+			data.putInt(recordIndex * 7);
+		}
+		Files.write(file, data.array());
+		return file;
+	}
+
+	private static FileScanner scan(Path file) throws IOException, InterruptedException {
+		Status status = new Status();
+		FileScanner fileScanner = FileScanner.scan(file, Arrays.asList(new RecordsFormat(RECORDS1_RESOURCE)), status);
+
+		status.await();
+		Assertions.assertEquals(Collections.emptyList(), status.exceptions());
+		return fileScanner;
+	}
+
+	private static String dumpResults(FileScannerResult result) throws IOException {
+		StringWriter text = new StringWriter();
+
+		try (RenderOutput out = new RenderOutput(new PlainTextRenderer(text, false))) {
+			dumpResult(out, result);
+		}
+		return text.toString();
+	}
+
+	private static void dumpResult(RenderOutput out, FileScannerResult result) throws IOException {
+		out.writeln(result.type() + ":" + result.name() + "[" + result.start() + "-" + result.end() + "]"
+				+ new TreeMap<>(result.values()));
+		if (result.type() != FileScannerResult.Type.INPUT) {
+			result.render(out, null, 0);
+		}
+		for (FileScannerResult child : result.children()) {
+			dumpResult(out, child);
+		}
+	}
+
+	private static class RecordsFormat extends Format {
+
+		private final RecordsFormatSpecDefinition formatSpecDefinition;
+
+		RecordsFormat(String resource) {
+			super("Test records data");
+			this.formatSpecDefinition = new RecordsFormatSpecDefinition(resource);
+			registerSpecDefinition(this.formatSpecDefinition);
+			registerHeaderMagic(MAGIC);
+		}
+
+		@Override
+		protected void load() {
+			this.formatSpecDefinition.load();
+			registerHeaderSpec(this.formatSpecDefinition.headerSpec());
+		}
+
+		@Override
+		public FileScannerResult decode(FileScannerResultDecodeContext context) throws IOException {
+			return context.decodeComposite(this.formatSpecDefinition.formatSpec());
+		}
+
+	}
+
+	private static class RecordsFormatSpecDefinition extends FormatSpecDefinition {
+
+		private final String resource;
+
+		RecordsFormatSpecDefinition(String resource) {
+			this.resource = resource;
+		}
+
+		@Override
+		protected URL getFormatSpecResource() {
+			return Objects.requireNonNull(getClass().getResource(this.resource));
+		}
+
+		private Lazy<CompositeSpec> recordsFormatSpec = resolveLazy("RECORDS_FORMAT", CompositeSpec.class);
+		private Lazy<CompositeSpec> recordsHeaderSpec = resolveLazy("RECORDS_HEADER", CompositeSpec.class);
+
+		CompositeSpec formatSpec() {
+			return this.recordsFormatSpec.get();
+		}
+
+		CompositeSpec headerSpec() {
+			return this.recordsHeaderSpec.get();
+		}
+
+	}
+
+	private static class Status implements FileScannerStatus {
+
+		private boolean finished = false;
+		private final List<Exception> exceptions = new ArrayList<>();
+
+		Status() {
+			// Make class package accessible
+		}
+
+		synchronized void await() throws InterruptedException {
+			while (!this.finished) {
+				wait();
+			}
+		}
+
+		synchronized List<Exception> exceptions() {
+			return new ArrayList<>(this.exceptions);
+		}
+
+		@Override
+		public void scanStarted(FileScanner scanner) {
+			// Nothing to do
+		}
+
+		@Override
+		public synchronized void scanFinished(FileScanner scanner) {
+			this.finished = true;
+			notifyAll();
+		}
+
+		@Override
+		public void scanProgress(FileScanner scanner, FileScannerProgress progress) {
+			// Nothing to do
+		}
+
+		@Override
+		public void scanResult(FileScanner scanner, FileScannerResult result) {
+			// Nothing to do
+		}
+
+		@Override
+		public synchronized void scanException(FileScanner scanner, Exception cause) {
+			this.exceptions.add(cause);
+		}
+
+	}
+
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import de.carne.filescanner.engine.FileScanner;
+import de.carne.filescanner.engine.FileScannerProgress;
+import de.carne.filescanner.engine.FileScannerResult;
+import de.carne.filescanner.engine.FileScannerResultDecodeContext;
+import de.carne.filescanner.engine.FileScannerStatus;
+import de.carne.filescanner.engine.format.CompositeSpec;
+import de.carne.filescanner.engine.format.DWordSpec;
+import de.carne.filescanner.engine.format.RangeAttributeSpec;
+import de.carne.filescanner.engine.format.StructSpec;
+import de.carne.filescanner.engine.spi.Format;
+import de.carne.filescanner.engine.transfer.FileScannerResultRenderHandler;
+import de.carne.filescanner.engine.transfer.RenderOutput;
+import de.carne.filescanner.engine.transfer.handler.StyledTextRenderHandler;
+import de.carne.filescanner.engine.transfer.renderer.PlainTextRenderer;
+import de.carne.test.annotation.io.TempDir;
+import de.carne.test.extension.io.TempPathExtension;
+
+/**
+ * Test the windowed rendering of {@linkplain StyledTextRenderHandler}.
+ * <p>
+ * The test texts are large enough to span several line checkpoints (see system property
+ * {@code de.carne.filescanner.engine.transfer.handler.StyledTextRenderHandler.checkpointInterval}) and contain multi
+ * byte characters as well as surrogate pairs.
+ * </p>
+ */
+@ExtendWith(TempPathExtension.class)
+class StyledTextRenderHandlerTest {
+
+	private static final int LINE_COUNT = 3000;
+	private static final int PAGE_LINE_COUNT = 100;
+	private static final int PAGE_BYTE_COUNT = 4096;
+	private static final String SURROGATE_PAIR = "😀";
+
+	@SuppressWarnings("null")
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testUtf8Windows() throws IOException, InterruptedException {
+		runWindows(StyledTextRenderHandler.PLAIN_UTF8_RENDER_HANDLER, StandardCharsets.UTF_8, mixedText());
+	}
+
+	@Test
+	void testUtf16LEWindows() throws IOException, InterruptedException {
+		runWindows(StyledTextRenderHandler.PLAIN_UTF16LE_RENDER_HANDLER, StandardCharsets.UTF_16LE, mixedText());
+	}
+
+	@Test
+	void testUtf16BEWindows() throws IOException, InterruptedException {
+		runWindows(StyledTextRenderHandler.PLAIN_UTF16BE_RENDER_HANDLER, StandardCharsets.UTF_16BE, mixedText());
+	}
+
+	@Test
+	void testUtf8SplitSurrogatePairs() {
+		// Shift the pairs by one char to make sure a pair straddles the decode buffer boundaries
+		for (String prefix : Arrays.asList("", "x")) {
+			Assertions.assertTimeoutPreemptively(Duration.ofSeconds(30),
+					() -> runWindows(StyledTextRenderHandler.PLAIN_UTF8_RENDER_HANDLER, StandardCharsets.UTF_8,
+							prefix + surrogatePairText()));
+		}
+	}
+
+	@Test
+	void testUtf16LESplitSurrogatePairs() {
+		// Shift the pairs by one char to make sure a pair straddles the decode buffer boundaries
+		for (String prefix : Arrays.asList("", "x")) {
+			Assertions.assertTimeoutPreemptively(Duration.ofSeconds(30),
+					() -> runWindows(StyledTextRenderHandler.PLAIN_UTF16LE_RENDER_HANDLER, StandardCharsets.UTF_16LE,
+							prefix + surrogatePairText()));
+		}
+	}
+
+	private void runWindows(StyledTextRenderHandler renderHandler, Charset charset, String text)
+			throws IOException, InterruptedException {
+		Path inputFile = writeInputFile(charset, text);
+		TextFormat format = new TextFormat(renderHandler, (int) Files.size(inputFile) - TextFormat.MAGIC.length);
+		Status status = new Status();
+
+		try (FileScanner fileScanner = FileScanner.scan(inputFile, Arrays.asList(format), status)) {
+			status.await();
+
+			FileScannerResult[] results = fileScanner.result().children();
+
+			Assertions.assertEquals(1, results.length);
+
+			FileScannerResult result = results[0];
+			String fullText = render(result, renderHandler, 0, new long[1]);
+
+			Assertions.assertEquals(
+					(new String(TextFormat.MAGIC, charset) + text).replace("\n", System.lineSeparator()), fullText);
+
+			// The first pass creates the checkpoints, the following passes re-use them
+			List<Long> pageOffsets = new ArrayList<>();
+			List<String> pages = new ArrayList<>();
+
+			Assertions.assertEquals(fullText,
+					renderPages(result, renderHandler.lineWindow(0, PAGE_LINE_COUNT), pageOffsets, pages));
+			for (int pageIndex = pages.size() - 1; pageIndex >= 0; pageIndex--) {
+				long pageOffset = pageOffsets.get(pageIndex).longValue();
+				long nextPageOffset = (pageIndex + 1 < pageOffsets.size() ? pageOffsets.get(pageIndex + 1).longValue()
+						: result.size());
+				long[] decoded = new long[1];
+
+				Assertions.assertEquals(pages.get(pageIndex),
+						render(result, renderHandler.lineWindow(0, PAGE_LINE_COUNT), pageOffset, decoded));
+				Assertions.assertEquals(nextPageOffset - pageOffset, decoded[0]);
+				Assertions.assertEquals(pages.get(pageIndex), render(result,
+						renderHandler.lineWindow(pageIndex * (long) PAGE_LINE_COUNT, PAGE_LINE_COUNT), 0, decoded));
+			}
+			Assertions.assertEquals(fullText, renderPages(result, renderHandler.byteWindow(PAGE_BYTE_COUNT),
+					new ArrayList<>(), new ArrayList<>()));
+		}
+	}
+
+	private static String renderPages(FileScannerResult result, FileScannerResultRenderHandler windowHandler,
+			List<Long> pageOffsets, List<String> pages) throws IOException {
+		StringBuilder text = new StringBuilder();
+		long offset = 0;
+		long[] decoded = new long[1];
+
+		while (offset < result.size()) {
+			String page = render(result, windowHandler, offset, decoded);
+
+			Assertions.assertTrue(decoded[0] > 0);
+
+			pageOffsets.add(offset);
+			pages.add(page);
+			text.append(page);
+			offset += decoded[0];
+		}
+		return text.toString();
+	}
+
+	private static String render(FileScannerResult result, FileScannerResultRenderHandler renderHandler, long offset,
+			long[] decoded) throws IOException {
+		StringWriter text = new StringWriter();
+
+		try (RenderOutput out = new RenderOutput(new PlainTextRenderer(text, false))) {
+			decoded[0] = result.render(out, renderHandler, offset);
+		}
+		return text.toString();
+	}
+
+	private static String mixedText() {
+		StringBuilder text = new StringBuilder();
+
+		for (int line = 0; line < LINE_COUNT; line++) {
+			text.append("Line ").append(line).append(':');
+			for (int column = 0; column < line % 40; column++) {
+				text.append(column % 7 == 0 ? SURROGATE_PAIR : " aä€");
+			}
+			text.append('\n');
+		}
+		return text.toString();
+	}
+
+	private static String surrogatePairText() {
+		StringBuilder text = new StringBuilder();
+
+		for (int line = 0; line < 32; line++) {
+			for (int column = 0; column < 500 + line; column++) {
+				text.append(SURROGATE_PAIR);
+			}
+			text.append('\n');
+		}
+		return text.toString();
+	}
+
+	private Path writeInputFile(Charset charset, String text) throws IOException {
+		Path inputFile = this.tempDir.resolve(getClass().getSimpleName() + "." + charset.name() + ".txt");
+		byte[] textBytes = text.getBytes(charset);
+		ByteBuffer inputData = ByteBuffer.allocate(TextFormat.MAGIC.length + textBytes.length);
+
+		inputData.put(TextFormat.MAGIC);
+		inputData.put(textBytes);
+		Files.write(inputFile, inputData.array());
+		return inputFile;
+	}
+
+	private static class Status implements FileScannerStatus {
+
+		private boolean finished = false;
+
+		Status() {
+			// Make class package accessible
+		}
+
+		synchronized void await() throws InterruptedException {
+			while (!this.finished) {
+				wait();
+			}
+		}
+
+		@Override
+		public void scanStarted(FileScanner scanner) {
+			// Nothing to do
+		}
+
+		@Override
+		public synchronized void scanFinished(FileScanner scanner) {
+			this.finished = true;
+			notifyAll();
+		}
+
+		@Override
+		public void scanProgress(FileScanner scanner, FileScannerProgress progress) {
+			// Nothing to do
+		}
+
+		@Override
+		public void scanResult(FileScanner scanner, FileScannerResult result) {
+			// Nothing to do
+		}
+
+		@Override
+		public void scanException(FileScanner scanner, Exception cause) {
+			Assertions.fail(cause);
+		}
+
+	}
+
+	private static class TextFormat extends Format {
+
+		static final byte[] MAGIC = new byte[] { 'T', 'X', 'T', '!' };
+
+		private final CompositeSpec formatSpec;
+
+		TextFormat(FileScannerResultRenderHandler renderHandler, int textSize) {
+			super("Test text data");
+
+			StructSpec header = new StructSpec();
+
+			header.add(new DWordSpec("magic").validate(ByteBuffer.wrap(MAGIC).order(ByteOrder.LITTLE_ENDIAN).getInt()));
+
+			StructSpec text = new StructSpec();
+
+			text.result("Test text data");
+			text.add(header);
+			text.add(new RangeAttributeSpec("text").size(textSize));
+			text.renderer(renderHandler);
+			this.formatSpec = text;
+			registerHeaderMagic(MAGIC);
+			registerHeaderSpec(header);
+		}
+
+		@Override
+		public FileScannerResult decode(FileScannerResultDecodeContext context) throws IOException {
+			return context.decodeComposite(this.formatSpec);
+		}
+
+	}
+
+}
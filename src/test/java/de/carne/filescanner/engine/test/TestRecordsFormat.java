@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jdt.annotation.NonNull;
+
+import de.carne.filescanner.engine.FileScannerResult;
+import de.carne.filescanner.engine.FileScannerResultDecodeContext;
+import de.carne.filescanner.engine.FileScannerResultInputContext;
+import de.carne.filescanner.engine.FileScannerResultRenderContext;
+import de.carne.filescanner.engine.format.AttributeSpec;
+import de.carne.filescanner.engine.format.CompositeSpec;
+import de.carne.filescanner.engine.format.DWordSpec;
+import de.carne.filescanner.engine.format.SequenceSpec;
+import de.carne.filescanner.engine.format.StructSpec;
+import de.carne.filescanner.engine.spi.Format;
+import de.carne.filescanner.engine.util.HexFormat;
+
+/**
+ * Synthetic format used to test the scan engine components without depending on external test files.
+ * <p>
+ * The test data consists of a 4 byte magic followed by a sequence of records. Each record results in a "Record" result
+ * containing the bound record index as well as a nested "Value" result containing the bound record value. All numbers
+ * are little endian double words.
+ * </p>
+ */
+public final class TestRecordsFormat extends Format {
+
+	/**
+	 * Format name.
+	 */
+	public static final String FORMAT_NAME = "Test records data";
+
+	/**
+	 * Record result name.
+	 */
+	public static final String RECORD_NAME = "Record";
+
+	/**
+	 * Value result name.
+	 */
+	public static final String VALUE_NAME = "Value";
+
+	/**
+	 * Magic the test data starts with.
+	 */
+	public static final byte[] MAGIC = new byte[] { 'R', 'E', 'C', '!' };
+
+	/**
+	 * Size of a single record.
+	 */
+	public static final int RECORD_SIZE = 2 * Integer.BYTES;
+
+	private final AtomicInteger redecodedIndices = new AtomicInteger();
+	private final AtomicInteger renderedValues = new AtomicInteger();
+	private final CompositeSpec formatSpec;
+
+	/**
+	 * Constructs a new {@linkplain TestRecordsFormat} instance.
+	 *
+	 * @param recordCount the number of records to decode.
+	 */
+	public TestRecordsFormat(int recordCount) {
+		super(FORMAT_NAME);
+
+		StructSpec header = new StructSpec();
+
+		header.add(new DWordSpec("magic").validate(ByteBuffer.wrap(MAGIC).order(ByteOrder.LITTLE_ENDIAN).getInt()));
+
+		StructSpec value = new StructSpec();
+
+		value.result(VALUE_NAME);
+		value.add(new DWordSpec("value").renderer((out, renderValue) -> {
+			this.renderedValues.incrementAndGet();
+			out.write(" #" + renderValue);
+		})).bind(value);
+
+		StructSpec record = new StructSpec();
+
+		record.result(RECORD_NAME);
+		record.add(new IndexSpec()).bind(record);
+		record.add(value);
+
+		StructSpec formatSpec = new StructSpec();
+
+		formatSpec.result(FORMAT_NAME);
+		formatSpec.add(header);
+		formatSpec.add(new SequenceSpec(record).size(recordCount));
+		this.formatSpec = formatSpec;
+		registerHeaderMagic(MAGIC);
+		registerHeaderSpec(header);
+	}
+
+	/**
+	 * Writes a test data file.
+	 *
+	 * @param file the file to write.
+	 * @param recordCount the number of records to write.
+	 * @return the written file.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static Path writeTestFile(Path file, int recordCount) throws IOException {
+		ByteBuffer data = ByteBuffer.allocate(MAGIC.length + recordCount * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+		data.put(MAGIC);
+		for (int recordIndex = 0; recordIndex < recordCount; recordIndex++) {
+			data.putInt(recordIndex);
+			data.putInt(recordValue(recordIndex));
+		}
+		return Files.write(file, data.array());
+	}
+
+	/**
+	 * Gets the start position of a record within the test data.
+	 *
+	 * @param recordIndex the index of the record.
+	 * @return the start position of the record.
+	 */
+	public static long recordStart(int recordIndex) {
+		return MAGIC.length + (long) recordIndex * RECORD_SIZE;
+	}
+
+	/**
+	 * Gets the value of a record within the test data.
+	 *
+	 * @param recordIndex the index of the record.
+	 * @return the value of the record.
+	 */
+	public static int recordValue(int recordIndex) {
+		return recordIndex * 7;
+	}
+
+	/**
+	 * Gets the number of record indices re-decoded during rendering (rather than taken from the captured values).
+	 *
+	 * @return the number of record indices re-decoded during rendering.
+	 */
+	public int redecodedIndices() {
+		return this.redecodedIndices.get();
+	}
+
+	/**
+	 * Gets the number of record values rendered via the value attribute's renderer.
+	 *
+	 * @return the number of record values rendered via the value attribute's renderer.
+	 */
+	public int renderedValues() {
+		return this.renderedValues.get();
+	}
+
+	@Override
+	public FileScannerResult decode(FileScannerResultDecodeContext context) throws IOException {
+		return context.decodeComposite(this.formatSpec);
+	}
+
+	private class IndexSpec extends AttributeSpec<Integer> {
+
+		IndexSpec() {
+			super(Integer.class, Integer::equals, "index");
+			format(HexFormat.INT_FORMATTER);
+		}
+
+		@Override
+		public boolean isFixedSize() {
+			return true;
+		}
+
+		@Override
+		public int matchSize() {
+			return Integer.BYTES;
+		}
+
+		@Override
+		public boolean matches(ByteBuffer buffer) {
+			boolean match = Integer.BYTES <= buffer.remaining();
+
+			if (match) {
+				buffer.position(buffer.position() + Integer.BYTES);
+			}
+			return match;
+		}
+
+		@Override
+		protected @NonNull Integer decodeValue(FileScannerResultInputContext context) throws IOException {
+			return context.readValue(Integer.BYTES, ByteBuffer::getInt);
+		}
+
+		@Override
+		protected @NonNull Integer redecodeValue(FileScannerResultRenderContext context) throws IOException {
+			TestRecordsFormat.this.redecodedIndices.incrementAndGet();
+			return super.redecodeValue(context);
+		}
+
+	}
+
+}
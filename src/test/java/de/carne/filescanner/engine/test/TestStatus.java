@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.carne.filescanner.engine.FileScanner;
+import de.carne.filescanner.engine.FileScannerProgress;
+import de.carne.filescanner.engine.FileScannerResult;
+import de.carne.filescanner.engine.FileScannerStatus;
+
+/**
+ * {@linkplain FileScannerStatus} implementation used to wait for a scan to finish and to collect the reported scan
+ * exceptions.
+ */
+public class TestStatus implements FileScannerStatus {
+
+	private boolean finished = false;
+	private final List<Exception> exceptions = new ArrayList<>();
+
+	/**
+	 * Waits until the scan has finished.
+	 *
+	 * @throws InterruptedException if the calling thread has been interrupted while waiting.
+	 */
+	public synchronized void await() throws InterruptedException {
+		while (!this.finished) {
+			wait();
+		}
+	}
+
+	/**
+	 * Gets the scan exceptions reported so far.
+	 *
+	 * @return the scan exceptions reported so far.
+	 */
+	public synchronized List<Exception> exceptions() {
+		return new ArrayList<>(this.exceptions);
+	}
+
+	@Override
+	public void scanStarted(FileScanner scanner) {
+		// Nothing to do
+	}
+
+	@Override
+	public synchronized void scanFinished(FileScanner scanner) {
+		this.finished = true;
+		notifyAll();
+	}
+
+	@Override
+	public void scanProgress(FileScanner scanner, FileScannerProgress progress) {
+		// Nothing to do
+	}
+
+	@Override
+	public void scanResult(FileScanner scanner, FileScannerResult result) {
+		// Nothing to do
+	}
+
+	@Override
+	public synchronized void scanException(FileScanner scanner, Exception cause) {
+		this.exceptions.add(cause);
+	}
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import de.carne.filescanner.engine.FileScanner;
+import de.carne.filescanner.engine.FileScannerResult;
+import de.carne.filescanner.engine.transfer.TransferSource;
+import de.carne.filescanner.engine.transfer.TransferTask;
+import de.carne.test.annotation.io.TempDir;
+import de.carne.test.extension.io.TempPathExtension;
+
+/**
+ * Test {@linkplain TransferTask} class.
+ */
+@ExtendWith(TempPathExtension.class)
+class TransferTaskTest {
+
+	private static final int DATA_SIZE = 0x100000 + 0x123;
+
+	@SuppressWarnings("null")
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testAsyncTransfer() throws IOException, InterruptedException {
+		byte[] data = testData();
+
+		try (FileScanner fileScanner = scan(data)) {
+			FileScannerResult result = fileScanner.result();
+			ByteArrayOutputStream asyncBytes = new ByteArrayOutputStream();
+			TransferTask asyncTask = result.export(result.exportHandlers()[0])
+					.transferAsync(Channels.newChannel(asyncBytes));
+
+			Assertions.assertEquals(data.length, asyncTask.await());
+			Assertions.assertTrue(asyncTask.isDone());
+			Assertions.assertFalse(asyncTask.isCancelled());
+			Assertions.assertEquals(data.length, asyncTask.transferred());
+			Assertions.assertEquals(data.length, asyncTask.total());
+			Assertions.assertArrayEquals(data, asyncBytes.toByteArray());
+
+			// A finished transfer can no longer be cancelled
+			Assertions.assertFalse(asyncTask.cancel());
+			Assertions.assertFalse(asyncTask.isCancelled());
+		}
+	}
+
+	@Test
+	void testCancelledTransfer() throws IOException, InterruptedException {
+		byte[] data = testData();
+
+		try (FileScanner fileScanner = scan(data)) {
+			FileScannerResult result = fileScanner.result();
+			List<Runnable> pending = new ArrayList<>();
+			TransferSource cancelSource = result.export(result.exportHandlers()[0]);
+			ByteArrayOutputStream cancelBytes = new ByteArrayOutputStream();
+			TransferTask cancelTask = cancelSource.transferAsync(Channels.newChannel(cancelBytes), pending::add);
+
+			// Cancel the transfer before it has actually been started by the executor
+			Assertions.assertFalse(cancelTask.isDone());
+			Assertions.assertTrue(cancelTask.cancel());
+			pending.forEach(Runnable::run);
+			Assertions.assertTrue(cancelTask.isDone());
+			Assertions.assertTrue(cancelTask.isCancelled());
+			Assertions.assertEquals(0, cancelTask.transferred());
+			Assertions.assertEquals(0, cancelBytes.size());
+			Assertions.assertThrows(CancellationException.class, cancelTask::await);
+		}
+	}
+
+	@Test
+	void testFailedTransfer() {
+		TransferTask failingTask = TransferTask.start("failing", 2, Runnable::run, task -> {
+			task.progress(1);
+			throw new EOFException();
+		});
+
+		Assertions.assertTrue(failingTask.isDone());
+		Assertions.assertFalse(failingTask.isCancelled());
+		Assertions.assertEquals(1, failingTask.transferred());
+		Assertions.assertEquals(2, failingTask.total());
+		Assertions.assertFalse(failingTask.cancel());
+		Assertions.assertThrows(EOFException.class, failingTask::await);
+	}
+
+	private static byte[] testData() {
+		byte[] data = new byte[DATA_SIZE];
+
+		for (int dataIndex = 0; dataIndex < data.length; dataIndex++) {
+			data[dataIndex] = (byte) (dataIndex * 7 + (dataIndex >> 8));
+		}
+		return data;
+	}
+
+	private FileScanner scan(byte[] data) throws IOException, InterruptedException {
+		Path file = Files.write(this.tempDir.resolve(getClass().getSimpleName() + ".bin"), data);
+		TestStatus status = new TestStatus();
+		FileScanner fileScanner = FileScanner.scan(file, Collections.emptyList(), status);
+
+		status.await();
+		Assertions.assertEquals(Collections.emptyList(), status.exceptions());
+		return fileScanner;
+	}
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import de.carne.filescanner.engine.FileScanner;
+import de.carne.filescanner.engine.FileScannerResult;
+import de.carne.filescanner.engine.transfer.RenderOutput;
+import de.carne.filescanner.engine.transfer.renderer.PlainTextRenderer;
+import de.carne.test.annotation.io.TempDir;
+import de.carne.test.extension.io.TempPathExtension;
+
+/**
+ * Test the rendering of captured attribute values (system properties
+ * {@code de.carne.filescanner.engine.FileScanner.captureBudget} and
+ * {@code de.carne.filescanner.engine.FileScanner.captureRecordLimit}).
+ */
+@ExtendWith(TempPathExtension.class)
+class ValueCaptureTest {
+
+	private static final String CAPTURE_BUDGET_PROPERTY = FileScanner.class.getName() + ".captureBudget";
+	private static final String CAPTURE_RECORD_LIMIT_PROPERTY = FileScanner.class.getName() + ".captureRecordLimit";
+
+	private static final int RECORD_COUNT = 1000;
+
+	@SuppressWarnings("null")
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testCapturedRender() throws IOException, InterruptedException {
+		TestRecordsFormat format = new TestRecordsFormat(RECORD_COUNT);
+
+		try (FileScanner fileScanner = scan(format)) {
+			String dump = dumpResults(fileScanner.result());
+
+			// All record indices are taken from the captured values
+			Assertions.assertEquals(0, format.redecodedIndices());
+			Assertions.assertEquals(dump, dumpResults(fileScanner.result()));
+			Assertions.assertEquals(0, format.redecodedIndices());
+		}
+	}
+
+	@Test
+	void testDisabledCaptureRender() throws IOException, InterruptedException {
+		String capturedDump;
+
+		try (FileScanner fileScanner = scan(new TestRecordsFormat(RECORD_COUNT))) {
+			capturedDump = dumpResults(fileScanner.result());
+		}
+
+		TestRecordsFormat format = new TestRecordsFormat(RECORD_COUNT);
+
+		System.setProperty(CAPTURE_BUDGET_PROPERTY, "0");
+		try (FileScanner fileScanner = scan(format)) {
+			Assertions.assertEquals(capturedDump, dumpResults(fileScanner.result()));
+			Assertions.assertEquals(RECORD_COUNT, format.redecodedIndices());
+		} finally {
+			System.clearProperty(CAPTURE_BUDGET_PROPERTY);
+		}
+	}
+
+	@Test
+	void testLimitedCaptureRender() throws IOException, InterruptedException {
+		String capturedDump;
+
+		try (FileScanner fileScanner = scan(new TestRecordsFormat(RECORD_COUNT))) {
+			capturedDump = dumpResults(fileScanner.result());
+		}
+
+		TestRecordsFormat format = new TestRecordsFormat(RECORD_COUNT);
+
+		// Every record exceeds the limit and is therefore not captured
+		System.setProperty(CAPTURE_RECORD_LIMIT_PROPERTY, "1");
+		try (FileScanner fileScanner = scan(format)) {
+			Assertions.assertEquals(capturedDump, dumpResults(fileScanner.result()));
+			Assertions.assertEquals(RECORD_COUNT, format.redecodedIndices());
+		} finally {
+			System.clearProperty(CAPTURE_RECORD_LIMIT_PROPERTY);
+		}
+	}
+
+	private static String dumpResults(FileScannerResult result) throws IOException {
+		StringWriter text = new StringWriter();
+
+		try (RenderOutput out = new RenderOutput(new PlainTextRenderer(text, false))) {
+			dumpResult(out, result);
+		}
+		return text.toString();
+	}
+
+	private static void dumpResult(RenderOutput out, FileScannerResult result) throws IOException {
+		out.writeln(result.type() + ":" + result.name() + "[" + result.start() + "-" + result.end() + "]"
+				+ new TreeMap<>(result.values()));
+		if (result.type() != FileScannerResult.Type.INPUT) {
+			result.render(out, null, 0);
+		}
+		for (FileScannerResult child : result.children()) {
+			dumpResult(out, child);
+		}
+	}
+
+	private FileScanner scan(TestRecordsFormat format) throws IOException, InterruptedException {
+		Path file = TestRecordsFormat.writeTestFile(this.tempDir.resolve(getClass().getSimpleName() + ".bin"),
+				RECORD_COUNT);
+		TestStatus status = new TestStatus();
+		FileScanner fileScanner = FileScanner.scan(file, Arrays.asList(format), status);
+
+		status.await();
+		Assertions.assertEquals(Collections.emptyList(), status.exceptions());
+		return fileScanner;
+	}
+
+}
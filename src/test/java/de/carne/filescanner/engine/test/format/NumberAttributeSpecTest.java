@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.test.format;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.carne.filescanner.engine.format.DWordSpec;
+import de.carne.filescanner.engine.format.QWordSpec;
+import de.carne.filescanner.engine.format.WordSpec;
+
+/**
+ * Test {@linkplain de.carne.filescanner.engine.format.NumberAttributeSpec} class.
+ */
+class NumberAttributeSpecTest {
+
+	@Test
+	void testFixedValueValidation() {
+		WordSpec spec = new WordSpec("word");
+
+		spec.validate((short) 0xfffe);
+
+		Assertions.assertTrue(spec.matches(words((short) 0xfffe)));
+		Assertions.assertFalse(spec.matches(words((short) 0x0000)));
+		Assertions.assertFalse(spec.matches(ByteBuffer.allocate(1)));
+	}
+
+	@Test
+	void testDenseValueSetValidation() {
+		DWordSpec spec = new DWordSpec("dword");
+
+		spec.validate(Set.of(-2, -1, 0, 1, 63, 64, 1000));
+
+		for (int value = -10; value < 1010; value++) {
+			boolean expected = value == -2 || value == -1 || value == 0 || value == 1 || value == 63 || value == 64
+					|| value == 1000;
+
+			Assertions.assertEquals(expected, spec.matches(dwords(value)), Integer.toString(value));
+		}
+		Assertions.assertFalse(spec.matches(dwords(Integer.MIN_VALUE)));
+		Assertions.assertFalse(spec.matches(dwords(Integer.MAX_VALUE)));
+	}
+
+	@Test
+	void testSparseValueSetValidation() {
+		QWordSpec spec = new QWordSpec("qword");
+
+		spec.validate(Set.of(Long.MIN_VALUE, -1l, 0x10000l, Long.MAX_VALUE));
+
+		Assertions.assertTrue(spec.matches(qwords(Long.MIN_VALUE)));
+		Assertions.assertTrue(spec.matches(qwords(-1l)));
+		Assertions.assertTrue(spec.matches(qwords(0x10000l)));
+		Assertions.assertTrue(spec.matches(qwords(Long.MAX_VALUE)));
+		Assertions.assertFalse(spec.matches(qwords(0l)));
+		Assertions.assertFalse(spec.matches(qwords(0xffffl)));
+	}
+
+	@Test
+	void testCombinedValidation() {
+		DWordSpec spec = new DWordSpec("dword");
+
+		spec.validate(Set.of(1, 2, 3, 4));
+		spec.validate(value -> (value.intValue() & 1) == 0);
+
+		Assertions.assertFalse(spec.matches(dwords(1)));
+		Assertions.assertTrue(spec.matches(dwords(2)));
+		Assertions.assertFalse(spec.matches(dwords(3)));
+		Assertions.assertTrue(spec.matches(dwords(4)));
+		Assertions.assertFalse(spec.matches(dwords(6)));
+	}
+
+	private static ByteBuffer words(short value) {
+		return ByteBuffer.allocate(Short.BYTES).order(ByteOrder.LITTLE_ENDIAN).putShort(0, value);
+	}
+
+	private static ByteBuffer dwords(int value) {
+		return ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).putInt(0, value);
+	}
+
+	private static ByteBuffer qwords(long value) {
+		return ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(0, value);
+	}
+
+}
@@ -16,25 +16,51 @@
  */
 package de.carne.filescanner.engine.test.input;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
 
 import de.carne.filescanner.engine.input.BufferedFileChannelInput;
 import de.carne.filescanner.engine.input.FileScannerInput;
+import de.carne.filescanner.engine.input.InputDigestPass;
+import de.carne.filescanner.engine.input.InputDigester;
+import de.carne.filescanner.engine.input.InputDigests;
 import de.carne.filescanner.engine.test.TestFiles;
+import de.carne.test.annotation.io.TempDir;
+import de.carne.test.extension.io.TempPathExtension;
 
 /**
  * Test {@linkplain FileScannerInput} class.
  */
+@ExtendWith(TempPathExtension.class)
 class FileScannerInputTest {
 
+	@SuppressWarnings("null")
+	@TempDir
+	Path tempDir;
+
 	@Test
 	void testFileScannerInput() throws IOException {
 		try (BufferedFileChannelInput input = FileScannerInput.open(TestFiles.ZIP_ARCHIVE.getPath())) {
@@ -71,6 +97,18 @@ class FileScannerInputTest {
 
 				Assertions.assertEquals(0, buffer.remaining());
 			}
+			try (ReadableByteChannel channel = input.byteChannel(0x2e, 0x2e + 4)) {
+				ByteBuffer buffer = ByteBuffer.allocate(8);
+
+				// A partially filled buffer must not limit the remaining read
+				buffer.order(ByteOrder.LITTLE_ENDIAN);
+				buffer.position(2);
+				channel.read(buffer);
+				buffer.flip();
+
+				Assertions.assertEquals(6, buffer.remaining());
+				Assertions.assertEquals(0x4b500000, buffer.getInt());
+			}
 			Assertions.assertEquals(4, input.read(0x2e, 4).remaining());
 		}
 	}
@@ -101,4 +139,121 @@ class FileScannerInputTest {
 		}
 	}
 
+	@Test
+	void testFileScannerInputTransfer() throws IOException {
+		Path inputFile = TestFiles.ZIP_ARCHIVE.getPath();
+		byte[] inputData = Files.readAllBytes(inputFile);
+		Path transferFile = this.tempDir.resolve(getClass().getSimpleName() + ".bin");
+
+		try (BufferedFileChannelInput input = FileScannerInput.open(inputFile)) {
+			long size = input.size();
+
+			try (FileChannel target = FileChannel.open(transferFile, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+				Assertions.assertEquals(size, input.transferTo(target, 0, size));
+				Assertions.assertEquals(4, input.range(0x2e, size).transferTo(target, 0x2e, 0x2e + 4));
+				Assertions.assertEquals(4, input.section("section", 0x2e, size).transferTo(target, 0, 4));
+			}
+
+			byte[] transferData = Files.readAllBytes(transferFile);
+
+			Assertions.assertArrayEquals(inputData, Arrays.copyOf(transferData, inputData.length));
+			Assertions.assertArrayEquals(new byte[] { 0x50, 0x4b, 0x03, 0x04, 0x50, 0x4b, 0x03, 0x04 },
+					Arrays.copyOfRange(transferData, inputData.length, transferData.length));
+
+			ByteArrayOutputStream transferStream = new ByteArrayOutputStream();
+
+			Assertions.assertEquals(size, input.transferTo(Channels.newChannel(transferStream), 0, size + 1));
+			Assertions.assertArrayEquals(inputData, transferStream.toByteArray());
+
+			// Chunk wise transfers must reuse the transfer buffer
+			BufferPoolMXBean directPool = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+					.filter(pool -> "direct".equals(pool.getName())).findFirst().orElseThrow();
+			long directCount = directPool.getCount();
+			WritableByteChannel nullChannel = Channels.newChannel(OutputStream.nullOutputStream());
+
+			for (long chunkStart = 0; chunkStart < size; chunkStart += 16) {
+				input.transferTo(nullChannel, chunkStart, Math.min(chunkStart + 16, size));
+			}
+			Assertions.assertTrue(directPool.getCount() <= directCount + 1);
+		}
+	}
+
+	@Test
+	void testInputDigestPass() throws IOException, NoSuchAlgorithmException {
+		Path inputFile = TestFiles.ZIP_ARCHIVE.getPath();
+		byte[] inputData = Files.readAllBytes(inputFile);
+		List<String> algorithms = InputDigester.checkAlgorithms("MD5", " SHA-256", "MD5", "Unknown");
+
+		Assertions.assertEquals(Arrays.asList("MD5", "SHA-256"), algorithms);
+		try (BufferedFileChannelInput input = FileScannerInput.open(inputFile)) {
+			int size = (int) input.size();
+			InputDigestPass<String> digestPass = new InputDigestPass<>(algorithms, input.range(0x10, size), 0x10,
+					size);
+
+			digestPass.addOuter("outer");
+			Assertions.assertTrue(
+					digestPass.addNested("nested1", input.section("nested1", 0x20, size), 0, size - 0x30));
+			Assertions.assertTrue(digestPass.addNested("nested2", input.section("nested2", 0x40, 0x50).range(0, 0x10),
+					0x08, 0x10));
+			Assertions.assertTrue(digestPass.addNested("empty", input, size, size));
+			Assertions.assertFalse(digestPass.addNested("outside", input, 0, 0x20));
+
+			Map<String, InputDigests> digests = digestPass.run();
+
+			Assertions.assertEquals(4, digests.size());
+			for (String algorithm : algorithms) {
+				Assertions.assertArrayEquals(digest(algorithm, inputData, 0x10, size),
+						Objects.requireNonNull(digests.get("outer")).digest(algorithm));
+				Assertions.assertArrayEquals(digest(algorithm, inputData, 0x20, size - 0x10),
+						Objects.requireNonNull(digests.get("nested1")).digest(algorithm));
+				Assertions.assertArrayEquals(digest(algorithm, inputData, 0x48, 0x50),
+						Objects.requireNonNull(digests.get("nested2")).digest(algorithm));
+				Assertions.assertArrayEquals(digest(algorithm, inputData, size, size),
+						Objects.requireNonNull(digests.get("empty")).digest(algorithm));
+			}
+		}
+	}
+
+	@Test
+	void testPhysicalInputDigestPass() throws IOException, NoSuchAlgorithmException {
+		Path inputFile = TestFiles.ZIP_ARCHIVE.getPath();
+		byte[] inputData = Files.readAllBytes(inputFile);
+		List<String> algorithms = InputDigester.checkAlgorithms("SHA-256");
+
+		try (BufferedFileChannelInput input = FileScannerInput.open(inputFile)) {
+			int size = (int) input.size();
+			FileScannerInput section = input.section("section", 0x30, size);
+			InputDigestPass<String> digestPass = InputDigestPass.physical(algorithms, section);
+
+			// Ranges defined via nested inputs are mapped to the physical input; gaps in between are skipped
+			Assertions.assertTrue(digestPass.addNested("head", input, 0, 0x10));
+			Assertions.assertTrue(digestPass.addNested("section", section, 0, size - 0x30));
+			Assertions.assertTrue(digestPass.addNested("nested", section.range(0x10, 0x20), 0x10, 0x20));
+			Assertions.assertFalse(digestPass.addNested("outside", input, 0, size + 1));
+
+			Map<String, InputDigests> digests = digestPass.run();
+
+			Assertions.assertEquals(3, digests.size());
+			Assertions.assertArrayEquals(digest("SHA-256", inputData, 0, 0x10),
+					Objects.requireNonNull(digests.get("head")).digest("SHA-256"));
+			Assertions.assertArrayEquals(digest("SHA-256", inputData, 0x30, size),
+					Objects.requireNonNull(digests.get("section")).digest("SHA-256"));
+			Assertions.assertArrayEquals(digest("SHA-256", inputData, 0x40, 0x50),
+					Objects.requireNonNull(digests.get("nested")).digest("SHA-256"));
+
+			InputDigestPass<String> shutdownPass = InputDigestPass.physical(algorithms, input);
+
+			Assertions.assertTrue(shutdownPass.addNested("all", input, 0, size));
+			Assertions.assertTrue(shutdownPass.run(() -> Boolean.TRUE).isEmpty());
+		}
+	}
+
+	private static byte[] digest(String algorithm, byte[] data, int start, int end) throws NoSuchAlgorithmException {
+		MessageDigest messageDigest = MessageDigest.getInstance(algorithm);
+
+		messageDigest.update(data, start, end - start);
+		return messageDigest.digest();
+	}
+
 }
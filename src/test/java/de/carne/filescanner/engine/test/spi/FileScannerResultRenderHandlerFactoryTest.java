@@ -24,6 +24,7 @@ import org.junit.jupiter.api.Test;
 import de.carne.filescanner.engine.spi.FileScannerResultRenderHandlerFactory;
 import de.carne.filescanner.engine.spi.FileScannerResultRenderHandlerFactory.HandlerId;
 import de.carne.filescanner.engine.transfer.FileScannerResultRenderHandler;
+import de.carne.filescanner.engine.transfer.handler.HexDumpTransferHandler;
 
 /**
  * Test {@linkplain FileScannerResultRenderHandlerFactory} class.
@@ -36,6 +37,7 @@ class FileScannerResultRenderHandlerFactoryTest {
 				.getHandlers();
 
 		Assertions.assertFalse(handlers.isEmpty());
+		Assertions.assertTrue(handlers.containsValue(HexDumpTransferHandler.HEX_DUMP_TRANSFER));
 	}
 
 }
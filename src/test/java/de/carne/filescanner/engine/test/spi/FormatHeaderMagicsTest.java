@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.test.spi;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.carne.filescanner.engine.format.CompositeSpec;
+import de.carne.filescanner.engine.spi.Format;
+
+/**
+ * Test {@linkplain Format} header magics against the corresponding header specs.
+ */
+class FormatHeaderMagicsTest {
+
+	@Test
+	void testHeaderMagicsMatchHeaderSpecs() {
+		for (Format format : Format.providers()) {
+			if (format.hasHeaderMagics()) {
+				format.activate();
+
+				Assertions.assertFalse(format.headerSpecs().isEmpty(), format.name());
+
+				for (byte[] headerMagic : format.headerMagics()) {
+					Assertions.assertTrue(matchesHeaderSpecs(format, headerMagic), format.name());
+				}
+			}
+		}
+	}
+
+	private static boolean matchesHeaderSpecs(Format format, byte[] headerMagic) {
+		boolean match = false;
+
+		for (CompositeSpec headerSpec : format.headerSpecs()) {
+			byte[] header = new byte[Math.max(headerMagic.length, headerSpec.matchSize())];
+
+			System.arraycopy(headerMagic, 0, header, 0, headerMagic.length);
+			if (matchesBeyond(headerSpec, header, headerMagic.length)) {
+				// Any change to the magic must be rejected by the header spec as well
+				for (int magicIndex = 0; magicIndex < headerMagic.length; magicIndex++) {
+					header[magicIndex] ^= (byte) 0xff;
+
+					Assertions.assertFalse(matchesBeyond(headerSpec, header, headerMagic.length), format.name());
+
+					header[magicIndex] ^= (byte) 0xff;
+				}
+				match = true;
+				break;
+			}
+		}
+		return match;
+	}
+
+	private static boolean matchesBeyond(CompositeSpec headerSpec, byte[] header, int magicLength) {
+		ByteBuffer buffer = ByteBuffer.wrap(header).order(headerSpec.byteOrder());
+
+		// The bytes following the magic are not known and may fail to match; the failing element is consumed anyway
+		return headerSpec.matches(buffer) || buffer.position() > magicLength;
+	}
+
+}
@@ -16,19 +16,52 @@
  */
 package de.carne.filescanner.engine.test.spi;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
 
+import de.carne.filescanner.engine.FileScanner;
+import de.carne.filescanner.engine.FileScannerResult;
+import de.carne.filescanner.engine.FileScannerResultDecodeContext;
+import de.carne.filescanner.engine.format.CompositeSpec;
+import de.carne.filescanner.engine.format.DWordSpec;
+import de.carne.filescanner.engine.format.StructSpec;
 import de.carne.filescanner.engine.spi.Format;
+import de.carne.filescanner.engine.test.TestStatus;
+import de.carne.test.annotation.io.TempDir;
+import de.carne.test.extension.io.TempPathExtension;
 import de.carne.util.logging.Log;
 
 /**
  * Test {@linkplain Format} class.
  */
+@ExtendWith(TempPathExtension.class)
 class FormatTest {
 
 	private static final Log LOG = new Log();
 
+	private static final String MATCHING_MAGIC = "LZY1";
+	private static final String OTHER_MAGIC = "LZY2";
+	private static final String TRAILER = "END!";
+	private static final int THREAD_COUNT = 8;
+
+	@SuppressWarnings("null")
+	@TempDir
+	Path tempDir;
+
 	@Test
 	void testLoadFormats() {
 		Iterable<Format> formats = Format.providers();
@@ -39,4 +72,152 @@ class FormatTest {
 		Assertions.assertTrue(true);
 	}
 
+	@Test
+	void testHeaderMagicActivation() throws IOException, InterruptedException {
+		LazyFormat matchingFormat = LazyFormat.header(MATCHING_MAGIC);
+		LazyFormat otherFormat = LazyFormat.header(OTHER_MAGIC);
+
+		try (FileScanner fileScanner = scan(MATCHING_MAGIC + "data", matchingFormat, otherFormat)) {
+			Assertions.assertTrue(matchingFormat.isActive());
+			Assertions.assertEquals(1, matchingFormat.loadCount());
+			Assertions.assertFalse(otherFormat.isActive());
+			Assertions.assertEquals(0, otherFormat.loadCount());
+			Assertions.assertEquals(Arrays.asList(matchingFormat.name()), formatResultNames(fileScanner.result()));
+		}
+	}
+
+	@Test
+	void testTrailerActivation() throws IOException, InterruptedException {
+		LazyFormat trailerFormat = LazyFormat.trailer(TRAILER);
+		LazyFormat otherFormat = LazyFormat.header(OTHER_MAGIC);
+
+		// The trailer match size is available without activating the format
+		Assertions.assertTrue(trailerFormat.hasTrailerSpecs());
+		Assertions.assertEquals(TRAILER.length(), trailerFormat.trailerMatchSize());
+		Assertions.assertFalse(trailerFormat.isActive());
+
+		try (FileScanner fileScanner = scan("data" + TRAILER, trailerFormat, otherFormat)) {
+			Assertions.assertTrue(trailerFormat.isActive());
+			Assertions.assertEquals(1, trailerFormat.loadCount());
+			Assertions.assertFalse(otherFormat.isActive());
+			Assertions.assertEquals(0, otherFormat.loadCount());
+			Assertions.assertEquals(Arrays.asList(trailerFormat.name()), formatResultNames(fileScanner.result()));
+		}
+	}
+
+	@Test
+	void testConcurrentActivation() throws InterruptedException {
+		LazyFormat format = LazyFormat.header(MATCHING_MAGIC);
+		CountDownLatch startLatch = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<>();
+
+		for (int threadIndex = 0; threadIndex < THREAD_COUNT; threadIndex++) {
+			Thread thread = new Thread(() -> {
+				try {
+					startLatch.await();
+					format.activate();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+
+			thread.start();
+			threads.add(thread);
+		}
+		startLatch.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		Assertions.assertTrue(format.isActive());
+		Assertions.assertEquals(1, format.loadCount());
+
+		format.activate();
+
+		Assertions.assertEquals(1, format.loadCount());
+	}
+
+	private static List<String> formatResultNames(FileScannerResult result) {
+		List<String> names = new ArrayList<>();
+
+		for (FileScannerResult child : result.children()) {
+			if (child.type() == FileScannerResult.Type.FORMAT) {
+				names.add(child.name());
+			}
+		}
+		return names;
+	}
+
+	private FileScanner scan(String data, Format... formats) throws IOException, InterruptedException {
+		Path file = Files.write(this.tempDir.resolve(getClass().getSimpleName() + ".bin"),
+				data.getBytes(StandardCharsets.US_ASCII));
+		TestStatus status = new TestStatus();
+		FileScanner fileScanner = FileScanner.scan(file, Arrays.asList(formats), status);
+
+		status.await();
+		Assertions.assertEquals(Collections.emptyList(), status.exceptions());
+		return fileScanner;
+	}
+
+	private static class LazyFormat extends Format {
+
+		private final boolean trailer;
+		private final int signature;
+		private final AtomicInteger loadCount = new AtomicInteger();
+		private CompositeSpec formatSpec = new StructSpec();
+
+		private LazyFormat(String signature, boolean trailer) {
+			super("Test " + signature + " data");
+			this.trailer = trailer;
+			this.signature = ByteBuffer.wrap(signature.getBytes(StandardCharsets.US_ASCII))
+					.order(ByteOrder.LITTLE_ENDIAN).getInt();
+			if (trailer) {
+				registerTrailerMatchSize(Integer.BYTES);
+			} else {
+				registerHeaderMagic(signature.getBytes(StandardCharsets.US_ASCII));
+			}
+		}
+
+		static LazyFormat header(String magic) {
+			return new LazyFormat(magic, false);
+		}
+
+		static LazyFormat trailer(String trailer) {
+			return new LazyFormat(trailer, true);
+		}
+
+		int loadCount() {
+			return this.loadCount.get();
+		}
+
+		@Override
+		protected void load() {
+			this.loadCount.incrementAndGet();
+
+			StructSpec signatureSpec = new StructSpec();
+
+			signatureSpec.add(new DWordSpec("signature").validate(this.signature));
+
+			StructSpec formatSpec = new StructSpec();
+
+			formatSpec.result(name());
+			if (this.trailer) {
+				formatSpec.add(new DWordSpec("data"));
+				formatSpec.add(signatureSpec);
+				registerTrailerSpec(signatureSpec);
+			} else {
+				formatSpec.add(signatureSpec);
+				formatSpec.add(new DWordSpec("data"));
+				registerHeaderSpec(signatureSpec);
+			}
+			this.formatSpec = formatSpec;
+		}
+
+		@Override
+		public FileScannerResult decode(FileScannerResultDecodeContext context) throws IOException {
+			return context.decodeComposite(this.formatSpec);
+		}
+
+	}
+
 }
@@ -16,6 +16,9 @@
  */
 package de.carne.filescanner.engine.test.util;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 import org.eclipse.jdt.annotation.NonNull;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -72,4 +75,34 @@ class ByteHelperTest {
 		});
 	}
 
+	@Test
+	void testIndexOf() {
+		for (ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+			ByteBuffer buffer = ByteBuffer.allocate(37).order(order);
+
+			// Fill with values just below the search value to provoke borrow propagation
+			for (int index = 0; index < buffer.capacity(); index++) {
+				buffer.put(index, (byte) 0xfe);
+			}
+			Assertions.assertEquals(-1, ByteHelper.indexOf(buffer, (byte) 0xff, 0, buffer.capacity()));
+			for (int match = 0; match < buffer.capacity(); match++) {
+				buffer.put(match, (byte) 0xff);
+				if (match + 1 < buffer.capacity()) {
+					buffer.put(match + 1, (byte) 0xff);
+				}
+
+				for (int from = 0; from <= match; from++) {
+					Assertions.assertEquals(match, ByteHelper.indexOf(buffer, (byte) 0xff, from, buffer.capacity()));
+				}
+				Assertions.assertEquals(-1, ByteHelper.indexOf(buffer, (byte) 0xff, 0, match));
+				buffer.put(match, (byte) 0xfe);
+				if (match + 1 < buffer.capacity()) {
+					buffer.put(match + 1, (byte) 0xfe);
+				}
+			}
+			Assertions.assertEquals(0, buffer.position());
+			Assertions.assertEquals(buffer.capacity(), buffer.limit());
+		}
+	}
+
 }
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.test.util;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.carne.filescanner.engine.FileScannerResult;
+import de.carne.filescanner.engine.transfer.RenderOutput;
+import de.carne.filescanner.engine.util.HtmlReportGenerator;
+import de.carne.filescanner.engine.util.ReportGenerator;
+import de.carne.filescanner.engine.util.TextReportGenerator;
+
+/**
+ * Test {@linkplain ReportGenerator} class.
+ */
+class ReportGeneratorTest {
+
+	private static final int CHILD_COUNT = 10000;
+	private static final int FAILING_CHILD = 42;
+	private static final int LARGE_CHILD = 4711;
+	private static final int LINE_LIMIT = 10;
+
+	@Test
+	void testTextReport() throws IOException, InterruptedException {
+		StringWriter text = new StringWriter();
+		long resultCount = new TextReportGenerator(4).resultLineLimit(LINE_LIMIT).generate(flatResult(), text);
+
+		Assertions.assertEquals(CHILD_COUNT + 1l, resultCount);
+
+		List<String> titles = text.toString().lines().filter(line -> line.startsWith("    child "))
+				.collect(Collectors.toList());
+
+		Assertions.assertEquals(CHILD_COUNT, titles.size());
+		for (int childIndex = 0; childIndex < CHILD_COUNT; childIndex++) {
+			Assertions.assertTrue(titles.get(childIndex).startsWith("    child " + childIndex + " ["));
+		}
+		assertDetails(text.toString());
+	}
+
+	@Test
+	void testHtmlReport() throws IOException, InterruptedException {
+		StringWriter html = new StringWriter();
+		long resultCount = new HtmlReportGenerator(4).resultLineLimit(LINE_LIMIT).generate(flatResult(), html);
+
+		Assertions.assertEquals(CHILD_COUNT + 1l, resultCount);
+
+		String htmlText = html.toString();
+
+		Assertions.assertEquals(resultCount, htmlText.split("<li>", -1).length - 1);
+		Assertions.assertEquals(resultCount, htmlText.split("</li>", -1).length - 1);
+		assertDetails(htmlText);
+	}
+
+	@Test
+	void testParallelReport() throws IOException, InterruptedException {
+		FileScannerResult result = flatResult();
+		StringWriter singleWorkerText = new StringWriter();
+		StringWriter multiWorkerText = new StringWriter();
+
+		Assertions.assertEquals(CHILD_COUNT + 1l,
+				new TextReportGenerator(1).resultLineLimit(LINE_LIMIT).generate(result, singleWorkerText));
+		Assertions.assertEquals(CHILD_COUNT + 1l,
+				new TextReportGenerator(4).resultLineLimit(LINE_LIMIT).generate(result, multiWorkerText));
+		Assertions.assertEquals(reportBody(singleWorkerText.toString()), reportBody(multiWorkerText.toString()));
+
+		StringWriter singleWorkerHtml = new StringWriter();
+		StringWriter multiWorkerHtml = new StringWriter();
+
+		Assertions.assertEquals(CHILD_COUNT + 1l,
+				new HtmlReportGenerator(1).resultLineLimit(LINE_LIMIT).generate(result, singleWorkerHtml));
+		Assertions.assertEquals(CHILD_COUNT + 1l,
+				new HtmlReportGenerator(4).resultLineLimit(LINE_LIMIT).generate(result, multiWorkerHtml));
+		Assertions.assertEquals(reportBody(singleWorkerHtml.toString()), reportBody(multiWorkerHtml.toString()));
+	}
+
+	private static String reportBody(String report) {
+		// Strip the footer containing the report timestamp
+		return report.substring(0, report.lastIndexOf("Generated by "));
+	}
+
+	private static void assertDetails(String report) {
+		Assertions.assertEquals(1, report.split("Failed to render result: child " + FAILING_CHILD, -1).length - 1);
+		Assertions.assertEquals(1, report.split("Output truncated after " + LINE_LIMIT + " lines", -1).length - 1);
+		Assertions.assertTrue(report.contains("line " + (LINE_LIMIT - 1) + " of child " + LARGE_CHILD));
+		Assertions.assertFalse(report.contains("line " + LINE_LIMIT + " of child " + LARGE_CHILD));
+		Assertions.assertTrue(report.contains("line 0 of child " + (CHILD_COUNT - 1)));
+	}
+
+	private static FileScannerResult flatResult() {
+		FileScannerResult[] children = new FileScannerResult[CHILD_COUNT];
+
+		for (int childIndex = 0; childIndex < CHILD_COUNT; childIndex++) {
+			int lineCount = (childIndex == LARGE_CHILD ? 10 * LINE_LIMIT : 1);
+
+			children[childIndex] = result("child " + childIndex, childIndex == FAILING_CHILD, lineCount,
+					new FileScannerResult[0]);
+		}
+		return result("root", false, 1, children);
+	}
+
+	private static FileScannerResult result(String name, boolean failing, int lineCount,
+			FileScannerResult[] children) {
+		return (FileScannerResult) Proxy.newProxyInstance(ReportGeneratorTest.class.getClassLoader(),
+				new Class<?>[] { FileScannerResult.class }, (proxy, method, args) -> {
+					Object returnValue;
+
+					switch (method.getName()) {
+					case "name":
+						returnValue = name;
+						break;
+					case "start":
+					case "end":
+						returnValue = Long.valueOf(0);
+						break;
+					case "children":
+						returnValue = children.clone();
+						break;
+					case "render":
+						if (failing) {
+							throw new IOException(name);
+						}
+						for (int lineIndex = 0; lineIndex < lineCount; lineIndex++) {
+							((RenderOutput) args[0]).writeln("line " + lineIndex + " of " + name);
+						}
+						returnValue = Long.valueOf(0);
+						break;
+					default:
+						throw new UnsupportedOperationException(method.getName());
+					}
+					return returnValue;
+				});
+	}
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2007-2022 Holger de Carne and contributors, All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.carne.filescanner.engine.test.util;
+
+import java.util.IllegalFormatException;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.carne.filescanner.engine.util.TextFormat;
+
+/**
+ * Test {@linkplain TextFormat} class.
+ */
+class TextFormatTest {
+
+	@Test
+	void testSimpleFormat() {
+		assertFormat("Zip entry \"%s\"", "test.txt");
+		assertFormat("%s chunk", "IHDR");
+		assertFormat("X'%X' marker", Byte.valueOf((byte) 0xd8));
+		assertFormat("Block[%d] Data", Integer.valueOf(-1));
+		assertFormat("%x/%X", Long.valueOf(-1l), Short.valueOf((short) 0xabcd));
+		assertFormat("100%% %s%n", (Object) null);
+		assertFormat("no arguments");
+	}
+
+	@Test
+	void testFallbackFormat() {
+		assertFormat("%08X", Integer.valueOf(0xabc));
+		assertFormat("%2$s %1$s", "a", "b");
+
+		TextFormat invalidFormat = TextFormat.compile("%d");
+
+		Assertions.assertThrows(IllegalFormatException.class, () -> invalidFormat.format(Double.valueOf(1.0)));
+		Assertions.assertThrows(IllegalFormatException.class, () -> invalidFormat.format("not a number"));
+	}
+
+	private static void assertFormat(String format, Object... args) {
+		Assertions.assertEquals(String.format(format, args), TextFormat.compile(format).format(args));
+	}
+
+}